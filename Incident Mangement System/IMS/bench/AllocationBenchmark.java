@@ -0,0 +1,284 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Dispatcher threads reserving and releasing units of a few hot resources. First the bare
+// counters: a synchronized count, one CAS counter and the striped UnitStock. Then the whole
+// path: assigning the hot resources to ongoing incidents through IncidentManagementSystem
+// until the stock runs out, and closing the incidents to free it again.
+// Run with: java -cp target/classes AllocationBenchmark [operations per thread] [threads...]
+public class AllocationBenchmark
+{
+    private static final int HOT_RESOURCES = 4;
+
+    static volatile long blackhole;
+
+    interface Counter
+    {
+        boolean reserve(int units);
+
+        void release(int units);
+
+        int available();
+    }
+
+    static class LockedCounter implements Counter
+    {
+        private int free;
+
+        LockedCounter(int capacity)
+        {
+            free = capacity;
+        }
+
+        public synchronized boolean reserve(int units)
+        {
+            if (free < units)
+            {
+                return false;
+            }
+            free -= units;
+            return true;
+        }
+
+        public synchronized void release(int units)
+        {
+            free += units;
+        }
+
+        public synchronized int available()
+        {
+            return free;
+        }
+    }
+
+    static class CasCounter implements Counter
+    {
+        private final AtomicInteger free;
+
+        CasCounter(int capacity)
+        {
+            free = new AtomicInteger(capacity);
+        }
+
+        public boolean reserve(int units)
+        {
+            int available = free.get();
+            while (available >= units)
+            {
+                if (free.compareAndSet(available, available - units))
+                {
+                    return true;
+                }
+                available = free.get();
+            }
+            return false;
+        }
+
+        public void release(int units)
+        {
+            free.addAndGet(units);
+        }
+
+        public int available()
+        {
+            return free.get();
+        }
+    }
+
+    static class StripedCounter implements Counter
+    {
+        private final UnitStock stock;
+
+        StripedCounter(int capacity)
+        {
+            stock = new UnitStock(capacity);
+        }
+
+        public boolean reserve(int units)
+        {
+            return stock.reserve(units);
+        }
+
+        public void release(int units)
+        {
+            stock.release(units);
+        }
+
+        public int available()
+        {
+            return stock.available();
+        }
+    }
+
+    interface CounterFactory
+    {
+        Counter create(int capacity);
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int[] threadCounts = { 1, 8, 32 };
+        if (args.length > 1)
+        {
+            threadCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++)
+            {
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%d processors, %d hot resources%n", Runtime.getRuntime().availableProcessors(), HOT_RESOURCES);
+
+        System.out.println("threads, locked Mops/s, cas Mops/s, striped Mops/s");
+        // The first pass only warms up the JIT
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int threads : threadCounts)
+            {
+                double locked = counters(LockedCounter::new, threads, operations);
+                double cas = counters(CasCounter::new, threads, operations);
+                double striped = counters(StripedCounter::new, threads, operations);
+                if (pass == 1)
+                {
+                    System.out.printf("%d, %.1f, %.1f, %.1f%n", threads, locked, cas, striped);
+                }
+            }
+        }
+
+        System.out.println("threads, assignments/s, refused, close ms");
+        for (int threads : threadCounts)
+        {
+            dispatch(threads, operations / 10);
+        }
+    }
+
+    // Each thread takes and gives back one or two units of a random hot resource. The
+    // stock holds fewer units than the threads want, so some reservations are refused.
+    private static double counters(CounterFactory factory, int threads, int operations) throws InterruptedException
+    {
+        int capacity = Math.max(2, threads);
+        Counter[] hot = new Counter[HOT_RESOURCES];
+        for (int i = 0; i < HOT_RESOURCES; i++)
+        {
+            hot[i] = factory.create(capacity);
+        }
+        long elapsed = runThreads(threads, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long granted = 0;
+            for (int i = 0; i < operations; i++)
+            {
+                Counter counter = hot[random.nextInt(HOT_RESOURCES)];
+                int units = 1 + (i & 1);
+                if (counter.reserve(units))
+                {
+                    granted++;
+                    counter.release(units);
+                }
+            }
+            blackhole += granted;
+        });
+        for (Counter counter : hot)
+        {
+            if (counter.available() != capacity)
+            {
+                throw new IllegalStateException(counter.available() + " of " + capacity + " units free after all released");
+            }
+        }
+        return (double) threads * operations / elapsed * 1e3;
+    }
+
+    // Each thread assigns hot resources to its own ongoing incidents until the stock is
+    // used up, then the incidents are closed and every unit must be free again
+    private static void dispatch(int threads, int assignments) throws InterruptedException
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        int capacity = threads * assignments / 2;
+        for (int number = 1; number <= HOT_RESOURCES; number++)
+        {
+            ims.setResourceStock(number, capacity);
+        }
+        GPSLocation location = new GPSLocation("what.three.words");
+        for (int i = 1; i <= threads * 16; i++)
+        {
+            ims.addIncident(new Incident(i, "Reporter", "07000000000", "01/01/2023", "12:00", location, "Details"));
+        }
+        AtomicInteger refused = new AtomicInteger();
+        int[] granted = new int[HOT_RESOURCES + 1];
+        long elapsed = runThreads(threads, new Runnable() {
+            private final AtomicInteger nextThread = new AtomicInteger();
+
+            public void run()
+            {
+                int thread = nextThread.getAndIncrement();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int[] mine = new int[HOT_RESOURCES + 1];
+                for (int i = 0; i < assignments; i++)
+                {
+                    int incident = thread * 16 + 1 + (i & 15);
+                    int number = 1 + random.nextInt(HOT_RESOURCES);
+                    int units = 1 + (i & 3);
+                    if (ims.assignResourceToIncident(incident, new Resource(number, "R" + number, "Unit " + number, units)))
+                    {
+                        mine[number] += units;
+                    }
+                    else
+                    {
+                        refused.incrementAndGet();
+                    }
+                }
+                synchronized (granted)
+                {
+                    for (int number = 1; number <= HOT_RESOURCES; number++)
+                    {
+                        granted[number] += mine[number];
+                    }
+                }
+            }
+        });
+        for (int number = 1; number <= HOT_RESOURCES; number++)
+        {
+            UnitStock stock = ims.getResourceStock(number);
+            if (stock.committed() != granted[number] || stock.committed() > capacity)
+            {
+                throw new IllegalStateException("resource " + number + ": " + stock.committed() + " committed, "
+                        + granted[number] + " granted, capacity " + capacity);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (Incident incident : ims.getAllIncidents())
+        {
+            incident.setOngoing(false);
+        }
+        double closeMillis = (System.nanoTime() - start) / 1e6;
+        for (int number = 1; number <= HOT_RESOURCES; number++)
+        {
+            if (ims.getResourceStock(number).available() != capacity)
+            {
+                throw new IllegalStateException("resource " + number + " not fully released");
+            }
+        }
+        System.out.printf("%d, %.0f, %d, %.1f%n", threads, threads * (double) assignments / elapsed * 1e9,
+                refused.get(), closeMillis);
+    }
+
+    // Run the task on several platform threads started together; returns elapsed nanoseconds
+    private static long runThreads(int threads, Runnable task) throws InterruptedException
+    {
+        List<Thread> started = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++)
+        {
+            Thread thread = new Thread(task);
+            thread.start();
+            started.add(thread);
+        }
+        for (Thread thread : started)
+        {
+            thread.join();
+        }
+        return System.nanoTime() - start;
+    }
+}
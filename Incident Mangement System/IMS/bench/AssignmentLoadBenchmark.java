@@ -0,0 +1,122 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+// Saves incidents, resources and their assignments to CSV, then reloads them and times
+// each file. Assignments are joined through IncidentManagementSystem's grouped hash join
+// and, for comparison, through a lookup and assignment per row. A resource is assigned
+// with different unit counts, and each load must keep one catalogue entry per resource
+// and every assignment's units.
+// Run with: java -Xms4g -Xmx4g -cp target/classes AssignmentLoadBenchmark [incidents] [assignments per incident]
+public class AssignmentLoadBenchmark
+{
+    private static final int DISTINCT_RESOURCES = 1000;
+
+    public static void main(String[] args) throws IOException
+    {
+        int incidents = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int perIncident = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File directory = Files.createTempDirectory("assignments").toFile();
+        directory.deleteOnExit();
+        String incidentsFile = file(directory, "incidents.csv");
+        String resourcesFile = file(directory, "resources.csv");
+        String assignmentsFile = file(directory, "assignments.csv");
+
+        IncidentManagementSystem source = new IncidentManagementSystem();
+        Random random = new Random(42);
+        GPSLocation location = new GPSLocation("what.three.words");
+        long units = 0;
+        for (int i = 1; i <= incidents; i++)
+        {
+            source.addIncident(new Incident(i, "Reporter", "07000000000", "01/01/2023", "12:00", location, "Details"));
+            for (int j = 0; j < perIncident; j++)
+            {
+                int id = random.nextInt(DISTINCT_RESOURCES);
+                int assigned = 1 + random.nextInt(3);
+                source.assignResourceToIncident(i, new Resource(id, "R" + id, "Unit " + id, assigned));
+                units += assigned;
+            }
+        }
+        source.saveIncidentsToCSV(incidentsFile);
+        source.saveResourcesToCSV(resourcesFile);
+        source.saveAssignmentsToCSV(assignmentsFile);
+        source = null;
+        System.out.printf("%d incidents, %d assignments%n", incidents, (long) incidents * perIncident);
+        System.out.println("join, incidents ms, resources ms, assignments ms");
+
+        for (int round = 0; round < 2; round++)
+        {
+            IncidentManagementSystem ims = new IncidentManagementSystem();
+            long start = System.nanoTime();
+            ims.loadIncidentsFromCSV(incidentsFile);
+            double incidentMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            ims.loadResourcesFromCSV(resourcesFile);
+            double resourceMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            int unmatched = ims.loadAssignmentsFromCSV(assignmentsFile);
+            double joinMillis = (System.nanoTime() - start) / 1e6;
+            verify(ims, incidents, perIncident, units, unmatched);
+            System.out.printf("hash, %.0f, %.0f, %.0f%n", incidentMillis, resourceMillis, joinMillis);
+            ims = null;
+
+            IncidentManagementSystem perRow = new IncidentManagementSystem();
+            perRow.loadIncidentsFromCSV(incidentsFile);
+            perRow.loadResourcesFromCSV(resourcesFile);
+            start = System.nanoTime();
+            loadPerRow(perRow, assignmentsFile);
+            joinMillis = (System.nanoTime() - start) / 1e6;
+            verify(perRow, incidents, perIncident, units, 0);
+            System.out.printf("per row, -, -, %.0f%n", joinMillis);
+        }
+    }
+
+    // One incident lookup and one single-resource assignment for every row
+    private static void loadPerRow(IncidentManagementSystem ims, String filename) throws IOException
+    {
+        CsvSegments.read(filename, row -> {
+            Resource known = ims.findResourceByNumber(row.getInt(1));
+            ims.assignResourceToIncident(row.getInt(0), new Resource(known.getResourceNumber(),
+                    known.getResourceCode(), known.getResourceDescription(), row.getInt(2)));
+        });
+    }
+
+    private static void verify(IncidentManagementSystem ims, int incidents, int perIncident, long units, int unmatched)
+    {
+        if (unmatched != 0 || ims.getAllIncidents().size() != incidents)
+        {
+            throw new IllegalStateException(unmatched + " unmatched rows");
+        }
+        if (ims.getUniqueResources().size() > DISTINCT_RESOURCES)
+        {
+            throw new IllegalStateException(ims.getUniqueResources().size() + " catalogue entries for "
+                    + DISTINCT_RESOURCES + " resources");
+        }
+        long loadedUnits = 0;
+        for (Incident incident : ims.getAllIncidents())
+        {
+            if (incident.getResources().size() != perIncident)
+            {
+                throw new IllegalStateException("incident " + incident.getIncidentNumber() + " has "
+                        + incident.getResources().size() + " resources");
+            }
+            for (Resource resource : incident.getResources())
+            {
+                loadedUnits += resource.getNumUnits();
+            }
+        }
+        if (loadedUnits != units)
+        {
+            throw new IllegalStateException(loadedUnits + " units assigned after loading, " + units + " before");
+        }
+    }
+
+    private static String file(File directory, String name)
+    {
+        File file = new File(directory, name);
+        file.deleteOnExit();
+        return file.getPath();
+    }
+}
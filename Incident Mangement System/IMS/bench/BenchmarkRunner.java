@@ -0,0 +1,329 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Times the hot paths of IncidentManagementSystem, Incident, Resource and the field checks
+// behind the UserInterface prompts on incidents from IncidentGenerator, and writes the
+// results as JSON in the layout described at writeJson, so two releases can be compared.
+// Each benchmark runs in batches sized to take about BATCH_MILLIS: the warm-up batches let
+// the JIT settle, then every measured batch gives one sample of the average time per
+// operation. The filter is a regular expression on benchmark names.
+// Run with: java -Xmx4g -cp target/classes BenchmarkRunner [incidents] [results file] [filter]
+public class BenchmarkRunner
+{
+    private static final int WARMUP_BATCHES = 5;
+    private static final int MEASURED_BATCHES = 10;
+    private static final long BATCH_MILLIS = 200;
+    // Normal quantile for the 99.9% interval reported as the error of the mean
+    private static final double Z_999 = 3.291;
+    private static final int INPUTS = 4_096; // a power of two, so an index picks one with a mask
+    private static final int REPLACEMENTS = 1_024;
+    // Names the layout writeJson uses; changed whenever a field is added or renamed
+    private static final String RESULTS_FORMAT = "ims-benchmark-results/1";
+
+    // Results are written here so the JIT cannot drop the operations
+    static volatile long blackhole;
+
+    // One operation; the index changes from call to call so inputs can be varied
+    private interface Operation
+    {
+        long run(int index) throws Exception;
+    }
+
+    private static class Result
+    {
+        final String name;
+        final TimeUnit unit;
+        final double[] samples;
+
+        Result(String name, TimeUnit unit, double[] samples)
+        {
+            this.name = name;
+            this.unit = unit;
+            this.samples = samples;
+        }
+
+        double mean()
+        {
+            return Arrays.stream(samples).average().orElse(Double.NaN);
+        }
+
+        double error()
+        {
+            double mean = mean();
+            double squares = 0;
+            for (double sample : samples)
+            {
+                squares += (sample - mean) * (sample - mean);
+            }
+            return Z_999 * Math.sqrt(squares / (samples.length - 1)) / Math.sqrt(samples.length);
+        }
+
+        double percentile(double p)
+        {
+            double[] sorted = samples.clone();
+            Arrays.sort(sorted);
+            return sorted[(int) Math.round(p / 100 * (sorted.length - 1))];
+        }
+    }
+
+    private static final List<Result> results = new ArrayList<>();
+    private static Pattern filter;
+    private static int counter;
+
+    public static void main(String[] args) throws Exception
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String output = args.length > 1 ? args[1] : "benchmark-results.json";
+        filter = Pattern.compile(args.length > 2 ? args[2] : "");
+
+        File directory = Files.createTempDirectory("ims-bench").toFile();
+        IncidentGenerator.writeCsv(directory.getPath(), count, IncidentGenerator.DEFAULT_SEED);
+        String incidentsFile = new File(directory, IncidentGenerator.INCIDENTS_FILE).getPath();
+        String resourcesFile = new File(directory, IncidentGenerator.RESOURCES_FILE).getPath();
+        String assignmentsFile = new File(directory, IncidentGenerator.ASSIGNMENTS_FILE).getPath();
+        String savedFile = new File(directory, "saved.csv").getPath();
+        String snapshotFile = new File(directory, "snapshot").getPath();
+
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        ims.loadResourcesFromCSV(resourcesFile);
+        ims.loadIncidentsFromCSV(incidentsFile);
+        ims.loadAssignmentsFromCSV(assignmentsFile);
+        System.out.printf("%d incidents with seed %d%n", ims.getIncidentCount(), IncidentGenerator.DEFAULT_SEED);
+
+        // Inputs are drawn from the stored incidents, so lookups hit and queries find something
+        Random random = new Random(IncidentGenerator.DEFAULT_SEED);
+        Incident[] sample = new Incident[INPUTS];
+        String[] incidentRows = new String[INPUTS];
+        String[] resourceRows = new String[INPUTS];
+        List<Resource> resources = ims.getUniqueResources();
+        for (int i = 0; i < INPUTS; i++)
+        {
+            sample[i] = ims.findIncidentByNumber(1 + random.nextInt(count));
+            incidentRows[i] = sample[i].toCSVString();
+            resourceRows[i] = resources.get(random.nextInt(resources.size())).toCSVString();
+        }
+        int mask = INPUTS - 1;
+
+        // Each number has two replacements that take turns, so every add replaces a stored incident
+        Incident[] replacements = new Incident[2 * REPLACEMENTS];
+        Iterator<Incident> generated = new IncidentGenerator(IncidentGenerator.DEFAULT_SEED + 1).incidents(replacements.length);
+        for (int i = 0; i < replacements.length; i++)
+        {
+            replacements[i] = generated.next();
+            replacements[i].setIncidentNumber(1 + i % Math.min(REPLACEMENTS, count));
+        }
+
+        System.out.println("benchmark, score, error, unit");
+        measure("IncidentManagementSystem.findIncidentByNumber", TimeUnit.NANOSECONDS,
+                i -> ims.findIncidentByNumber(sample[i & mask].getIncidentNumber()).getIncidentNumber());
+        measure("IncidentManagementSystem.incidentExists", TimeUnit.NANOSECONDS,
+                i -> ims.incidentExists(sample[i & mask].getIncidentNumber()) ? 1 : 0);
+        measure("IncidentManagementSystem.findIncidentsByPhoneNumber", TimeUnit.NANOSECONDS,
+                i -> ims.findIncidentsByPhoneNumber(sample[i & mask].getReporterPhoneNumber()).size());
+        measure("IncidentManagementSystem.findPossibleDuplicates", TimeUnit.NANOSECONDS, i -> {
+            Incident incident = sample[i & mask];
+            return ims.findPossibleDuplicates(incident.getReporterPhoneNumber(), incident.getDate(),
+                    incident.getTime(), incident.getGpsLocation()).size();
+        });
+        measure("IncidentManagementSystem.findIncidentsWithinRadius", TimeUnit.NANOSECONDS, i -> {
+            GPSLocation location = sample[i & mask].getGpsLocation();
+            return ims.findIncidentsWithinRadius(location.getLatitude(), location.getLongitude(), 1.0, false).size();
+        });
+        measure("IncidentManagementSystem.findNearestIncidents", TimeUnit.NANOSECONDS, i -> {
+            GPSLocation location = sample[i & mask].getGpsLocation();
+            return ims.findNearestIncidents(location.getLatitude(), location.getLongitude(), 10, false).size();
+        });
+        measure("IncidentManagementSystem.findIncidentsBetween", TimeUnit.NANOSECONDS, i -> {
+            long timestamp = sample[i & mask].getTimestamp();
+            return ims.findIncidentsBetween(timestamp - 1_800, timestamp + 1_800).size();
+        });
+        measure("IncidentManagementSystem.searchIncidents", TimeUnit.NANOSECONDS,
+                i -> ims.searchIncidents(sample[i & mask].getIncidentDetails(), 20).size());
+        measure("IncidentManagementSystem.getIncidentPage", TimeUnit.NANOSECONDS,
+                i -> ims.getIncidentPage(IncidentFilter.all(), ims.getPageCursor(i & mask, 20), 20).getIncidents().size());
+        measure("IncidentManagementSystem.recommendResources", TimeUnit.NANOSECONDS,
+                i -> ims.recommendResources(sample[i & mask], 3).size());
+        measure("Incident.toCSVString", TimeUnit.NANOSECONDS,
+                i -> sample[i & mask].toCSVString().length());
+        measure("Incident.appendTo", TimeUnit.NANOSECONDS,
+                i -> sample[i & mask].appendTo(new StringBuilder(256)).length());
+        measure("Incident.fromCSVString", TimeUnit.NANOSECONDS,
+                i -> Incident.fromCSVString(incidentRows[i & mask]).getIncidentNumber());
+        measure("Resource.toCSVString", TimeUnit.NANOSECONDS,
+                i -> resources.get(i % resources.size()).toCSVString().length());
+        measure("Resource.fromCSVString", TimeUnit.NANOSECONDS,
+                i -> Resource.fromCSVString(resourceRows[i & mask]).getResourceNumber());
+        measure("InputValidator.isValidName", TimeUnit.NANOSECONDS,
+                i -> InputValidator.isValidName(sample[i & mask].getReporterName()) ? 1 : 0);
+        measure("InputValidator.isValidPhoneNumber", TimeUnit.NANOSECONDS,
+                i -> InputValidator.isValidPhoneNumber(sample[i & mask].getReporterPhoneNumber()) ? 1 : 0);
+        measure("InputValidator.isValidDate", TimeUnit.NANOSECONDS,
+                i -> InputValidator.isValidDate(sample[i & mask].getDate()) ? 1 : 0);
+        measure("InputValidator.isValidTime", TimeUnit.NANOSECONDS,
+                i -> InputValidator.isValidTime(sample[i & mask].getTime()) ? 1 : 0);
+        measure("InputValidator.isValidGPSLocation", TimeUnit.NANOSECONDS,
+                i -> InputValidator.isValidGPSLocation(sample[i & mask].getGpsLocation().toString()) ? 1 : 0);
+        measure("InputValidator.isValidTextInput", TimeUnit.NANOSECONDS,
+                i -> InputValidator.isValidTextInput(sample[i & mask].getIncidentDetails()) ? 1 : 0);
+
+        // The ones below change the stored incidents, so they come after the queries
+        measure("Incident.setPriority", TimeUnit.NANOSECONDS, i -> {
+            Incident incident = sample[i & mask];
+            incident.setPriority(Incident.HIGHEST_PRIORITY + i % Incident.LOWEST_PRIORITY);
+            return incident.getPriority();
+        });
+        measure("IncidentManagementSystem.addIncident", TimeUnit.NANOSECONDS, i -> {
+            Incident replacement = replacements[i % replacements.length];
+            ims.addIncident(replacement);
+            return replacement.getIncidentNumber();
+        });
+        measure("IncidentManagementSystem.saveIncidentsToCSV", TimeUnit.MILLISECONDS, i -> {
+            ims.saveIncidentsToCSV(savedFile);
+            return new File(savedFile).length();
+        });
+        measure("IncidentManagementSystem.loadIncidentsFromCSV", TimeUnit.MILLISECONDS,
+                i -> new IncidentManagementSystem().loadIncidentsFromCSV(incidentsFile));
+        measure("IncidentManagementSystem.saveSnapshot", TimeUnit.MILLISECONDS, i -> {
+            ims.saveSnapshot(snapshotFile);
+            return ims.getIncidentCount();
+        });
+        measure("IncidentManagementSystem.loadSnapshot", TimeUnit.MILLISECONDS, i -> {
+            IncidentManagementSystem loaded = new IncidentManagementSystem();
+            loaded.loadSnapshot(snapshotFile);
+            return loaded.getIncidentCount();
+        });
+
+        writeJson(output, count);
+        System.out.println("Results written to " + output);
+        delete(directory);
+    }
+
+    private static void measure(String name, TimeUnit unit, Operation operation) throws Exception
+    {
+        if (!filter.matcher(name).find())
+        {
+            return;
+        }
+        int batch = batchSize(operation);
+        for (int i = 0; i < WARMUP_BATCHES; i++)
+        {
+            runBatch(operation, batch);
+        }
+        double nanosPerUnit = unit.toNanos(1);
+        double[] samples = new double[MEASURED_BATCHES];
+        for (int i = 0; i < MEASURED_BATCHES; i++)
+        {
+            samples[i] = runBatch(operation, batch) / (double) batch / nanosPerUnit;
+        }
+        Result result = new Result(name, unit, samples);
+        results.add(result);
+        System.out.printf(Locale.ROOT, "%s, %.3f, %.3f, %s%n", name, result.mean(), result.error(), unitName(unit));
+    }
+
+    // Grow the batch until it is long enough to time, then scale it to BATCH_MILLIS
+    private static int batchSize(Operation operation) throws Exception
+    {
+        long target = TimeUnit.MILLISECONDS.toNanos(BATCH_MILLIS);
+        int size = 1;
+        long nanos = runBatch(operation, size);
+        while (nanos < target / 10 && size < Integer.MAX_VALUE / 4)
+        {
+            size *= 4;
+            nanos = runBatch(operation, size);
+        }
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (double) size * target / Math.max(1, nanos)));
+    }
+
+    private static long runBatch(Operation operation, int size) throws Exception
+    {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++)
+        {
+            sink += operation.run(counter++ & Integer.MAX_VALUE);
+        }
+        long nanos = System.nanoTime() - start;
+        blackhole = sink;
+        return nanos;
+    }
+
+    private static String unitName(TimeUnit unit)
+    {
+        return unit == TimeUnit.MILLISECONDS ? "ms/op" : "ns/op";
+    }
+
+    // One object per run: the format version, what was run and on which JVM, then one entry
+    // per benchmark with its unit, the mean time per operation, the half-width of its 99.9%
+    // interval, and every measured batch's average
+    private static void writeJson(String filename, int count) throws IOException
+    {
+        try (PrintWriter out = new PrintWriter(new FileWriter(filename)))
+        {
+            out.println("{");
+            out.println("    \"format\" : " + quote(RESULTS_FORMAT) + ",");
+            out.println("    \"incidents\" : " + count + ",");
+            out.println("    \"seed\" : " + IncidentGenerator.DEFAULT_SEED + ",");
+            out.println("    \"warmupBatches\" : " + WARMUP_BATCHES + ",");
+            out.println("    \"measuredBatches\" : " + MEASURED_BATCHES + ",");
+            out.println("    \"batchMillis\" : " + BATCH_MILLIS + ",");
+            out.println("    \"javaVersion\" : " + quote(System.getProperty("java.version")) + ",");
+            out.println("    \"vmName\" : " + quote(System.getProperty("java.vm.name")) + ",");
+            out.println("    \"results\" : [");
+            for (int r = 0; r < results.size(); r++)
+            {
+                Result result = results.get(r);
+                StringBuilder samples = new StringBuilder();
+                for (double sample : result.samples)
+                {
+                    samples.append(samples.length() == 0 ? "" : ", ").append(number(sample));
+                }
+                out.println("        {");
+                out.println("            \"name\" : " + quote(result.name) + ",");
+                out.println("            \"unit\" : \"" + unitName(result.unit) + "\",");
+                out.println("            \"mean\" : " + number(result.mean()) + ",");
+                out.println("            \"error\" : " + number(result.error()) + ",");
+                out.println("            \"median\" : " + number(result.percentile(50)) + ",");
+                out.println("            \"min\" : " + number(result.percentile(0)) + ",");
+                out.println("            \"max\" : " + number(result.percentile(100)) + ",");
+                out.println("            \"samples\" : [ " + samples + " ]");
+                out.println(r < results.size() - 1 ? "        }," : "        }");
+            }
+            out.println("    ]");
+            out.println("}");
+        }
+    }
+
+    private static String number(double value)
+    {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.6f", value) : "\"NaN\"";
+    }
+
+    private static String quote(String text)
+    {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Adds incidents from a pool of repeat callers to IncidentManagementSystem and times
+// finding a caller's incidents and the duplicate-report check that runs when an incident
+// is created, against scanning every incident. Sampled answers are checked against the
+// scan. Also compares the heap taken by a PhoneIndex with a HashMap from phone String
+// to a list of incident numbers.
+// Run with: java -Xmx4g -cp target/classes CallerLookupBenchmark [incidents] [callers] [queries]
+public class CallerLookupBenchmark
+{
+    private static final double MIN_LAT = 50.0;
+    private static final double MAX_LAT = 58.5;
+    private static final double MIN_LON = -5.5;
+    private static final double MAX_LON = 1.7;
+
+    static volatile long blackhole;
+    static volatile Object retained;
+
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int callerCount = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        Random random = new Random(42);
+        String[] phones = new String[callerCount];
+        for (int i = 0; i < callerCount; i++)
+        {
+            phones[i] = String.format("07%09d", random.nextInt(1_000_000_000));
+        }
+        // Measured first, while nothing else is on the heap
+        compareHeap(phones, count, random);
+
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        List<Incident> incidents = new ArrayList<>(count);
+        for (int number = 1; number <= count; number++)
+        {
+            Incident incident = randomIncident(number, phones[random.nextInt(callerCount)], random);
+            ims.addIncident(incident);
+            incidents.add(incident);
+        }
+        System.out.printf("%d incidents, %d callers, %d queries%n", count, callerCount, queries);
+
+        String[] asked = new String[queries];
+        Incident[] reports = new Incident[queries];
+        for (int i = 0; i < queries; i++)
+        {
+            asked[i] = phones[random.nextInt(callerCount)];
+            // Half the reports repeat an existing incident a few minutes later
+            Incident earlier = incidents.get(random.nextInt(count));
+            reports[i] = random.nextBoolean()
+                    ? new Incident(0, "Reporter", earlier.getReporterPhoneNumber(), earlier.getDate(),
+                            earlier.getTime().substring(0, 3) + "59", earlier.getGpsLocation(), "Details")
+                    : randomIncident(0, asked[i], random);
+        }
+
+        for (int i = 0; i < Math.min(200, queries); i++)
+        {
+            check(ims, incidents, asked[i], reports[i]);
+        }
+
+        long[] lookups = new long[queries];
+        long[] duplicates = new long[queries];
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int i = 0; i < queries; i++)
+            {
+                long start = System.nanoTime();
+                blackhole += ims.findIncidentsByPhoneNumber(asked[i]).size();
+                lookups[i] = System.nanoTime() - start;
+                Incident report = reports[i];
+                start = System.nanoTime();
+                blackhole += ims.findPossibleDuplicates(report.getReporterPhoneNumber(), report.getDate(),
+                        report.getTime(), report.getGpsLocation()).size();
+                duplicates[i] = System.nanoTime() - start;
+            }
+        }
+        print("caller lookup", lookups);
+        print("duplicate check", duplicates);
+
+        int scans = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < scans; i++)
+        {
+            blackhole += scanByPhone(incidents, asked[i]).size();
+        }
+        System.out.printf("full scan: mean %.1f us%n", (System.nanoTime() - start) / 1e3 / scans);
+    }
+
+    private static void compareHeap(String[] phones, int count, Random random)
+    {
+        String[] numberPhones = new String[count];
+        for (int i = 0; i < count; i++)
+        {
+            numberPhones[i] = phones[random.nextInt(phones.length)];
+        }
+        long before = usedHeap();
+        Map<String, List<Integer>> map = new HashMap<>();
+        for (int i = 0; i < count; i++)
+        {
+            // A copy, as a map keyed by each incident's own String would hold
+            map.computeIfAbsent(new String(numberPhones[i]), phone -> new ArrayList<>()).add(i + 1);
+        }
+        retained = map;
+        long mapBytes = usedHeap() - before;
+        retained = null;
+        map = null;
+
+        before = usedHeap();
+        PhoneIndex index = new PhoneIndex();
+        for (int i = 0; i < count; i++)
+        {
+            index.update(new Incident(i + 1, "Reporter", numberPhones[i], "01/01/2023", "12:00", null, "Details"));
+        }
+        retained = index;
+        long indexBytes = usedHeap() - before;
+        retained = null;
+        System.out.printf("heap: PhoneIndex %.1f MB, HashMap<String, List<Integer>> %.1f MB%n",
+                indexBytes / 1e6, mapBytes / 1e6);
+    }
+
+    private static void check(IncidentManagementSystem ims, List<Incident> incidents, String phone, Incident report)
+    {
+        int[] found = ims.findIncidentsByPhoneNumber(phone).stream().mapToInt(Incident::getIncidentNumber).toArray();
+        int[] expected = scanByPhone(incidents, phone).stream().mapToInt(Incident::getIncidentNumber).toArray();
+        if (!Arrays.equals(found, expected))
+        {
+            throw new IllegalStateException("caller " + phone + ": " + Arrays.toString(found) + " but the scan found "
+                    + Arrays.toString(expected));
+        }
+        long timestamp = report.getTimestamp();
+        List<Integer> scanned = new ArrayList<>();
+        for (Incident incident : incidents)
+        {
+            boolean recent = Math.abs(incident.getTimestamp() - timestamp) <= IncidentManagementSystem.DUPLICATE_WINDOW_SECONDS;
+            boolean sameCaller = incident.getReporterPhoneNumber().equals(report.getReporterPhoneNumber());
+            boolean near = incident.getGpsLocation().distanceKm(report.getGpsLocation()) <= IncidentManagementSystem.DUPLICATE_RADIUS_KM;
+            if (recent && (sameCaller || near))
+            {
+                scanned.add(incident.getIncidentNumber());
+            }
+        }
+        List<Integer> duplicates = new ArrayList<>();
+        for (Incident incident : ims.findPossibleDuplicates(report.getReporterPhoneNumber(), report.getDate(),
+                report.getTime(), report.getGpsLocation()))
+        {
+            duplicates.add(incident.getIncidentNumber());
+        }
+        if (!duplicates.equals(scanned))
+        {
+            throw new IllegalStateException("duplicates " + duplicates + " but the scan found " + scanned);
+        }
+    }
+
+    private static List<Incident> scanByPhone(List<Incident> incidents, String phone)
+    {
+        List<Incident> found = new ArrayList<>();
+        for (Incident incident : incidents)
+        {
+            if (incident.getReporterPhoneNumber().equals(phone))
+            {
+                found.add(incident);
+            }
+        }
+        return found;
+    }
+
+    private static Incident randomIncident(int number, String phone, Random random)
+    {
+        String date = String.format("%02d/%02d/2023", 1 + random.nextInt(28), 1 + random.nextInt(12));
+        String time = String.format("%02d:%02d", random.nextInt(24), random.nextInt(60));
+        GPSLocation location = new GPSLocation(MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT),
+                MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON));
+        return new Incident(number, "Reporter", phone, date, time, location, "Details");
+    }
+
+    private static void print(String name, long[] latencies)
+    {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%s: p50 %.1f us, p99 %.1f us, max %.1f us%n", name, sorted[sorted.length / 2] / 1e3,
+                sorted[sorted.length * 99 / 100] / 1e3, sorted[sorted.length - 1] / 1e3);
+    }
+
+    private static long usedHeap()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,324 @@
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+// Compares holding a closed incident history as Incident objects in an IncidentStore with
+// holding it in a ColumnarIncidentStore: heap after a full collection, text off the heap,
+// the collector's pauses while the history is loaded, full collection pauses with it live,
+// and the cost of finding an incident by number, which builds a copy for the columnar store.
+// Then times the columnar store's phone number and one-day queries. Incidents are generated
+// as a CSV load would make them, each with its own strings. First it checks the columnar
+// queries against a map of what was stored, through replacements, removals, late
+// timestamps, phone numbers kept as text and the compactions those cause.
+// 10M incidents need about -Xmx12g for the object model.
+// Run with: java -Xmx12g -cp target/classes ColumnarStoreBenchmark [incidents] [finds]
+public class ColumnarStoreBenchmark
+{
+    private static final String[] STREETS = { "High Street", "Station Road", "Church Lane", "Mill Road", "Park Avenue",
+        "London Road", "Victoria Street", "Green Lane", "Manor Road", "Kings Road" };
+    private static final String[] EVENTS = { "Road traffic collision on", "Smoke reported from a house on",
+        "Person collapsed outside a shop on", "Car fire on", "Burglary in progress on", "Flooding across" };
+    private static final int NAMES = 50_000;
+    private static final long FIRST_DAY = 1_420_070_400L; // 01/01/2015
+    private static final long DAY = 24 * 60 * 60;
+    private static final int QUERIES = 10_000;
+    // The check's incident numbers are replaced about this many times each
+    private static final int CHECK_NUMBERS = 40_000;
+    private static final int CHECK_PUTS = 400_000;
+
+    static volatile long blackhole;
+
+    // Pauses reported by the collectors since the last reset
+    private static long pauseCount;
+    private static long pauseMillis;
+    private static long maxPauseMillis;
+
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int finds = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        listenForPauses();
+        checkQueries();
+
+        System.out.printf("%d incidents%n", count);
+        System.out.println("model, heap MB, bytes per incident, off-heap MB, load s, load pauses, load pause ms, max pause ms, full gc ms, find ns/op");
+
+        long baseline = usedHeap();
+        IncidentStore objects = new IncidentStore(count);
+        long[] load = load(count, objects::put);
+        long objectHeap = usedHeap() - baseline;
+        double objectFull = fullGcMillis();
+        double objectFind = findNanos(count, finds, objects::find);
+        report("objects", objectHeap, 0, count, load, objectFull, objectFind);
+        objects = null;
+
+        baseline = usedHeap();
+        ColumnarIncidentStore columns = new ColumnarIncidentStore();
+        load = load(count, columns::put);
+        long columnHeap = usedHeap() - baseline;
+        double columnFull = fullGcMillis();
+        double columnFind = findNanos(count, finds, columns::find);
+        report("columnar", columnHeap, columns.offHeapBytes(), count, load, columnFull, columnFind);
+        System.out.println(columns.memoryReport());
+        timeQueries(columns, count);
+        blackhole += columns.size();
+    }
+
+    private static void timeQueries(ColumnarIncidentStore columns, int count)
+    {
+        Random random = new Random(11);
+        String[] phones = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++)
+        {
+            phones[i] = columns.find(1 + random.nextInt(count)).getReporterPhoneNumber();
+        }
+        long found = 0;
+        long start = System.nanoTime();
+        for (String phone : phones)
+        {
+            found += columns.findByPhoneNumber(phone).size();
+        }
+        long inDays = 0;
+        double phoneMicros = (System.nanoTime() - start) / 1e3 / QUERIES;
+        columns.findBetween(FIRST_DAY, FIRST_DAY + DAY);
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES / 10; i++)
+        {
+            long from = FIRST_DAY + random.nextInt(9 * 365) * DAY;
+            inDays += columns.findBetween(from, from + DAY).size();
+        }
+        double dayMicros = (System.nanoTime() - start) / 1e3 / (QUERIES / 10);
+        System.out.printf("phone number query: %.1f us, one-day query: %.0f us, %.1f incidents per day%n",
+                phoneMicros, dayMicros, inDays / (QUERIES / 10.0));
+        blackhole += found + inDays;
+    }
+
+    // Puts, replacements and removals in random order, with queries between them, compared
+    // with a map of the incidents last stored under each number
+    private static void checkQueries()
+    {
+        Random random = new Random(3);
+        ColumnarIncidentStore columns = new ColumnarIncidentStore();
+        Map<Integer, Incident> stored = new HashMap<>();
+        String[] phones = new String[2_000];
+        for (int i = 0; i < phones.length; i++)
+        {
+            // Some numbers are not digits only, so the store keeps them as text under a hash
+            phones[i] = i % 10 == 0 ? "+44 7" + (100 + i) : "07" + (100_000_000 + i);
+        }
+        for (int put = 1; put <= CHECK_PUTS; put++)
+        {
+            int number = 1 + random.nextInt(CHECK_NUMBERS);
+            if (random.nextInt(10) == 0)
+            {
+                columns.remove(number);
+                stored.remove(number);
+            }
+            else
+            {
+                Incident incident = generate(number, random);
+                incident.setReporterPhoneNumber(phones[random.nextInt(phones.length)]);
+                if (random.nextInt(100) == 0)
+                {
+                    incident.setDate("not a date");
+                }
+                columns.put(incident);
+                stored.put(number, incident);
+            }
+            if (put % 10_000 == 0)
+            {
+                String phone = phones[random.nextInt(phones.length)];
+                List<Integer> expected = new ArrayList<>();
+                for (Incident incident : stored.values())
+                {
+                    if (incident.getReporterPhoneNumber().equals(phone))
+                    {
+                        expected.add(incident.getIncidentNumber());
+                    }
+                }
+                expected.sort(null);
+                check("phone " + phone, expected, numbers(columns.findByPhoneNumber(phone)));
+
+                long from = FIRST_DAY + random.nextInt(9 * 365) * DAY;
+                long to = from + (1 + random.nextInt(30)) * DAY;
+                List<Incident> inRange = new ArrayList<>();
+                for (Incident incident : stored.values())
+                {
+                    if (incident.getTimestamp() != Incident.NO_TIMESTAMP && incident.getTimestamp() >= from
+                            && incident.getTimestamp() < to)
+                    {
+                        inRange.add(incident);
+                    }
+                }
+                List<Incident> found = columns.findBetween(from, to);
+                for (int i = 1; i < found.size(); i++)
+                {
+                    if (found.get(i - 1).getTimestamp() > found.get(i).getTimestamp())
+                    {
+                        throw new IllegalStateException("range query out of time order");
+                    }
+                }
+                Comparator<Incident> byTime = Comparator.comparingLong(Incident::getTimestamp)
+                        .thenComparingInt(Incident::getIncidentNumber);
+                inRange.sort(byTime);
+                found.sort(byTime);
+                check("range from " + from, numbers(inRange), numbers(found));
+            }
+        }
+        if (columns.size() != stored.size())
+        {
+            throw new IllegalStateException("columnar store holds " + columns.size() + " of " + stored.size());
+        }
+        // Each compaction leaves only the live rows written
+        String written = columns.memoryReport().lines().findFirst().orElseThrow();
+        if (!written.matches("incidents: \\d+ \\(\\d+ rows written\\)")
+                || Integer.parseInt(written.replaceAll(".*\\((\\d+) rows.*", "$1")) >= CHECK_PUTS / 2)
+        {
+            throw new IllegalStateException("replaced rows were not compacted: " + written);
+        }
+        System.out.println("columnar queries ok");
+    }
+
+    private static List<Integer> numbers(List<Incident> incidents)
+    {
+        List<Integer> numbers = new ArrayList<>(incidents.size());
+        for (Incident incident : incidents)
+        {
+            numbers.add(incident.getIncidentNumber());
+        }
+        return numbers;
+    }
+
+    private static void check(String query, List<Integer> expected, List<Integer> found)
+    {
+        if (!expected.equals(found))
+        {
+            throw new IllegalStateException(query + ": expected " + expected + " but found " + found);
+        }
+    }
+
+    // Generate and store the incidents; returns the nanoseconds taken and the pauses seen
+    private static long[] load(int count, Consumer<Incident> store)
+    {
+        Random random = new Random(42);
+        resetPauses();
+        long start = System.nanoTime();
+        for (int i = 1; i <= count; i++)
+        {
+            store.accept(generate(i, random));
+        }
+        long nanos = System.nanoTime() - start;
+        synchronized (ColumnarStoreBenchmark.class)
+        {
+            return new long[] { nanos, pauseCount, pauseMillis, maxPauseMillis };
+        }
+    }
+
+    // A closed incident with strings of its own, as parsing a CSV row gives
+    private static Incident generate(int number, Random random)
+    {
+        long timestamp = FIRST_DAY + random.nextInt(9 * 365 * 24 * 60) * 60L;
+        LocalDateTime dateTime = LocalDateTime.ofEpochSecond(timestamp, 0, ZoneOffset.UTC);
+        String date = String.format("%02d/%02d/%04d", dateTime.getDayOfMonth(), dateTime.getMonthValue(), dateTime.getYear());
+        String time = String.format("%02d:%02d", dateTime.getHour(), dateTime.getMinute());
+        GPSLocation location = new GPSLocation(50 + random.nextInt(80_000) / 10_000.0, -5 + random.nextInt(60_000) / 10_000.0);
+        String details = EVENTS[random.nextInt(EVENTS.length)] + " " + (1 + random.nextInt(200)) + " "
+                + STREETS[random.nextInt(STREETS.length)];
+        Incident incident = new Incident(number, "Reporter " + random.nextInt(NAMES),
+                "07" + (100_000_000 + random.nextInt(900_000_000)), date, time, location, details);
+        incident.setOngoing(false);
+        incident.setPriority(Incident.HIGHEST_PRIORITY + random.nextInt(Incident.LOWEST_PRIORITY));
+        return incident;
+    }
+
+    private static double findNanos(int count, int finds, IntFunction<Incident> find)
+    {
+        Random random = new Random(7);
+        long sink = 0;
+        for (int i = 0; i < finds / 10; i++)
+        {
+            sink += find.apply(1 + random.nextInt(count)).getPriority();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < finds; i++)
+        {
+            sink += find.apply(1 + random.nextInt(count)).getPriority();
+        }
+        double nanos = (System.nanoTime() - start) / (double) finds;
+        blackhole += sink;
+        return nanos;
+    }
+
+    private static void report(String model, long heap, long offHeap, int count, long[] load, double fullGc, double find)
+    {
+        System.out.printf("%s, %d, %.0f, %d, %.1f, %d, %d, %d, %.0f, %.0f%n", model, heap >> 20, (double) heap / count,
+                offHeap >> 20, load[0] / 1e9, load[1], load[2], load[3], fullGc, find);
+    }
+
+    // The slowest of three full collections with the store live
+    private static double fullGcMillis()
+    {
+        double slowest = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            long start = System.nanoTime();
+            System.gc();
+            slowest = Math.max(slowest, (System.nanoTime() - start) / 1e6);
+        }
+        return slowest;
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void listenForPauses()
+    {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+                {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                // Concurrent cycles run beside the application rather than pausing it
+                if (info.getGcName().contains("Concurrent"))
+                {
+                    return;
+                }
+                synchronized (ColumnarStoreBenchmark.class)
+                {
+                    pauseCount++;
+                    pauseMillis += info.getGcInfo().getDuration();
+                    maxPauseMillis = Math.max(maxPauseMillis, info.getGcInfo().getDuration());
+                }
+            }, null, null);
+        }
+    }
+
+    private static synchronized void resetPauses()
+    {
+        pauseCount = 0;
+        pauseMillis = 0;
+        maxPauseMillis = 0;
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Throughput benchmark for operators sharing one IncidentManagementSystem. Writers create
+// incidents, update them and assign resources while a reader keeps walking getAllIncidents
+// snapshots. ConcurrencyTest checks that the same workload loses nothing.
+// Run with: java -Xmx4g -cp target/classes ConcurrencyBenchmark [operations per writer] [thread counts...]
+public class ConcurrencyBenchmark
+{
+    private static final int RESOURCES_PER_INCIDENT = 2;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int[] threadCounts = { 1, 8, 32 };
+        if (args.length > 1)
+        {
+            threadCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++)
+            {
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%d incidents per writer%n", operations);
+        System.out.println("writers, incidents/s, updates/s, snapshots walked");
+        // The first pass only warms up the JIT
+        run(Math.max(1, threadCounts[0]), operations, false);
+        for (int threads : threadCounts)
+        {
+            run(threads, operations, true);
+        }
+    }
+
+    private static void run(int threads, int operations, boolean report) throws InterruptedException
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong snapshots = new AtomicLong();
+
+        for (int t = 0; t < threads; t++)
+        {
+            int writer = t;
+            Thread thread = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    for (int i = 0; i < operations; i++)
+                    {
+                        // Each writer owns a disjoint range of incident numbers
+                        int number = writer * operations + i + 1;
+                        // Spread incidents over a few degrees so grid cells stay small
+                        double offset = (number * 0x9E3779B9L & 0xFFFFFF) / (double) 0x1000000;
+                        Incident incident = new Incident(number, "Reporter " + writer, "07000000000",
+                                "01/01/2023", String.format("%02d:%02d", i / 60 % 24, i % 60),
+                                new GPSLocation(51 + offset * 4, -4 + offset * 6), "Details");
+                        ims.addIncident(incident);
+                        ims.updateIncident(number, stored -> {
+                            stored.setIncidentDetails("Updated by " + writer);
+                            stored.setGpsLocation(new GPSLocation(55 - offset * 4, 2 - offset * 6));
+                        });
+                        for (int r = 0; r < RESOURCES_PER_INCIDENT; r++)
+                        {
+                            ims.assignResourceToIncident(number, new Resource(r, "R" + r, "Resource " + r, 1));
+                        }
+                    }
+                }
+                catch (RuntimeException | InterruptedException e)
+                {
+                    e.printStackTrace();
+                    failed.set(true);
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }, "writer-" + t);
+            thread.start();
+        }
+
+        Thread reader = new Thread(() -> {
+            long sink = 0;
+            while (writing.get())
+            {
+                for (Incident incident : ims.getAllIncidents())
+                {
+                    sink += incident.getResources().size();
+                }
+                snapshots.incrementAndGet();
+            }
+            blackhole = sink;
+        }, "reader");
+
+        reader.start();
+        long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        double seconds = (System.nanoTime() - began) / 1e9;
+        writing.set(false);
+        reader.join();
+
+        if (failed.get())
+        {
+            throw new IllegalStateException("a writer failed");
+        }
+        if (report)
+        {
+            long incidents = (long) threads * operations;
+            System.out.printf("%d, %.0f, %.0f, %d%n", threads, incidents / seconds,
+                    incidents * (1 + RESOURCES_PER_INCIDENT) / seconds, snapshots.get());
+        }
+    }
+}
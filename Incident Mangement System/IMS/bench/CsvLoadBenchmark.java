@@ -0,0 +1,81 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+// Compares loading incidents.csv through BufferedReader + split + Incident(String[])
+// against the streaming CsvReader + Incident(CsvRow) path
+// Run with: java -Xmx4g -cp target/classes CsvLoadBenchmark [rows] [rounds]
+public class CsvLoadBenchmark
+{
+    static volatile long blackhole;
+
+    public static void main(String[] args) throws IOException
+    {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        File file = File.createTempFile("incidents", ".csv");
+        file.deleteOnExit();
+        writeIncidents(file, rows);
+        double megabytes = file.length() / (1024.0 * 1024.0);
+        System.out.printf("%d rows, %.1f MB%n", rows, megabytes);
+        System.out.println("round, split ms, split MB/s, streaming ms, streaming MB/s");
+
+        for (int round = 1; round <= rounds; round++)
+        {
+            long start = System.nanoTime();
+            blackhole = loadWithSplit(file);
+            double splitMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            blackhole = loadStreaming(file);
+            double streamingMillis = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("%d, %.0f, %.0f, %.0f, %.0f%n", round,
+                    splitMillis, megabytes / (splitMillis / 1000),
+                    streamingMillis, megabytes / (streamingMillis / 1000));
+        }
+    }
+
+    private static void writeIncidents(File file, int rows) throws IOException
+    {
+        GPSLocation location = new GPSLocation("51.5072");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write(IncidentColumns.HEADER + "\n");
+            for (int i = 1; i <= rows; i++)
+            {
+                Incident incident = new Incident(i, "Reporter", "07000000000", "01/01/2023", "12:00",
+                        location, "Road traffic collision");
+                writer.write(incident.toCSVString());
+                writer.write('\n');
+            }
+        }
+    }
+
+    // The loop loadIncidentsFromCSV used before CsvReader
+    private static long loadWithSplit(File file) throws IOException
+    {
+        long sum = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+        {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                sum += new Incident(line.split(",")).getIncidentNumber();
+            }
+        }
+        return sum;
+    }
+
+    private static long loadStreaming(File file) throws IOException
+    {
+        long[] sum = new long[1];
+        CsvReader.read(file.getPath(), true, row -> sum[0] += new Incident(row).getIncidentNumber());
+        return sum[0];
+    }
+}
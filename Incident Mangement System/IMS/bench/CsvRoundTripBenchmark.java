@@ -0,0 +1,143 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+// Writes the same incidents the way rows used to be written and through CsvWriter, and
+// times loading each: the old file through BufferedReader + split + Incident(String[]),
+// counting the rows whose details come back wrong, and the new one through CsvReader and
+// IncidentColumns. CsvRoundTripTest checks that every field survives the trip.
+// Run with: java -Xmx4g -cp target/classes CsvRoundTripBenchmark [rows] [rounds]
+public class CsvRoundTripBenchmark
+{
+    private static final String LEGACY_HEADER = "Incident No, Reporter No, Date, Time, GPS-What3Words, Incident Details, Ongoing, Priority";
+
+    static volatile long blackhole;
+
+    public static void main(String[] args) throws IOException
+    {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Incident[] incidents = generate(rows);
+        File oldFile = File.createTempFile("incidents-old", ".csv");
+        oldFile.deleteOnExit();
+        File newFile = File.createTempFile("incidents-new", ".csv");
+        newFile.deleteOnExit();
+        System.out.printf("%d rows, %d processors%n", rows, Runtime.getRuntime().availableProcessors());
+        System.out.println("round, old write ms, new write ms, split ms, split MB/s, split wrong rows, streaming ms, streaming MB/s");
+
+        for (int round = 1; round <= rounds; round++)
+        {
+            long start = System.nanoTime();
+            writeOld(oldFile, incidents);
+            double oldWriteMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            writeNew(newFile, incidents);
+            double newWriteMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            int wrong = loadWithSplit(oldFile, incidents);
+            double splitMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            loadStreaming(newFile, incidents);
+            double streamingMillis = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("%d, %.0f, %.0f, %.0f, %.0f, %d, %.0f, %.0f%n", round, oldWriteMillis, newWriteMillis,
+                    splitMillis, oldFile.length() / 1e6 / (splitMillis / 1000), wrong,
+                    streamingMillis, newFile.length() / 1e6 / (streamingMillis / 1000));
+        }
+    }
+
+    // Mostly coordinates, as the prompts record them, and a fifth of the details with commas
+    private static Incident[] generate(int rows)
+    {
+        Random random = new Random(42);
+        Incident[] incidents = new Incident[rows];
+        for (int i = 0; i < rows; i++)
+        {
+            GPSLocation location = random.nextInt(10) == 0 ? new GPSLocation("index.home.raft")
+                    : new GPSLocation(50 + random.nextInt(80_000) / 10_000.0, -5 + random.nextInt(60_000) / 10_000.0);
+            String details = random.nextInt(5) == 0 ? "Collision, two cars" : "Road traffic collision";
+            incidents[i] = new Incident(i + 1, "Reporter", "07000000000", "01/01/2023", "12:00", location, details);
+            incidents[i].setPriority(Incident.HIGHEST_PRIORITY + random.nextInt(Incident.LOWEST_PRIORITY));
+        }
+        return incidents;
+    }
+
+    // The row format toCSVString wrote before fields were quoted
+    private static void writeOld(File file, Incident[] incidents) throws IOException
+    {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write(LEGACY_HEADER + "\n");
+            for (Incident incident : incidents)
+            {
+                StringBuilder line = new StringBuilder();
+                line.append(incident.getIncidentNumber()).append(", ")
+                        .append(incident.getReporterName()).append(", ")
+                        .append(incident.getReporterPhoneNumber()).append(", ")
+                        .append(incident.getDate()).append(", ")
+                        .append(incident.getTime()).append(", ")
+                        .append(incident.getGpsLocation()).append(", ")
+                        .append(incident.getIncidentDetails()).append(", ")
+                        .append(incident.isOngoing()).append(", ")
+                        .append(incident.getPriority());
+                writer.write(line.toString());
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static void writeNew(File file, Incident[] incidents) throws IOException
+    {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write(IncidentColumns.HEADER + "\n");
+            for (Incident incident : incidents)
+            {
+                writer.write(incident.toCSVString());
+                writer.write('\n');
+            }
+        }
+    }
+
+    // The loop loadIncidentsFromCSV used before CsvReader; returns the rows read back wrong
+    private static int loadWithSplit(File file, Incident[] incidents) throws IOException
+    {
+        int wrong = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+        {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                Incident incident = new Incident(line.split(","));
+                if (!incident.getIncidentDetails().equals(incidents[incident.getIncidentNumber() - 1].getIncidentDetails()))
+                {
+                    wrong++;
+                }
+                blackhole += incident.getPriority();
+            }
+        }
+        return wrong;
+    }
+
+    private static void loadStreaming(File file, Incident[] incidents) throws IOException
+    {
+        IncidentColumns[] columns = { IncidentColumns.STANDARD };
+        CsvReader.read(file.getPath(), header -> columns[0] = IncidentColumns.fromHeader(header), row -> {
+            Incident incident = new Incident(row, columns[0]);
+            if (!incident.getIncidentDetails().equals(incidents[incident.getIncidentNumber() - 1].getIncidentDetails()))
+            {
+                throw new IllegalStateException("row " + incident.getIncidentNumber() + " read back wrong");
+            }
+            blackhole += incident.getPriority();
+        });
+    }
+}
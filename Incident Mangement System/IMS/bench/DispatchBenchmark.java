@@ -0,0 +1,200 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Places mobile units across Great Britain, gives most of them a stock with some units
+// already committed, and asks IncidentManagementSystem for the nearest units with free
+// stock to random incidents. Each recommendation is checked against a scan of every unit.
+// Also times moving units, as position reports would. Last, every unit but a few is
+// committed, and recommendations, including ones for incidents far outside Great Britain,
+// must still match the scan and cost no more than about two passes over the units.
+// Run with: java -Xmx2g -cp target/classes DispatchBenchmark [units] [queries] [recommendations]
+public class DispatchBenchmark
+{
+    private static final double MIN_LAT = 50.0;
+    private static final double MAX_LAT = 58.5;
+    private static final double MIN_LON = -5.5;
+    private static final double MAX_LON = 1.7;
+    // Units left with free stock for the sparse recommendations
+    private static final int SPARSE_FREE = 3;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args) throws IOException
+    {
+        int units = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        ims.loadResourcesFromCSV(writeResources(units).getPath());
+        Random random = new Random(42);
+        GPSLocation[] positions = new GPSLocation[units + 1];
+        boolean[] free = new boolean[units + 1];
+        for (int number = 1; number <= units; number++)
+        {
+            positions[number] = randomLocation(random);
+            ims.setResourceLocation(number, positions[number]);
+            // A quarter are unlimited; of the rest, half have every unit committed
+            if (number % 4 != 0)
+            {
+                ims.setResourceStock(number, 2);
+                if (random.nextBoolean())
+                {
+                    ims.getResourceStock(number).commit(2);
+                }
+            }
+            UnitStock stock = ims.getResourceStock(number);
+            free[number] = stock == null || stock.available() > 0;
+        }
+        Incident[] incidents = new Incident[queries];
+        for (int i = 0; i < queries; i++)
+        {
+            incidents[i] = new Incident(i + 1, "Reporter", "07000000000", "01/01/2023", "12:00",
+                    randomLocation(random), "Details");
+        }
+        System.out.printf("%d units, %d queries, %d recommendations each%n", units, queries, count);
+
+        // Check a sample against a full scan before timing
+        for (int i = 0; i < Math.min(500, queries); i++)
+        {
+            check(ims, positions, free, incidents[i], count);
+        }
+
+        long[] latencies = new long[queries];
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int i = 0; i < queries; i++)
+            {
+                long start = System.nanoTime();
+                blackhole += ims.recommendResources(incidents[i], count).size();
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.printf("indexed: p50 %.1f us, p99 %.1f us, max %.1f us%n", latencies[queries / 2] / 1e3,
+                latencies[queries * 99 / 100] / 1e3, latencies[queries - 1] / 1e3);
+
+        int scans = Math.min(200, queries);
+        long start = System.nanoTime();
+        for (int i = 0; i < scans; i++)
+        {
+            blackhole += (long) scanDistances(positions, free, incidents[i].getGpsLocation(), count)[0];
+        }
+        System.out.printf("full scan: mean %.1f us%n", (System.nanoTime() - start) / 1e3 / scans);
+
+        int moves = units * 5;
+        start = System.nanoTime();
+        for (int i = 0; i < moves; i++)
+        {
+            int number = 1 + random.nextInt(units);
+            GPSLocation moved = new GPSLocation(positions[number].getLatitude() + (random.nextDouble() - 0.5) * 0.01,
+                    positions[number].getLongitude() + (random.nextDouble() - 0.5) * 0.01);
+            ims.setResourceLocation(number, moved);
+            positions[number] = moved;
+        }
+        System.out.printf("moves: %.0f per second%n", moves / ((System.nanoTime() - start) / 1e9));
+
+        // Leave a unit free on only a few resources, so the filter rejects nearly every candidate
+        for (int number = 1; number <= units; number++)
+        {
+            UnitStock stock = ims.getResourceStock(number);
+            int committed = stock == null ? 0 : stock.getCapacity() - stock.available();
+            free[number] = number % (units / SPARSE_FREE) == 0;
+            ims.setResourceStock(number, committed + (free[number] ? 1 : 0));
+        }
+        Incident faraway = new Incident(queries + 1, "Reporter", "07000000000", "01/01/2023", "12:00",
+                new GPSLocation(-51.7, -57.9), "Details");
+        int sparse = Math.min(200, queries);
+        for (int pass = 0; pass < 2; pass++)
+        {
+            start = System.nanoTime();
+            for (int i = 0; i < sparse; i++)
+            {
+                blackhole += ims.recommendResources(incidents[i], count).size();
+            }
+            double near = (System.nanoTime() - start) / 1e3 / sparse;
+            start = System.nanoTime();
+            blackhole += ims.recommendResources(faraway, count).size();
+            double far = (System.nanoTime() - start) / 1e3;
+            if (pass == 1)
+            {
+                System.out.printf("%d units free: mean %.1f us, far away %.1f us%n", SPARSE_FREE, near, far);
+            }
+        }
+        for (int i = 0; i < Math.min(50, queries); i++)
+        {
+            check(ims, positions, free, incidents[i], count);
+        }
+        check(ims, positions, free, faraway, count);
+    }
+
+    // The recommendations must be as near as the nearest free units a scan finds
+    private static void check(IncidentManagementSystem ims, GPSLocation[] positions, boolean[] free, Incident incident,
+                              int count)
+    {
+        List<Resource> recommended = ims.recommendResources(incident, count);
+        double[] expected = scanDistances(positions, free, incident.getGpsLocation(), count);
+        if (recommended.size() != expected.length)
+        {
+            throw new IllegalStateException("incident " + incident.getIncidentNumber() + " got " + recommended.size()
+                    + " recommendations, the scan found " + expected.length);
+        }
+        for (int j = 0; j < expected.length; j++)
+        {
+            double distance = positions[recommended.get(j).getResourceNumber()].distanceKm(incident.getGpsLocation());
+            if (Math.abs(distance - expected[j]) > 1e-9)
+            {
+                throw new IllegalStateException("incident " + incident.getIncidentNumber() + " recommendation " + j
+                        + " is " + distance + " km away, the scan found " + expected[j]);
+            }
+        }
+    }
+
+    // Distances of up to count nearest free units, found by looking at every unit
+    private static double[] scanDistances(GPSLocation[] positions, boolean[] free, GPSLocation from, int count)
+    {
+        List<Double> distances = new ArrayList<>();
+        for (int number = 1; number < positions.length; number++)
+        {
+            if (free[number])
+            {
+                distances.add(positions[number].distanceKm(from));
+            }
+        }
+        distances.sort(null);
+        double[] nearest = new double[Math.min(count, distances.size())];
+        for (int i = 0; i < nearest.length; i++)
+        {
+            nearest[i] = distances.get(i);
+        }
+        return nearest;
+    }
+
+    private static GPSLocation randomLocation(Random random)
+    {
+        return new GPSLocation(MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT),
+                MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON));
+    }
+
+    private static File writeResources(int units) throws IOException
+    {
+        File file = File.createTempFile("resources", ".csv");
+        file.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("Resource No, Resource Code, Resource Description, Number of Units\n");
+            for (int number = 1; number <= units; number++)
+            {
+                writer.write(new Resource(number, "AMB", "Ambulance " + number, 1).toCSVString());
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+}
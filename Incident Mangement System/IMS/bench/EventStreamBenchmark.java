@@ -0,0 +1,188 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sun.management.ThreadMXBean;
+
+// Measures how many incident events per second IncidentEventRing takes from one or more
+// publisher threads, with no subscribers, with one BLOCK subscriber, and with a BLOCK
+// subscriber beside a DROP one that pauses now and then, and checks that publishing
+// allocates nothing once warm. First it checks that a BLOCK handler reading back the
+// incidents it is told about does not deadlock with an IncidentManagementSystem whose
+// ring it has let fill up.
+// Run with: java -cp target/classes EventStreamBenchmark [events per publisher] [ring size]
+public class EventStreamBenchmark
+{
+    private static final int WARMUP_EVENTS = 100_000;
+    // The slow subscriber pauses after every this many events
+    private static final int PAUSE_EVERY = 4_096;
+    private static final long PAUSE_NANOS = 1_000_000;
+    // Changes made while a BLOCK handler reads incidents back, more than the system's ring holds
+    private static final int READ_BACK_CHANGES = 100_000;
+    private static final long READ_BACK_TIMEOUT_MILLIS = 120_000;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int ringSize = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 16;
+        checkHandlerReadsIncident();
+        System.out.println("publishers, subscribers, M events/s, bytes allocated per event, missed by DROP");
+        for (int publishers : new int[] { 1, 2, 4 })
+        {
+            for (String subscribers : new String[] { "none", "block", "block+drop" })
+            {
+                run(publishers, subscribers, events, ringSize);
+            }
+        }
+    }
+
+    // The handler waits for the ring to fill before it reads anything, so the publisher is
+    // held up in the middle of a change when the handler asks for the incident
+    private static void checkHandlerReadsIncident() throws InterruptedException
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        GPSLocation location = new GPSLocation("what.three.words");
+        ims.addIncident(new Incident(1, "Reporter", "07000000000", "01/01/2023", "12:00", location, "Details"));
+        LongAdder handled = new LongAdder();
+        IncidentSubscription[] reader = new IncidentSubscription[1];
+        reader[0] = ims.subscribe("reader", IncidentEventRing.Backpressure.BLOCK, 256, (event, endOfBatch) -> {
+            if (handled.sum() == 0)
+            {
+                awaitPublishersHeldUp(reader[0]);
+            }
+            Incident incident = ims.findIncidentByNumber(event.getIncidentNumber());
+            if (incident.toString().isEmpty())
+            {
+                throw new IllegalStateException("incident " + event.getIncidentNumber() + " read back empty");
+            }
+            handled.increment();
+        });
+
+        // Setters, an update as one step, and a replacement, in turn
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < READ_BACK_CHANGES; i++)
+            {
+                int change = i;
+                switch (i % 3)
+                {
+                    case 0 -> ims.findIncidentByNumber(1).setPriority(1 + change % 5);
+                    case 1 -> ims.updateIncident(1, incident -> incident.setIncidentDetails("Details " + change));
+                    default -> ims.addIncident(new Incident(1, "Reporter", "07000000000", "01/01/2023", "12:00",
+                            location, "Replaced " + change));
+                }
+            }
+        });
+        publisher.setDaemon(true);
+        publisher.start();
+        publisher.join(READ_BACK_TIMEOUT_MILLIS);
+        if (publisher.isAlive())
+        {
+            throw new IllegalStateException("publisher and a BLOCK handler reading incidents deadlocked");
+        }
+        while (reader[0].getLag() > 0)
+        {
+            Thread.sleep(1);
+        }
+        reader[0].close();
+        if (handled.sum() != READ_BACK_CHANGES)
+        {
+            throw new IllegalStateException("BLOCK handler read back " + handled.sum() + " of " + READ_BACK_CHANGES);
+        }
+        System.out.println("BLOCK handler reading incidents back: ok");
+    }
+
+    // Wait until the subscriber's lag stops growing: the ring is full, or publishing is over
+    private static void awaitPublishersHeldUp(IncidentSubscription subscription)
+    {
+        long lag = -1;
+        while (subscription.getLag() != lag)
+        {
+            lag = subscription.getLag();
+            LockSupport.parkNanos(50_000_000);
+        }
+    }
+
+    private static void run(int publishers, String subscribers, int events, int ringSize) throws InterruptedException
+    {
+        IncidentEventRing ring = new IncidentEventRing(ringSize);
+        LongAdder handled = new LongAdder();
+        IncidentSubscription block = null;
+        IncidentSubscription drop = null;
+        if (!subscribers.equals("none"))
+        {
+            block = ring.subscribe("block", IncidentEventRing.Backpressure.BLOCK, 256, (event, endOfBatch) -> handled.increment());
+        }
+        if (subscribers.equals("block+drop"))
+        {
+            long[] seen = new long[1];
+            drop = ring.subscribe("drop", IncidentEventRing.Backpressure.DROP, 256, (event, endOfBatch) -> {
+                if (++seen[0] % PAUSE_EVERY == 0)
+                {
+                    LockSupport.parkNanos(PAUSE_NANOS);
+                }
+            });
+        }
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] allocated = new long[publishers];
+        Thread[] workers = new Thread[publishers];
+        for (int p = 0; p < publishers; p++)
+        {
+            int publisher = p;
+            workers[p] = new Thread(() -> {
+                for (int i = 0; i < WARMUP_EVENTS; i++)
+                {
+                    ring.publish(IncidentEvent.Type.UPDATED, i, Incident.Field.PRIORITY, i, 0, 0);
+                }
+                long before = threads.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < events; i++)
+                {
+                    ring.publish(IncidentEvent.Type.UPDATED, i, Incident.Field.PRIORITY, i, 0, 0);
+                }
+                allocated[publisher] = threads.getCurrentThreadAllocatedBytes() - before;
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers)
+        {
+            worker.start();
+        }
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        // The BLOCK subscriber must see every event, so the time runs until it has
+        while (block != null && block.getLag() > 0)
+        {
+            Thread.onSpinWait();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long total = (long) publishers * (WARMUP_EVENTS + events);
+        if (block != null && handled.sum() != total)
+        {
+            throw new IllegalStateException("BLOCK subscriber handled " + handled.sum() + " of " + total);
+        }
+        long bytes = 0;
+        for (long a : allocated)
+        {
+            bytes += a;
+        }
+        long missed = 0;
+        if (drop != null)
+        {
+            while (drop.getLag() > 0)
+            {
+                Thread.sleep(1);
+            }
+            missed = drop.getMissed();
+            drop.close();
+        }
+        if (block != null)
+        {
+            block.close();
+        }
+        System.out.printf("%d, %s, %.1f, %.4f, %d%n", publishers, subscribers, total / seconds / 1e6,
+                bytes / (double) ((long) publishers * events), missed);
+    }
+}
@@ -0,0 +1,159 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Generates an incidents archive with some invalid rows, repeated incident numbers and
+// quoted details holding commas and line breaks, then imports it with fork-join pools of
+// growing size. For each pool it times reading and validating the file alone and the whole
+// import into a fresh IncidentManagementSystem, and checks the counts against what was
+// generated. loadIncidentsFromCSV is timed on the same file for comparison.
+// A multi-GB archive needs a heap of roughly ten times its size: 30000000 rows make about
+// 3 GB, so give that -Xmx64g or so.
+// Run with: java -Xmx4g -cp target/classes ImportBenchmark [rows] [threads...]
+public class ImportBenchmark
+{
+    private static final int INVALID_PER_THOUSAND = 10;
+    private static final int REPEATED_PER_THOUSAND = 50;
+    private static final int QUOTED_PER_THOUSAND = 100;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args) throws Exception
+    {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int[] threads = { 1, 2, 4, 8, 16, 32 };
+        if (args.length > 1)
+        {
+            threads = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++)
+            {
+                threads[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        File file = File.createTempFile("archive", ".csv");
+        file.deleteOnExit();
+        File rejects = new File(file.getPath() + ".rejects.csv");
+        rejects.deleteOnExit();
+        int[] expected = writeArchive(file, rows);
+        double megabytes = file.length() / 1e6;
+        System.out.printf("%d rows, %.0f MB, %d processors%n", rows, megabytes, Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        IncidentManagementSystem loaded = new IncidentManagementSystem();
+        int rejected = loaded.loadIncidentsFromCSV(file.getPath());
+        double loadMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("loadIncidentsFromCSV: %.0f ms, %.0f MB/s, %d rejected%n", loadMillis,
+                megabytes / (loadMillis / 1000), rejected);
+        loaded = null;
+
+        System.out.println("threads, read ms, read MB/s, read speedup, import ms, import MB/s, import speedup");
+        double firstRead = 0;
+        double firstImport = 0;
+        for (int poolSize : threads)
+        {
+            ForkJoinPool pool = new ForkJoinPool(poolSize);
+            try
+            {
+                // Warm up once per pool size, then time reading alone and then the whole import
+                pool.submit(() -> read(file, rejects)).get();
+                System.gc();
+                start = System.nanoTime();
+                ImportResult read = pool.submit(() -> read(file, rejects)).get();
+                double readMillis = (System.nanoTime() - start) / 1e6;
+                check(read, expected);
+                System.gc();
+
+                IncidentManagementSystem ims = new IncidentManagementSystem();
+                start = System.nanoTime();
+                ImportResult imported = pool.submit(() -> ims.importIncidentsFromCSV(file.getPath(), rejects.getPath())).get();
+                double importMillis = (System.nanoTime() - start) / 1e6;
+                check(imported, expected);
+                if (ims.getIncidentCount() != expected[1])
+                {
+                    throw new IllegalStateException(ims.getIncidentCount() + " incidents stored, expected " + expected[1]);
+                }
+                blackhole += ims.getIncidentCount();
+
+                firstRead = firstRead == 0 ? readMillis : firstRead;
+                firstImport = firstImport == 0 ? importMillis : firstImport;
+                System.out.printf("%d, %.0f, %.0f, %.2f, %.0f, %.0f, %.2f%n", poolSize, readMillis,
+                        megabytes / (readMillis / 1000), firstRead / readMillis, importMillis,
+                        megabytes / (importMillis / 1000), firstImport / importMillis);
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static ImportResult read(File file, File rejects) throws IOException
+    {
+        return IncidentImporter.read(file.getPath(), rejects.getPath()).getResult();
+    }
+
+    private static void check(ImportResult result, int[] expected)
+    {
+        if (result.getRows() != expected[0] || result.getImported() != expected[1]
+                || result.getRejected() != expected[2] || result.getDuplicates() != expected[3])
+        {
+            throw new IllegalStateException(String.format("%d rows, %d imported, %d rejected, %d duplicates; expected %d, %d, %d, %d",
+                    result.getRows(), result.getImported(), result.getRejected(), result.getDuplicates(),
+                    expected[0], expected[1], expected[2], expected[3]));
+        }
+    }
+
+    // Write the archive, returning the rows, distinct valid incidents, invalid rows and
+    // valid rows that a later row repeats
+    private static int[] writeArchive(File file, int rows) throws IOException
+    {
+        Random random = new Random(42);
+        // How many valid rows carry each number, to count the repeats
+        int[] validRows = new int[rows + 1];
+        int invalid = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16))
+        {
+            writer.write(IncidentColumns.HEADER + "\n");
+            for (int row = 1; row <= rows; row++)
+            {
+                int number = row;
+                if (row > 1 && random.nextInt(1000) < REPEATED_PER_THOUSAND)
+                {
+                    number = 1 + random.nextInt(row - 1);
+                }
+                boolean valid = random.nextInt(1000) >= INVALID_PER_THOUSAND;
+                String details = random.nextInt(1000) < QUOTED_PER_THOUSAND
+                        ? "\"Collision, two cars\nDriver says \"\"brakes failed\"\"\""
+                        : "Road traffic collision near junction " + random.nextInt(100);
+                writer.write(number + ", " + (valid ? "Reporter" : "Rep0rter") + ", 07"
+                        + (100_000_000 + random.nextInt(800_000_000)) + ", "
+                        + String.format("%02d/%02d/2023", 1 + random.nextInt(28), 1 + random.nextInt(12)) + ", "
+                        + String.format("%02d:%02d", random.nextInt(24), random.nextInt(60)) + ", index.home.raft, "
+                        + details + ", " + random.nextBoolean() + ", " + (1 + random.nextInt(5)) + "\n");
+                if (valid)
+                {
+                    validRows[number]++;
+                }
+                else
+                {
+                    invalid++;
+                }
+            }
+        }
+        int distinct = 0;
+        int repeats = 0;
+        for (int count : validRows)
+        {
+            if (count > 0)
+            {
+                distinct++;
+                repeats += count - 1;
+            }
+        }
+        return new int[] { rows, distinct, invalid, repeats };
+    }
+}
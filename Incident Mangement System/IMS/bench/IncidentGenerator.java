@@ -0,0 +1,399 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+
+// Seeded synthetic incidents shaped like a real service's rather than uniform: locations
+// cluster around towns in proportion to their size, reports follow the day, quiet before
+// dawn and busiest in the evening, one event now and then brings a burst of calls from the
+// same spot, some callers ring again and again, and a few resources are assigned far more
+// often than the rest. The same seed always gives the same incidents, so runs on different
+// machines and releases see the same data. Every field passes InputValidator, so the CSV
+// files it writes, at any scale and a row at a time, load without rejects.
+// Run with: java -cp target/classes IncidentGenerator [incidents] [directory] [seed]
+public class IncidentGenerator
+{
+    public static final long DEFAULT_SEED = 42;
+    public static final String INCIDENTS_FILE = "incidents.csv";
+    public static final String RESOURCES_FILE = "resources.csv";
+    public static final String ASSIGNMENTS_FILE = "assignments.csv";
+
+    // Town centres as latitude, longitude and relative size
+    private static final double[][] TOWNS = {
+        { 51.5072, -0.1276, 90 },  // London
+        { 52.4862, -1.8904, 12 },  // Birmingham
+        { 53.4808, -2.2426, 11 },  // Manchester
+        { 53.8008, -1.5491, 8 },   // Leeds
+        { 55.8642, -4.2518, 8 },   // Glasgow
+        { 53.4084, -2.9916, 6 },   // Liverpool
+        { 51.4545, -2.5879, 6 },   // Bristol
+        { 55.9533, -3.1883, 5 },   // Edinburgh
+        { 53.3811, -1.4701, 5 },   // Sheffield
+        { 54.9783, -1.6178, 5 },   // Newcastle
+        { 52.9548, -1.1581, 5 },   // Nottingham
+        { 51.4816, -3.1791, 4 },   // Cardiff
+        { 50.9097, -1.4044, 3 },   // Southampton
+        { 54.5973, -5.9301, 3 },   // Belfast
+        { 52.6309, 1.2974, 2 }     // Norwich
+    };
+    // Spread of a town's incidents, in degrees of latitude, per square root of its size
+    private static final double TOWN_SPREAD = 0.02;
+    // Incidents away from any town, spread over this box
+    private static final double RURAL_SHARE = 0.03;
+    private static final double[] RURAL_BOX = { 50.0, -5.5, 58.5, 1.7 };
+
+    // Relative rate of reports in each hour of the day
+    private static final double[] HOURLY_RATE = { 4, 3, 2, 1.5, 1, 1.5, 3, 5, 6, 6, 6, 6,
+        7, 6, 6, 6, 7, 8, 9, 9, 8, 7, 6, 5 };
+    private static final double PEAK_RATE = 9; // the largest of them
+    // Average seconds between reports in the busiest hour
+    private static final double PEAK_GAP_SECONDS = 60;
+    private static final long FIRST_DAY = 1_420_070_400L; // 01/01/2015
+
+    // A report starts a burst with this chance; a burst's calls come from near one spot,
+    // about this many seconds apart, and the burst ends after each call with the last chance
+    private static final double BURST_CHANCE = 0.002;
+    private static final double BURST_GAP_SECONDS = 20;
+    private static final double BURST_END_CHANCE = 0.04;
+    private static final double BURST_SPREAD = 0.002; // about 200 m
+
+    // Share of reports from the callers who ring most, and how many of them there are
+    private static final double FREQUENT_CALLER_SHARE = 0.1;
+    private static final int FREQUENT_CALLERS = 1_000;
+
+    // Cumulative shares of priorities 1 to 5
+    private static final double[] PRIORITY_SHARES = { 0.05, 0.20, 0.70, 0.90, 1.0 };
+    private static final double ONGOING_SHARE = 0.05;
+
+    // Resources in the catalogue, and how strongly assignments favour the first ones: the
+    // resource of rank r is picked in proportion to 1 / r^RESOURCE_SKEW
+    private static final int RESOURCE_COUNT = 200;
+    private static final double RESOURCE_SKEW = 1.1;
+    // Chance an incident gets a resource, and after each one, that it gets another
+    private static final double FIRST_RESOURCE_CHANCE = 0.45;
+    private static final double NEXT_RESOURCE_CHANCE = 0.35;
+    private static final String[][] RESOURCE_KINDS = {
+        { "AMB", "Ambulance crew" }, { "FIRE", "Fire engine" }, { "POL", "Police patrol" },
+        { "HAZ", "Hazardous materials unit" }, { "AIR", "Air ambulance" }, { "SAR", "Search and rescue team" }
+    };
+
+    private static final String[] SURNAMES = { "Smith", "Jones", "Taylor", "Brown", "Williams", "Wilson",
+        "Johnson", "Davies", "Robinson", "Wright", "Thompson", "Evans", "Walker", "White", "Roberts", "Green",
+        "Hall", "Wood", "Jackson", "Clarke", "Patel", "Khan", "Lewis", "Harris", "Martin", "Cooper", "King",
+        "Lee", "Baker", "Hill", "Scott", "Campbell", "Stewart", "Murray", "Kelly", "Morgan", "Hughes", "Ahmed" };
+    private static final String[] EVENTS = { "Road traffic collision on", "Smoke reported from a house on",
+        "Person collapsed outside a shop on", "Car fire on", "Burglary in progress on", "Fall from ladder on",
+        "Assault reported on", "Gas leak reported on", "Child missing near", "Cyclist hit by van on" };
+    private static final String[] BURST_EVENTS = { "Flooding across", "Large fire seen near",
+        "Multiple vehicle collision on", "Building collapse reported on", "Explosion heard near" };
+    private static final String[] STREETS = { "High Street", "Station Road", "Church Lane", "Mill Road",
+        "Park Avenue", "London Road", "Victoria Street", "Green Lane", "Manor Road", "Kings Road",
+        "Queens Road", "New Street", "School Lane", "The Crescent", "Bridge Street", "Castle Street" };
+
+    private static final String INCIDENTS_HEADER = IncidentColumns.HEADER;
+    private static final String RESOURCES_HEADER = CsvWriter.row("Resource No", "Resource Code", "Resource Description", "Number of Units");
+    private static final String ASSIGNMENTS_HEADER = CsvWriter.row("Incident No", "Resource No", "Number of Units", "Resource Code");
+
+    private final Random random;
+    private final double[] townShares;
+    private final String[] frequentCallers;
+    private final List<Resource> resources;
+    private final double[] resourceShares;
+    private int nextNumber = 1;
+    private long clock = FIRST_DAY;
+    // Whether a burst is under way, and where and what it is
+    private boolean inBurst;
+    private double burstLatitude;
+    private double burstLongitude;
+    private String burstDetails;
+    private int burstPriority;
+
+    public static void main(String[] args) throws IOException
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String directory = args.length > 1 ? args[1] : ".";
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+
+        long start = System.nanoTime();
+        writeCsv(directory, count, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d incidents with seed %d in %.1f s%n", count, seed, seconds);
+        for (String name : new String[] { INCIDENTS_FILE, RESOURCES_FILE, ASSIGNMENTS_FILE })
+        {
+            File file = new File(directory, name);
+            System.out.printf("%s, %.1f MB%n", file.getPath(), file.length() / (1024.0 * 1024.0));
+        }
+    }
+
+    public IncidentGenerator(long seed)
+    {
+        this.random = new Random(seed);
+        this.townShares = cumulative(TOWNS.length, i -> TOWNS[i][2]);
+        this.frequentCallers = new String[FREQUENT_CALLERS];
+        for (int i = 0; i < FREQUENT_CALLERS; i++)
+        {
+            frequentCallers[i] = phoneNumber();
+        }
+        this.resources = new ArrayList<>(RESOURCE_COUNT);
+        for (int i = 0; i < RESOURCE_COUNT; i++)
+        {
+            String[] kind = RESOURCE_KINDS[i % RESOURCE_KINDS.length];
+            resources.add(new Resource(i + 1, kind[0], kind[1], 1 + random.nextInt(4)));
+        }
+        this.resourceShares = cumulative(RESOURCE_COUNT, i -> 1 / Math.pow(i + 1, RESOURCE_SKEW));
+    }
+
+    // Write incidents.csv, resources.csv and assignments.csv to a directory. Rows are made
+    // as they are written, so the incidents never have to fit in memory; the assignments
+    // come from a second generator with the same seed, which makes the same incidents.
+    public static void writeCsv(String directory, int count, long seed) throws IOException
+    {
+        new File(directory).mkdirs();
+        IncidentGenerator generator = new IncidentGenerator(seed);
+        CsvSegments.writeSnapshot(new File(directory, RESOURCES_FILE).getPath(), RESOURCES_HEADER,
+                rows(generator.getResources().iterator(), Resource::toCSVString));
+        CsvSegments.writeSnapshot(new File(directory, INCIDENTS_FILE).getPath(), INCIDENTS_HEADER,
+                rows(generator.incidents(count), Incident::toCSVString));
+        IncidentGenerator again = new IncidentGenerator(seed);
+        CsvSegments.writeSnapshot(new File(directory, ASSIGNMENTS_FILE).getPath(), ASSIGNMENTS_HEADER,
+                assignmentRows(again.incidents(count)));
+    }
+
+    // The catalogue incidents are assigned resources from
+    public List<Resource> getResources()
+    {
+        return resources;
+    }
+
+    // The next count incidents, made as they are asked for
+    public Iterator<Incident> incidents(int count)
+    {
+        return new Iterator<Incident>()
+        {
+            private int left = count;
+
+            @Override
+            public boolean hasNext()
+            {
+                return left > 0;
+            }
+
+            @Override
+            public Incident next()
+            {
+                if (left == 0)
+                {
+                    throw new NoSuchElementException();
+                }
+                left--;
+                return IncidentGenerator.this.next();
+            }
+        };
+    }
+
+    // The next incident, numbered from 1 and later than the last
+    public Incident next()
+    {
+        double latitude;
+        double longitude;
+        String details;
+        int priority;
+        if (!inBurst && random.nextDouble() < BURST_CHANCE)
+        {
+            inBurst = true;
+            double[] centre = townLocation();
+            burstLatitude = centre[0];
+            burstLongitude = centre[1];
+            burstDetails = pick(BURST_EVENTS) + " " + pick(STREETS);
+            burstPriority = Incident.HIGHEST_PRIORITY + random.nextInt(2);
+        }
+        if (inBurst)
+        {
+            clock += Math.round(exponential(BURST_GAP_SECONDS));
+            latitude = burstLatitude + random.nextGaussian() * BURST_SPREAD;
+            longitude = burstLongitude + random.nextGaussian() * BURST_SPREAD;
+            details = burstDetails;
+            priority = burstPriority;
+            inBurst = random.nextDouble() >= BURST_END_CHANCE;
+        }
+        else
+        {
+            advanceClock();
+            double[] location = random.nextDouble() < RURAL_SHARE ? ruralLocation() : townLocation();
+            latitude = location[0];
+            longitude = location[1];
+            details = pick(EVENTS) + " " + pick(STREETS);
+            priority = priorityFor(random.nextDouble());
+        }
+        LocalDateTime dateTime = LocalDateTime.ofEpochSecond(clock, 0, ZoneOffset.UTC);
+        String date = String.format("%02d/%02d/%04d", dateTime.getDayOfMonth(), dateTime.getMonthValue(), dateTime.getYear());
+        String time = String.format("%02d:%02d", dateTime.getHour(), dateTime.getMinute());
+        String phoneNumber = random.nextDouble() < FREQUENT_CALLER_SHARE
+                ? frequentCallers[random.nextInt(FREQUENT_CALLERS)] : phoneNumber();
+
+        Incident incident = new Incident(nextNumber++, pick(SURNAMES), phoneNumber, date, time,
+                new GPSLocation(round(latitude), round(longitude)), details);
+        incident.setPriority(priority);
+        incident.setOngoing(random.nextDouble() < ONGOING_SHARE);
+        if (random.nextDouble() < FIRST_RESOURCE_CHANCE)
+        {
+            do
+            {
+                Resource resource = resources.get(index(resourceShares, random.nextDouble()));
+                if (!incident.getResources().contains(resource))
+                {
+                    incident.addResource(resource);
+                }
+            }
+            while (random.nextDouble() < NEXT_RESOURCE_CHANCE);
+        }
+        return incident;
+    }
+
+    // Move the clock on to the next report, thinning reports at the peak rate down to the
+    // rate of the hour they fall in
+    private void advanceClock()
+    {
+        do
+        {
+            clock += Math.max(1, Math.round(exponential(PEAK_GAP_SECONDS)));
+        }
+        while (random.nextDouble() * PEAK_RATE >= HOURLY_RATE[(int) (clock / 3600 % 24)]);
+    }
+
+    // A spot near a town picked in proportion to its size, nearer the centre more often
+    private double[] townLocation()
+    {
+        double[] town = TOWNS[index(townShares, random.nextDouble())];
+        double spread = TOWN_SPREAD * Math.sqrt(town[2]);
+        double latitude = town[0] + random.nextGaussian() * spread;
+        // A degree of longitude is shorter than one of latitude this far north
+        double longitude = town[1] + random.nextGaussian() * spread / Math.cos(Math.toRadians(town[0]));
+        return new double[] { latitude, longitude };
+    }
+
+    private double[] ruralLocation()
+    {
+        return new double[] { RURAL_BOX[0] + random.nextDouble() * (RURAL_BOX[2] - RURAL_BOX[0]),
+                RURAL_BOX[1] + random.nextDouble() * (RURAL_BOX[3] - RURAL_BOX[1]) };
+    }
+
+    private int priorityFor(double draw)
+    {
+        int i = 0;
+        while (draw >= PRIORITY_SHARES[i])
+        {
+            i++;
+        }
+        return Incident.HIGHEST_PRIORITY + i;
+    }
+
+    private String phoneNumber()
+    {
+        return "07" + (100_000_000 + random.nextInt(900_000_000));
+    }
+
+    private String pick(String[] choices)
+    {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    private double exponential(double mean)
+    {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+
+    // Four decimal places, about 10 m, as a phone's location is usually given
+    private static double round(double degrees)
+    {
+        return Math.round(degrees * 10_000) / 10_000.0;
+    }
+
+    // Running totals of the weights, scaled so the last is 1
+    private static double[] cumulative(int count, IntToDoubleFunction weight)
+    {
+        double[] shares = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++)
+        {
+            sum += weight.applyAsDouble(i);
+            shares[i] = sum;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            shares[i] /= sum;
+        }
+        return shares;
+    }
+
+    // The first index whose running share is above the draw
+    private static int index(double[] shares, double draw)
+    {
+        int found = Arrays.binarySearch(shares, draw);
+        return Math.min(shares.length - 1, found >= 0 ? found + 1 : -found - 1);
+    }
+
+    private static <T> Iterable<String> rows(Iterator<T> items, Function<T, String> row)
+    {
+        return () -> new Iterator<String>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return items.hasNext();
+            }
+
+            @Override
+            public String next()
+            {
+                return row.apply(items.next());
+            }
+        };
+    }
+
+    // One row per resource assigned to each incident, as saveAssignmentsToCSV writes them
+    private static Iterable<String> assignmentRows(Iterator<Incident> incidents)
+    {
+        return () -> new Iterator<String>()
+        {
+            private final List<String> pending = new ArrayList<>();
+            private int taken;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (taken == pending.size() && incidents.hasNext())
+                {
+                    pending.clear();
+                    taken = 0;
+                    Incident incident = incidents.next();
+                    for (Resource resource : incident.getResources())
+                    {
+                        pending.add(CsvWriter.row(Integer.toString(incident.getIncidentNumber()),
+                                Integer.toString(resource.getResourceNumber()), Integer.toString(resource.getNumUnits()),
+                                resource.getResourceCode()));
+                    }
+                }
+                return taken < pending.size();
+            }
+
+            @Override
+            public String next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                return pending.get(taken++);
+            }
+        };
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Compares incident lookup latency of a linear list scan against IncidentStore
+// Run with: java -Xmx8g -cp target/classes IncidentLookupBenchmark [sizes...]
+public class IncidentLookupBenchmark
+{
+    private static final int STORE_LOOKUPS = 1_000_000;
+    private static final long SCAN_BUDGET = 200_000_000L; // incidents visited by the scan per size
+
+    // Results are written here so the JIT cannot drop the lookups
+    static volatile long blackhole;
+
+    public static void main(String[] args)
+    {
+        int[] sizes = args.length > 0 ? parseSizes(args) : new int[] { 10_000, 1_000_000, 10_000_000 };
+        System.out.println("size, list scan ns/op, store ns/op");
+        for (int size : sizes)
+        {
+            run(size);
+        }
+    }
+
+    private static void run(int size)
+    {
+        List<Incident> list = new ArrayList<>(size);
+        IncidentStore store = new IncidentStore(size);
+        GPSLocation location = new GPSLocation("51.5072, -0.1276");
+        for (int i = 1; i <= size; i++)
+        {
+            Incident incident = new Incident(i, "Reporter", "07000000000", "01/01/2023", "12:00", location, "Details");
+            list.add(incident);
+            store.put(incident);
+        }
+
+        Random random = new Random(42);
+        int scanLookups = (int) Math.max(10, Math.min(STORE_LOOKUPS, SCAN_BUDGET / size));
+        int[] keys = new int[STORE_LOOKUPS];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = 1 + random.nextInt(size);
+        }
+
+        // Warm up both paths before measuring
+        long sink = 0;
+        sink += scan(list, keys, Math.min(scanLookups, 1_000));
+        sink += lookup(store, keys, keys.length);
+
+        long start = System.nanoTime();
+        sink += scan(list, keys, scanLookups);
+        double scanNanos = (System.nanoTime() - start) / (double) scanLookups;
+
+        start = System.nanoTime();
+        sink += lookup(store, keys, keys.length);
+        double storeNanos = (System.nanoTime() - start) / (double) keys.length;
+
+        blackhole = sink;
+        System.out.printf("%d, %.1f, %.1f%n", size, scanNanos, storeNanos);
+    }
+
+    // The lookup IncidentManagementSystem used before the store existed
+    private static long scan(List<Incident> list, int[] keys, int count)
+    {
+        long sink = 0;
+        for (int i = 0; i < count; i++)
+        {
+            for (Incident incident : list)
+            {
+                if (incident.getIncidentNumber() == keys[i])
+                {
+                    sink += incident.getIncidentNumber();
+                    break;
+                }
+            }
+        }
+        return sink;
+    }
+
+    private static long lookup(IncidentStore store, int[] keys, int count)
+    {
+        long sink = 0;
+        for (int i = 0; i < count; i++)
+        {
+            sink += store.find(keys[i]).getIncidentNumber();
+        }
+        return sink;
+    }
+
+    private static int[] parseSizes(String[] args)
+    {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++)
+        {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
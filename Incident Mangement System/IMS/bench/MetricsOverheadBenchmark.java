@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+// Measures what the operation metrics add to the hot paths: the same lookups and updates
+// run with the metrics on and off in alternating rounds, and each round's on/off ratio is
+// kept, so drift in the machine's speed falls on both modes alike
+// Run with: java -Xmx4g -cp target/classes MetricsOverheadBenchmark [incidents] [rounds]
+public class MetricsOverheadBenchmark
+{
+    private static final int LOOKUPS = 5_000_000;
+    private static final int UPDATES = 500_000;
+
+    // Results are written here so the JIT cannot drop the operations
+    static volatile long blackhole;
+
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 21;
+
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        Iterator<Incident> generated = new IncidentGenerator(IncidentGenerator.DEFAULT_SEED).incidents(count);
+        while (generated.hasNext())
+        {
+            ims.addIncident(generated.next());
+        }
+        Random random = new Random(IncidentGenerator.DEFAULT_SEED);
+        int[] numbers = new int[1 << 16];
+        for (int i = 0; i < numbers.length; i++)
+        {
+            numbers[i] = 1 + random.nextInt(count);
+        }
+
+        List<Double> lookupRatios = new ArrayList<>();
+        List<Double> updateRatios = new ArrayList<>();
+        double[] lookupOn = new double[rounds];
+        double[] updateOn = new double[rounds];
+        // The first round only warms up
+        for (int round = 0; round <= rounds; round++)
+        {
+            ims.getMetrics().setEnabled(true);
+            double lookupWith = lookups(ims, numbers);
+            double updateWith = updates(ims, numbers);
+            ims.getMetrics().setEnabled(false);
+            double lookupWithout = lookups(ims, numbers);
+            double updateWithout = updates(ims, numbers);
+            if (round > 0)
+            {
+                lookupRatios.add(lookupWith / lookupWithout);
+                updateRatios.add(updateWith / updateWithout);
+                lookupOn[round - 1] = lookupWith;
+                updateOn[round - 1] = updateWith;
+            }
+        }
+
+        System.out.println("operation, ns/op with metrics, overhead");
+        System.out.printf("findIncidentByNumber, %.1f, %+.1f%%%n", median(lookupOn), 100 * (median(lookupRatios) - 1));
+        System.out.printf("updateIncident, %.1f, %+.1f%%%n", median(updateOn), 100 * (median(updateRatios) - 1));
+    }
+
+    private static double lookups(IncidentManagementSystem ims, int[] numbers)
+    {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++)
+        {
+            sink += ims.findIncidentByNumber(numbers[i & (numbers.length - 1)]).getPriority();
+        }
+        long nanos = System.nanoTime() - start;
+        blackhole = sink;
+        return nanos / (double) LOOKUPS;
+    }
+
+    private static double updates(IncidentManagementSystem ims, int[] numbers)
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++)
+        {
+            int priority = Incident.HIGHEST_PRIORITY + i % Incident.LOWEST_PRIORITY;
+            ims.updateIncident(numbers[i & (numbers.length - 1)], incident -> incident.setPriority(priority));
+        }
+        return (System.nanoTime() - start) / (double) UPDATES;
+    }
+
+    private static double median(List<Double> values)
+    {
+        List<Double> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static double median(double[] values)
+    {
+        List<Double> list = new ArrayList<>();
+        for (double value : values)
+        {
+            list.add(value);
+        }
+        return median(list);
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+// Fills IncidentManagementSystem and times rendering one page of the incident listing
+// near the start, deep in and at the end of the store, unfiltered and filtered to ongoing
+// incidents, through IncidentWriter and through toString(). Output goes to a Writer that
+// discards it, so only building and copying the text is measured; the bytes allocated per
+// page are reported too. Also times dumping every incident as the listing used to.
+// Run with: java -Xmx4g -cp target/classes PagingBenchmark [incidents] [page size]
+public class PagingBenchmark
+{
+    private static final int REPEATS = 2_000;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args) throws Exception
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int pageSize = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        Random random = new Random(42);
+        Resource ambulance = new Resource(1, "AMB", "Ambulance", 2);
+        for (int number = 1; number <= count; number++)
+        {
+            String date = String.format("%02d/%02d/2023", 1 + random.nextInt(28), 1 + random.nextInt(12));
+            Incident incident = new Incident(number, "Reporter", "07000000000", date, "12:00",
+                    new GPSLocation(50 + random.nextDouble() * 8, -5 + random.nextDouble() * 6), "Details of the incident");
+            incident.setOngoing(random.nextBoolean());
+            if (random.nextInt(4) == 0)
+            {
+                incident.addResource(ambulance);
+            }
+            ims.addIncident(incident);
+        }
+        DiscardingWriter sink = new DiscardingWriter();
+        IncidentWriter writer = new IncidentWriter(sink);
+        int pages = (count + pageSize - 1) / pageSize;
+        System.out.printf("%d incidents, %d per page, %d pages%n", count, pageSize, pages);
+        System.out.println("page, filter, writer us, writer bytes, toString us, toString bytes");
+
+        IncidentFilter all = IncidentFilter.all();
+        IncidentFilter ongoing = IncidentFilter.all().onlyOngoing();
+        int[] pageIndexes = { 0, Math.min(4_999, pages - 1), pages - 1 };
+        for (int round = 0; round < 2; round++)
+        {
+            // The first round warms up the JIT
+            boolean print = round == 1;
+            for (int pageIndex : pageIndexes)
+            {
+                int cursor = ims.getPageCursor(pageIndex, pageSize);
+                time(ims, all, cursor, pageSize, writer, sink, "" + (pageIndex + 1), "all", print);
+            }
+            // A filtered page deep in is reached by following the previous page's cursor
+            int cursor = ims.getPageCursor(pageIndexes[1], pageSize);
+            time(ims, ongoing, cursor, pageSize, writer, sink, "after " + (pageIndexes[1] + 1), "ongoing", print);
+        }
+
+        long start = System.nanoTime();
+        for (Incident incident : ims.getAllIncidents())
+        {
+            sink.write(incident.toString());
+            sink.write(System.lineSeparator());
+        }
+        System.out.printf("dump every incident with toString: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        blackhole += sink.written;
+    }
+
+    private static void time(IncidentManagementSystem ims, IncidentFilter filter, int cursor, int pageSize,
+            IncidentWriter writer, DiscardingWriter sink, String page, String filterName, boolean print) throws Exception
+    {
+        List<Incident> expected = ims.getIncidentPage(filter, cursor, pageSize).getIncidents();
+        if (expected.isEmpty())
+        {
+            throw new IllegalStateException("page " + page + " is empty");
+        }
+        long bytes = allocated();
+        long start = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++)
+        {
+            for (Incident incident : ims.getIncidentPage(filter, cursor, pageSize).getIncidents())
+            {
+                writer.write(incident);
+            }
+            writer.flush();
+        }
+        double writerMicros = (System.nanoTime() - start) / 1e3 / REPEATS;
+        long writerBytes = (allocated() - bytes) / REPEATS;
+
+        bytes = allocated();
+        start = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++)
+        {
+            for (Incident incident : ims.getIncidentPage(filter, cursor, pageSize).getIncidents())
+            {
+                sink.write(incident.toString());
+                sink.write(System.lineSeparator());
+            }
+        }
+        double stringMicros = (System.nanoTime() - start) / 1e3 / REPEATS;
+        long stringBytes = (allocated() - bytes) / REPEATS;
+        blackhole += sink.written;
+        if (print)
+        {
+            System.out.printf("%s, %s, %.1f, %d, %.1f, %d%n", page, filterName, writerMicros, writerBytes,
+                    stringMicros, stringBytes);
+        }
+    }
+
+    private static long allocated()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    // Counts what is written and keeps none of it
+    private static class DiscardingWriter extends Writer
+    {
+        long written;
+
+        @Override
+        public void write(char[] chars, int offset, int length)
+        {
+            written += length;
+        }
+
+        @Override
+        public void write(String text)
+        {
+            written += text.length();
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Loads resources.csv files of growing size through IncidentManagementSystem, whose
+// ResourceCatalogue interns each row, against the old List.contains de-duplication.
+// The catalogue should grow linearly and retain one object per distinct resource.
+// Run with: java -Xmx4g -cp target/classes ResourceLoadBenchmark [rows...]
+public class ResourceLoadBenchmark
+{
+    // The list scan is quadratic, so it only runs up to this many rows
+    private static final int MAX_SCAN_ROWS = 100_000;
+    private static final int DISTINCT = 20_000;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args) throws IOException
+    {
+        int[] sizes = { 10_000, 100_000, 1_000_000 };
+        if (args.length > 0)
+        {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%d distinct resources%n", DISTINCT);
+        System.out.println("rows, list scan ms, catalogue ms, distinct kept, retained MB");
+        // The first load only warms up the JIT
+        load(writeResources(sizes[0]));
+        for (int rows : sizes)
+        {
+            File file = writeResources(rows);
+            String scan = "-";
+            if (rows <= MAX_SCAN_ROWS)
+            {
+                long start = System.nanoTime();
+                blackhole = loadWithListScan(file).size();
+                scan = String.format("%.0f", (System.nanoTime() - start) / 1e6);
+            }
+
+            long before = usedHeap();
+            long start = System.nanoTime();
+            IncidentManagementSystem ims = load(file);
+            double catalogueMillis = (System.nanoTime() - start) / 1e6;
+            double retained = (usedHeap() - before) / (1024.0 * 1024.0);
+            int distinct = ims.getUniqueResources().size();
+            if (distinct != Math.min(rows, DISTINCT))
+            {
+                throw new IllegalStateException("kept " + distinct + " resources");
+            }
+            System.out.printf("%d, %s, %.0f, %d, %.1f%n", rows, scan, catalogueMillis, distinct, retained);
+            blackhole = ims.getUniqueResources().size();
+        }
+    }
+
+    private static IncidentManagementSystem load(File file)
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        ims.loadResourcesFromCSV(file.getPath());
+        return ims;
+    }
+
+    // The de-duplication loadResourcesFromCSV used before ResourceCatalogue
+    private static List<Resource> loadWithListScan(File file) throws IOException
+    {
+        List<Resource> unique = new ArrayList<>();
+        CsvReader.read(file.getPath(), true, row -> {
+            Resource resource = new Resource(row);
+            if (!unique.contains(resource))
+            {
+                unique.add(resource);
+            }
+        });
+        return unique;
+    }
+
+    // Each row names one of DISTINCT resources, cycling through them
+    private static File writeResources(int rows) throws IOException
+    {
+        File file = File.createTempFile("resources", ".csv");
+        file.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("Resource No, Resource Code, Resource Description, Number of Units\n");
+            for (int i = 0; i < rows; i++)
+            {
+                int id = i % DISTINCT;
+                writer.write(new Resource(id, "R" + (id % 50), "Unit " + id, 1 + id % 4).toCSVString());
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Load generator for IncidentServer. Holds many idle operator sessions open while active
+// sessions create incidents and assign resources through the menu, and reports the
+// latency of each menu request from sending it to the next menu prompt.
+// Without a port it starts a server in this JVM; run it from a scratch directory, since
+// created incidents are journalled to incidents.journal there.
+// Run with: java -cp target/classes SessionLoadGenerator [idle sessions] [active sessions] [requests per session] [port]
+public class SessionLoadGenerator
+{
+    private static final byte[] PROMPT = "Enter your choice: ".getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws Exception
+    {
+        int idle = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int active = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        IncidentServer server = null;
+        int port;
+        if (args.length > 3)
+        {
+            port = Integer.parseInt(args[3]);
+        }
+        else
+        {
+            server = new IncidentServer(new IncidentManagementSystem(), 0);
+            port = server.getPort();
+            Thread.ofPlatform().daemon().name("incident-server").start(server::serve);
+        }
+
+        List<Socket> idleSockets = new ArrayList<>(idle);
+        for (int i = 0; i < idle; i++)
+        {
+            idleSockets.add(new Socket(InetAddress.getLoopbackAddress(), port));
+        }
+        if (server != null)
+        {
+            // Let the server pick up the idle connections before the measured run
+            while (server.getOpenSessions() < idle)
+            {
+                Thread.sleep(10);
+            }
+        }
+        System.out.printf("%d idle sessions, %d active sessions x %d requests%n", idle, active, requests);
+
+        long[] latencies;
+        long began = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int i = 0; i < active; i++)
+            {
+                int session = i;
+                results.add(clients.submit(() -> runSession(port, session, requests)));
+            }
+            latencies = new long[active * requests];
+            int filled = 0;
+            for (Future<long[]> result : results)
+            {
+                long[] sessionLatencies = result.get();
+                System.arraycopy(sessionLatencies, 0, latencies, filled, sessionLatencies.length);
+                filled += sessionLatencies.length;
+            }
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("throughput %.0f requests/s%n", latencies.length / seconds);
+        System.out.println("percentile, latency us");
+        String[] labels = { "p50", "p90", "p99", "p99.9" };
+        double[] fractions = { 0.5, 0.9, 0.99, 0.999 };
+        for (int i = 0; i < labels.length; i++)
+        {
+            int index = (int) Math.max(0, Math.ceil(fractions[i] * latencies.length) - 1);
+            System.out.printf("%s, %.1f%n", labels[i], latencies[index] / 1e3);
+        }
+        System.out.printf("max, %.1f%n", latencies[latencies.length - 1] / 1e3);
+
+        for (Socket socket : idleSockets)
+        {
+            socket.close();
+        }
+        if (server != null)
+        {
+            server.close();
+        }
+    }
+
+    // One operator: alternately create an incident and assign a resource to it
+    private static long[] runSession(int port, int session, int requests) throws IOException
+    {
+        long[] latencies = new long[requests];
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port))
+        {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            awaitPrompt(in);
+            for (int i = 0; i < requests; i++)
+            {
+                // Sessions use disjoint incident numbers, starting above any the server already holds
+                int number = 1_000_000_000 + session * requests + i / 2;
+                String request = i % 2 == 0
+                        ? "1\n" + number + "\nOperator\n07000000000\n01/01/2023\n12:00\n51.5, -0.12\nLoad test\n"
+                        : "3\n" + number + "\n" + i + "\nFIRE\nFire engine\n1\n";
+                long start = System.nanoTime();
+                out.write(request.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                awaitPrompt(in);
+                latencies[i] = System.nanoTime() - start;
+            }
+            out.write("0\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+        return latencies;
+    }
+
+    // Read until the menu prompt that ends every response
+    private static void awaitPrompt(InputStream in) throws IOException
+    {
+        int matched = 0;
+        while (matched < PROMPT.length)
+        {
+            int b = in.read();
+            if (b < 0)
+            {
+                throw new IOException("Server closed the session");
+            }
+            // The prompt's first byte does not occur again inside it, so a mismatch restarts the match
+            matched = b == PROMPT[matched] ? matched + 1 : (b == PROMPT[0] ? 1 : 0);
+        }
+    }
+}
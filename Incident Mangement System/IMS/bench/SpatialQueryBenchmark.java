@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// Compares radius and nearest-incident queries through SpatialIndex against a brute-force scan.
+// Then times the nearest queries a ring walk cannot end early, from points far outside the
+// region and with a filter few incidents pass. These stop stepping through rings once they
+// have stepped over as many rows and cells as are occupied, and read the occupied cells
+// instead, so each costs at most about two scans; the far ones must find what a scan finds.
+// Run with: java -Xmx4g -cp target/classes SpatialQueryBenchmark [incidents] [queries]
+public class SpatialQueryBenchmark
+{
+    private static final double RADIUS_KM = 5;
+    private static final int NEAREST = 10;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args)
+    {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        // Incidents spread over a 4 x 6 degree region around the UK midlands
+        Random random = new Random(42);
+        List<Incident> incidents = new ArrayList<>(size);
+        SpatialIndex<Incident> index = new SpatialIndex<>();
+        for (int i = 1; i <= size; i++)
+        {
+            GPSLocation location = new GPSLocation(51 + random.nextDouble() * 4, -4 + random.nextDouble() * 6);
+            Incident incident = new Incident(i, "Reporter", "07000000000", "01/01/2023", "12:00", location, "Details");
+            incidents.add(incident);
+            index.put(incident, location.getLatitude(), location.getLongitude());
+        }
+        double[][] points = new double[queries][];
+        for (int i = 0; i < queries; i++)
+        {
+            points[i] = new double[] { 51 + random.nextDouble() * 4, -4 + random.nextDouble() * 6 };
+        }
+
+        System.out.printf("%d incidents, %d queries%n", size, queries);
+        System.out.println("query, scan us/op, index us/op");
+        for (int round = 0; round < 2; round++)
+        {
+            // The first round only warms up the JIT
+            boolean report = round == 1;
+
+            long start = System.nanoTime();
+            long sink = 0;
+            for (double[] point : points)
+            {
+                sink += scanRadius(incidents, point[0], point[1]).size();
+            }
+            double scanRadius = (System.nanoTime() - start) / 1e3 / queries;
+
+            start = System.nanoTime();
+            for (double[] point : points)
+            {
+                sink += index.withinRadius(point[0], point[1], RADIUS_KM, null).size();
+            }
+            double indexRadius = (System.nanoTime() - start) / 1e3 / queries;
+
+            start = System.nanoTime();
+            for (double[] point : points)
+            {
+                sink += scanNearest(incidents, point[0], point[1]).size();
+            }
+            double scanNearest = (System.nanoTime() - start) / 1e3 / queries;
+
+            start = System.nanoTime();
+            for (double[] point : points)
+            {
+                sink += index.nearest(point[0], point[1], NEAREST, null).size();
+            }
+            double indexNearest = (System.nanoTime() - start) / 1e3 / queries;
+
+            blackhole = sink;
+            if (report)
+            {
+                System.out.printf("radius %.0f km, %.1f, %.1f%n", RADIUS_KM, scanRadius, indexRadius);
+                System.out.printf("nearest %d, %.1f, %.1f%n", NEAREST, scanNearest, indexNearest);
+            }
+        }
+
+        double[][] farPoints = new double[queries][];
+        for (int i = 0; i < queries; i++)
+        {
+            farPoints[i] = new double[] { -40 + random.nextDouble() * 10, 150 + random.nextDouble() * 20 };
+        }
+        for (int round = 0; round < 2; round++)
+        {
+            boolean report = round == 1;
+            List<List<Incident>> found = new ArrayList<>(queries);
+            long start = System.nanoTime();
+            for (double[] point : farPoints)
+            {
+                found.add(index.nearest(point[0], point[1], NEAREST, null));
+            }
+            double far = (System.nanoTime() - start) / 1e3 / queries;
+            for (int i = 0; i < queries; i++)
+            {
+                checkSameDistances(farPoints[i], scanNearest(incidents, farPoints[i][0], farPoints[i][1]), found.get(i));
+            }
+
+            // One incident in 100,000 passes
+            start = System.nanoTime();
+            long sink = 0;
+            for (double[] point : points)
+            {
+                sink += index.nearest(point[0], point[1], NEAREST, incident -> incident.getIncidentNumber() % 100_000 == 0).size();
+            }
+            double sparse = (System.nanoTime() - start) / 1e3 / queries;
+            blackhole = sink;
+            if (report)
+            {
+                System.out.printf("nearest %d from far away, -, %.1f%n", NEAREST, far);
+                System.out.printf("nearest %d passing a sparse filter, -, %.1f%n", NEAREST, sparse);
+            }
+        }
+    }
+
+    private static void checkSameDistances(double[] point, List<Incident> expected, List<Incident> found)
+    {
+        if (expected.size() != found.size())
+        {
+            throw new IllegalStateException("found " + found.size() + " incidents, expected " + expected.size());
+        }
+        expected.sort((a, b) -> Double.compare(distance(point, a), distance(point, b)));
+        for (int i = 0; i < found.size(); i++)
+        {
+            if (distance(point, expected.get(i)) != distance(point, found.get(i)))
+            {
+                throw new IllegalStateException("nearest " + i + " is " + distance(point, found.get(i))
+                        + " km away, expected " + distance(point, expected.get(i)));
+            }
+        }
+    }
+
+    private static double distance(double[] point, Incident incident)
+    {
+        GPSLocation location = incident.getGpsLocation();
+        return GPSLocation.distanceKm(point[0], point[1], location.getLatitude(), location.getLongitude());
+    }
+
+    private static List<Incident> scanRadius(List<Incident> incidents, double latitude, double longitude)
+    {
+        List<Incident> found = new ArrayList<>();
+        for (Incident incident : incidents)
+        {
+            GPSLocation location = incident.getGpsLocation();
+            if (GPSLocation.distanceKm(latitude, longitude, location.getLatitude(), location.getLongitude()) <= RADIUS_KM)
+            {
+                found.add(incident);
+            }
+        }
+        return found;
+    }
+
+    // Brute force keeps the best candidates in a bounded max-heap while scanning everything
+    private static List<Incident> scanNearest(List<Incident> incidents, double latitude, double longitude)
+    {
+        PriorityQueue<Object[]> best = new PriorityQueue<>((a, b) -> Double.compare((double) b[0], (double) a[0]));
+        for (Incident incident : incidents)
+        {
+            GPSLocation location = incident.getGpsLocation();
+            double distance = GPSLocation.distanceKm(latitude, longitude, location.getLatitude(), location.getLongitude());
+            if (best.size() < NEAREST || distance < (double) best.peek()[0])
+            {
+                best.add(new Object[] { distance, incident });
+                if (best.size() > NEAREST)
+                {
+                    best.poll();
+                }
+            }
+        }
+        List<Incident> found = new ArrayList<>();
+        for (Object[] candidate : best)
+        {
+            found.add((Incident) candidate[1]);
+        }
+        return found;
+    }
+}
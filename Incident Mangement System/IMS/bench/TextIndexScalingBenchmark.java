@@ -0,0 +1,75 @@
+import java.util.Arrays;
+
+// Times re-indexing incidents one after another in number order, as a sweep by one
+// operator does, at growing index sizes. Each round changes the details of the first
+// quarter of the incidents, taking them out of postings lists shared by every incident
+// next to the ones taken out just before; the next round puts their details back. The
+// time per update should stay flat as the index grows; the last line gives the largest
+// size's time over the smallest's.
+// Run with: java -Xmx4g -cp target/classes TextIndexScalingBenchmark [sizes...]
+public class TextIndexScalingBenchmark
+{
+    private static final int ROUNDS = 4;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args)
+    {
+        int[] sizes = { 20_000, 80_000, 320_000, 1_280_000 };
+        if (args.length > 0)
+        {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("a quarter of the incidents updated per round, median of %d rounds%n", ROUNDS);
+        System.out.println("incidents, us per update");
+        // The first size again, only to warm up the JIT
+        measure(sizes[0]);
+        double first = 0;
+        double last = 0;
+        for (int size : sizes)
+        {
+            last = measure(size);
+            first = first == 0 ? last : first;
+            System.out.printf("%d, %.2f%n", size, last);
+        }
+        System.out.printf("largest over smallest: %.2fx%n", last / first);
+    }
+
+    // Microseconds per update, the median over the rounds
+    private static double measure(int size)
+    {
+        int[] numbers = new int[size];
+        String[] names = new String[size];
+        String[] details = new String[size];
+        String[] changed = new String[size];
+        for (int i = 0; i < size; i++)
+        {
+            numbers[i] = i + 1;
+            names[i] = "Reporter " + (i % 100);
+            details[i] = "Road traffic collision near junction " + (i % 1_000);
+            changed[i] = "Updated by operator " + (i % 10);
+        }
+        TextIndex index = new TextIndex();
+        index.addAll(numbers, names, details);
+        int updates = size / 4;
+        double[] rounds = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            // Even rounds leave "road", "traffic" and the rest; odd rounds join them again
+            String[] text = round % 2 == 0 ? changed : details;
+            long start = System.nanoTime();
+            for (int i = 0; i < updates; i++)
+            {
+                index.update(numbers[i], names[i], text[i]);
+            }
+            rounds[round] = (System.nanoTime() - start) / 1e3 / updates;
+            blackhole += index.search("collision", 10).length;
+        }
+        Arrays.sort(rounds);
+        return rounds[ROUNDS / 2];
+    }
+}
@@ -0,0 +1,148 @@
+import java.util.Locale;
+import java.util.Random;
+
+// Indexes synthetic reporter names and incident details in a TextIndex, once through the
+// parallel bulk build and once an incident at a time, then times keyword, prefix and
+// phrase queries against a case-folded String.contains scan of every incident. Prefixes of
+// one and two letters match thousands of terms. Last, it times re-indexing changed
+// details, which takes numbers out of long postings lists.
+// Run with: java -Xms4g -Xmx4g -cp target/classes TextSearchBenchmark [incidents]
+public class TextSearchBenchmark
+{
+    private static final int VOCABULARY = 20_000;
+    private static final int DISTINCT_DETAILS = 200_000;
+    private static final int DISTINCT_NAMES = 5_000;
+    private static final int WORDS_PER_DETAIL = 6;
+    private static final int REPEATS = 50;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args)
+    {
+        int incidents = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(42);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++)
+        {
+            words[i] = word(i);
+        }
+        // Details draw words with a skewed distribution, like real text
+        String[] detailPool = new String[DISTINCT_DETAILS];
+        for (int i = 0; i < DISTINCT_DETAILS; i++)
+        {
+            StringBuilder detail = new StringBuilder();
+            for (int j = 0; j < WORDS_PER_DETAIL; j++)
+            {
+                double skew = random.nextDouble();
+                detail.append(j == 0 ? "" : " ").append(words[(int) (VOCABULARY * skew * skew * skew)]);
+            }
+            detailPool[i] = detail.substring(0, 1).toUpperCase(Locale.ROOT) + detail.substring(1);
+        }
+        String[] namePool = new String[DISTINCT_NAMES];
+        for (int i = 0; i < DISTINCT_NAMES; i++)
+        {
+            namePool[i] = "Reporter" + word(i);
+        }
+        int[] numbers = new int[incidents];
+        String[] names = new String[incidents];
+        String[] details = new String[incidents];
+        for (int i = 0; i < incidents; i++)
+        {
+            numbers[i] = i + 1;
+            names[i] = namePool[random.nextInt(DISTINCT_NAMES)];
+            details[i] = detailPool[random.nextInt(DISTINCT_DETAILS)];
+        }
+        System.out.printf("%d incidents, %d processors%n", incidents, Runtime.getRuntime().availableProcessors());
+
+        int sequential = Math.min(incidents, 1_000_000);
+        TextIndex oneByOne = new TextIndex();
+        long start = System.nanoTime();
+        for (int i = 0; i < sequential; i++)
+        {
+            oneByOne.update(numbers[i], names[i], details[i]);
+        }
+        System.out.printf("one at a time: %d incidents in %.0f ms%n", sequential, (System.nanoTime() - start) / 1e6);
+        oneByOne = null;
+
+        TextIndex index = new TextIndex();
+        start = System.nanoTime();
+        index.addAll(numbers, names, details);
+        System.out.printf("bulk build: %d incidents in %.0f ms, %d terms%n", incidents,
+                (System.nanoTime() - start) / 1e6, index.termCount());
+
+        String rare = words[VOCABULARY - 1];
+        String common = words[0];
+        String middle = words[VOCABULARY / 10];
+        String[] first = detailPool[7].toLowerCase(Locale.ROOT).split(" ");
+        String[][] queries = {
+            { "rare keyword", rare },
+            { "common keyword", common },
+            { "two keywords", middle + " " + rare },
+            { "prefix", rare.substring(0, 3) + "*" },
+            { "two-letter prefix", common.substring(0, 2) + "*" },
+            { "one-letter prefix", common.substring(0, 1) + "*" },
+            { "phrase", "\"" + first[2] + " " + first[3] + "\"" },
+            { "keyword and phrase", first[4] + " \"" + first[0] + " " + first[1] + "\"" },
+        };
+        System.out.println("query, results, mean ms, scan ms");
+        for (String[] query : queries)
+        {
+            int[] found = index.search(query[1], 10);
+            for (int i = 0; i < REPEATS; i++)
+            {
+                blackhole += index.search(query[1], 10).length;
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < REPEATS; i++)
+            {
+                blackhole += index.search(query[1], 10).length;
+            }
+            double indexed = (System.nanoTime() - start) / 1e6 / REPEATS;
+
+            // The scan only looks for the first word, so it is a lower bound on its cost
+            String needle = query[1].replace("\"", "").replace("*", "").split(" ")[0].toLowerCase(Locale.ROOT);
+            start = System.nanoTime();
+            int scanned = 0;
+            for (int i = 0; i < incidents; i++)
+            {
+                if (details[i].toLowerCase(Locale.ROOT).contains(needle) || names[i].toLowerCase(Locale.ROOT).contains(needle))
+                {
+                    scanned++;
+                }
+            }
+            blackhole += scanned;
+            double scan = (System.nanoTime() - start) / 1e6;
+            if (found.length == 0)
+            {
+                throw new IllegalStateException("no results for " + query[1]);
+            }
+            System.out.printf("%s, %d, %.2f, %.0f%n", query[0], found.length, indexed, scan);
+        }
+
+        int changes = Math.min(incidents, 100_000);
+        start = System.nanoTime();
+        for (int i = 0; i < changes; i++)
+        {
+            int changed = random.nextInt(incidents);
+            index.update(numbers[changed], names[changed], detailPool[random.nextInt(DISTINCT_DETAILS)]);
+        }
+        System.out.printf("re-index changed details: %.1f us each%n", (System.nanoTime() - start) / 1e3 / changes);
+    }
+
+    // A pronounceable lower-case word for each number
+    private static String word(int number)
+    {
+        String consonants = "bcdfghklmnprstvwz";
+        String vowels = "aeiou";
+        StringBuilder word = new StringBuilder();
+        do
+        {
+            word.append(consonants.charAt(number % consonants.length()));
+            number /= consonants.length();
+            word.append(vowels.charAt(number % vowels.length()));
+            number /= vowels.length();
+        }
+        while (number > 0);
+        return word.toString();
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.Random;
+
+// Per-record cost of validating an incident's fields with the old String.matches checks
+// against InputValidator, after confirming both accept exactly the same inputs.
+// Run with: java -cp target/classes ValidationBenchmark [records]
+public class ValidationBenchmark
+{
+    static volatile long blackhole;
+
+    public static void main(String[] args)
+    {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[][] fields = generate(records, new Random(42));
+
+        int mismatches = compare(fields);
+        if (mismatches > 0)
+        {
+            throw new IllegalStateException(mismatches + " inputs judged differently");
+        }
+        System.out.printf("%d records, validators agree%n", records);
+
+        System.out.println("validator, ns/record");
+        for (int round = 0; round < 3; round++)
+        {
+            // Earlier rounds only warm up the JIT
+            boolean report = round == 2;
+
+            long start = System.nanoTime();
+            long sink = 0;
+            for (String[] record : fields)
+            {
+                sink += regexValid(record) ? 1 : 0;
+            }
+            double regex = (System.nanoTime() - start) / (double) records;
+
+            start = System.nanoTime();
+            for (String[] record : fields)
+            {
+                sink += scannerValid(record) ? 1 : 0;
+            }
+            double scanner = (System.nanoTime() - start) / (double) records;
+
+            blackhole = sink;
+            if (report)
+            {
+                System.out.printf("String.matches, %.1f%n", regex);
+                System.out.printf("InputValidator, %.1f%n", scanner);
+            }
+        }
+    }
+
+    private static boolean regexValid(String[] record)
+    {
+        return isValidName(record[0]) & isValidPhoneNumber(record[1]) & isValidDate(record[2])
+                & isValidTime(record[3]) & isValidGPSLocation(record[4]) & isValidTextInput(record[5]);
+    }
+
+    private static boolean scannerValid(String[] record)
+    {
+        return InputValidator.isValidName(record[0]) & InputValidator.isValidPhoneNumber(record[1])
+                & InputValidator.isValidDate(record[2]) & InputValidator.isValidTime(record[3])
+                & InputValidator.isValidGPSLocation(record[4]) & InputValidator.isValidTextInput(record[5]);
+    }
+
+    // Check each field with both implementations and count disagreements
+    private static int compare(String[][] fields)
+    {
+        int mismatches = 0;
+        for (String[] record : fields)
+        {
+            boolean[] regex = { isValidName(record[0]), isValidPhoneNumber(record[1]), isValidDate(record[2]),
+                    isValidTime(record[3]), isValidGPSLocation(record[4]), isValidTextInput(record[5]) };
+            boolean[] scanner = { InputValidator.isValidName(record[0]), InputValidator.isValidPhoneNumber(record[1]),
+                    InputValidator.isValidDate(record[2]), InputValidator.isValidTime(record[3]),
+                    InputValidator.isValidGPSLocation(record[4]), InputValidator.isValidTextInput(record[5]) };
+            for (int i = 0; i < regex.length; i++)
+            {
+                if (regex[i] != scanner[i])
+                {
+                    if (mismatches++ < 10)
+                    {
+                        System.out.println("mismatch on field " + i + ": \"" + record[i] + "\"");
+                    }
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    // Mostly valid records, with a share of near misses that exercise each rule
+    private static String[][] generate(int records, Random random)
+    {
+        String[][] fields = new String[records][];
+        for (int i = 0; i < records; i++)
+        {
+            fields[i] = new String[] {
+                    mutate(random, "Reporter" + (char) ('a' + random.nextInt(26))),
+                    mutate(random, String.format("07%09d", random.nextInt(1_000_000_000))),
+                    mutate(random, String.format("%02d/%02d/%04d", 1 + random.nextInt(31), 1 + random.nextInt(13),
+                            random.nextInt(3) == 0 ? random.nextInt(10000) : 1900 + random.nextInt(200))),
+                    mutate(random, String.format("%02d:%02d", random.nextInt(24), random.nextInt(60))),
+                    mutate(random, String.format("%.4f,%s%.4f", -90 + random.nextDouble() * 180,
+                            random.nextBoolean() ? " " : "", -180 + random.nextDouble() * 360)),
+                    mutate(random, "Road traffic collision") };
+        }
+        return fields;
+    }
+
+    private static String mutate(Random random, String value)
+    {
+        if (random.nextInt(4) != 0)
+        {
+            return value;
+        }
+        String noise = "09aZ ./:,-\t\u00e9";
+        int position = random.nextInt(value.length() + 1);
+        switch (random.nextInt(3))
+        {
+            case 0:
+                return value.substring(0, position) + noise.charAt(random.nextInt(noise.length())) + value.substring(position);
+            case 1:
+                return position == value.length() ? "" : value.substring(0, position) + value.substring(position + 1);
+            default:
+                return value.substring(0, position);
+        }
+    }
+
+    // The checks UserInterface used before InputValidator
+
+    private static boolean isValidTextInput(String input)
+    {
+        return input != null && input.matches("[a-zA-Z ]+");
+    }
+
+    private static boolean isValidName(String name)
+    {
+        return name != null && name.matches("[a-zA-Z]+");
+    }
+
+    private static boolean isValidPhoneNumber(String phoneNumber)
+    {
+        return phoneNumber != null && phoneNumber.matches("\\d{11,}");
+    }
+
+    private static boolean isValidDate(String date)
+    {
+        if (date == null || !date.matches("\\d{2}/\\d{2}/\\d{4}"))
+        {
+            return false;
+        }
+        String[] parts = date.split("/");
+        int day = Integer.parseInt(parts[0]);
+        int month = Integer.parseInt(parts[1]);
+        int year = Integer.parseInt(parts[2]);
+        if (year < 1000 || year > 9999)
+        {
+            return false;
+        }
+        if (month < 1 || month > 12)
+        {
+            return false;
+        }
+        int maxDays = 31;
+        if (month == 2)
+        {
+            if (year % 400 == 0 || (year % 100 != 0 && year % 4 == 0))
+            {
+                maxDays = 29;
+            }
+            else
+            {
+                maxDays = 28;
+            }
+        }
+        else if (month == 4 || month == 6 || month == 9 || month == 11)
+        {
+            maxDays = 30;
+        }
+        return day >= 1 && day <= maxDays;
+    }
+
+    private static boolean isValidTime(String time)
+    {
+        return time != null && time.matches("\\d{2}:\\d{2}");
+    }
+
+    private static boolean isValidGPSLocation(String gpsLocation)
+    {
+        return gpsLocation != null && gpsLocation.matches("-?\\d+(\\.\\d+)?,\\s*-?\\d+(\\.\\d+)?");
+    }
+}
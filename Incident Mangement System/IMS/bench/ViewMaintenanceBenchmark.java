@@ -0,0 +1,136 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+// Measures what keeping the dashboard views current adds to the write path: adding
+// incidents, then a mix of setter changes and resource assignments, in a system with its
+// standard views registered and in one with them unregistered. Rounds alternate between
+// the two so drift in the machine affects both alike, and the overhead reported is the
+// median over the rounds of each round's ratio. Then times reading the dashboard.
+// Run with: java -Xmx4g -cp target/classes ViewMaintenanceBenchmark [incidents] [changes] [rounds]
+public class ViewMaintenanceBenchmark
+{
+    private static final String[] CODES = { "AMB", "FIRE", "POL", "HAZ", "AIR" };
+    private static final int READS = 1_000_000;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.printf("%d incidents, %d changes%n", count, changes);
+        System.out.println("round, add ns/op without views, add ns/op with views, change ns/op without views, change ns/op with views");
+        double[] addRatios = new double[rounds];
+        double[] changeRatios = new double[rounds];
+        for (int round = 0; round <= rounds; round++)
+        {
+            double[] without = run(count, changes, false);
+            double[] with = run(count, changes, true);
+            // Round 0 warms up both
+            if (round > 0)
+            {
+                System.out.printf("%d, %.0f, %.0f, %.0f, %.0f%n", round, without[0], with[0], without[1], with[1]);
+                addRatios[round - 1] = with[0] / without[0];
+                changeRatios[round - 1] = with[1] / without[1];
+            }
+        }
+        System.out.printf("median overhead: add %.1f%%, change %.1f%%%n", 100 * (median(addRatios) - 1), 100 * (median(changeRatios) - 1));
+
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        run(ims, count, changes);
+        long start = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < READS; i++)
+        {
+            sink += ims.getOngoingPerArea().getTotal() + ims.getIncidentsPerHour().get(i * IncidentView.SECONDS_PER_HOUR);
+        }
+        double getNanos = (System.nanoTime() - start) / (double) READS;
+        start = System.nanoTime();
+        for (int i = 0; i < READS / 10; i++)
+        {
+            for (Map.Entry<Long, Long> area : ims.getOngoingPerArea().top(5))
+            {
+                sink += area.getValue();
+            }
+        }
+        double topNanos = (System.nanoTime() - start) / (double) (READS / 10);
+        blackhole = sink;
+        System.out.printf("read with %d incidents: total + group %.0f ns, top 5 areas %.0f ns%n", count, getNanos, topNanos);
+    }
+
+    // Nanoseconds per add and per change
+    private static double[] run(int count, int changes, boolean views)
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        if (!views)
+        {
+            ims.unregisterView(ims.getOngoingPerArea());
+            ims.unregisterView(ims.getIncidentsPerHour());
+            ims.unregisterView(ims.getCommittedUnitsPerCode());
+        }
+        return run(ims, count, changes);
+    }
+
+    private static double[] run(IncidentManagementSystem ims, int count, int changes)
+    {
+        Random random = new Random(42);
+        Incident[] incidents = new Incident[count];
+        for (int i = 0; i < count; i++)
+        {
+            incidents[i] = new Incident(i + 1, "Reporter", "07000000000",
+                    String.format("%02d/01/2023", 1 + random.nextInt(28)), String.format("%02d:00", random.nextInt(24)),
+                    location(random), "Details");
+        }
+        Resource[] resources = new Resource[50];
+        for (int i = 0; i < resources.length; i++)
+        {
+            resources[i] = new Resource(i + 1, CODES[i % CODES.length], "Unit", 1 + i % 3);
+        }
+
+        long start = System.nanoTime();
+        for (Incident incident : incidents)
+        {
+            ims.addIncident(incident);
+        }
+        double addNanos = (System.nanoTime() - start) / (double) count;
+
+        start = System.nanoTime();
+        for (int i = 0; i < changes; i++)
+        {
+            Incident incident = incidents[random.nextInt(count)];
+            switch (i % 4)
+            {
+                case 0:
+                    incident.setOngoing(!incident.isOngoing());
+                    break;
+                case 1:
+                    incident.setPriority(Incident.HIGHEST_PRIORITY + random.nextInt(Incident.LOWEST_PRIORITY));
+                    break;
+                case 2:
+                    incident.setGpsLocation(location(random));
+                    break;
+                default:
+                    ims.assignResourceToIncident(incident.getIncidentNumber(), resources[random.nextInt(resources.length)]);
+                    break;
+            }
+        }
+        double changeNanos = (System.nanoTime() - start) / (double) changes;
+        blackhole += ims.getIncidentCount();
+        return new double[] { addNanos, changeNanos };
+    }
+
+    private static double median(double[] values)
+    {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static GPSLocation location(Random random)
+    {
+        return new GPSLocation(50 + random.nextInt(80_000) / 10_000.0, -5 + random.nextInt(60_000) / 10_000.0);
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Fills a WorkQueue with backlogs of growing size and times adding incidents, changing
+// their priority and claiming the most urgent, against scanning every incident for it.
+// Then dispatcher threads drain the queue together; every incident must be claimed
+// exactly once and each dispatcher must see them in order of urgency. It first checks that
+// a claimed incident stays claimed when another incident is stored in its place.
+// Run with: java -Xmx2g -cp target/classes WorkQueueBenchmark [backlog sizes...]
+public class WorkQueueBenchmark
+{
+    private static final int SCANS = 200;
+
+    static volatile long blackhole;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int[] sizes = { 10_000, 100_000, 1_000_000 };
+        if (args.length > 0)
+        {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        checkClaimSurvivesReplace();
+
+        System.out.println("backlog, add ns, reprioritise ns, claim ns, scan ns");
+        // The first size only warms up the JIT
+        time(sizes[0]);
+        for (int size : sizes)
+        {
+            System.out.println(time(size));
+        }
+
+        int backlog = sizes[sizes.length - 1];
+        System.out.println("dispatchers, claims/s");
+        for (int threads : new int[] { 1, 8, 32 })
+        {
+            drain(incidents(backlog, new Random(threads)), threads);
+        }
+    }
+
+    private static String time(int size)
+    {
+        Random random = new Random(size);
+        List<Incident> incidents = incidents(size, random);
+        WorkQueue queue = new WorkQueue();
+
+        long start = System.nanoTime();
+        for (Incident incident : incidents)
+        {
+            queue.update(incident);
+        }
+        double add = (double) (System.nanoTime() - start) / size;
+
+        int changes = Math.min(size, 200_000);
+        start = System.nanoTime();
+        for (int i = 0; i < changes; i++)
+        {
+            Incident incident = incidents.get(random.nextInt(size));
+            incident.setPriority(1 + random.nextInt(Incident.LOWEST_PRIORITY));
+            queue.update(incident);
+        }
+        double reprioritise = (double) (System.nanoTime() - start) / changes;
+
+        start = System.nanoTime();
+        for (int i = 0; i < SCANS; i++)
+        {
+            blackhole += scanForMostUrgent(incidents).getIncidentNumber();
+        }
+        double scan = (double) (System.nanoTime() - start) / SCANS;
+
+        Incident previous = null;
+        start = System.nanoTime();
+        for (int i = 0; i < size; i++)
+        {
+            Incident next = queue.claimNext();
+            if (previous != null && compare(previous, next) > 0)
+            {
+                throw new IllegalStateException("incident " + next.getIncidentNumber() + " claimed after "
+                        + previous.getIncidentNumber());
+            }
+            previous = next;
+        }
+        double claim = (double) (System.nanoTime() - start) / size;
+        if (queue.claimNext() != null || queue.size() != 0)
+        {
+            throw new IllegalStateException("queue not empty after claiming every incident");
+        }
+        return String.format("%d, %.0f, %.0f, %.0f, %.0f", size, add, reprioritise, claim, scan);
+    }
+
+    // Dispatchers claim until the queue is empty, then each incident's claim count must be one
+    private static void drain(List<Incident> incidents, int threads) throws InterruptedException
+    {
+        WorkQueue queue = new WorkQueue();
+        for (Incident incident : incidents)
+        {
+            queue.update(incident);
+        }
+        AtomicIntegerArray claims = new AtomicIntegerArray(incidents.size() + 1);
+        List<Thread> dispatchers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++)
+        {
+            Thread thread = new Thread(() -> {
+                Incident previous = null;
+                Incident next;
+                while ((next = queue.claimNext()) != null)
+                {
+                    claims.incrementAndGet(next.getIncidentNumber());
+                    if (previous != null && compare(previous, next) > 0)
+                    {
+                        throw new IllegalStateException("claimed out of order");
+                    }
+                    previous = next;
+                }
+            });
+            thread.start();
+            dispatchers.add(thread);
+        }
+        for (Thread thread : dispatchers)
+        {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (int number = 1; number <= incidents.size(); number++)
+        {
+            if (claims.get(number) != 1)
+            {
+                throw new IllegalStateException("incident " + number + " claimed " + claims.get(number) + " times");
+            }
+        }
+        System.out.printf("%d, %.0f%n", threads, incidents.size() / seconds);
+    }
+
+    // Claim an incident, store a new one with its number as a reload or import would, and
+    // no other dispatcher may get it until the first one releases the claim
+    private static void checkClaimSurvivesReplace()
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        GPSLocation location = new GPSLocation("what.three.words");
+        ims.addIncident(new Incident(1, "Reporter", "07000000000", "01/01/2023", "12:00", location, "Details"));
+        Incident claimed = ims.claimNextIncident();
+        ims.addIncident(new Incident(1, "Reporter", "07000000000", "01/01/2023", "12:05", location, "Replaced"));
+        if (ims.claimNextIncident() != null)
+        {
+            throw new IllegalStateException("replaced incident claimed by a second dispatcher");
+        }
+        ims.releaseIncidentClaim(claimed);
+        Incident next = ims.claimNextIncident();
+        if (next == null || !next.getIncidentDetails().equals("Replaced"))
+        {
+            throw new IllegalStateException("released claim did not queue the stored incident");
+        }
+    }
+
+    // What finding the next incident costs without a queue
+    private static Incident scanForMostUrgent(List<Incident> incidents)
+    {
+        Incident best = null;
+        for (Incident incident : incidents)
+        {
+            if (incident.isOngoing() && incident.getResources().isEmpty() && (best == null || compare(incident, best) < 0))
+            {
+                best = incident;
+            }
+        }
+        return best;
+    }
+
+    // The queue's order: priority, then the oldest, then the lowest number
+    private static int compare(Incident a, Incident b)
+    {
+        if (a.getPriority() != b.getPriority())
+        {
+            return Integer.compare(a.getPriority(), b.getPriority());
+        }
+        if (a.getTimestamp() != b.getTimestamp())
+        {
+            return Long.compare(a.getTimestamp(), b.getTimestamp());
+        }
+        return Integer.compare(a.getIncidentNumber(), b.getIncidentNumber());
+    }
+
+    private static List<Incident> incidents(int count, Random random)
+    {
+        List<Incident> incidents = new ArrayList<>(count);
+        GPSLocation location = new GPSLocation("what.three.words");
+        for (int i = 1; i <= count; i++)
+        {
+            String date = String.format("%02d/%02d/2023", 1 + random.nextInt(28), 1 + random.nextInt(12));
+            String time = String.format("%02d:%02d", random.nextInt(24), random.nextInt(60));
+            Incident incident = new Incident(i, "Reporter", "07000000000", date, time, location, "Details");
+            incident.setPriority(1 + random.nextInt(Incident.LOWEST_PRIORITY));
+            incidents.add(incident);
+        }
+        return incidents;
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Units of each resource number that are free or committed to ongoing incidents. Assigning
+// a resource reserves its units from the stock and fails if too few are free; the units go
+// back when the incident stops being ongoing, and are reserved again if it is reopened. Resources without a stock are not limited.
+// Callers hold the incident's lock while reserving for or releasing an incident.
+public class AllocationEngine
+{
+    private final ConcurrentHashMap<Integer, UnitStock> stock = new ConcurrentHashMap<>();
+    // Resources whose units each incident holds, so they can be released together
+    private final ConcurrentHashMap<Incident, List<Resource>> held = new ConcurrentHashMap<>();
+
+    // Set how many units of a resource number exist; assignments made before the first
+    // call for a number do not hold any of its units
+    public void setCapacity(int resourceNumber, int units)
+    {
+        stock.computeIfAbsent(resourceNumber, number -> new UnitStock(0)).setCapacity(units);
+    }
+
+    // The stock of a resource number, or null if it is not limited
+    public UnitStock stockFor(int resourceNumber)
+    {
+        return stock.get(resourceNumber);
+    }
+
+    // Reserve a resource's units for an incident, returning false if too few are free
+    public boolean reserve(Incident incident, Resource resource)
+    {
+        UnitStock units = stock.get(resource.getResourceNumber());
+        if (units == null)
+        {
+            return true;
+        }
+        if (!units.reserve(resource.getNumUnits()))
+        {
+            return false;
+        }
+        hold(incident, resource);
+        return true;
+    }
+
+    // Reserve the units of every resource an incident holds, e.g. when it is reopened; all
+    // or none are reserved, and false if too few are free
+    public boolean reserveAll(Incident incident, Collection<Resource> assigned)
+    {
+        List<Resource> reserved = new ArrayList<>();
+        for (Resource resource : assigned)
+        {
+            UnitStock units = stock.get(resource.getResourceNumber());
+            if (units == null)
+            {
+                continue;
+            }
+            if (!units.reserve(resource.getNumUnits()))
+            {
+                for (Resource taken : reserved)
+                {
+                    stock.get(taken.getResourceNumber()).release(taken.getNumUnits());
+                }
+                return false;
+            }
+            reserved.add(resource);
+        }
+        for (Resource resource : reserved)
+        {
+            hold(incident, resource);
+        }
+        return true;
+    }
+
+    // Commit the units of resources already assigned to an ongoing incident, even beyond
+    // what is free, e.g. when they are loaded from a file
+    public void commit(Incident incident, Collection<Resource> assigned)
+    {
+        if (!incident.isOngoing() || stock.isEmpty())
+        {
+            return;
+        }
+        for (Resource resource : assigned)
+        {
+            UnitStock units = stock.get(resource.getResourceNumber());
+            if (units != null)
+            {
+                units.commit(resource.getNumUnits());
+                hold(incident, resource);
+            }
+        }
+    }
+
+    // Return every unit an incident holds to the stock
+    public void release(Incident incident)
+    {
+        List<Resource> resources = held.remove(incident);
+        if (resources == null)
+        {
+            return;
+        }
+        for (Resource resource : resources)
+        {
+            stock.get(resource.getResourceNumber()).release(resource.getNumUnits());
+        }
+    }
+
+    private void hold(Incident incident, Resource resource)
+    {
+        held.computeIfAbsent(incident, key -> new ArrayList<>()).add(resource);
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.Arrays;
+import java.util.List;
+
+// Assignment rows grouped by incident number as they are read: the build side of a hash
+// join whose probe side is the incident store, so each incident is looked up and given
+// all of its resources once instead of once per row.
+public class AssignmentTable
+{
+    // Incident number to the group holding its rows
+    private final IntIntHashMap groups = new IntIntHashMap();
+    private int[] groupIncidents = new int[16];
+    private int[] groupSizes = new int[16];
+    private int groupCount;
+
+    private int[] rowGroups = new int[16];
+    private Resource[] rowResources = new Resource[16];
+    private int rowCount;
+
+    public interface GroupHandler
+    {
+        void handle(int incidentNumber, List<Resource> resources);
+    }
+
+    public void add(int incidentNumber, Resource resource)
+    {
+        int group = groups.get(incidentNumber);
+        if (group == IntIntHashMap.NO_VALUE)
+        {
+            group = groupCount++;
+            if (group == groupIncidents.length)
+            {
+                groupIncidents = Arrays.copyOf(groupIncidents, group * 2);
+                groupSizes = Arrays.copyOf(groupSizes, group * 2);
+            }
+            groupIncidents[group] = incidentNumber;
+            groups.put(incidentNumber, group);
+        }
+        groupSizes[group]++;
+        if (rowCount == rowGroups.length)
+        {
+            rowGroups = Arrays.copyOf(rowGroups, rowCount * 2);
+            rowResources = Arrays.copyOf(rowResources, rowCount * 2);
+        }
+        rowGroups[rowCount] = group;
+        rowResources[rowCount] = resource;
+        rowCount++;
+    }
+
+    public int size()
+    {
+        return rowCount;
+    }
+
+    // Hand each incident number its resources, in the order the rows were added
+    public void forEachGroup(GroupHandler handler)
+    {
+        // Counting sort by group keeps each group's rows in their original order
+        int[] starts = new int[groupCount + 1];
+        for (int group = 0; group < groupCount; group++)
+        {
+            starts[group + 1] = starts[group] + groupSizes[group];
+        }
+        int[] next = Arrays.copyOf(starts, groupCount);
+        Resource[] sorted = new Resource[rowCount];
+        for (int row = 0; row < rowCount; row++)
+        {
+            sorted[next[rowGroups[row]]++] = rowResources[row];
+        }
+        List<Resource> rows = Arrays.asList(sorted);
+        for (int group = 0; group < groupCount; group++)
+        {
+            handler.handle(groupIncidents[group], rows.subList(starts[group], starts[group + 1]));
+        }
+    }
+}
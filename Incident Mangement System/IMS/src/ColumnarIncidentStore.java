@@ -0,0 +1,749 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+// Incidents kept column by column instead of as objects, for histories of tens of millions
+// of incidents. Each column is a primitive array: number, timestamp, latitude, longitude,
+// a byte of flags holding ongoing and the priority, the reporter's name as an id into a
+// dictionary of distinct names, and the phone number packed into a long. The details, and
+// any date, time, location or phone number those columns cannot reproduce exactly, are
+// kept outside the heap in OffHeapStrings. A row costs about 80 bytes of heap, or about
+// 100 when nearly every row has a phone number of its own, where an Incident and its
+// strings cost about half a kilobyte, and none of it is objects for the garbage collector
+// to trace.
+// Phone number queries follow a chain of the rows with the same phone key, and time range
+// queries binary search an array of rows in timestamp order, which rows written since the
+// last query are merged into first.
+// find() and the queries build a fresh, saved Incident from each row they return; changing
+// that copy does not change the row. Rows sit in fixed-size chunks so growing never copies
+// a column. A replaced or removed row is only flagged until flagged rows are half of those
+// written; then the live rows are copied into fresh chunks and text, and the old text's
+// memory goes back once its buffers are collected. Every method locks the store.
+public class ColumnarIncidentStore
+{
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final int ONGOING = 1;
+    private static final int REMOVED = 1 << 1;
+    // The date and time do not make a timestamp, so they are kept as text
+    private static final int DATE_TIME_TEXT = 1 << 2;
+    // The location is not its coordinates written out by GPSLocation, so it is kept as text
+    private static final int LOCATION_TEXT = 1 << 3;
+    // The phone number is not up to 18 digits, so it is kept as text
+    private static final int PHONE_TEXT = 1 << 4;
+    private static final int PRIORITY_SHIFT = 5;
+
+    // The strings of a row's text record; the ones after the details are always written,
+    // as null unless the row's flags say the column is kept as text
+    private static final int DETAILS = 0;
+    private static final int DATE = 1;
+    private static final int TIME = 2;
+    private static final int LOCATION = 3;
+    private static final int PHONE = 4;
+
+    private static final int NO_RESOURCES = -1;
+    private static final int NO_ROW = -1;
+    // Stores smaller than this in flagged rows are not worth compacting
+    private static final int MIN_COMPACTED_ROWS = CHUNK_SIZE;
+
+    private final IntIntHashMap positions = new IntIntHashMap();
+    private Chunk[] chunks = new Chunk[16];
+    // Rows written, including replaced and removed ones
+    private int rowCount;
+    private int removedCount;
+
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<Resource, Integer> resourceIds = new IdentityHashMap<>();
+    private final List<Resource> resources = new ArrayList<>();
+    // For each row with resources, the count and then the resource ids
+    private int[] resourcePool = new int[1024];
+    private int resourcePoolSize;
+    private OffHeapStrings text = new OffHeapStrings();
+
+    // Phone key to the last row written with it; each row links to the one before it with
+    // the same key through its samePhone column. Keys are never 0 (see PhoneIndex.keyOf).
+    private long[] phoneKeys = new long[16];
+    private int[] phoneRows = new int[16];
+    private int phoneCount;
+
+    // Rows with a timestamp in timestamp order, then row order; rows from orderedRows on
+    // are not in it yet
+    private int[] timeOrder = new int[16];
+    private int timeOrderSize;
+    private int orderedRows;
+
+    private static class Chunk
+    {
+        final int[] numbers = new int[CHUNK_SIZE];
+        final long[] timestamps = new long[CHUNK_SIZE];
+        final double[] latitudes = new double[CHUNK_SIZE];
+        final double[] longitudes = new double[CHUNK_SIZE];
+        final byte[] flags = new byte[CHUNK_SIZE];
+        final int[] names = new int[CHUNK_SIZE];
+        final long[] phones = new long[CHUNK_SIZE];
+        final long[] texts = new long[CHUNK_SIZE];
+        final int[] resources = new int[CHUNK_SIZE];
+        // The row written before this one with the same phone key, or NO_ROW
+        final int[] samePhone = new int[CHUNK_SIZE];
+
+        // Heap bytes of the arrays above
+        static long bytes()
+        {
+            return (long) CHUNK_SIZE * (Integer.BYTES * 4 + Long.BYTES * 3 + Double.BYTES * 2 + 1);
+        }
+    }
+
+    // Store a copy of an incident, replacing any row with the same number
+    public void put(Incident incident)
+    {
+        int number;
+        String reporterName;
+        String phoneNumber;
+        String date;
+        String time;
+        long timestamp;
+        GPSLocation location;
+        String details;
+        boolean ongoing;
+        int priority;
+        List<Resource> assigned;
+        synchronized (incident)
+        {
+            number = incident.getIncidentNumber();
+            reporterName = incident.getReporterName();
+            phoneNumber = incident.getReporterPhoneNumber();
+            date = incident.getDate();
+            time = incident.getTime();
+            timestamp = incident.getTimestamp();
+            location = incident.getGpsLocation();
+            details = incident.getIncidentDetails();
+            ongoing = incident.isOngoing();
+            priority = incident.getPriority();
+            assigned = incident.getResources();
+        }
+
+        int flags = (ongoing ? ONGOING : 0) | priority << PRIORITY_SHIFT;
+        if (timestamp == Incident.NO_TIMESTAMP)
+        {
+            flags |= DATE_TIME_TEXT;
+        }
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        if (location != null && location.hasCoordinates())
+        {
+            latitude = location.getLatitude();
+            longitude = location.getLongitude();
+        }
+        if (location == null || !location.toString().equals(new GPSLocation(latitude, longitude).toString()))
+        {
+            flags |= LOCATION_TEXT;
+        }
+        long phone = PhoneIndex.keyOf(phoneNumber);
+        if (phone < 0)
+        {
+            flags |= PHONE_TEXT;
+        }
+
+        synchronized (this)
+        {
+            long address = text.add(details,
+                    (flags & DATE_TIME_TEXT) != 0 ? date : null,
+                    (flags & DATE_TIME_TEXT) != 0 ? time : null,
+                    (flags & LOCATION_TEXT) != 0 && location != null ? location.toString() : null,
+                    (flags & PHONE_TEXT) != 0 ? phoneNumber : null);
+            int position = appendRow(number, timestamp, latitude, longitude, flags, nameId(reporterName), phone,
+                    address, addResources(assigned));
+            int previous = positions.put(number, position);
+            if (previous != IntIntHashMap.NO_VALUE)
+            {
+                markRemoved(previous);
+                compactIfMostlyRemoved();
+            }
+        }
+    }
+
+    // Write a row at the end, returning its position
+    private int appendRow(int number, long timestamp, double latitude, double longitude, int flags, int nameId,
+                          long phone, long address, int resourcesAt)
+    {
+        int position = rowCount;
+        if (position == (long) chunks.length << CHUNK_SHIFT)
+        {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        Chunk chunk = chunks[position >>> CHUNK_SHIFT];
+        if (chunk == null)
+        {
+            chunk = new Chunk();
+            chunks[position >>> CHUNK_SHIFT] = chunk;
+        }
+        int row = position & (CHUNK_SIZE - 1);
+        chunk.numbers[row] = number;
+        chunk.timestamps[row] = timestamp;
+        chunk.latitudes[row] = latitude;
+        chunk.longitudes[row] = longitude;
+        chunk.flags[row] = (byte) flags;
+        chunk.names[row] = nameId;
+        chunk.phones[row] = phone;
+        chunk.texts[row] = address;
+        chunk.resources[row] = resourcesAt;
+        chunk.samePhone[row] = linkPhone(phone, position);
+        rowCount++;
+        return position;
+    }
+
+    // A copy of the incident with the given number, or null if it is not stored
+    public synchronized Incident find(int incidentNumber)
+    {
+        int position = positions.get(incidentNumber);
+        return position == IntIntHashMap.NO_VALUE ? null : incidentAt(position);
+    }
+
+    public synchronized boolean contains(int incidentNumber)
+    {
+        return positions.containsKey(incidentNumber);
+    }
+
+    // Remove the incident with the given number, returning false if it is not stored
+    public synchronized boolean remove(int incidentNumber)
+    {
+        int position = positions.remove(incidentNumber);
+        if (position == IntIntHashMap.NO_VALUE)
+        {
+            return false;
+        }
+        markRemoved(position);
+        compactIfMostlyRemoved();
+        return true;
+    }
+
+    // Incidents stored, not counting replaced and removed rows
+    public synchronized int size()
+    {
+        return rowCount - removedCount;
+    }
+
+    // Copies of the incidents reported from a phone number, lowest incident number first.
+    // Follows the chain of rows with the number's key, so it costs the caller's rows.
+    public synchronized List<Incident> findByPhoneNumber(String phoneNumber)
+    {
+        long key = PhoneIndex.keyOf(phoneNumber);
+        List<Incident> found = new ArrayList<>();
+        int slot = findPhone(key);
+        for (int position = slot < 0 ? NO_ROW : phoneRows[slot]; position != NO_ROW; )
+        {
+            Chunk chunk = chunks[position >>> CHUNK_SHIFT];
+            int row = position & (CHUNK_SIZE - 1);
+            int flags = chunk.flags[row];
+            // Keys of numbers kept as text are hashes, which other numbers may share
+            if ((flags & REMOVED) == 0 && ((flags & PHONE_TEXT) == 0
+                    || Objects.equals(phoneNumber, text.get(chunk.texts[row], PHONE))))
+            {
+                found.add(incidentAt(position));
+            }
+            position = chunk.samePhone[row];
+        }
+        found.sort(Comparator.comparingInt(Incident::getIncidentNumber));
+        return found;
+    }
+
+    // Copies of the incidents whose timestamp is in [fromEpochSecond, toEpochSecond), oldest
+    // first. A binary search finds the first, so it costs the rows in the range.
+    public synchronized List<Incident> findBetween(long fromEpochSecond, long toEpochSecond)
+    {
+        orderNewRows();
+        List<Incident> found = new ArrayList<>();
+        for (int i = firstOrderedFrom(fromEpochSecond); i < timeOrderSize; i++)
+        {
+            int position = timeOrder[i];
+            Chunk chunk = chunks[position >>> CHUNK_SHIFT];
+            int row = position & (CHUNK_SIZE - 1);
+            if (chunk.timestamps[row] >= toEpochSecond)
+            {
+                break;
+            }
+            if ((chunk.flags[row] & REMOVED) == 0)
+            {
+                found.add(incidentAt(position));
+            }
+        }
+        return found;
+    }
+
+    // Copies of the incidents with the latest timestamps, newest first
+    public synchronized List<Incident> latest(int count)
+    {
+        orderNewRows();
+        List<Incident> found = new ArrayList<>(Math.min(count, size()));
+        for (int i = timeOrderSize - 1; i >= 0 && found.size() < count; i--)
+        {
+            int position = timeOrder[i];
+            if ((chunks[position >>> CHUNK_SHIFT].flags[position & (CHUNK_SIZE - 1)] & REMOVED) == 0)
+            {
+                found.add(incidentAt(position));
+            }
+        }
+        return found;
+    }
+
+    // Count incidents per bucket of bucketSize seconds in [fromEpochSecond, toEpochSecond),
+    // as TimeIndex.countByBucket does, adding to counts; reads only the timestamp column
+    public synchronized void countByBucket(long fromEpochSecond, long toEpochSecond, long bucketSize, int[] counts)
+    {
+        orderNewRows();
+        for (int i = firstOrderedFrom(fromEpochSecond); i < timeOrderSize; i++)
+        {
+            int position = timeOrder[i];
+            Chunk chunk = chunks[position >>> CHUNK_SHIFT];
+            int row = position & (CHUNK_SIZE - 1);
+            if (chunk.timestamps[row] >= toEpochSecond)
+            {
+                break;
+            }
+            if ((chunk.flags[row] & REMOVED) == 0)
+            {
+                counts[(int) ((chunk.timestamps[row] - fromEpochSecond) / bucketSize)]++;
+            }
+        }
+    }
+
+    // Hand a copy of every stored incident to an action, in the order they were stored
+    public synchronized void forEach(Consumer<Incident> action)
+    {
+        for (int position = 0; position < rowCount; position++)
+        {
+            if ((chunks[position >>> CHUNK_SHIFT].flags[position & (CHUNK_SIZE - 1)] & REMOVED) == 0)
+            {
+                action.accept(incidentAt(position));
+            }
+        }
+    }
+
+    // Heap bytes held by the columns, the indexes, the name dictionary and the resources
+    public synchronized long heapBytes()
+    {
+        long bytes = chunkCount() * Chunk.bytes() + (long) chunks.length * Integer.BYTES;
+        bytes += (long) positions.capacity() * Integer.BYTES * 2;
+        bytes += queryIndexBytes();
+        bytes += (long) resourcePool.length * Integer.BYTES;
+        return bytes + dictionaryBytes();
+    }
+
+    // Bytes of text kept outside the heap
+    public synchronized long offHeapBytes()
+    {
+        return text.reservedBytes();
+    }
+
+    // Where the memory goes, one line per part
+    public synchronized String memoryReport()
+    {
+        long rows = Math.max(1, rowCount);
+        long columns = chunkCount() * Chunk.bytes();
+        long index = (long) positions.capacity() * Integer.BYTES * 2;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("incidents: %d (%d rows written)%n", size(), rowCount));
+        report.append(String.format("columns: %d MB in %d chunks of %d rows, %d bytes per row%n",
+                columns >> 20, chunkCount(), CHUNK_SIZE, Chunk.bytes() / CHUNK_SIZE));
+        report.append(String.format("number index: %d MB, %.1f bytes per row%n", index >> 20, (double) index / rows));
+        report.append(String.format("phone and time indexes: %d MB, %.1f bytes per row%n", queryIndexBytes() >> 20,
+                (double) queryIndexBytes() / rows));
+        report.append(String.format("reporter names: %d distinct, about %d KB%n", names.size(), dictionaryBytes() >> 10));
+        report.append(String.format("resources: %d distinct, %d KB of assignments%n", resources.size(),
+                ((long) resourcePool.length * Integer.BYTES) >> 10));
+        report.append(String.format("text off heap: %d MB used of %d MB reserved, %.1f bytes per row%n",
+                text.usedBytes() >> 20, text.reservedBytes() >> 20, (double) text.usedBytes() / rows));
+        report.append(String.format("heap in total: %d MB, %.1f bytes per row", heapBytes() >> 20, (double) heapBytes() / rows));
+        return report.toString();
+    }
+
+    private Incident incidentAt(int position)
+    {
+        Chunk chunk = chunks[position >>> CHUNK_SHIFT];
+        int row = position & (CHUNK_SIZE - 1);
+        int flags = chunk.flags[row] & 0xFF;
+        long address = chunk.texts[row];
+
+        String date;
+        String time;
+        if ((flags & DATE_TIME_TEXT) != 0)
+        {
+            date = text.get(address, DATE);
+            time = text.get(address, TIME);
+        }
+        else
+        {
+            LocalDateTime dateTime = LocalDateTime.ofEpochSecond(chunk.timestamps[row], 0, ZoneOffset.UTC);
+            date = twoDigits(dateTime.getDayOfMonth()) + "/" + twoDigits(dateTime.getMonthValue()) + "/"
+                    + fourDigits(dateTime.getYear());
+            time = twoDigits(dateTime.getHour()) + ":" + twoDigits(dateTime.getMinute());
+        }
+        GPSLocation location;
+        if ((flags & LOCATION_TEXT) != 0)
+        {
+            String locationText = text.get(address, LOCATION);
+            location = locationText == null ? null : new GPSLocation(locationText);
+        }
+        else
+        {
+            location = new GPSLocation(chunk.latitudes[row], chunk.longitudes[row]);
+        }
+        String phone = (flags & PHONE_TEXT) != 0 ? text.get(address, PHONE)
+                : Long.toString(chunk.phones[row]).substring(1);
+
+        Incident incident = new Incident(chunk.numbers[row], names.get(chunk.names[row]), phone, date, time,
+                location, text.get(address, DETAILS));
+        incident.setOngoing((flags & ONGOING) != 0);
+        incident.setPriority(flags >>> PRIORITY_SHIFT);
+        int resourcesAt = chunk.resources[row];
+        if (resourcesAt != NO_RESOURCES)
+        {
+            List<Resource> assigned = new ArrayList<>(resourcePool[resourcesAt]);
+            for (int i = 1; i <= resourcePool[resourcesAt]; i++)
+            {
+                assigned.add(resources.get(resourcePool[resourcesAt + i]));
+            }
+            incident.addSavedResources(assigned);
+        }
+        incident.markSaved();
+        return incident;
+    }
+
+    private void markRemoved(int position)
+    {
+        chunks[position >>> CHUNK_SHIFT].flags[position & (CHUNK_SIZE - 1)] |= REMOVED;
+        removedCount++;
+    }
+
+    private void compactIfMostlyRemoved()
+    {
+        if (removedCount >= MIN_COMPACTED_ROWS && removedCount > rowCount / 2)
+        {
+            compact();
+        }
+    }
+
+    // Copy the live rows, in the order they were written, into fresh chunks, text and
+    // resource pool, and rebuild the indexes over them. Costs about the live rows, and
+    // runs once at least as many rows have been flagged since the last time.
+    private void compact()
+    {
+        orderNewRows();
+        Chunk[] oldChunks = chunks;
+        int oldRowCount = rowCount;
+        OffHeapStrings oldText = text;
+        int[] oldPool = resourcePool;
+        int[] newPositions = new int[oldRowCount];
+
+        chunks = new Chunk[16];
+        rowCount = 0;
+        removedCount = 0;
+        text = new OffHeapStrings();
+        resourcePool = new int[Math.max(1024, resourcePoolSize)];
+        resourcePoolSize = 0;
+        positions.clear();
+        phoneKeys = new long[16];
+        phoneRows = new int[16];
+        phoneCount = 0;
+        for (int position = 0; position < oldRowCount; position++)
+        {
+            Chunk chunk = oldChunks[position >>> CHUNK_SHIFT];
+            int row = position & (CHUNK_SIZE - 1);
+            if ((chunk.flags[row] & REMOVED) != 0)
+            {
+                newPositions[position] = NO_ROW;
+                continue;
+            }
+            int resourcesAt = chunk.resources[row];
+            if (resourcesAt != NO_RESOURCES)
+            {
+                resourcesAt = copyResources(oldPool, resourcesAt);
+            }
+            int moved = appendRow(chunk.numbers[row], chunk.timestamps[row], chunk.latitudes[row],
+                    chunk.longitudes[row], chunk.flags[row], chunk.names[row], chunk.phones[row],
+                    text.copy(oldText, chunk.texts[row], PHONE + 1), resourcesAt);
+            positions.put(chunk.numbers[row], moved);
+            newPositions[position] = moved;
+        }
+
+        // The time order keeps its order with the flagged rows left out
+        int kept = 0;
+        for (int i = 0; i < timeOrderSize; i++)
+        {
+            int moved = newPositions[timeOrder[i]];
+            if (moved != NO_ROW)
+            {
+                timeOrder[kept++] = moved;
+            }
+        }
+        timeOrderSize = kept;
+        orderedRows = rowCount;
+    }
+
+    // Copy one row's resources from an old pool, returning where they start in the current one
+    private int copyResources(int[] oldPool, int at)
+    {
+        int length = oldPool[at] + 1;
+        if (resourcePoolSize + length > resourcePool.length)
+        {
+            resourcePool = Arrays.copyOf(resourcePool, Math.max(resourcePool.length * 2, resourcePoolSize + length));
+        }
+        System.arraycopy(oldPool, at, resourcePool, resourcePoolSize, length);
+        int start = resourcePoolSize;
+        resourcePoolSize += length;
+        return start;
+    }
+
+    // Make a row the last of its phone key's chain, returning the row it follows or NO_ROW
+    private int linkPhone(long key, int position)
+    {
+        int slot = findPhone(key);
+        if (slot >= 0)
+        {
+            int before = phoneRows[slot];
+            phoneRows[slot] = position;
+            return before;
+        }
+        if (phoneCount + 1 >= phoneKeys.length * 3 / 5)
+        {
+            rehashPhones(phoneKeys.length << 1);
+        }
+        int mask = phoneKeys.length - 1;
+        slot = PhoneIndex.mix(key) & mask;
+        while (phoneKeys[slot] != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+        phoneKeys[slot] = key;
+        phoneRows[slot] = position;
+        phoneCount++;
+        return NO_ROW;
+    }
+
+    // The slot holding a phone key, or -1
+    private int findPhone(long key)
+    {
+        int mask = phoneKeys.length - 1;
+        for (int slot = PhoneIndex.mix(key) & mask; phoneKeys[slot] != 0; slot = (slot + 1) & mask)
+        {
+            if (phoneKeys[slot] == key)
+            {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void rehashPhones(int capacity)
+    {
+        long[] oldKeys = phoneKeys;
+        int[] oldRows = phoneRows;
+        phoneKeys = new long[capacity];
+        phoneRows = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != 0)
+            {
+                int slot = PhoneIndex.mix(oldKeys[i]) & mask;
+                while (phoneKeys[slot] != 0)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                phoneKeys[slot] = oldKeys[i];
+                phoneRows[slot] = oldRows[i];
+            }
+        }
+    }
+
+    // Bring the rows written since the last query into the time order. Rows usually come
+    // in time order and go straight onto the end; otherwise they are sorted and merged in
+    // from the top, so only the ordered rows newer than the oldest of them move.
+    private void orderNewRows()
+    {
+        if (orderedRows == rowCount)
+        {
+            return;
+        }
+        int[] added = new int[rowCount - orderedRows];
+        long[] addedTimes = new long[added.length];
+        int count = 0;
+        boolean inOrder = true;
+        long last = timeOrderSize == 0 ? Long.MIN_VALUE : timestampAt(timeOrder[timeOrderSize - 1]);
+        for (int position = orderedRows; position < rowCount; position++)
+        {
+            long timestamp = timestampAt(position);
+            if (timestamp == Incident.NO_TIMESTAMP)
+            {
+                continue;
+            }
+            inOrder &= timestamp >= last;
+            last = timestamp;
+            added[count] = position;
+            addedTimes[count++] = timestamp;
+        }
+        orderedRows = rowCount;
+        int total = timeOrderSize + count;
+        if (total > timeOrder.length)
+        {
+            timeOrder = Arrays.copyOf(timeOrder, Math.max(total, timeOrder.length * 2));
+        }
+        if (inOrder)
+        {
+            System.arraycopy(added, 0, timeOrder, timeOrderSize, count);
+            timeOrderSize = total;
+            return;
+        }
+        sortByTime(added, addedTimes, count);
+        int i = timeOrderSize - 1;
+        int k = total - 1;
+        for (int j = count - 1; j >= 0; j--)
+        {
+            while (i >= 0 && timestampAt(timeOrder[i]) > addedTimes[j])
+            {
+                timeOrder[k--] = timeOrder[i--];
+            }
+            timeOrder[k--] = added[j];
+        }
+        timeOrderSize = total;
+    }
+
+    // Stable merge sort of rows by their timestamps, so rows with the same one stay in row order
+    private static void sortByTime(int[] rows, long[] times, int count)
+    {
+        int[] rowsTo = new int[count];
+        long[] timesTo = new long[count];
+        for (int width = 1; width < count; width *= 2)
+        {
+            for (int from = 0; from < count; from += 2 * width)
+            {
+                int middle = Math.min(from + width, count);
+                int to = Math.min(from + 2 * width, count);
+                int a = from;
+                int b = middle;
+                for (int k = from; k < to; k++)
+                {
+                    if (b >= to || (a < middle && times[a] <= times[b]))
+                    {
+                        rowsTo[k] = rows[a];
+                        timesTo[k] = times[a++];
+                    }
+                    else
+                    {
+                        rowsTo[k] = rows[b];
+                        timesTo[k] = times[b++];
+                    }
+                }
+            }
+            System.arraycopy(rowsTo, 0, rows, 0, count);
+            System.arraycopy(timesTo, 0, times, 0, count);
+        }
+    }
+
+    // First place in timeOrder whose row's timestamp is >= the given one
+    private int firstOrderedFrom(long epochSecond)
+    {
+        int low = 0;
+        int high = timeOrderSize;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (timestampAt(timeOrder[middle]) < epochSecond)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long timestampAt(int position)
+    {
+        return chunks[position >>> CHUNK_SHIFT].timestamps[position & (CHUNK_SIZE - 1)];
+    }
+
+    // Heap bytes of the phone table and the time order
+    private long queryIndexBytes()
+    {
+        return (long) phoneKeys.length * (Long.BYTES + Integer.BYTES) + (long) timeOrder.length * Integer.BYTES;
+    }
+
+    private int nameId(String name)
+    {
+        Integer id = nameIds.get(name);
+        if (id == null)
+        {
+            id = names.size();
+            nameIds.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    // Write a row's resources to the pool, returning where they start
+    private int addResources(List<Resource> assigned)
+    {
+        if (assigned.isEmpty())
+        {
+            return NO_RESOURCES;
+        }
+        if (resourcePoolSize + assigned.size() + 1 > resourcePool.length)
+        {
+            resourcePool = Arrays.copyOf(resourcePool, Math.max(resourcePool.length * 2, resourcePoolSize + assigned.size() + 1));
+        }
+        int start = resourcePoolSize;
+        resourcePool[resourcePoolSize++] = assigned.size();
+        for (Resource resource : assigned)
+        {
+            Integer id = resourceIds.get(resource);
+            if (id == null)
+            {
+                id = resources.size();
+                resourceIds.put(resource, id);
+                resources.add(resource);
+            }
+            resourcePool[resourcePoolSize++] = id;
+        }
+        return start;
+    }
+
+    private long chunkCount()
+    {
+        return (rowCount + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+    }
+
+    // Rough size of the dictionary: each name's String, its bytes and its map entry
+    private long dictionaryBytes()
+    {
+        long bytes = 0;
+        for (String name : names)
+        {
+            bytes += 24 + 16 + name.length() + 32 + 16;
+        }
+        return bytes;
+    }
+
+    private static String twoDigits(int value)
+    {
+        return value < 10 ? "0" + value : Integer.toString(value);
+    }
+
+    private static String fourDigits(int value)
+    {
+        String digits = Integer.toString(value);
+        return "0000".substring(Math.min(4, digits.length())) + digits;
+    }
+}
@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Streaming CSV reader that scans raw bytes in large blocks and hands each row to a callback.
+// Unquoted fields are trimmed like String.trim(); quoted fields keep their content,
+// including commas, newlines and "" escaped quotes. Blank lines are skipped.
+public class CsvReader
+{
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    private static final int AFTER_QUOTED = 4;
+
+    // Receives each parsed row; the row object is reused, so copy out what you keep
+    public interface RowHandler
+    {
+        void handle(CsvRow row);
+    }
+
+    private final CsvRow row = new CsvRow();
+    private final RowHandler handler;
+    // Given the first row instead of the handler, or null if there is no header
+    private RowHandler headerHandler;
+    private long rowCount;
+
+    private int state = FIELD_START;
+    private boolean fieldPending;
+    private int trimmedEnd;
+
+    private CsvReader(RowHandler headerHandler, RowHandler handler)
+    {
+        this.headerHandler = headerHandler;
+        this.handler = handler;
+    }
+
+    // Read a whole CSV file, returning the number of rows handed to the handler
+    public static long read(String filename, boolean hasHeader, RowHandler handler) throws IOException
+    {
+        return read(filename, hasHeader ? header -> { } : null, handler);
+    }
+
+    // Read a whole CSV file whose first row is a header, handing that row to headerHandler
+    public static long read(String filename, RowHandler headerHandler, RowHandler handler) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            return read(channel, headerHandler, handler);
+        }
+    }
+
+    public static long read(ReadableByteChannel channel, boolean hasHeader, RowHandler handler) throws IOException
+    {
+        return read(channel, hasHeader ? header -> { } : null, handler);
+    }
+
+    public static long read(ReadableByteChannel channel, RowHandler headerHandler, RowHandler handler) throws IOException
+    {
+        CsvReader reader = new CsvReader(headerHandler, handler);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (channel.read(buffer) != -1)
+        {
+            reader.parse(buffer.array(), buffer.position());
+            buffer.clear();
+        }
+        reader.parse(buffer.array(), buffer.position());
+        reader.finish();
+        return reader.rowCount;
+    }
+
+    // Read CSV text already in memory, such as a single row
+    public static long parse(String text, boolean hasHeader, RowHandler handler)
+    {
+        CsvReader reader = new CsvReader(hasHeader ? header -> { } : null, handler);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        reader.parse(bytes, bytes.length);
+        reader.finish();
+        return reader.rowCount;
+    }
+
+    private void parse(byte[] bytes, int length)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            byte b = bytes[i];
+            switch (state)
+            {
+                case FIELD_START:
+                    if (b == ',')
+                    {
+                        row.beginField();
+                        row.endField(row.length());
+                        fieldPending = true;
+                    }
+                    else if (b == '\n')
+                    {
+                        endRow();
+                    }
+                    else if (b == '"')
+                    {
+                        row.beginField();
+                        state = QUOTED;
+                    }
+                    else if (b > ' ')
+                    {
+                        row.beginField();
+                        row.append(b);
+                        trimmedEnd = row.length();
+                        state = UNQUOTED;
+                    }
+                    break;
+                case UNQUOTED:
+                    if (b == ',')
+                    {
+                        row.endField(trimmedEnd);
+                        fieldPending = true;
+                        state = FIELD_START;
+                    }
+                    else if (b == '\n')
+                    {
+                        row.endField(trimmedEnd);
+                        endRow();
+                    }
+                    else
+                    {
+                        row.append(b);
+                        if (b > ' ')
+                        {
+                            trimmedEnd = row.length();
+                        }
+                    }
+                    break;
+                case QUOTED:
+                    if (b == '"')
+                    {
+                        state = QUOTE_IN_QUOTED;
+                    }
+                    else
+                    {
+                        row.append(b);
+                    }
+                    break;
+                case QUOTE_IN_QUOTED:
+                    if (b == '"')
+                    {
+                        // "" inside a quoted field is a literal quote
+                        row.append(b);
+                        state = QUOTED;
+                        break;
+                    }
+                    row.endField(row.length());
+                    state = AFTER_QUOTED;
+                    afterQuoted(b);
+                    break;
+                default:
+                    afterQuoted(b);
+                    break;
+            }
+        }
+    }
+
+    // Anything between a closing quote and the next separator is ignored
+    private void afterQuoted(byte b)
+    {
+        if (b == ',')
+        {
+            fieldPending = true;
+            state = FIELD_START;
+        }
+        else if (b == '\n')
+        {
+            endRow();
+        }
+    }
+
+    private void finish()
+    {
+        switch (state)
+        {
+            case UNQUOTED:
+                row.endField(trimmedEnd);
+                break;
+            case QUOTED:
+            case QUOTE_IN_QUOTED:
+                row.endField(row.length());
+                break;
+            default:
+                break;
+        }
+        endRow();
+    }
+
+    private void endRow()
+    {
+        if (state == FIELD_START && fieldPending)
+        {
+            // A trailing comma still ends with an empty field
+            row.beginField();
+            row.endField(row.length());
+        }
+        if (row.size() > 0)
+        {
+            if (headerHandler != null)
+            {
+                headerHandler.handle(row);
+                headerHandler = null;
+            }
+            else
+            {
+                handler.handle(row);
+                rowCount++;
+            }
+        }
+        row.clear();
+        fieldPending = false;
+        state = FIELD_START;
+    }
+}
@@ -0,0 +1,179 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// One parsed CSV record, reused by CsvReader for every row it hands out.
+// Fields are kept as byte ranges so numbers and booleans parse without creating Strings.
+public class CsvRow
+{
+    private byte[] data = new byte[256];
+    private int length;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+    private int fieldStart;
+    private final FieldChars chars = new FieldChars();
+
+    // Number of fields in this row
+    public int size()
+    {
+        return count;
+    }
+
+    public String getString(int field)
+    {
+        checkField(field);
+        return new String(data, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+
+    // The field as characters without copying it, for checks such as InputValidator's.
+    // Bytes map one-to-one to chars, so only ASCII text reads as itself. The same view is
+    // handed out by every call and is valid until the next call or the next row.
+    public CharSequence getChars(int field)
+    {
+        checkField(field);
+        chars.start = starts[field];
+        chars.end = ends[field];
+        return chars;
+    }
+
+    public int getInt(int field)
+    {
+        checkField(field);
+        int position = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (position < end && (data[position] == '-' || data[position] == '+'))
+        {
+            negative = data[position] == '-';
+            position++;
+        }
+        if (position == end)
+        {
+            throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+        }
+        long value = 0;
+        for (; position < end; position++)
+        {
+            int digit = data[position] - '0';
+            if (digit < 0 || digit > 9)
+            {
+                throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L)
+            {
+                throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+        {
+            throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+        }
+        return (int) value;
+    }
+
+    // Same rule as Boolean.parseBoolean: true only for "true" in any case
+    public boolean getBoolean(int field)
+    {
+        checkField(field);
+        int start = starts[field];
+        if (ends[field] - start != 4)
+        {
+            return false;
+        }
+        return (data[start] | 0x20) == 't' && (data[start + 1] | 0x20) == 'r'
+                && (data[start + 2] | 0x20) == 'u' && (data[start + 3] | 0x20) == 'e';
+    }
+
+    // Copy the fields out as Strings, matching the old split-based loaders
+    public String[] toArray()
+    {
+        String[] fields = new String[count];
+        for (int i = 0; i < count; i++)
+        {
+            fields[i] = getString(i);
+        }
+        return fields;
+    }
+
+    void clear()
+    {
+        length = 0;
+        count = 0;
+    }
+
+    void beginField()
+    {
+        fieldStart = length;
+    }
+
+    void append(byte b)
+    {
+        if (length == data.length)
+        {
+            data = Arrays.copyOf(data, length * 2);
+        }
+        data[length++] = b;
+    }
+
+    int length()
+    {
+        return length;
+    }
+
+    // Close the current field, keeping bytes up to the given end offset
+    void endField(int end)
+    {
+        if (count == starts.length)
+        {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = fieldStart;
+        ends[count] = end;
+        count++;
+    }
+
+    private class FieldChars implements CharSequence
+    {
+        int start;
+        int end;
+
+        @Override
+        public int length()
+        {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index)
+        {
+            if (index < 0 || index >= end - start)
+            {
+                throw new StringIndexOutOfBoundsException(index);
+            }
+            return (char) (data[start + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to)
+        {
+            return toString().subSequence(from, to);
+        }
+
+        @Override
+        public String toString()
+        {
+            return new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private void checkField(int field)
+    {
+        if (field < 0 || field >= count)
+        {
+            throw new ArrayIndexOutOfBoundsException("Index " + field + " out of bounds for length " + count);
+        }
+    }
+}
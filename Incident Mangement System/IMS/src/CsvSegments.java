@@ -0,0 +1,170 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+// A CSV file saved as a full snapshot (incidents.csv) plus numbered segment files
+// (incidents.csv.1, incidents.csv.2, ...) that hold the rows written by later delta saves.
+// All methods lock the class, so a compaction never runs underneath a save or a load.
+public class CsvSegments
+{
+    private CsvSegments()
+    {
+    }
+
+    // Check if a snapshot has been written yet
+    public static synchronized boolean hasSnapshot(String filename)
+    {
+        return new File(filename).isFile();
+    }
+
+    // Write a full snapshot and drop the segments it supersedes
+    public static synchronized void writeSnapshot(String filename, String header, Iterable<String> rows)
+            throws IOException
+    {
+        File temp = new File(filename + ".tmp");
+        writeFile(temp, header, rows);
+        Files.move(temp.toPath(), new File(filename).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        for (File segment : segments(filename))
+        {
+            Files.delete(segment.toPath());
+        }
+    }
+
+    // Write rows to a new segment after the existing ones, returning the number of segments
+    public static synchronized int writeSegment(String filename, String header, Iterable<String> rows)
+            throws IOException
+    {
+        List<File> segments = segments(filename);
+        int next = segments.isEmpty() ? 1 : segmentNumber(segments.get(segments.size() - 1)) + 1;
+        writeFile(new File(filename + "." + next), header, rows);
+        return segments.size() + 1;
+    }
+
+    // Stream the snapshot and then every segment, oldest first
+    public static synchronized void read(String filename, CsvReader.RowHandler handler) throws IOException
+    {
+        read(filename, header -> { }, handler);
+    }
+
+    // As above, handing each file's header row to headerHandler before that file's rows
+    public static synchronized void read(String filename, CsvReader.RowHandler headerHandler,
+                                         CsvReader.RowHandler handler) throws IOException
+    {
+        CsvReader.read(filename, headerHandler, handler);
+        for (File segment : segments(filename))
+        {
+            CsvReader.read(segment.getPath(), headerHandler, handler);
+        }
+    }
+
+    // Merge the segments into a fresh snapshot. With a key, the newest row for each key
+    // replaces the snapshot row in place and new keys are appended; without one, rows are
+    // simply concatenated. Rows are re-rendered through the given function.
+    public static synchronized void compact(String filename, String header, ToIntFunction<CsvRow> key,
+                                            Function<CsvRow, String> render) throws IOException
+    {
+        compact(filename, header, oldHeader -> { }, key, render);
+    }
+
+    // As above, handing each file's header row to headerHandler before key and render see its rows
+    public static synchronized void compact(String filename, String header, CsvReader.RowHandler headerHandler,
+                                            ToIntFunction<CsvRow> key, Function<CsvRow, String> render)
+            throws IOException
+    {
+        List<File> segments = segments(filename);
+        if (segments.isEmpty())
+        {
+            return;
+        }
+
+        File temp = new File(filename + ".tmp");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(temp.toPath())))
+        {
+            writer.println(header);
+            if (key == null)
+            {
+                CsvReader.read(filename, headerHandler, row -> writer.println(render.apply(row)));
+                for (File segment : segments)
+                {
+                    CsvReader.read(segment.getPath(), headerHandler, row -> writer.println(render.apply(row)));
+                }
+            }
+            else
+            {
+                // Only the changed rows are held in memory; the snapshot is streamed past them
+                Map<Integer, String> latest = new LinkedHashMap<>();
+                for (File segment : segments)
+                {
+                    CsvReader.read(segment.getPath(), headerHandler,
+                            row -> latest.put(key.applyAsInt(row), render.apply(row)));
+                }
+                CsvReader.read(filename, headerHandler, row -> {
+                    String changed = latest.remove(key.applyAsInt(row));
+                    writer.println(changed != null ? changed : render.apply(row));
+                });
+                for (String row : latest.values())
+                {
+                    writer.println(row);
+                }
+            }
+            if (writer.checkError())
+            {
+                throw new IOException("Failed to write " + temp);
+            }
+        }
+        Files.move(temp.toPath(), new File(filename).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        for (File segment : segments)
+        {
+            Files.delete(segment.toPath());
+        }
+    }
+
+    // Segment files of a snapshot, oldest first
+    private static List<File> segments(String filename)
+    {
+        File snapshot = new File(filename).getAbsoluteFile();
+        String prefix = snapshot.getName() + ".";
+        File[] candidates = snapshot.getParentFile().listFiles(
+                (dir, name) -> name.startsWith(prefix) && name.substring(prefix.length()).matches("\\d+"));
+        List<File> segments = new ArrayList<>();
+        if (candidates != null)
+        {
+            for (File candidate : candidates)
+            {
+                segments.add(candidate);
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+        return segments;
+    }
+
+    private static int segmentNumber(File segment)
+    {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static void writeFile(File file, String header, Iterable<String> rows) throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath())))
+        {
+            writer.println(header);
+            for (String row : rows)
+            {
+                writer.println(row);
+            }
+            if (writer.checkError())
+            {
+                throw new IOException("Failed to write " + file);
+            }
+        }
+    }
+}
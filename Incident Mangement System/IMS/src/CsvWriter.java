@@ -0,0 +1,72 @@
+// Builds CSV rows in the RFC 4180 dialect CsvReader reads: fields are separated by bare
+// commas, and a field is quoted, with its quotes doubled, when it holds a comma, quote or
+// line break, or starts or ends with whitespace that CsvReader would otherwise trim.
+// Fields that need no quoting, which is nearly all of them, are checked in one scan and
+// copied whole.
+public final class CsvWriter
+{
+    public static final char SEPARATOR = ',';
+
+    private CsvWriter()
+    {
+    }
+
+    // Join the fields into one row
+    public static String row(String... fields)
+    {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++)
+        {
+            if (i > 0)
+            {
+                line.append(SEPARATOR);
+            }
+            appendField(line, fields[i]);
+        }
+        return line.toString();
+    }
+
+    // Append one field, quoted if reading it back would otherwise change it; null is written empty
+    public static StringBuilder appendField(StringBuilder line, CharSequence field)
+    {
+        if (field == null)
+        {
+            return line;
+        }
+        return needsQuotes(field) ? appendQuoted(line, field) : line.append(field);
+    }
+
+    private static boolean needsQuotes(CharSequence field)
+    {
+        int length = field.length();
+        if (length > 0 && (field.charAt(0) <= ' ' || field.charAt(length - 1) <= ' '))
+        {
+            return true;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r')
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Copy the runs between quotes whole, doubling each quote
+    private static StringBuilder appendQuoted(StringBuilder line, CharSequence field)
+    {
+        line.append('"');
+        int start = 0;
+        for (int i = 0; i < field.length(); i++)
+        {
+            if (field.charAt(i) == '"')
+            {
+                line.append(field, start, i + 1).append('"');
+                start = i + 1;
+            }
+        }
+        return line.append(field, start, field.length()).append('"');
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Where each resource is and which are nearest to an incident. Positions are kept in a
+// spatial index, so a recommendation only looks at the units around the incident, and
+// units without free stock are passed over. Safe for many threads; every method holds
+// the recommender's lock.
+public class DispatchRecommender
+{
+    private final AllocationEngine allocations;
+    private final SpatialIndex<Resource> positions = new SpatialIndex<>();
+    private final Map<Resource, GPSLocation> locations = new IdentityHashMap<>();
+
+    public DispatchRecommender(AllocationEngine allocations)
+    {
+        this.allocations = allocations;
+    }
+
+    // Place a resource at a position, or forget its position if the location has no coordinates
+    public synchronized void move(Resource resource, GPSLocation location)
+    {
+        if (location == null || !location.hasCoordinates())
+        {
+            positions.remove(resource);
+            locations.remove(resource);
+            return;
+        }
+        positions.put(resource, location.getLatitude(), location.getLongitude());
+        locations.put(resource, location);
+    }
+
+    // The last position given for a resource, or null
+    public synchronized GPSLocation locationOf(Resource resource)
+    {
+        return locations.get(resource);
+    }
+
+    public synchronized int size()
+    {
+        return positions.size();
+    }
+
+    // Up to count positioned resources with free units, nearest to the incident first;
+    // empty if the incident's location has no coordinates
+    public synchronized List<Resource> recommend(Incident incident, int count)
+    {
+        GPSLocation location = incident.getGpsLocation();
+        if (location == null || !location.hasCoordinates())
+        {
+            return List.of();
+        }
+        return positions.nearest(location.getLatitude(), location.getLongitude(), count, this::hasFreeUnits);
+    }
+
+    // Resources without a stock are not limited
+    private boolean hasFreeUnits(Resource resource)
+    {
+        UnitStock stock = allocations.stockFor(resource.getResourceNumber());
+        return stock == null || stock.available() > 0;
+    }
+}
@@ -1,10 +1,82 @@
 public class GPSLocation 
 {
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
     private String locationInfo;
+    // Parsed from "latitude, longitude"; NaN when the text is not in that shape
+    private double latitude;
+    private double longitude;
 
     public GPSLocation(String locationInfo) 
     {
         this.locationInfo = locationInfo;
+        this.latitude = Double.NaN;
+        this.longitude = Double.NaN;
+        parseCoordinates();
+    }
+
+    public GPSLocation(double latitude, double longitude)
+    {
+        this(latitude + ", " + longitude);
+    }
+
+    public double getLatitude()
+    {
+        return latitude;
+    }
+
+    public double getLongitude()
+    {
+        return longitude;
+    }
+
+    // Check if the location holds valid coordinates
+    public boolean hasCoordinates()
+    {
+        return !Double.isNaN(latitude);
+    }
+
+    // Great-circle (haversine) distance in kilometres
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2)
+    {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public double distanceKm(GPSLocation other)
+    {
+        return distanceKm(latitude, longitude, other.latitude, other.longitude);
+    }
+
+    private void parseCoordinates()
+    {
+        if (locationInfo == null)
+        {
+            return;
+        }
+        int comma = locationInfo.indexOf(',');
+        if (comma < 0)
+        {
+            return;
+        }
+        try
+        {
+            double lat = Double.parseDouble(locationInfo.substring(0, comma).trim());
+            double lon = Double.parseDouble(locationInfo.substring(comma + 1).trim());
+            if (Math.abs(lat) <= 90 && Math.abs(lon) <= 180)
+            {
+                latitude = lat;
+                longitude = lon;
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            // Not coordinates, e.g. a what3words address; keep the text only
+        }
     }
 
     @Override
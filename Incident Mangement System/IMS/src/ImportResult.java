@@ -0,0 +1,40 @@
+// What a bulk import of an incidents CSV file did with its rows
+public class ImportResult
+{
+    private final int rows;
+    private final int imported;
+    private final int rejected;
+    private final int duplicates;
+
+    public ImportResult(int rows, int imported, int rejected, int duplicates)
+    {
+        this.rows = rows;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.duplicates = duplicates;
+    }
+
+    // Rows read, not counting the header
+    public int getRows()
+    {
+        return rows;
+    }
+
+    // Incidents stored, one for each distinct valid incident number
+    public int getImported()
+    {
+        return imported;
+    }
+
+    // Rows that failed validation
+    public int getRejected()
+    {
+        return rejected;
+    }
+
+    // Valid rows dropped because a later row had the same incident number
+    public int getDuplicates()
+    {
+        return duplicates;
+    }
+}
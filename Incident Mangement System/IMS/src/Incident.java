@@ -1,18 +1,59 @@
 import java.io.FileWriter;
 import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
-public class Incident {
-    private int incidentNumber;
-    private String reporterName;
-    private String reporterPhoneNumber;
-    private String date;
-    private String time;
-    private GPSLocation gpsLocation;
-    private String incidentDetails;
-    private boolean ongoing;
-    private List<Resource> resources;
+public final class Incident {
+    // Timestamp of an incident whose date or time cannot be read
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final long SECONDS_PER_DAY = 86_400;
+    // Priority 1 is the most urgent
+    public static final int HIGHEST_PRIORITY = 1;
+    public static final int LOWEST_PRIORITY = 5;
+    public static final int DEFAULT_PRIORITY = 3;
+
+    // What a change passed to the listener altered
+    public enum Field {
+        INCIDENT_NUMBER,
+        REPORTER_NAME,
+        REPORTER_PHONE_NUMBER,
+        DATE_TIME,      // the date or the time, and so the timestamp
+        GPS_LOCATION,
+        INCIDENT_DETAILS,
+        ONGOING,
+        PRIORITY,
+        RESOURCES
+    }
+
+    // Fields are volatile so other threads see changes; every change happens under the
+    // incident's own lock, which makes each setter, and updates run through
+    // IncidentManagementSystem.updateIncident, atomic
+    private volatile int incidentNumber;
+    private volatile String reporterName;
+    private volatile String reporterPhoneNumber;
+    private volatile String date;
+    private volatile String time;
+    // date and time as seconds since the epoch, reading the wall clock as UTC
+    private volatile long timestamp;
+    private volatile GPSLocation gpsLocation;
+    private volatile String incidentDetails;
+    private volatile boolean ongoing;
+    private volatile int priority;
+    // Replaced whole, never changed in place, so readers need no lock; most incidents never
+    // get a resource and share the one empty list instead of each holding their own
+    private volatile List<Resource> resources = List.of();
+    // Count of changes, and the count that was last saved; differing means dirty
+    private volatile long version;
+    private long savedVersion;
+    private int savedResourceCount;
+    // Told about every change so indexes over this incident stay current
+    private volatile IncidentListener listener;
 
     public Incident(int incidentNumber, String reporterName, String reporterPhoneNumber, String date, String time,
                     GPSLocation gpsLocation, String incidentDetails) {
@@ -21,10 +62,11 @@ public class Incident {
         setReporterPhoneNumber(reporterPhoneNumber);
         this.date = date;
         this.time = time;
+        this.timestamp = toTimestamp(date, time);
         this.gpsLocation = gpsLocation;
         this.incidentDetails = incidentDetails;
         this.ongoing = true;
-        this.resources = new ArrayList<>();
+        this.priority = DEFAULT_PRIORITY;
     }
 
     //constructor to initialize from CSV data
@@ -34,72 +76,127 @@ public class Incident {
         setReporterPhoneNumber(csvData[2].trim());
         this.date = csvData[3].trim();
         this.time = csvData[4].trim();
+        this.timestamp = toTimestamp(this.date, this.time);
         this.gpsLocation = new GPSLocation(csvData[5].trim());
         this.incidentDetails = csvData[6].trim();
         this.ongoing = Boolean.parseBoolean(csvData[7].trim());
-        this.resources = new ArrayList<>();
+        // Files saved before priorities were recorded have no priority column
+        this.priority = csvData.length > 8 ? toPriority(csvData[8].trim()) : DEFAULT_PRIORITY;
+    }
+
+    //constructor to initialize from a row streamed by CsvReader, in the order toCSVString writes
+    public Incident(CsvRow row) {
+        this(row, IncidentColumns.STANDARD);
+    }
+
+    //constructor to initialize from a row of a file whose header gave the columns
+    public Incident(CsvRow row, IncidentColumns columns) {
+        this.incidentNumber = row.getInt(columns.number);
+        setReporterName(row.getString(columns.reporterName));
+        setReporterPhoneNumber(row.getString(columns.reporterPhoneNumber));
+        this.date = row.getString(columns.date);
+        this.time = row.getString(columns.time);
+        this.timestamp = toTimestamp(this.date, this.time);
+        this.gpsLocation = new GPSLocation(columns.getLocation(row));
+        this.incidentDetails = columns.getDetails(row);
+        this.ongoing = columns.isOngoing(row);
+        String priority = columns.getPriority(row);
+        this.priority = priority != null ? toPriority(priority) : DEFAULT_PRIORITY;
     }
 
     // method to write incident data to a CSV file
-    public void writeToCSV(String filename) {
+    public synchronized void writeToCSV(String filename) {
         try (FileWriter writer = new FileWriter(filename, true)) {
-            StringBuilder csvString = new StringBuilder();
-            csvString.append(incidentNumber).append(", ")
-                    .append(reporterName).append(", ")
-                    .append(reporterPhoneNumber).append(", ")
-                    .append(date).append(", ")
-                    .append(time).append(", ")
-                    .append(gpsLocation).append(", ")
-                    .append(incidentDetails).append(", ")
-                    .append(ongoing).append("\n");
-
-            writer.write(csvString.toString());
+            writer.write(toCSVString() + "\n");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    //method to parse CSV data and create an Incident instance
+    //method to parse one row written by toCSVString and create an Incident instance
     public static Incident fromCSVString(String csvString) {
-        String[] csvData = csvString.split(",");
-        return new Incident(csvData);
+        Incident[] parsed = new Incident[1];
+        CsvReader.parse(csvString, false, row -> parsed[0] = new Incident(row));
+        return parsed[0];
     }
 
 
     // Getters and setters for all attributes
     public void setReporterName(String reporterName) {
+        synchronized (this) {
+            changing(Field.REPORTER_NAME);
             this.reporterName = reporterName;
-        
+            changed(Field.REPORTER_NAME);
+        }
+        unlocked();
     }
 
     public void setReporterPhoneNumber(String reporterPhoneNumber) {
+        synchronized (this) {
+            changing(Field.REPORTER_PHONE_NUMBER);
             this.reporterPhoneNumber = reporterPhoneNumber;
+            changed(Field.REPORTER_PHONE_NUMBER);
+        }
+        unlocked();
     }
 
+    // Only for an incident not yet in a system: the store and the number-keyed indexes file
+    // a stored incident under its number, so store a copy under the new number instead
     public void setIncidentNumber(int incidentNumber) {
-        if (incidentNumber > 0) {
-            this.incidentNumber = incidentNumber;
-        } else {
-            System.out.println("Invalid incident number. Please enter a positive number.");
+        synchronized (this) {
+            if (listener != null) {
+                throw new IllegalStateException("Incident " + this.incidentNumber + " is in a system and cannot be renumbered");
+            }
+            if (incidentNumber > 0) {
+                changing(Field.INCIDENT_NUMBER);
+                this.incidentNumber = incidentNumber;
+                changed(Field.INCIDENT_NUMBER);
+            } else {
+                System.out.println("Invalid incident number. Please enter a positive number.");
+            }
         }
+        unlocked();
     }
 
     public void setDate(String date) {
-        this.date = date;
+        synchronized (this) {
+            changing(Field.DATE_TIME);
+            this.date = date;
+            this.timestamp = toTimestamp(date, time);
+            changed(Field.DATE_TIME);
+        }
+        unlocked();
     }
 
     public void setTime(String time) {
-        this.time = time;
+        synchronized (this) {
+            changing(Field.DATE_TIME);
+            this.time = time;
+            this.timestamp = toTimestamp(date, time);
+            changed(Field.DATE_TIME);
+        }
+        unlocked();
     }
 
     public void setGpsLocation(GPSLocation gpsLocation) {
-        this.gpsLocation = gpsLocation;
+        synchronized (this) {
+            changing(Field.GPS_LOCATION);
+            this.gpsLocation = gpsLocation;
+            changed(Field.GPS_LOCATION);
+        }
+        unlocked();
     }
 
     public void setIncidentDetails(String incidentDetails) {
-        this.incidentDetails = incidentDetails;
+        synchronized (this) {
+            changing(Field.INCIDENT_DETAILS);
+            this.incidentDetails = incidentDetails;
+            changed(Field.INCIDENT_DETAILS);
+        }
+        unlocked();
     }
 
+    // Read-only snapshot of the resources; later assignments do not change it
     public List<Resource> getResources() {
         return resources;
     }
@@ -116,27 +213,265 @@ public class Incident {
         return reporterPhoneNumber;
     }
 
+    public String getDate() {
+        return date;
+    }
+
+    public String getTime() {
+        return time;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // Convert "dd/mm/yyyy" and "hh:mm" to epoch seconds, or NO_TIMESTAMP if either is unreadable
+    public static long toTimestamp(String date, String time) {
+        if (date == null || time == null || date.length() != 10 || time.length() != 5
+                || date.charAt(2) != '/' || date.charAt(5) != '/' || time.charAt(2) != ':') {
+            return NO_TIMESTAMP;
+        }
+        int day = digits(date, 0, 2);
+        int month = digits(date, 3, 5);
+        int year = digits(date, 6, 10);
+        int hour = digits(time, 0, 2);
+        int minute = digits(time, 3, 5);
+        if (day < 0 || month < 0 || year < 0 || hour < 0 || minute < 0) {
+            return NO_TIMESTAMP;
+        }
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            return NO_TIMESTAMP;
+        }
+    }
+
+    // The "dd/mm/yyyy" date a timestamp from toTimestamp was read from
+    public static String toDate(long timestamp) {
+        LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(timestamp, SECONDS_PER_DAY));
+        char[] text = new char[10];
+        putDigits(text, 0, 2, date.getDayOfMonth());
+        text[2] = '/';
+        putDigits(text, 3, 5, date.getMonthValue());
+        text[5] = '/';
+        putDigits(text, 6, 10, date.getYear());
+        return new String(text);
+    }
+
+    // The "hh:mm" time a timestamp from toTimestamp was read from
+    public static String toTime(long timestamp) {
+        int minute = (int) (Math.floorMod(timestamp, SECONDS_PER_DAY) / 60);
+        char[] text = new char[5];
+        putDigits(text, 0, 2, minute / 60);
+        text[2] = ':';
+        putDigits(text, 3, 5, minute % 60);
+        return new String(text);
+    }
+
+    // Write a value as ASCII digits into text from start to end, padded with zeros
+    private static void putDigits(char[] text, int start, int end, int value) {
+        for (int i = end - 1; i >= start; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    // Parse a run of ASCII digits, or -1 if any character is not a digit
+    private static int digits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    public GPSLocation getGpsLocation() {
+        return gpsLocation;
+    }
+
+    public String getIncidentDetails() {
+        return incidentDetails;
+    }
+
+    public boolean isOngoing() {
+        return ongoing;
+    }
+
+    // Reopening a stored incident reserves the resource units it holds again, and throws
+    // IllegalStateException, changing nothing, if too few are free
+    public void setOngoing(boolean ongoing) {
+        synchronized (this) {
+            if (ongoing && !this.ongoing) {
+                reopening();
+            }
+            changing(Field.ONGOING);
+            this.ongoing = ongoing;
+            changed(Field.ONGOING);
+        }
+        unlocked();
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        synchronized (this) {
+            if (!isValidPriority(priority)) {
+                throw new IllegalArgumentException("Priority must be from " + HIGHEST_PRIORITY + " to " + LOWEST_PRIORITY);
+            }
+            changing(Field.PRIORITY);
+            this.priority = priority;
+            changed(Field.PRIORITY);
+        }
+        unlocked();
+    }
+
+    public static boolean isValidPriority(int priority) {
+        return priority >= HIGHEST_PRIORITY && priority <= LOWEST_PRIORITY;
+    }
+
+    // A priority read from a file, or the default if it is missing or out of range
+    private static int toPriority(String text) {
+        int value = text.length() == 1 ? digits(text, 0, 1) : -1;
+        return isValidPriority(value) ? value : DEFAULT_PRIORITY;
+    }
+
     public void addResource(Resource resource) {
-        resources.add(resource);
+        synchronized (this) {
+            changing(Field.RESOURCES);
+            appendResources(List.of(resource));
+            changed(Field.RESOURCES);
+        }
+        unlocked();
+    }
+
+    // Add resources read back from a saved file as one change. They count as saved, and
+    // an incident that had no unsaved changes still has none.
+    public void addSavedResources(Collection<Resource> saved) {
+        synchronized (this) {
+            boolean clean = version == savedVersion;
+            boolean resourcesClean = savedResourceCount == resources.size();
+            changing(Field.RESOURCES);
+            appendResources(saved);
+            changed(Field.RESOURCES);
+            if (resourcesClean) {
+                savedResourceCount = resources.size();
+            }
+            if (clean) {
+                savedVersion = version;
+            }
+        }
+        unlocked();
+    }
+
+    // Called with the incident's lock held
+    private void appendResources(Collection<Resource> added) {
+        List<Resource> copy = new ArrayList<>(resources.size() + added.size());
+        copy.addAll(resources);
+        copy.addAll(added);
+        resources = Collections.unmodifiableList(copy);
+    }
+
+    // Check if the incident has changed since it was last saved
+    public synchronized boolean isDirty() {
+        return version != savedVersion;
+    }
+
+    // Change count to pass to markSaved once the state read with it has been written
+    public long getVersion() {
+        return version;
+    }
+
+    void setListener(IncidentListener listener) {
+        this.listener = listener;
     }
 
-    public String toCSVString() {
-        StringBuilder csvString = new StringBuilder();
-        csvString.append(incidentNumber).append(", ")
-                .append(reporterName).append(", ")
-                .append(reporterPhoneNumber).append(", ")
-                .append(date).append(", ")
-                .append(time).append(", ")
-                .append(gpsLocation).append(", ")
-                .append(incidentDetails).append(", ")
-                .append(ongoing);
+    IncidentListener getListener() {
+        return listener;
+    }
+
+    // Called with the incident's lock held, just before a field changes
+    private void changing(Field field) {
+        IncidentListener current = listener;
+        if (current != null) {
+            current.incidentChanging(this, field);
+        }
+    }
+
+    // Called with the incident's lock held, before a closed incident is made ongoing
+    private void reopening() {
+        IncidentListener current = listener;
+        if (current != null) {
+            current.incidentReopening(this);
+        }
+    }
+
+    // Called with the incident's lock held
+    private void changed(Field field) {
+        version++;
+        IncidentListener current = listener;
+        if (current != null) {
+            current.incidentChanged(this, field);
+        }
+    }
+
+    // Called by a setter once it has let go of the incident's lock
+    private void unlocked() {
+        IncidentListener current = listener;
+        if (current != null) {
+            current.incidentUnlocked(this);
+        }
+    }
+
+    public synchronized void markSaved() {
+        savedVersion = version;
+    }
+
+    // Mark saved only if nothing changed since the given version was read
+    public synchronized void markSaved(long savedAt) {
+        if (savedAt > savedVersion) {
+            savedVersion = savedAt;
+        }
+    }
+
+    // Resources assigned since the resources were last saved
+    public synchronized List<Resource> getUnsavedResources() {
+        return List.copyOf(resources.subList(savedResourceCount, resources.size()));
+    }
+
+    // Mark the first count resources as saved
+    public synchronized void markResourcesSaved(int count) {
+        savedResourceCount = Math.max(savedResourceCount, count);
+    }
+
+    // One row in the columns of IncidentColumns.HEADER, with fields quoted where needed
+    public synchronized String toCSVString() {
+        StringBuilder csvString = new StringBuilder(128);
+        csvString.append(incidentNumber).append(CsvWriter.SEPARATOR);
+        CsvWriter.appendField(csvString, reporterName).append(CsvWriter.SEPARATOR);
+        CsvWriter.appendField(csvString, reporterPhoneNumber).append(CsvWriter.SEPARATOR);
+        CsvWriter.appendField(csvString, date).append(CsvWriter.SEPARATOR);
+        CsvWriter.appendField(csvString, time).append(CsvWriter.SEPARATOR);
+        CsvWriter.appendField(csvString, gpsLocation == null ? null : gpsLocation.toString()).append(CsvWriter.SEPARATOR);
+        CsvWriter.appendField(csvString, incidentDetails).append(CsvWriter.SEPARATOR);
+        csvString.append(ongoing).append(CsvWriter.SEPARATOR)
+                .append(priority);
 
         return csvString.toString();
     }
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    // Append the text toString() returns, so a caller can reuse one buffer for many incidents
+    public synchronized StringBuilder appendTo(StringBuilder sb) {
         sb.append("Incident Number: ").append(incidentNumber).append("\n");
         sb.append("Reported by: ").append(reporterName).append("\n");
         sb.append("Date: ").append(date).append("\tTime: ").append(time).append("\n");
@@ -146,12 +481,13 @@ public class Incident {
         if (!resources.isEmpty()) {
             sb.append("Resources:\n");
             for (Resource resource : resources) {
-                sb.append(resource).append("\n");
+                resource.appendTo(sb).append("\n");
             }
         }
 
+        sb.append("Priority: ").append(priority).append("\n");
         sb.append("Ongoing: ").append(ongoing ? "YES" : "NO").append("\n");
 
-        return sb.toString();
+        return sb;
     }
 }
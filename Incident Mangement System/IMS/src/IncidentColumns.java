@@ -0,0 +1,233 @@
+import java.util.Locale;
+
+// Where each incident field sits in a CSV row, found from the file's header row so columns
+// can come in any order. Files written before fields were quoted have the legacy header,
+// whose single "Reporter No" column covered the reporter's name and phone number, and their
+// rows were split at every comma: a "latitude, longitude" location took two fields and
+// details holding commas took several. For those rows the location and details are pieced
+// back together from the fields between the time and the last columns.
+public class IncidentColumns
+{
+    public static final String HEADER = CsvWriter.row("Incident No", "Reporter Name", "Reporter Phone No",
+            "Date", "Time", "GPS Location", "Incident Details", "Ongoing", "Priority");
+
+    // The order Incident.toCSVString writes, for rows without a header such as the journal's
+    public static final IncidentColumns STANDARD = new IncidentColumns(0, 1, 2, 3, 4, 5, 6, 7, 8, false);
+
+    private static final String LEGACY_LOCATION = "gps-what3words";
+    private static final int NONE = -1;
+
+    final int number;
+    final int reporterName;
+    final int reporterPhoneNumber;
+    final int date;
+    final int time;
+    private final int location;
+    private final int details;
+    private final int ongoing;
+    private final int priority;
+    // Rows may be split at commas inside the location and details
+    private final boolean unquoted;
+    // The last column a row must have, or NONE when the header lacks one
+    private final int lastRequired;
+
+    private IncidentColumns(int number, int reporterName, int reporterPhoneNumber, int date, int time,
+                            int location, int details, int ongoing, int priority, boolean unquoted)
+    {
+        this.number = number;
+        this.reporterName = reporterName;
+        this.reporterPhoneNumber = reporterPhoneNumber;
+        this.date = date;
+        this.time = time;
+        this.location = location;
+        this.details = details;
+        this.ongoing = ongoing;
+        this.priority = priority;
+        this.unquoted = unquoted;
+        int last = NONE;
+        for (int column : new int[] { number, reporterName, reporterPhoneNumber, date, time, location, details, ongoing })
+        {
+            if (column == NONE)
+            {
+                last = NONE;
+                break;
+            }
+            last = Math.max(last, column);
+        }
+        this.lastRequired = last;
+    }
+
+    // Map the columns a header row names. A header naming none of them is taken to be the
+    // standard order; a column the header does not name is missing from every row.
+    public static IncidentColumns fromHeader(CsvRow header)
+    {
+        int[] columns = { NONE, NONE, NONE, NONE, NONE, NONE, NONE, NONE, NONE };
+        boolean named = false;
+        for (int i = 0; i < header.size(); i++)
+        {
+            String name = header.getString(i).toLowerCase(Locale.ROOT);
+            if (name.equals(LEGACY_LOCATION))
+            {
+                // Reporter No took two fields, and the location and details any number
+                return new IncidentColumns(0, 1, 2, 3, 4, 5, 6, 7, isPriorityAfter(header, i) ? 8 : NONE, true);
+            }
+            int column = column(name);
+            if (column != NONE && columns[column] == NONE)
+            {
+                columns[column] = i;
+                named = true;
+            }
+        }
+        if (!named)
+        {
+            return STANDARD;
+        }
+        return new IncidentColumns(columns[0], columns[1], columns[2], columns[3], columns[4],
+                columns[5], columns[6], columns[7], columns[8], false);
+    }
+
+    // Check the row has every column but the priority, which older files lack
+    public boolean hasColumns(CsvRow row)
+    {
+        if (isSplit(row))
+        {
+            // The time, at least one field each for the location and details, then the last columns
+            return row.size() >= time + 3 + tailFields();
+        }
+        return lastRequired != NONE && row.size() > lastRequired;
+    }
+
+    public String getLocation(CsvRow row)
+    {
+        if (!isSplit(row))
+        {
+            return row.getString(location);
+        }
+        if (locationFields(row) == 2)
+        {
+            return row.getString(time + 1) + ", " + row.getString(time + 2);
+        }
+        return row.getString(time + 1);
+    }
+
+    public String getDetails(CsvRow row)
+    {
+        if (!isSplit(row))
+        {
+            return row.getString(details);
+        }
+        int end = row.size() - tailFields();
+        StringBuilder joined = new StringBuilder();
+        for (int i = time + 1 + locationFields(row); i < end; i++)
+        {
+            if (joined.length() > 0)
+            {
+                joined.append(", ");
+            }
+            joined.append(row.getString(i));
+        }
+        return joined.toString();
+    }
+
+    public boolean isOngoing(CsvRow row)
+    {
+        return row.getBoolean(isSplit(row) ? row.size() - tailFields() : ongoing);
+    }
+
+    // The priority as written, or null when the file has no priority column
+    public String getPriority(CsvRow row)
+    {
+        if (priority == NONE)
+        {
+            return null;
+        }
+        int field = isSplit(row) ? row.size() - 1 : priority;
+        return field < row.size() ? row.getString(field) : null;
+    }
+
+    // Whether the location and details of this row may be split across several fields.
+    // Rows written since fields were quoted never have more fields than the standard order.
+    private boolean isSplit(CsvRow row)
+    {
+        return unquoted || (this == STANDARD && row.size() > priority + 1);
+    }
+
+    // Ongoing, and the priority when the file has one
+    private int tailFields()
+    {
+        return priority == NONE ? 1 : 2;
+    }
+
+    // Two when the location was written as "latitude, longitude" and split at its comma
+    private int locationFields(CsvRow row)
+    {
+        int between = row.size() - tailFields() - (time + 1);
+        return between >= 3 && isNumber(row.getChars(time + 1)) && isNumber(row.getChars(time + 2)) ? 2 : 1;
+    }
+
+    // A number as Double.toString writes it
+    private static boolean isNumber(CharSequence text)
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if ((c < '0' || c > '9') && c != '.' && c != '-' && c != 'E')
+            {
+                return false;
+            }
+        }
+        try
+        {
+            Double.parseDouble(text.toString());
+            return true;
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+
+    private static boolean isPriorityAfter(CsvRow header, int start)
+    {
+        for (int i = start; i < header.size(); i++)
+        {
+            if (header.getString(i).equalsIgnoreCase("Priority"))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Index into the columns array for a header name, or NONE
+    private static int column(String name)
+    {
+        switch (name)
+        {
+            case "incident no":
+            case "incident number":
+                return 0;
+            case "reporter name":
+                return 1;
+            case "reporter phone no":
+            case "reporter phone number":
+                return 2;
+            case "date":
+                return 3;
+            case "time":
+                return 4;
+            case "gps location":
+            case "location":
+                return 5;
+            case "incident details":
+            case "details":
+                return 6;
+            case "ongoing":
+                return 7;
+            case "priority":
+                return 8;
+            default:
+                return NONE;
+        }
+    }
+}
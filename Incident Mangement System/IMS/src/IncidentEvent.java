@@ -0,0 +1,90 @@
+// A change to an incident, as handed to the subscribers of an IncidentEventRing. The ring
+// and each subscription own their events and reuse them for every change, so a handler
+// must copy what it wants to keep past its call.
+public class IncidentEvent
+{
+    public enum Type
+    {
+        // Added with a number no stored incident had
+        CREATED,
+        // A field changed through a setter, or the whole incident was replaced
+        UPDATED,
+        // Set to no longer ongoing
+        CLOSED,
+        // Given a resource by assignResourceToIncident
+        RESOURCE_ASSIGNED
+    }
+
+    private long sequence;
+    private Type type;
+    private int incidentNumber;
+    private Incident.Field field;
+    private long version;
+    private int resourceNumber;
+    private int units;
+
+    void set(long sequence, Type type, int incidentNumber, Incident.Field field, long version,
+            int resourceNumber, int units)
+    {
+        this.sequence = sequence;
+        this.type = type;
+        this.incidentNumber = incidentNumber;
+        this.field = field;
+        this.version = version;
+        this.resourceNumber = resourceNumber;
+        this.units = units;
+    }
+
+    void copyFrom(IncidentEvent other)
+    {
+        set(other.sequence, other.type, other.incidentNumber, other.field, other.version,
+                other.resourceNumber, other.units);
+    }
+
+    // Position in the stream; gaps mean a subscriber that does not hold up publishers missed some
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public int getIncidentNumber()
+    {
+        return incidentNumber;
+    }
+
+    // The field an UPDATED or CLOSED event changed; null when the whole incident was replaced
+    public Incident.Field getField()
+    {
+        return field;
+    }
+
+    // The incident's version just after the change, to tell a later read of it is current
+    public long getVersion()
+    {
+        return version;
+    }
+
+    // The resource and units of a RESOURCE_ASSIGNED event; 0 for other events
+    public int getResourceNumber()
+    {
+        return resourceNumber;
+    }
+
+    public int getUnits()
+    {
+        return units;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "#" + sequence + " " + type + " incident " + incidentNumber
+                + (field != null ? " " + field : "")
+                + (type == Type.RESOURCE_ASSIGNED ? " resource " + resourceNumber + " x" + units : "");
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.Arrays;
+
+// Events one thread captures while it holds an incident's lock, or its number's, to
+// publish into an IncidentEventRing once it has let go. A publisher may wait on a BLOCK
+// subscriber, and a subscriber's handler may read the incident, so nothing is published
+// with those locks held. Each thread has its own; the events are reused, so a warm buffer
+// allocates nothing.
+public class IncidentEventBuffer
+{
+    private IncidentEvent[] events = new IncidentEvent[4];
+    private int size;
+    // Calls in progress that let go of their locks before the events may go out
+    private int depth;
+
+    public IncidentEventBuffer()
+    {
+        for (int i = 0; i < events.length; i++)
+        {
+            events[i] = new IncidentEvent();
+        }
+    }
+
+    public void add(IncidentEvent.Type type, int incidentNumber, Incident.Field field, long version,
+            int resourceNumber, int units)
+    {
+        if (size == events.length)
+        {
+            events = Arrays.copyOf(events, size * 2);
+            for (int i = size; i < events.length; i++)
+            {
+                events[i] = new IncidentEvent();
+            }
+        }
+        events[size++].set(0, type, incidentNumber, field, version, resourceNumber, units);
+    }
+
+    // Start a call that publishes what it captured when it ends
+    public void enter()
+    {
+        depth++;
+    }
+
+    // End a call, returning whether it was the outermost one
+    public boolean exit()
+    {
+        return --depth == 0;
+    }
+
+    // Whether no call is in progress, so events may go out as soon as they are captured
+    public boolean isIdle()
+    {
+        return depth == 0;
+    }
+
+    // Publish the captured events in the order they were captured
+    public void publishTo(IncidentEventRing ring)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            IncidentEvent event = events[i];
+            ring.publish(event.getType(), event.getIncidentNumber(), event.getField(), event.getVersion(),
+                    event.getResourceNumber(), event.getUnits());
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,8 @@
+// Receives the events of one subscription, on the subscription's own thread and in the
+// order they were published
+public interface IncidentEventHandler
+{
+    // endOfBatch is true for the last event available for now, or the last of a full batch:
+    // the point to send on anything the handler has gathered
+    void onEvent(IncidentEvent event, boolean endOfBatch);
+}
@@ -0,0 +1,190 @@
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Changes to incidents, published into a ring of pre-allocated events that any number of
+// subscribers read at their own pace, each on its own thread, as in the LMAX Disruptor.
+// Publishing claims a sequence number with one atomic add and fills in the event in that
+// number's slot, so it allocates nothing, and publishers on many threads interleave freely.
+// Each slot records the sequence last published into it, which tells a subscriber whether
+// the event it wants is there yet, still being written, or already overwritten.
+//
+// A BLOCK subscriber holds up publishers once it is a whole ring behind, so it never misses
+// an event. A DROP subscriber never holds them up: if it falls a ring behind, it skips the
+// events overwritten meanwhile and counts them as missed.
+public class IncidentEventRing
+{
+    public enum Backpressure
+    {
+        BLOCK,
+        DROP
+    }
+
+    // What read returns for an event not published yet
+    static final long NOT_PUBLISHED = -1;
+    // Marks a slot while a publisher writes its event
+    private static final long WRITING = Long.MIN_VALUE;
+    // Longs between used slots, so each counter sits on its own 64-byte cache line
+    static final int PADDING = 8;
+    // How long a publisher or subscriber that has to wait spins, then yields, then parks
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = 100_000;
+
+    private final IncidentEvent[] events;
+    // The sequence last published into each slot
+    private final AtomicLongArray published;
+    private final int mask;
+    // The next sequence to claim
+    private final AtomicLongArray cursor = new AtomicLongArray(2 * PADDING);
+    private volatile IncidentSubscription[] blocking = new IncidentSubscription[0];
+    // The lowest next sequence of the BLOCK subscribers when last looked at; publishers
+    // only look again when they would pass it
+    private volatile long gatingCache = Long.MAX_VALUE;
+
+    // size is rounded up to a power of two
+    public IncidentEventRing(int size)
+    {
+        int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1);
+        this.events = new IncidentEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+        {
+            events[i] = new IncidentEvent();
+            published.set(i, i - capacity);
+        }
+        this.mask = capacity - 1;
+    }
+
+    public int getSize()
+    {
+        return events.length;
+    }
+
+    // Events published, or claimed and being written, so far
+    public long getPublished()
+    {
+        return cursor.get(PADDING);
+    }
+
+    public void publish(IncidentEvent.Type type, int incidentNumber, Incident.Field field, long version,
+            int resourceNumber, int units)
+    {
+        long sequence = cursor.getAndIncrement(PADDING);
+        long wrapPoint = sequence - events.length;
+        if (wrapPoint >= gatingCache)
+        {
+            awaitBlockingSubscribers(wrapPoint);
+        }
+        int index = (int) sequence & mask;
+        // A publisher a lap behind may not have finished with the slot yet
+        for (int attempts = 0; published.getAcquire(index) != wrapPoint; )
+        {
+            attempts = idle(attempts);
+        }
+        published.setRelease(index, WRITING);
+        VarHandle.storeStoreFence();
+        events[index].set(sequence, type, incidentNumber, field, version, resourceNumber, units);
+        published.setRelease(index, sequence);
+    }
+
+    // Wait until every BLOCK subscriber has read the event a slot last held
+    private void awaitBlockingSubscribers(long wrapPoint)
+    {
+        long lowest = lowestBlocking();
+        for (int attempts = 0; wrapPoint >= lowest; )
+        {
+            attempts = idle(attempts);
+            lowest = lowestBlocking();
+        }
+        gatingCache = lowest;
+    }
+
+    private long lowestBlocking()
+    {
+        long lowest = Long.MAX_VALUE;
+        for (IncidentSubscription subscription : blocking)
+        {
+            lowest = Math.min(lowest, subscription.getPosition());
+        }
+        return lowest;
+    }
+
+    // Start a subscriber that is handed every event published from now on, in batches of
+    // at most maxBatch between updates of its position
+    public IncidentSubscription subscribe(String name, Backpressure backpressure, int maxBatch,
+            IncidentEventHandler handler)
+    {
+        IncidentSubscription subscription;
+        synchronized (this)
+        {
+            subscription = new IncidentSubscription(this, name, backpressure, maxBatch, handler, getPublished());
+            if (backpressure == Backpressure.BLOCK)
+            {
+                IncidentSubscription[] more = Arrays.copyOf(blocking, blocking.length + 1);
+                more[blocking.length] = subscription;
+                blocking = more;
+                gatingCache = lowestBlocking();
+            }
+        }
+        subscription.start();
+        return subscription;
+    }
+
+    synchronized void unsubscribe(IncidentSubscription subscription)
+    {
+        blocking = Arrays.stream(blocking).filter(other -> other != subscription).toArray(IncidentSubscription[]::new);
+        gatingCache = lowestBlocking();
+    }
+
+    // Copy the event with a sequence into an event of the caller's. Returns the sequence if
+    // it was copied, NOT_PUBLISHED if it is not there yet, or, if it has been overwritten,
+    // the sequence of the oldest event that may still be there.
+    long read(long sequence, IncidentEvent into)
+    {
+        int index = (int) sequence & mask;
+        long found = published.getAcquire(index);
+        if (found == sequence)
+        {
+            into.copyFrom(events[index]);
+            // Only a copy made while nothing overwrote the slot is whole
+            VarHandle.loadLoadFence();
+            found = published.getAcquire(index);
+            if (found == sequence)
+            {
+                return sequence;
+            }
+        }
+        // Not written yet, or being written; WRITING is below every sequence
+        if (found < sequence)
+        {
+            return NOT_PUBLISHED;
+        }
+        return Math.max(sequence + 1, getPublished() - events.length);
+    }
+
+    boolean isPublished(long sequence)
+    {
+        return published.getAcquire((int) sequence & mask) == sequence;
+    }
+
+    // Wait a little, longer the more times in a row it has been; returns the count to pass next time
+    static int idle(int attempts)
+    {
+        if (attempts < SPINS)
+        {
+            Thread.onSpinWait();
+        }
+        else if (attempts < SPINS + YIELDS)
+        {
+            Thread.yield();
+        }
+        else
+        {
+            LockSupport.parkNanos(PARK_NANOS);
+            return attempts;
+        }
+        return attempts + 1;
+    }
+}
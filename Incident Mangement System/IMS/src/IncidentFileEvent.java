@@ -0,0 +1,74 @@
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// A load or save of a CSV or snapshot file, counted and timed in its operation's metrics
+// and recorded as a Flight Recorder event with the rows it read or wrote and the size of
+// the file. The event is only written while a recording is running, for example one
+// started with -XX:StartFlightRecording or jcmd <pid> JFR.start.
+@Name("ims.IncidentFile")
+@Label("Incident File Load or Save")
+@Category("Incident Management System")
+@Description("Loading or saving incidents, resources or assignments")
+public class IncidentFileEvent extends Event
+{
+    @Label("Operation")
+    String operation;
+
+    @Label("File")
+    String file;
+
+    @Label("Rows")
+    @Description("Rows read or written, including rejected ones")
+    long rows;
+
+    @Label("Rejected Rows")
+    long rejected;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Failed")
+    boolean failed;
+
+    // Not part of the event
+    private transient OperationMetrics metrics;
+    private transient long started;
+
+    public static IncidentFileEvent begin(OperationMetrics metrics, String filename)
+    {
+        IncidentFileEvent event = new IncidentFileEvent();
+        event.metrics = metrics;
+        event.started = metrics.start();
+        event.operation = metrics.getName();
+        event.file = filename;
+        event.begin();
+        return event;
+    }
+
+    public void failed(Exception e)
+    {
+        metrics.failed(e);
+        failed = true;
+    }
+
+    // Record the time taken and the event, reading the size of the file as it now stands.
+    // Returns whether the load or save succeeded.
+    public boolean finish()
+    {
+        metrics.finish(started);
+        end();
+        if (shouldCommit())
+        {
+            bytes = new File(file).length();
+            commit();
+        }
+        return !failed;
+    }
+}
@@ -0,0 +1,86 @@
+// Which incidents a listing includes: optionally only ongoing ones, only those whose date
+// and time fall in [fromEpochSecond, toEpochSecond), and only those with coordinates inside
+// a latitude/longitude box. Immutable; each only/between/inArea call returns a narrower copy.
+public class IncidentFilter
+{
+    private static final IncidentFilter ALL = new IncidentFilter(false, Long.MIN_VALUE, Long.MAX_VALUE,
+            Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+    private final boolean ongoingOnly;
+    private final long fromEpochSecond;
+    private final long toEpochSecond;
+    // NaN when there is no box
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    private IncidentFilter(boolean ongoingOnly, long fromEpochSecond, long toEpochSecond,
+            double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+    {
+        this.ongoingOnly = ongoingOnly;
+        this.fromEpochSecond = fromEpochSecond;
+        this.toEpochSecond = toEpochSecond;
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    // Every incident
+    public static IncidentFilter all()
+    {
+        return ALL;
+    }
+
+    public IncidentFilter onlyOngoing()
+    {
+        return new IncidentFilter(true, fromEpochSecond, toEpochSecond, minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    // Incidents with a readable date and time from fromEpochSecond up to toEpochSecond
+    public IncidentFilter between(long fromEpochSecond, long toEpochSecond)
+    {
+        return new IncidentFilter(ongoingOnly, fromEpochSecond, toEpochSecond, minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    // Incidents whose location has coordinates inside the box, edges included
+    public IncidentFilter inArea(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+    {
+        return new IncidentFilter(ongoingOnly, fromEpochSecond, toEpochSecond, minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    // Whether the filter lets every incident through, so a page can start at any position
+    public boolean isAll()
+    {
+        return !ongoingOnly && fromEpochSecond == Long.MIN_VALUE && toEpochSecond == Long.MAX_VALUE
+                && Double.isNaN(minLatitude);
+    }
+
+    public boolean test(Incident incident)
+    {
+        if (ongoingOnly && !incident.isOngoing())
+        {
+            return false;
+        }
+        if (fromEpochSecond != Long.MIN_VALUE || toEpochSecond != Long.MAX_VALUE)
+        {
+            long timestamp = incident.getTimestamp();
+            if (timestamp == Incident.NO_TIMESTAMP || timestamp < fromEpochSecond || timestamp >= toEpochSecond)
+            {
+                return false;
+            }
+        }
+        if (!Double.isNaN(minLatitude))
+        {
+            GPSLocation location = incident.getGpsLocation();
+            if (location == null || !location.hasCoordinates()
+                    || location.getLatitude() < minLatitude || location.getLatitude() > maxLatitude
+                    || location.getLongitude() < minLongitude || location.getLongitude() > maxLongitude)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
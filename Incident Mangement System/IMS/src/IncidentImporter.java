@@ -0,0 +1,327 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+// Reads a large incidents CSV file on the fork-join pool the caller runs in (the common
+// pool otherwise). The header row is read first to map the columns, then the rest of the
+// file is cut into chunks at line ends outside quoted fields, and each chunk is read,
+// validated and turned into incidents on its own. When an incident
+// number appears more than once the last row wins. Rows that fail validation, and rows a
+// later row supersedes, are written to a rejects file with the reason.
+public class IncidentImporter
+{
+    // Invalid rows keep the fields they were read with; superseded rows are in these columns
+    public static final String REJECTS_HEADER = "Reason" + CsvWriter.SEPARATOR + IncidentColumns.HEADER;
+
+    // Several chunks per thread, so one slow chunk does not leave the other threads idle
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    private final List<Incident> incidents;
+    private final ImportResult result;
+
+    private IncidentImporter(List<Incident> incidents, ImportResult result)
+    {
+        this.incidents = incidents;
+        this.result = result;
+    }
+
+    // The rows of one chunk, in file order
+    private static class Chunk
+    {
+        final List<Incident> incidents = new ArrayList<>();
+        final List<String> rejects = new ArrayList<>();
+        int rows;
+    }
+
+    // Read and validate a file with a header row; rejects go to rejectsFilename unless it is null
+    public static IncidentImporter read(String filename, String rejectsFilename) throws IOException
+    {
+        Chunk[] chunks;
+        try (FileChannel file = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            long headerEnd = nextRowStart(file, 0, false, file.size());
+            IncidentColumns[] columns = { IncidentColumns.STANDARD };
+            CsvReader.read(new RangeChannel(file, 0, headerEnd), false, header -> columns[0] = IncidentColumns.fromHeader(header));
+            long[] starts = chunkStarts(file, chunkCount(file.size()));
+            starts[0] = headerEnd;
+            chunks = IntStream.range(0, starts.length - 1).parallel()
+                    .mapToObj(i -> parse(file, starts[i], Math.max(starts[i], starts[i + 1]), columns[0]))
+                    .toArray(Chunk[]::new);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+
+        // Sort (number, position) pairs to find every row a later row supersedes
+        int[] offsets = new int[chunks.length + 1];
+        int rows = 0;
+        int rejected = 0;
+        for (int i = 0; i < chunks.length; i++)
+        {
+            offsets[i + 1] = offsets[i] + chunks[i].incidents.size();
+            rows += chunks[i].rows;
+            rejected += chunks[i].rejects.size();
+        }
+        long[] keys = new long[offsets[chunks.length]];
+        IntStream.range(0, chunks.length).parallel().forEach(i -> {
+            List<Incident> chunkIncidents = chunks[i].incidents;
+            for (int j = 0; j < chunkIncidents.size(); j++)
+            {
+                keys[offsets[i] + j] = (long) chunkIncidents.get(j).getIncidentNumber() << 32 | (offsets[i] + j);
+            }
+        });
+        Arrays.parallelSort(keys);
+        boolean[] superseded = new boolean[keys.length];
+        for (int i = 0; i + 1 < keys.length; i++)
+        {
+            if (keys[i] >>> 32 == keys[i + 1] >>> 32)
+            {
+                superseded[(int) keys[i]] = true;
+            }
+        }
+
+        List<Incident> kept = new ArrayList<>(keys.length);
+        List<Incident> duplicates = new ArrayList<>();
+        for (int i = 0; i < chunks.length; i++)
+        {
+            List<Incident> chunkIncidents = chunks[i].incidents;
+            for (int j = 0; j < chunkIncidents.size(); j++)
+            {
+                (superseded[offsets[i] + j] ? duplicates : kept).add(chunkIncidents.get(j));
+            }
+        }
+        if (rejectsFilename != null)
+        {
+            writeRejects(rejectsFilename, chunks, duplicates);
+        }
+        return new IncidentImporter(kept, new ImportResult(rows, kept.size(), rejected, duplicates.size()));
+    }
+
+    // The valid incidents, one for each incident number, in file order
+    public List<Incident> getIncidents()
+    {
+        return incidents;
+    }
+
+    // Counts of the rows read; getImported() is the number of incidents read, before storing
+    public ImportResult getResult()
+    {
+        return result;
+    }
+
+    private static int chunkCount(long size)
+    {
+        int threads = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.getCommonPoolParallelism();
+        return (int) Math.max(1, Math.min((long) threads * CHUNKS_PER_THREAD, size / MIN_CHUNK_BYTES));
+    }
+
+    // Where each chunk starts, plus the file size. A cut goes just after the first line end
+    // past an even split of the file that is not inside a quoted field; whether a position is
+    // inside quotes follows from the number of quote characters before it, which RFC 4180
+    // quoting keeps even outside quoted fields.
+    private static long[] chunkStarts(FileChannel file, int count) throws IOException
+    {
+        long size = file.size();
+        long[] even = new long[count + 1];
+        for (int i = 0; i <= count; i++)
+        {
+            even[i] = size * i / count;
+        }
+        long[] quotes = IntStream.range(0, count).parallel()
+                .mapToLong(i -> countQuotes(file, even[i], even[i + 1]))
+                .toArray();
+        boolean[] quoted = new boolean[count];
+        for (int i = 1; i < count; i++)
+        {
+            quoted[i] = quoted[i - 1] ^ ((quotes[i - 1] & 1) == 1);
+        }
+        long[] starts = new long[count + 1];
+        starts[count] = size;
+        IntStream.range(1, count).parallel().forEach(i -> starts[i] = nextRowStart(file, even[i], quoted[i], size));
+        return starts;
+    }
+
+    private static long countQuotes(FileChannel file, long start, long end)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long count = 0;
+        try (RangeChannel range = new RangeChannel(file, start, end))
+        {
+            while (range.read(buffer) != -1)
+            {
+                byte[] bytes = buffer.array();
+                for (int i = 0; i < buffer.position(); i++)
+                {
+                    if (bytes[i] == '"')
+                    {
+                        count++;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    // The position after the first line end at or past position that is outside quotes
+    private static long nextRowStart(FileChannel file, long position, boolean quoted, long size)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        try (RangeChannel range = new RangeChannel(file, position, size))
+        {
+            while (range.read(buffer) != -1)
+            {
+                byte[] bytes = buffer.array();
+                for (int i = 0; i < buffer.position(); i++)
+                {
+                    if (bytes[i] == '"')
+                    {
+                        quoted = !quoted;
+                    }
+                    else if (bytes[i] == '\n' && !quoted)
+                    {
+                        return position + i + 1;
+                    }
+                }
+                position += buffer.position();
+                buffer.clear();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return size;
+    }
+
+    private static Chunk parse(FileChannel file, long start, long end, IncidentColumns columns)
+    {
+        Chunk chunk = new Chunk();
+        try (RangeChannel range = new RangeChannel(file, start, end))
+        {
+            CsvReader.read(range, false, row -> {
+                chunk.rows++;
+                String problem = InputValidator.incidentRowProblem(row, columns);
+                if (problem != null)
+                {
+                    chunk.rejects.add(rejectRow(problem, row));
+                    return;
+                }
+                chunk.incidents.add(new Incident(row, columns));
+            });
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    private static void writeRejects(String filename, Chunk[] chunks, List<Incident> duplicates) throws IOException
+    {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filename)))
+        {
+            writer.write(REJECTS_HEADER);
+            writer.newLine();
+            for (Chunk chunk : chunks)
+            {
+                for (String reject : chunk.rejects)
+                {
+                    writer.write(reject);
+                    writer.newLine();
+                }
+            }
+            for (Incident duplicate : duplicates)
+            {
+                writer.write(rejectRow("superseded by a later row", duplicate));
+                writer.newLine();
+            }
+        }
+    }
+
+    // The reason and then the fields as read
+    private static String rejectRow(String problem, CsvRow row)
+    {
+        StringBuilder line = CsvWriter.appendField(new StringBuilder(), problem);
+        for (int i = 0; i < row.size(); i++)
+        {
+            CsvWriter.appendField(line.append(CsvWriter.SEPARATOR), row.getString(i));
+        }
+        return line.toString();
+    }
+
+    private static String rejectRow(String problem, Incident incident)
+    {
+        return CsvWriter.appendField(new StringBuilder(), problem).append(CsvWriter.SEPARATOR)
+                .append(incident.toCSVString()).toString();
+    }
+
+    // Bytes [position, end) of a file, read without moving the channel's shared position so
+    // many threads can read their own ranges at once
+    private static class RangeChannel implements ReadableByteChannel
+    {
+        private final FileChannel file;
+        private long position;
+        private final long end;
+
+        RangeChannel(FileChannel file, long position, long end)
+        {
+            this.file = file;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException
+        {
+            if (position >= end)
+            {
+                return -1;
+            }
+            int limit = buffer.limit();
+            if (end - position < buffer.remaining())
+            {
+                buffer.limit(buffer.position() + (int) (end - position));
+            }
+            int read = file.read(buffer, position);
+            buffer.limit(limit);
+            if (read > 0)
+            {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return file.isOpen();
+        }
+
+        @Override
+        public void close()
+        {
+            // The file belongs to the caller
+        }
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Append-only journal of newly created incidents, one CSV line per incident.
+// The file stays open and records are written in groups: a group is committed once
+// batchSize records are pending or windowMillis has passed, whichever comes first.
+public class IncidentJournal implements Closeable
+{
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_WINDOW_MILLIS = 50;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // When committed groups are forced to disk
+    public enum FsyncPolicy
+    {
+        NEVER,      // leave it to the operating system
+        ON_CLOSE,   // force once when the journal is closed
+        ON_COMMIT   // force after every group commit
+    }
+
+    private final String filename;
+    // Replaced when records before a mark are dropped and later ones kept
+    private FileChannel channel;
+    private final ByteBuffer pending;
+    private final int batchSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final ScheduledExecutorService flusher;
+    private int pendingRecords;
+    // Bytes dropped from the front of the file so far, so a mark stays good after a truncate
+    private long dropped;
+
+    private IncidentJournal(String filename, FileChannel channel, int batchSize, long windowMillis,
+                            FsyncPolicy fsyncPolicy)
+    {
+        this.filename = filename;
+        this.channel = channel;
+        this.pending = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.batchSize = batchSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "incident-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::commitQuietly, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Open (or create) a journal, dropping any partially written last record left by a crash
+    public static IncidentJournal open(String filename, int batchSize, long windowMillis, FsyncPolicy fsyncPolicy)
+            throws IOException
+    {
+        FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try
+        {
+            channel.truncate(endOfLastRecord(channel));
+            channel.position(channel.size());
+        }
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+        return new IncidentJournal(filename, channel, batchSize, windowMillis, fsyncPolicy);
+    }
+
+    public static IncidentJournal open(String filename) throws IOException
+    {
+        return open(filename, DEFAULT_BATCH_SIZE, DEFAULT_WINDOW_MILLIS, FsyncPolicy.ON_COMMIT);
+    }
+
+    public String getFilename()
+    {
+        return filename;
+    }
+
+    // Read every committed record back, oldest first
+    public synchronized long replay(CsvReader.RowHandler handler) throws IOException
+    {
+        commit();
+        channel.position(0);
+        try
+        {
+            return CsvReader.read(channel, false, handler);
+        }
+        finally
+        {
+            channel.position(channel.size());
+        }
+    }
+
+    // Queue an incident for the next group commit
+    public synchronized void append(Incident incident)
+    {
+        byte[] record = (incident.toCSVString() + "\n").getBytes(StandardCharsets.UTF_8);
+        try
+        {
+            if (record.length > pending.remaining())
+            {
+                commit();
+            }
+            if (record.length > pending.capacity())
+            {
+                writeFully(ByteBuffer.wrap(record));
+            }
+            else
+            {
+                pending.put(record);
+            }
+            if (++pendingRecords >= batchSize)
+            {
+                commit();
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    // Write all pending records in one go
+    public synchronized void commit() throws IOException
+    {
+        if (pendingRecords == 0 && pending.position() == 0)
+        {
+            return;
+        }
+        pending.flip();
+        writeFully(pending);
+        pending.clear();
+        pendingRecords = 0;
+        if (fsyncPolicy == FsyncPolicy.ON_COMMIT)
+        {
+            channel.force(false);
+        }
+    }
+
+    // Where the records appended so far end, to pass to truncate once they are saved
+    public synchronized long mark()
+    {
+        try
+        {
+            return dropped + channel.position() + pending.position();
+        }
+        catch (IOException e)
+        {
+            // The channel is closed, so nothing more can be appended or dropped
+            return dropped;
+        }
+    }
+
+    // Drop the records before a mark once their incidents are safely saved elsewhere.
+    // Records appended after the mark are kept: they are copied to a new file that then
+    // replaces the journal, so a crash leaves either the old journal or the new one.
+    public synchronized void truncate(long mark) throws IOException
+    {
+        commit();
+        long size = channel.size();
+        long upTo = Math.min(mark - dropped, size);
+        if (upTo <= 0)
+        {
+            return;
+        }
+        if (upTo == size)
+        {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            dropped += upTo;
+            return;
+        }
+        Path path = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        try (FileChannel kept = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            for (long from = upTo; from < size; )
+            {
+                from += channel.transferTo(from, size - from, kept);
+            }
+            kept.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        dropped += upTo;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        flusher.shutdownNow();
+        try
+        {
+            commit();
+            if (fsyncPolicy != FsyncPolicy.NEVER)
+            {
+                channel.force(true);
+            }
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private synchronized void commitQuietly()
+    {
+        if (!channel.isOpen())
+        {
+            return;
+        }
+        try
+        {
+            commit();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    // Length of the file up to and including the last newline
+    private static long endOfLastRecord(FileChannel channel) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long end = channel.size();
+        while (end > 0)
+        {
+            int length = (int) Math.min(buffer.capacity(), end);
+            buffer.clear().limit(length);
+            channel.read(buffer, end - length);
+            for (int i = length - 1; i >= 0; i--)
+            {
+                if (buffer.get(i) == '\n')
+                {
+                    return end - length + i + 1;
+                }
+            }
+            end -= length;
+        }
+        return 0;
+    }
+}
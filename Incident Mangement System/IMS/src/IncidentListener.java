@@ -0,0 +1,21 @@
+// Notified by an Incident whenever one of its fields changes
+public interface IncidentListener
+{
+    void incidentChanged(Incident incident, Incident.Field field);
+
+    // Told just before a field changes, with the lock held and the fields still as they were
+    default void incidentChanging(Incident incident, Incident.Field field)
+    {
+    }
+
+    // Told before a closed incident is made ongoing again, with the lock held and nothing
+    // changed yet; throwing refuses the change
+    default void incidentReopening(Incident incident)
+    {
+    }
+
+    // Told after a setter has let go of the lock, which its caller may still hold
+    default void incidentUnlocked(Incident incident)
+    {
+    }
+}
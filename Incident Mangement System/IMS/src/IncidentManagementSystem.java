@@ -1,126 +1,1479 @@
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
-public class IncidentManagementSystem 
+// Safe to share between operator threads: incidents are stored under lock stripes, each
+// incident guards its own fields, and the indexes are guarded by their own monitors
+public final class IncidentManagementSystem 
 {
-    private List<Incident> incidents;
-    private List<Resource> uniqueResources;
+    private IncidentStore incidents;
+    private final ResourceCatalogue resources;
+    private final AllocationEngine allocations;
+    private final DispatchRecommender dispatch;
+    private final WorkQueue workQueue;
+    private final TextIndex searchIndex;
+    private final PhoneIndex callers;
+    private volatile IncidentJournal journal;
+    private final ExecutorService compactor;
+    private final SpatialIndex<Incident> locations;
+    private final TimeIndex<Incident> timeline;
+    // Closed incidents loaded from an archive, kept as columns rather than objects. They are
+    // found by number, phone number and time, but are not on the map, in the search index or
+    // linked to resources until changed, which moves them into the store.
+    private final ColumnarIncidentStore history;
+    // Dashboard figures kept current as incidents are stored and changed
+    private final List<IncidentView<?>> views = new CopyOnWriteArrayList<>();
+    private final IncidentView<Long> ongoingPerArea;
+    private final IncidentView<Long> perHour;
+    private final IncidentView<String> committedUnitsPerCode;
+    // Keeps the indexes and work queue current, frees a closed incident's units and
+    // reserves a reopened one's, when a stored incident is changed through its setters. The views that read the field are
+    // told before the change as well, to take back what the incident added to them. The
+    // incidents with this listener are the ones in the views.
+    private final IncidentListener indexUpdater = new IncidentListener() 
+    {
+        @Override
+        public void incidentChanging(Incident incident, Incident.Field field) 
+        {
+            leaveViews(incident, field);
+        }
+
+        @Override
+        public void incidentChanged(Incident incident, Incident.Field field) 
+        {
+            IncidentManagementSystem.this.incidentChanged(incident, field);
+        }
+
+        // Closing gave the units back, so reopening has to win them again first
+        @Override
+        public void incidentReopening(Incident incident) 
+        {
+            if (!allocations.reserveAll(incident, incident.getResources())) 
+            {
+                throw new IllegalStateException("Not enough units free to reopen incident " + incident.getIncidentNumber());
+            }
+        }
+
+        // A setter called from outside this class publishes its change here, with the
+        // incident's lock let go unless the caller holds it itself
+        @Override
+        public void incidentUnlocked(Incident incident) 
+        {
+            IncidentEventBuffer pending = pendingEvents.get();
+            if (pending.isIdle()) 
+            {
+                pending.publishTo(changes);
+            }
+        }
+    };
+    // Moves a copy handed out from the history into the store when it is first changed
+    private final IncidentListener historyPromoter = (incident, field) -> promoteFromHistory(incident);
+    // Calls, failures and latencies of the main operations. Changes take a microsecond or
+    // so and only a sample of them read the clock; lookups take nanoseconds and are only
+    // counted from a sample too.
+    private final Metrics metrics = new Metrics();
+    private final OperationMetrics addMetrics = metrics.operation("addIncident", CHANGE_SAMPLING);
+    private final OperationMetrics findMetrics = metrics.sampledOperation("findIncidentByNumber", LOOKUP_SAMPLING);
+    private final OperationMetrics updateMetrics = metrics.operation("updateIncident", CHANGE_SAMPLING);
+    private final OperationMetrics assignMetrics = metrics.operation("assignResourceToIncident", CHANGE_SAMPLING);
+    private final OperationMetrics saveIncidentsMetrics = metrics.operation("saveIncidentsToCSV", 1);
+    private final OperationMetrics saveIncidentChangesMetrics = metrics.operation("saveIncidentChangesToCSV", 1);
+    private final OperationMetrics loadIncidentsMetrics = metrics.operation("loadIncidentsFromCSV", 1);
+    private final OperationMetrics loadHistoryMetrics = metrics.operation("loadHistoryFromCSV", 1);
+    private final OperationMetrics importMetrics = metrics.operation("importIncidentsFromCSV", 1);
+    private final OperationMetrics saveResourcesMetrics = metrics.operation("saveResourcesToCSV", 1);
+    private final OperationMetrics saveResourceChangesMetrics = metrics.operation("saveResourceChangesToCSV", 1);
+    private final OperationMetrics loadResourcesMetrics = metrics.operation("loadResourcesFromCSV", 1);
+    private final OperationMetrics saveAssignmentsMetrics = metrics.operation("saveAssignmentsToCSV", 1);
+    private final OperationMetrics saveAssignmentChangesMetrics = metrics.operation("saveAssignmentChangesToCSV", 1);
+    private final OperationMetrics loadAssignmentsMetrics = metrics.operation("loadAssignmentsFromCSV", 1);
+    private final OperationMetrics saveSnapshotMetrics = metrics.operation("saveSnapshot", 1);
+    private final OperationMetrics loadSnapshotMetrics = metrics.operation("loadSnapshot", 1);
+    // Creations, changes and assignments, for other systems to follow as they happen. Each
+    // is captured under its incident's lock and published once the thread has let go of
+    // that lock and its number's, so a publisher waiting on a BLOCK subscriber holds
+    // nothing the subscriber's handler may want. Events of one incident changed on two
+    // threads at once may be published out of order; their versions tell which is later.
+    private final IncidentEventRing changes = new IncidentEventRing(EVENT_RING_SIZE);
+    private final ThreadLocal<IncidentEventBuffer> pendingEvents = ThreadLocal.withInitial(IncidentEventBuffer::new);
+    // Incidents stored or changed, and ones given resources, since a save last took them, so
+    // a delta save reads these rather than asking every incident. A save puts back what it
+    // failed to write. Ones saved or replaced since are skipped when taken.
+    private final Set<Incident> unsavedIncidents = ConcurrentHashMap.newKeySet();
+    private final Set<Incident> unsavedAssignments = ConcurrentHashMap.newKeySet();
+
+    private static final String INCIDENTS_CSV_HEADER = IncidentColumns.HEADER;
+    private static final String RESOURCES_CSV_HEADER = CsvWriter.row("Resource No", "Resource Code", "Resource Description", "Number of Units");
+    // Files saved before the code was written end at the units
+    private static final String ASSIGNMENTS_CSV_HEADER = CsvWriter.row("Incident No", "Resource No", "Number of Units", "Resource Code");
+    // Segment files written by delta saves before they are merged into the snapshot
+    private static final int COMPACT_AFTER_SEGMENTS = 8;
+
+    // Reports this close in time from the same caller, or this close in place, may be repeats
+    public static final long DUPLICATE_WINDOW_SECONDS = 30 * 60;
+    public static final double DUPLICATE_RADIUS_KM = 0.2;
+    // One call in this many is timed
+    private static final int CHANGE_SAMPLING = 8;
+    private static final int LOOKUP_SAMPLING = 256;
+    private static final int EVENT_RING_SIZE = 1 << 16;
 
     public IncidentManagementSystem() {
-        this.incidents = new ArrayList<>();
-        this.uniqueResources = new ArrayList<>();
+        this.incidents = new IncidentStore();
+        this.resources = new ResourceCatalogue();
+        this.allocations = new AllocationEngine();
+        this.dispatch = new DispatchRecommender(allocations);
+        this.workQueue = new WorkQueue();
+        this.searchIndex = new TextIndex();
+        this.callers = new PhoneIndex();
+        this.locations = new SpatialIndex<>();
+        this.timeline = new TimeIndex<>();
+        this.history = new ColumnarIncidentStore();
+        this.ongoingPerArea = registerView(IncidentView.ongoingPerArea(IncidentView.DEFAULT_AREA_DEGREES));
+        this.perHour = registerView(IncidentView.perHour());
+        this.committedUnitsPerCode = registerView(IncidentView.committedUnitsPerCode());
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "csv-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Add a new incident to the list
+    public void addIncident(Incident incident) 
+    {
+        long start = addMetrics.start();
+        storeIncident(incident);
+        addMetrics.finish(start);
+    }
+
+    private void storeIncident(Incident incident) 
+    {
+        storeIncident(incident, true);
+    }
+
+    // Store an incident, replacing and unindexing any incident with the same number. An
+    // incident stored singly is indexed for text straight away and published as a change
+    // once the locks are let go; bulk loads index every loaded incident's text together
+    // afterwards and publish nothing.
+    private void storeIncident(Incident incident, boolean single) 
+    {
+        IncidentEventBuffer pending = pendingEvents.get();
+        pending.enter();
+        try 
+        {
+            storeLocked(incident, single);
+        } 
+        finally 
+        {
+            publishPending(pending, incident);
+        }
+    }
+
+    private void storeLocked(Incident incident, boolean single) 
+    {
+        // The number's lock makes the swap and reindex atomic against other stores of it
+        synchronized (incidents.lockFor(incident.getIncidentNumber())) 
+        {
+            Incident previous = incidents.put(incident);
+            // A stored incident supersedes its history
+            boolean fromHistory = history.remove(incident.getIncidentNumber());
+            if (previous != null && previous != incident) 
+            {
+                unindexIncident(previous);
+                workQueue.remove(previous);
+                callers.remove(previous);
+                unsavedIncidents.remove(previous);
+                unsavedAssignments.remove(previous);
+                resources.unassign(previous);
+                synchronized (previous) 
+                {
+                    allocations.release(previous);
+                }
+            }
+            for (Resource resource : incident.getResources()) 
+            {
+                resources.assign(resource, incident);
+            }
+            if (previous != incident) 
+            {
+                synchronized (incident) 
+                {
+                    allocations.commit(incident, incident.getResources());
+                }
+            }
+            synchronized (incident) 
+            {
+                // Storing the same incident again must not add it to the views twice
+                if (incident.getListener() != indexUpdater) 
+                {
+                    incident.setListener(indexUpdater);
+                    enterViews(incident, null);
+                }
+                if (incident.isDirty()) 
+                {
+                    unsavedIncidents.add(incident);
+                }
+                if (!incident.getUnsavedResources().isEmpty()) 
+                {
+                    unsavedAssignments.add(incident);
+                }
+                // Published with the listener set, before any change to it can be
+                if (single) 
+                {
+                    boolean created = previous == null && !fromHistory;
+                    publish(created ? IncidentEvent.Type.CREATED : IncidentEvent.Type.UPDATED, incident, null);
+                }
+            }
+            reindexIncident(incident);
+            workQueue.update(incident);
+            callers.update(incident);
+            if (single) 
+            {
+                synchronized (incident) 
+                {
+                    indexText(incident);
+                }
+            }
+        }
+    }
+
+    // Called with the incident's lock held
+    private void indexText(Incident incident) 
+    {
+        searchIndex.update(incident.getIncidentNumber(), incident.getReporterName(), incident.getIncidentDetails());
+    }
+
+    // Index the text of incidents stored by a bulk load, tokenising them in parallel
+    private void indexLoadedText(List<Incident> loaded) 
+    {
+        int[] numbers = new int[loaded.size()];
+        String[] names = new String[loaded.size()];
+        String[] details = new String[loaded.size()];
+        for (int i = 0; i < loaded.size(); i++) 
+        {
+            Incident incident = loaded.get(i);
+            numbers[i] = incident.getIncidentNumber();
+            names[i] = incident.getReporterName();
+            details[i] = incident.getIncidentDetails();
+        }
+        searchIndex.addAll(numbers, names, details);
+        // Catch up with incidents changed or replaced while the batch was built. A replaced
+        // incident has lost its listener; asking the store instead would take the number's
+        // lock inside the incident's, the reverse of storeIncident's order.
+        for (Incident incident : loaded) 
+        {
+            synchronized (incident) 
+            {
+                if (incident.getListener() == indexUpdater) 
+                {
+                    indexText(incident);
+                }
+            }
+        }
+    }
+
+    // Called with the copy's lock held. The copy is not in the store, so nothing else takes
+    // its lock and then its number's. A copy whose number was stored meanwhile, from the
+    // history or by another copy, is stale, and its change stays with it.
+    private void promoteFromHistory(Incident incident) 
+    {
+        IncidentEventBuffer pending = pendingEvents.get();
+        pending.enter();
+        try 
+        {
+            synchronized (incidents.lockFor(incident.getIncidentNumber())) 
+            {
+                if (incident.getListener() == historyPromoter && !incidents.contains(incident.getIncidentNumber())
+                        && history.contains(incident.getIncidentNumber())) 
+                {
+                    // Unsaved, so the next save writes it to the incidents file
+                    storeIncident(incident);
+                } 
+                else 
+                {
+                    incident.setListener(null);
+                }
+            }
+        } 
+        finally 
+        {
+            // The setter that got here holds the copy's lock, and publishes once it lets go
+            publishPending(pending, incident);
+        }
+    }
+
+    // Called with the incident's lock held
+    private void incidentChanged(Incident incident, Incident.Field field) 
+    {
+        reindexIncident(incident);
+        enterViews(incident, field);
+        workQueue.update(incident);
+        callers.update(incident);
+        indexText(incident);
+        unsavedIncidents.add(incident);
+        if (field == Incident.Field.RESOURCES) 
+        {
+            unsavedAssignments.add(incident);
+        }
+        if (!incident.isOngoing()) 
+        {
+            allocations.release(incident);
+        }
+        // Assignments are published with the resource by assignResourceToIncident
+        if (field != Incident.Field.RESOURCES) 
+        {
+            boolean closed = field == Incident.Field.ONGOING && !incident.isOngoing();
+            publish(closed ? IncidentEvent.Type.CLOSED : IncidentEvent.Type.UPDATED, incident, field);
+        }
+    }
+
+    // Called with the incident's lock held; the event goes out once the thread lets go of it
+    private void publish(IncidentEvent.Type type, Incident incident, Incident.Field field) 
+    {
+        pendingEvents.get().add(type, incident.getIncidentNumber(), field, incident.getVersion(), 0, 0);
+    }
+
+    // End a call that may have captured events, publishing them if it was the outermost
+    // and the thread no longer holds the incident's lock; null if none was found
+    private void publishPending(IncidentEventBuffer pending, Incident incident) 
+    {
+        if (pending.exit() && (incident == null || !Thread.holdsLock(incident))) 
+        {
+            pending.publishTo(changes);
+        }
+    }
+
+    // Follow every creation, change and assignment from now on. The handler is called on a
+    // thread of the subscription's own, with up to maxBatch events between the points where
+    // a BLOCK subscriber lets publishers on; see IncidentEventRing for the two policies.
+    // Loads and imports are not published. Events are published after the changes' locks
+    // are let go, so a handler may read incidents, but not change them: a BLOCK handler
+    // publishing into a full ring would wait on itself. A caller that holds an incident's
+    // lock itself around a setter publishes with that lock held, and a BLOCK handler must
+    // then not wait on that incident; updateIncident with a Consumer publishes after it.
+    public IncidentSubscription subscribe(String name, IncidentEventRing.Backpressure backpressure, int maxBatch,
+                                          IncidentEventHandler handler) 
+    {
+        return changes.subscribe(name, backpressure, maxBatch, handler);
+    }
+
+    // Called with the incident's lock held, after it is stored or after a change to field,
+    // which is null for the whole incident; lock order is incident, then each view
+    private void enterViews(Incident incident, Incident.Field field) 
+    {
+        for (IncidentView<?> view : views) 
+        {
+            if (field == null) 
+            {
+                view.add(incident);
+            } 
+            else if (view.reads(field)) 
+            {
+                view.changed(incident);
+            }
+        }
+    }
+
+    // Called with the incident's lock held, before a change to field or the unstoring
+    private void leaveViews(Incident incident, Incident.Field field) 
+    {
+        for (IncidentView<?> view : views) 
+        {
+            if (field == null) 
+            {
+                view.remove(incident);
+            } 
+            else if (view.reads(field)) 
+            {
+                view.changing(incident);
+            }
+        }
+    }
+
+    // Keep a view current from now on, first filling it from the stored incidents, and
+    // return it. Reading it costs the same however many incidents there are. Incidents
+    // stored or changed while it fills are added by the listener and not again here.
+    public <K> IncidentView<K> registerView(IncidentView<K> view) 
+    {
+        view.startFilling();
+        views.add(view);
+        for (Incident listed : incidents.asList()) 
+        {
+            // Under the number's lock, as storeIncident puts the new incident in before it
+            // takes the one it replaces out of the views; with the lock free, the stored
+            // incident is the one in the views
+            synchronized (incidents.lockFor(listed.getIncidentNumber())) 
+            {
+                Incident incident = incidents.find(listed.getIncidentNumber());
+                if (incident != null) 
+                {
+                    synchronized (incident) 
+                    {
+                        view.fill(incident);
+                    }
+                }
+            }
+        }
+        view.finishFilling();
+        return view;
+    }
+
+    // Stop keeping a view current
+    public void unregisterView(IncidentView<?> view) 
+    {
+        views.remove(view);
+    }
+
+    // Ongoing incidents per area of IncidentView.DEFAULT_AREA_DEGREES
+    public IncidentView<Long> getOngoingPerArea() 
+    {
+        return ongoingPerArea;
+    }
+
+    public IncidentView<Long> getIncidentsPerHour() 
+    {
+        return perHour;
+    }
+
+    public IncidentView<String> getCommittedUnitsPerCode() 
+    {
+        return committedUnitsPerCode;
+    }
+
+    // Lock order is incident, then locations, then timeline
+    private void reindexIncident(Incident incident) 
+    {
+        synchronized (incident) 
+        {
+            GPSLocation location = incident.getGpsLocation();
+            synchronized (locations) 
+            {
+                if (location != null && location.hasCoordinates()) 
+                {
+                    locations.put(incident, location.getLatitude(), location.getLongitude());
+                } 
+                else 
+                {
+                    locations.remove(incident);
+                }
+            }
+            synchronized (timeline) 
+            {
+                if (incident.getTimestamp() != Incident.NO_TIMESTAMP) 
+                {
+                    timeline.put(incident, incident.getTimestamp());
+                } 
+                else 
+                {
+                    timeline.remove(incident);
+                }
+            }
+        }
+    }
+
+    private void unindexIncident(Incident incident) 
+    {
+        synchronized (incident) 
+        {
+            if (incident.getListener() == indexUpdater) 
+            {
+                leaveViews(incident, null);
+            }
+            incident.setListener(null);
+            synchronized (locations) 
+            {
+                locations.remove(incident);
+            }
+            synchronized (timeline) 
+            {
+                timeline.remove(incident);
+            }
+        }
+    }
+
+    // Find incidents within a radius (in km) of a point, optionally only ongoing ones
+    public List<Incident> findIncidentsWithinRadius(double latitude, double longitude, double radiusKm, boolean ongoingOnly) 
+    {
+        synchronized (locations) 
+        {
+            return locations.withinRadius(latitude, longitude, radiusKm, ongoingOnly ? Incident::isOngoing : null);
+        }
+    }
+
+    // Find incidents inside a latitude/longitude box, optionally only ongoing ones
+    public List<Incident> findIncidentsInArea(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, boolean ongoingOnly) 
+    {
+        synchronized (locations) 
+        {
+            return locations.withinBox(minLatitude, minLongitude, maxLatitude, maxLongitude, ongoingOnly ? Incident::isOngoing : null);
+        }
+    }
+
+    // Find the incidents nearest to a point, nearest first, optionally only ongoing ones
+    public List<Incident> findNearestIncidents(double latitude, double longitude, int count, boolean ongoingOnly) 
+    {
+        synchronized (locations) 
+        {
+            return locations.nearest(latitude, longitude, count, ongoingOnly ? Incident::isOngoing : null);
+        }
+    }
+
+    // Find incidents whose timestamp is in [fromEpochSecond, toEpochSecond), oldest first
+    public List<Incident> findIncidentsBetween(long fromEpochSecond, long toEpochSecond) 
+    {
+        List<Incident> found;
+        synchronized (timeline) 
+        {
+            found = timeline.between(fromEpochSecond, toEpochSecond);
+        }
+        if (history.size() == 0) 
+        {
+            return found;
+        }
+        List<Incident> merged = new ArrayList<>(found);
+        merged.addAll(fromHistory(history.findBetween(fromEpochSecond, toEpochSecond)));
+        merged.sort(Comparator.comparingLong(Incident::getTimestamp));
+        return merged;
+    }
+
+    // Get the most recent incidents, newest first, including the history's
+    public List<Incident> findLatestIncidents(int count) 
+    {
+        List<Incident> found;
+        synchronized (timeline) 
+        {
+            found = timeline.latest(count);
+        }
+        if (history.size() == 0) 
+        {
+            return found;
+        }
+        List<Incident> merged = new ArrayList<>(found);
+        merged.addAll(fromHistory(history.latest(count)));
+        merged.sort(Comparator.comparingLong(Incident::getTimestamp).reversed());
+        return merged.size() > count ? new ArrayList<>(merged.subList(0, count)) : merged;
+    }
+
+    // Count incidents in each hour from fromEpochSecond up to toEpochSecond
+    public int[] countIncidentsPerHour(long fromEpochSecond, long toEpochSecond) 
+    {
+        return countIncidentsPerBucket(fromEpochSecond, toEpochSecond, 3600);
+    }
+
+    // Count incidents in each day from fromEpochSecond up to toEpochSecond
+    public int[] countIncidentsPerDay(long fromEpochSecond, long toEpochSecond) 
+    {
+        return countIncidentsPerBucket(fromEpochSecond, toEpochSecond, 86400);
+    }
+
+    // Count live and history incidents per bucket; the history counts its timestamp
+    // column without building incidents
+    private int[] countIncidentsPerBucket(long fromEpochSecond, long toEpochSecond, long bucketSize) 
+    {
+        int[] counts;
+        synchronized (timeline) 
+        {
+            counts = timeline.countByBucket(fromEpochSecond, toEpochSecond, bucketSize);
+        }
+        if (history.size() != 0) 
+        {
+            history.countByBucket(fromEpochSecond, toEpochSecond, bucketSize, counts);
+        }
+        return counts;
+    }
+
+    public List<Incident> getIncidents() {
+        return incidents.asList();
+    }
+
+    // Get all incidents stored in the system
+    public List<Incident> getAllIncidents() 
+    {
+        return incidents.asList();
+    }
+
+    // Get the distinct resources loaded or assigned, in the order they were first seen
+    public List<Resource> getUniqueResources() 
+    {
+        return resources.asList();
+    }
+
+    // Find the first resource with the given number, or null
+    public Resource findResourceByNumber(int resourceNumber) 
+    {
+        return resources.find(resourceNumber);
+    }
+
+    // Find every distinct resource with the given code
+    public List<Resource> findResourcesByCode(String resourceCode) 
+    {
+        return resources.findByCode(resourceCode);
+    }
+
+    // Find the incidents a resource is assigned to
+    public List<Incident> findIncidentsForResource(Resource resource) 
+    {
+        return resources.incidentsFor(resource);
+    }
+
+    // Check if an incident with the given number exists, in the store or the history
+    public boolean incidentExists(int incidentNumber) 
+    {
+        return incidents.contains(incidentNumber) || history.contains(incidentNumber);
+    }
+
+    // Add a new incident and record it in the journal kept in the given file. It is stored
+    // before it is journaled, so a save begun after journalMark holds every incident
+    // journaled before the mark.
+    public void addIncident(Incident incident, String filename) 
+    {
+        long start = addMetrics.start();
+        storeIncident(incident);
+        IncidentJournal current = journal;
+        if (current == null || !current.getFilename().equals(filename)) 
+        {
+            current = switchJournal(filename);
+        }
+        if (current != null) 
+        {
+            current.append(incident);
+        }
+        addMetrics.finish(start);
+    }
+
+    private synchronized IncidentJournal switchJournal(String filename) 
+    {
+        if (journal == null || !journal.getFilename().equals(filename)) 
+        {
+            openJournal(filename, false);
+        }
+        return journal;
+    }
+
+    // Open the incident journal, replaying the incidents it holds into the system if asked
+    public synchronized void openJournal(String filename, boolean replay) 
+    {
+        closeJournal();
+        try 
+        {
+            journal = IncidentJournal.open(filename);
+            if (replay) 
+            {
+                journal.replay(row -> storeIncident(new Incident(row)));
+            }
+        } 
+        catch (IOException e) 
+        {
+            e.printStackTrace();
+        }
+    }
+
+    // Where the journal ends now; take it before a save, and once the save has succeeded
+    // pass it to checkpointJournal
+    public long journalMark() 
+    {
+        IncidentJournal current = journal;
+        return current == null ? 0 : current.mark();
+    }
+
+    // Drop the journaled incidents before a mark once a save begun after it has written
+    // them. Incidents journaled since the mark stay until the next checkpoint.
+    public void checkpointJournal(long mark) 
+    {
+        IncidentJournal current = journal;
+        if (current != null) 
+        {
+            try 
+            {
+                current.truncate(mark);
+            } 
+            catch (IOException e) 
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Flush and close the journal
+    public synchronized void closeJournal() 
+    {
+        if (journal != null) 
+        {
+            try 
+            {
+                journal.close();
+            } 
+            catch (IOException e) 
+            {
+                e.printStackTrace();
+            }
+            journal = null;
+        }
+    }
+
+    // Save every incident to a CSV file, replacing any earlier snapshot and segments.
+    // Returns whether it was written; this and the other saves print why not.
+    public boolean saveIncidentsToCSV(String filename) 
+    {
+        IncidentFileEvent event = IncidentFileEvent.begin(saveIncidentsMetrics, filename);
+        // Cleared before the incidents are read, so one changed after is added back
+        unsavedIncidents.clear();
+        List<Incident> saved = incidents.asList();
+        try 
+        {
+            long[] versions = new long[saved.size()];
+            List<String> rows = renderIncidents(saved, versions);
+            CsvSegments.writeSnapshot(filename, INCIDENTS_CSV_HEADER, rows);
+            markSaved(saved, versions);
+            event.rows = rows.size();
+        } 
+        catch (IOException e) 
+        {
+            for (Incident incident : saved) 
+            {
+                if (incident.isDirty()) 
+                {
+                    unsavedIncidents.add(incident);
+                }
+            }
+            event.failed(e);
+            e.printStackTrace();
+        }
+        return event.finish();
+    }
+
+    // Save only new and changed incidents to a segment file next to the CSV snapshot
+    public boolean saveIncidentChangesToCSV(String filename) 
+    {
+        if (!CsvSegments.hasSnapshot(filename)) 
+        {
+            return saveIncidentsToCSV(filename);
+        }
+        IncidentFileEvent event = IncidentFileEvent.begin(saveIncidentChangesMetrics, filename);
+        List<Incident> changed = new ArrayList<>();
+        for (Incident incident : takeStored(unsavedIncidents)) 
+        {
+            if (incident.isDirty()) 
+            {
+                changed.add(incident);
+            }
+        }
+        if (changed.isEmpty()) 
+        {
+            return event.finish();
+        }
+        try 
+        {
+            long[] versions = new long[changed.size()];
+            List<String> rows = renderIncidents(changed, versions);
+            int segments = CsvSegments.writeSegment(filename, INCIDENTS_CSV_HEADER, rows);
+            markSaved(changed, versions);
+            event.rows = rows.size();
+            if (segments >= COMPACT_AFTER_SEGMENTS) 
+            {
+                // The snapshot may predate the current columns, so each file's rows are read by its header
+                IncidentColumns[] columns = { IncidentColumns.STANDARD };
+                compactInBackground(filename, INCIDENTS_CSV_HEADER, header -> columns[0] = IncidentColumns.fromHeader(header),
+                        row -> row.getInt(columns[0].number), row -> new Incident(row, columns[0]).toCSVString());
+            }
+        } 
+        catch (IOException e) 
+        {
+            unsavedIncidents.addAll(changed);
+            event.failed(e);
+            e.printStackTrace();
+        }
+        return event.finish();
+    }
+
+    // Load incidents from a CSV snapshot and its segments, streaming each row straight into an Incident.
+    // Each file's header says which column holds which field, so files saved by older versions load too.
+    // Rows that fail the same checks as the prompts are skipped; returns how many were skipped.
+    public int loadIncidentsFromCSV(String filename) 
+    {
+        IncidentFileEvent event = IncidentFileEvent.begin(loadIncidentsMetrics, filename);
+        int[] rejected = new int[1];
+        List<Incident> loaded = new ArrayList<>();
+        IncidentColumns[] columns = { IncidentColumns.STANDARD };
+        try 
+        {
+            CsvSegments.read(filename, header -> columns[0] = IncidentColumns.fromHeader(header), row -> {
+                if (!InputValidator.isValidIncidentRow(row, columns[0])) 
+                {
+                    rejected[0]++;
+                    return;
+                }
+                Incident incident = new Incident(row, columns[0]);
+                incident.markSaved();
+                storeIncident(incident, false);
+                loaded.add(incident);
+            });
+        } 
+        catch (IOException e) 
+        {
+            event.failed(e);
+            e.printStackTrace();
+        }
+        indexLoadedText(loaded);
+        event.rows = loaded.size() + rejected[0];
+        event.rejected = rejected[0];
+        event.finish();
+        return rejected[0];
+    }
+
+    // Load an archive of incidents, such as years of closed ones, into the history. Closed
+    // incidents are kept as columns, in about a seventh of the heap stored ones take; ongoing
+    // ones, and ones already stored, are stored as by loadIncidentsFromCSV. Rows that fail
+    // the prompts' checks are skipped; returns how many were skipped.
+    public int loadHistoryFromCSV(String filename) 
+    {
+        IncidentFileEvent event = IncidentFileEvent.begin(loadHistoryMetrics, filename);
+        int[] rejected = new int[1];
+        int[] read = new int[1];
+        List<Incident> loaded = new ArrayList<>();
+        IncidentColumns[] columns = { IncidentColumns.STANDARD };
+        try 
+        {
+            CsvReader.read(filename, header -> columns[0] = IncidentColumns.fromHeader(header), row -> {
+                read[0]++;
+                if (!InputValidator.isValidIncidentRow(row, columns[0])) 
+                {
+                    rejected[0]++;
+                    return;
+                }
+                Incident incident = new Incident(row, columns[0]);
+                incident.markSaved();
+                if (incident.isOngoing() || incidents.contains(incident.getIncidentNumber())) 
+                {
+                    storeIncident(incident, false);
+                    loaded.add(incident);
+                } 
+                else 
+                {
+                    history.put(incident);
+                }
+            });
+        } 
+        catch (IOException e) 
+        {
+            event.failed(e);
+            e.printStackTrace();
+        }
+        indexLoadedText(loaded);
+        event.rows = read[0];
+        event.rejected = rejected[0];
+        event.finish();
+        return rejected[0];
+    }
+
+    // Import incidents from a large CSV file, such as another agency's archive. The file is
+    // read and validated in parallel, the last row for each incident number wins, and the
+    // incidents are stored in one bulk merge. Rows that fail validation, and rows a later row
+    // supersedes, are written to rejectsFilename with the reason. Imported incidents are
+    // unsaved, so the next save writes them to this system's CSV files.
+    public ImportResult importIncidentsFromCSV(String filename, String rejectsFilename) 
+    {
+        IncidentFileEvent event = IncidentFileEvent.begin(importMetrics, filename);
+        ImportResult result;
+        try 
+        {
+            IncidentImporter importer = IncidentImporter.read(filename, rejectsFilename);
+            storeImported(importer.getIncidents());
+            result = importer.getResult();
+        } 
+        catch (IOException e) 
+        {
+            event.failed(e);
+            e.printStackTrace();
+            result = new ImportResult(0, 0, 0, 0);
+        }
+        event.rows = result.getRows();
+        event.rejected = result.getRejected() + result.getDuplicates();
+        event.finish();
+        return result;
+    }
+
+    // Store a batch of incidents. Each new incident goes into the store under its number's
+    // lock as in storeIncident, but the indexes are then brought up to date for the whole
+    // batch at once, one task per index, rather than incident by incident. Incidents that
+    // replace a stored one take the usual path.
+    private void storeImported(List<Incident> imported) 
+    {
+        List<Incident> added = new ArrayList<>(imported.size());
+        for (Incident incident : imported) 
+        {
+            synchronized (incidents.lockFor(incident.getIncidentNumber())) 
+            {
+                if (incidents.contains(incident.getIncidentNumber())) 
+                {
+                    storeIncident(incident, false);
+                    continue;
+                }
+                incidents.put(incident);
+                history.remove(incident.getIncidentNumber());
+                synchronized (incident) 
+                {
+                    incident.setListener(indexUpdater);
+                    enterViews(incident, null);
+                }
+                added.add(incident);
+            }
+        }
+        // Each task reads an incident under its lock, so a change made meanwhile, which
+        // reindexes through the listener, is never overwritten with older state
+        ForkJoinTask.invokeAll(
+                ForkJoinTask.adapt(() -> added.forEach(this::reindexIncident)),
+                ForkJoinTask.adapt(() -> added.forEach(incident -> {
+                    synchronized (incident) 
+                    {
+                        workQueue.update(incident);
+                    }
+                })),
+                ForkJoinTask.adapt(() -> added.forEach(incident -> {
+                    synchronized (incident) 
+                    {
+                        callers.update(incident);
+                    }
+                })),
+                ForkJoinTask.adapt(() -> indexLoadedText(imported)));
+    }
+
+    // Save the distinct resources to a CSV file, replacing any earlier snapshot and segments
+    public boolean saveResourcesToCSV(String filename) 
+    {
+        IncidentFileEvent event = IncidentFileEvent.begin(saveResourcesMetrics, filename);
+        try 
+        {
+            List<Resource> saved = resources.asList();
+            CsvSegments.writeSnapshot(filename, RESOURCES_CSV_HEADER, csvRows(saved, Resource::toCSVString));
+            resources.markSaved(saved.size());
+            event.rows = saved.size();
+        } 
+        catch (IOException e) 
+        {
+            event.failed(e);
+            e.printStackTrace();
+        }
+        return event.finish();
+    }
+
+    // Save only resources first seen since the last save to a segment file
+    public boolean saveResourceChangesToCSV(String filename) 
+    {
+        if (!CsvSegments.hasSnapshot(filename)) 
+        {
+            return saveResourcesToCSV(filename);
+        }
+        IncidentFileEvent event = IncidentFileEvent.begin(saveResourceChangesMetrics, filename);
+        int savedCount = resources.size();
+        List<Resource> added = resources.getUnsaved();
+        if (added.isEmpty()) 
+        {
+            return event.finish();
+        }
+        try 
+        {
+            int segments = CsvSegments.writeSegment(filename, RESOURCES_CSV_HEADER, csvRows(added, Resource::toCSVString));
+            resources.markSaved(savedCount);
+            event.rows = added.size();
+            if (segments >= COMPACT_AFTER_SEGMENTS) 
+            {
+                compactInBackground(filename, RESOURCES_CSV_HEADER, null, row -> new Resource(row).toCSVString());
+            }
+        } 
+        catch (IOException e) 
+        {
+            event.failed(e);
+            e.printStackTrace();
+        }
+        return event.finish();
+    }
+    
+    // Load resources from a CSV snapshot and its segments
+    public void loadResourcesFromCSV(String filename) 
+    {
+        IncidentFileEvent event = IncidentFileEvent.begin(loadResourcesMetrics, filename);
+        boolean saved = resources.getUnsaved().isEmpty();
+        try 
+        {
+            // Add each resource to the catalogue as it is read
+            CsvSegments.read(filename, row -> {
+                resources.intern(new Resource(row));
+                event.rows++;
+            });
+        } 
+        catch (IOException e) 
+        {
+            event.failed(e);
+            e.printStackTrace();
+        }
+        if (saved) 
+        {
+            resources.markSaved(resources.size());
+        }
+        event.finish();
     }
 
-    // Add a new incident to the list
-    public void addIncident(Incident incident) 
+    // Save which resources are assigned to which incidents, replacing any earlier snapshot and segments
+    public boolean saveAssignmentsToCSV(String filename) 
     {
-        incidents.add(incident);
+        IncidentFileEvent event = IncidentFileEvent.begin(saveAssignmentsMetrics, filename);
+        // Cleared before the incidents are read, so one assigned to after is added back
+        unsavedAssignments.clear();
+        // Loop through all incidents and save their resources
+        List<Incident> owners = incidents.asList();
+        try 
+        {
+            int[] counts = new int[owners.size()];
+            List<String> rows = new ArrayList<>();
+            for (int i = 0; i < owners.size(); i++) 
+            {
+                Incident incident = owners.get(i);
+                List<Resource> assigned = List.copyOf(incident.getResources());
+                counts[i] = assigned.size();
+                addAssignmentRows(rows, incident, assigned);
+            }
+            CsvSegments.writeSnapshot(filename, ASSIGNMENTS_CSV_HEADER, rows);
+            for (int i = 0; i < owners.size(); i++) 
+            {
+                owners.get(i).markResourcesSaved(counts[i]);
+            }
+            event.rows = rows.size();
+        } 
+        catch (IOException e) 
+        {
+            for (Incident incident : owners) 
+            {
+                if (!incident.getUnsavedResources().isEmpty()) 
+                {
+                    unsavedAssignments.add(incident);
+                }
+            }
+            event.failed(e);
+            e.printStackTrace();
+        }
+        return event.finish();
     }
 
-    public List<Incident> getIncidents() {
-        return incidents;
+    // Save only assignments made since the last save to a segment file
+    public boolean saveAssignmentChangesToCSV(String filename) 
+    {
+        if (!CsvSegments.hasSnapshot(filename)) 
+        {
+            return saveAssignmentsToCSV(filename);
+        }
+        IncidentFileEvent event = IncidentFileEvent.begin(saveAssignmentChangesMetrics, filename);
+        List<Incident> changed = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        List<String> rows = new ArrayList<>();
+        for (Incident incident : takeStored(unsavedAssignments)) 
+        {
+            // Read the new resources and the total together so a concurrent assignment
+            // is left unsaved rather than marked saved
+            synchronized (incident) 
+            {
+                List<Resource> unsaved = incident.getUnsavedResources();
+                if (!unsaved.isEmpty()) 
+                {
+                    changed.add(incident);
+                    counts.add(incident.getResources().size());
+                    addAssignmentRows(rows, incident, unsaved);
+                }
+            }
+        }
+        if (rows.isEmpty()) 
+        {
+            return event.finish();
+        }
+        try 
+        {
+            int segments = CsvSegments.writeSegment(filename, ASSIGNMENTS_CSV_HEADER, rows);
+            for (int i = 0; i < changed.size(); i++) 
+            {
+                changed.get(i).markResourcesSaved(counts.get(i));
+            }
+            event.rows = rows.size();
+            if (segments >= COMPACT_AFTER_SEGMENTS) 
+            {
+                compactInBackground(filename, ASSIGNMENTS_CSV_HEADER, null,
+                        row -> assignmentRow(row.getInt(0), row.getInt(1), row.getInt(2), resourceCode(row)));
+            }
+        } 
+        catch (IOException e) 
+        {
+            unsavedAssignments.addAll(changed);
+            event.failed(e);
+            e.printStackTrace();
+        }
+        return event.finish();
     }
 
-    // Get all incidents stored in the system
-    public List<Incident> getAllIncidents() 
+    // Load assignments and link incidents to their resources; load incidents and resources first.
+    // Rows are grouped by incident number as they stream in, then each incident is looked up
+    // once and given all of its resources in one change. Returns how many rows named an
+    // incident or resource that is not loaded.
+    public int loadAssignmentsFromCSV(String filename) 
     {
-        return incidents;
+        if (!CsvSegments.hasSnapshot(filename)) 
+        {
+            // Nothing was saved before assignments were recorded
+            return 0;
+        }
+        IncidentFileEvent event = IncidentFileEvent.begin(loadAssignmentsMetrics, filename);
+        // Shared instances by resource number and units, each list holding one per code;
+        // rows without a code take the first resource registered with the number
+        Map<Long, List<Resource>> byKey = new HashMap<>();
+        Map<Long, Resource> byKeyWithoutCode = new HashMap<>();
+        AssignmentTable table = new AssignmentTable();
+        int[] unmatched = new int[1];
+        try 
+        {
+            CsvSegments.read(filename, row -> {
+                event.rows++;
+                String code = resourceCode(row);
+                Resource resource = code == null
+                        ? assignedResource(byKeyWithoutCode, row.getInt(1), row.getInt(2))
+                        : assignedResource(byKey, row.getInt(1), code, row.getInt(2));
+                if (resource == null) 
+                {
+                    unmatched[0]++;
+                    return;
+                }
+                table.add(row.getInt(0), resource);
+            });
+        } 
+        catch (IOException e) 
+        {
+            event.failed(e);
+            e.printStackTrace();
+        }
+        table.forEachGroup((incidentNumber, assigned) -> {
+            // Only stored incidents; giving a history copy resources would move it into the store
+            Incident incident = incidents.find(incidentNumber);
+            if (incident == null) 
+            {
+                unmatched[0] += assigned.size();
+                return;
+            }
+            synchronized (incident) 
+            {
+                incident.addSavedResources(assigned);
+                allocations.commit(incident, assigned);
+            }
+            resources.assignAll(assigned, incident);
+        });
+        event.rejected = unmatched[0];
+        event.finish();
+        return unmatched[0];
     }
 
-    public void addIncident(Incident incident, String filename) 
+    // The catalogue's shared instance for an assignment row, with the row's units. Null if
+    // the number and code are not in the catalogue.
+    private Resource assignedResource(Map<Long, List<Resource>> byKey, int resourceNumber, String resourceCode,
+                                      int numUnits) 
     {
-        incidents.add(incident);
-        incident.writeToCSV(filename);
+        List<Resource> shared = byKey.computeIfAbsent(assignmentKey(resourceNumber, numUnits), key -> new ArrayList<>(1));
+        for (Resource resource : shared) 
+        {
+            if (resource.getResourceCode().equals(resourceCode)) 
+            {
+                return resource;
+            }
+        }
+        Resource known = resources.find(resourceNumber, resourceCode);
+        if (known == null) 
+        {
+            return null;
+        }
+        Resource resource = resources.forAssignment(known.withUnits(numUnits));
+        shared.add(resource);
+        return resource;
     }
 
-    // Save incidents to a CSV file
-    public void saveIncidentsToCSV(String filename) 
+    // As above for a row saved before codes were written, taking the first resource
+    // registered with the number. Null if the number is not in the catalogue.
+    private Resource assignedResource(Map<Long, Resource> byKey, int resourceNumber, int numUnits) 
     {
-        try (PrintWriter writer = new PrintWriter(new File(filename))) 
+        long key = assignmentKey(resourceNumber, numUnits);
+        Resource resource = byKey.get(key);
+        if (resource == null) 
         {
-            writer.println("Incident No, Reporter No, Date, Time, GPS-What3Words, Incident Details, Ongoing");
-            for (Incident incident : incidents) 
+            Resource known = resources.find(resourceNumber);
+            if (known == null) 
             {
-                writer.println(incident.toCSVString());
+                return null;
             }
-        } catch (FileNotFoundException e) 
+            resource = resources.forAssignment(known.withUnits(numUnits));
+            byKey.put(key, resource);
+        }
+        return resource;
+    }
+
+    private static long assignmentKey(int resourceNumber, int numUnits) 
+    {
+        return ((long) resourceNumber << 32) | (numUnits & 0xFFFFFFFFL);
+    }
+
+    private static void addAssignmentRows(List<String> rows, Incident incident, List<Resource> assigned) 
+    {
+        for (Resource resource : assigned) 
+        {
+            rows.add(assignmentRow(incident.getIncidentNumber(), resource.getResourceNumber(), resource.getNumUnits(),
+                    resource.getResourceCode()));
+        }
+    }
+
+    // A row without a code, from a file saved before codes were written, stays without one
+    private static String assignmentRow(int incidentNumber, int resourceNumber, int numUnits, String resourceCode) 
+    {
+        StringBuilder row = new StringBuilder().append(incidentNumber).append(CsvWriter.SEPARATOR)
+                .append(resourceNumber).append(CsvWriter.SEPARATOR).append(numUnits);
+        if (resourceCode != null) 
+        {
+            CsvWriter.appendField(row.append(CsvWriter.SEPARATOR), resourceCode);
+        }
+        return row.toString();
+    }
+
+    // The code of an assignment row, or null if it was saved before codes were written
+    private static String resourceCode(CsvRow row) 
+    {
+        return row.size() > 3 ? row.getString(3) : null;
+    }
+
+    // Save incidents, their resources and the unique resources to a binary snapshot file
+    public boolean saveSnapshot(String filename) 
+    {
+        IncidentFileEvent event = IncidentFileEvent.begin(saveSnapshotMetrics, filename);
+        try 
         {
+            List<Incident> saved = incidents.asList();
+            SnapshotWriter.write(filename, saved, resources.asList());
+            event.rows = saved.size();
+        } 
+        catch (IOException e) 
+        {
+            event.failed(e);
             e.printStackTrace();
         }
+        return event.finish();
     }
 
-    // Load incidents from a CSV file
-    public void loadIncidentsFromCSV(String filename) 
+    // Load everything stored in a binary snapshot file. Every incident is decoded and stored
+    // before this returns: the store, indexes and views each need every incident, so reads
+    // are not served from the mapped file while it loads.
+    public void loadSnapshot(String filename) 
     {
-        try (BufferedReader reader = new BufferedReader(new FileReader(new File(filename)))) 
+        IncidentFileEvent event = IncidentFileEvent.begin(loadSnapshotMetrics, filename);
+        try (SnapshotReader reader = SnapshotReader.open(filename)) 
         {
-            String line;
-            boolean firstLine = true; // Skip the header line
-            while ((line = reader.readLine()) != null) 
+            for (int i = 0; i < reader.resourceCount(); i++) 
             {
-                if (firstLine) 
-                {
-                    firstLine = false;
-                    continue;
-                }
-                String[] data = line.split(",");
-                incidents.add(new Incident(data));
+                resources.intern(reader.resourceAt(i));
+            }
+            List<Incident> loaded = new ArrayList<>(reader.incidentCount());
+            for (int i = 0; i < reader.incidentCount(); i++) 
+            {
+                // Incidents share the catalogue's instance of each resource they hold
+                Incident incident = reader.incidentAt(i, resources::forAssignment);
+                storeIncident(incident, false);
+                loaded.add(incident);
             }
+            indexLoadedText(loaded);
+            event.rows = loaded.size();
         } 
         catch (IOException e) 
         {
+            event.failed(e);
             e.printStackTrace();
         }
+        event.finish();
+    }
+
+    // Merge segment files into a fresh snapshot without holding up the caller
+    private void compactInBackground(String filename, String header, ToIntFunction<CsvRow> key,
+                                     Function<CsvRow, String> render) 
+    {
+        compactInBackground(filename, header, oldHeader -> { }, key, render);
+    }
+
+    private void compactInBackground(String filename, String header, CsvReader.RowHandler headerHandler,
+                                     ToIntFunction<CsvRow> key, Function<CsvRow, String> render) 
+    {
+        compactor.execute(() -> {
+            try 
+            {
+                CsvSegments.compact(filename, header, headerHandler, key, render);
+            } 
+            catch (IOException e) 
+            {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private static <T> Iterable<String> csvRows(List<T> records, Function<T, String> render) 
+    {
+        return () -> records.stream().map(render).iterator();
+    }
+
+    // Render each incident together with the version it was rendered at
+    private static List<String> renderIncidents(List<Incident> records, long[] versions) 
+    {
+        List<String> rows = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) 
+        {
+            Incident incident = records.get(i);
+            synchronized (incident) 
+            {
+                versions[i] = incident.getVersion();
+                rows.add(incident.toCSVString());
+            }
+        }
+        return rows;
     }
 
-    // Save resources to a CSV file
-    public void saveResourcesToCSV(String filename) 
+    // Empty an unsaved set, keeping the incidents still stored, in number order. Each is
+    // taken out before it is read, so a change made while it is saved adds it back.
+    private List<Incident> takeStored(Set<Incident> unsaved) 
     {
-        try (PrintWriter writer = new PrintWriter(new File(filename))) 
+        List<Incident> taken = new ArrayList<>();
+        for (Iterator<Incident> it = unsaved.iterator(); it.hasNext(); ) 
         {
-            writer.println("Resource No, Resource Code, Resource Description, Number of Units");
-    
-            // Loop through all incidents and save their resources
-            for (Incident incident : incidents) 
+            Incident incident = it.next();
+            it.remove();
+            if (incidents.find(incident.getIncidentNumber()) == incident) 
+            {
+                taken.add(incident);
+            }
+        }
+        taken.sort(Comparator.comparingInt(Incident::getIncidentNumber));
+        return taken;
+    }
+
+    // Mark incidents saved unless they changed after they were rendered
+    private static void markSaved(List<Incident> records, long[] versions) 
+    {
+        for (int i = 0; i < records.size(); i++) 
+        {
+            records.get(i).markSaved(versions[i]);
+        }
+    }
+
+    // Find an incident by its incident number, in the store or else the history
+    public Incident findIncidentByNumber(int incidentNumber) 
+    {
+        long start = findMetrics.start();
+        Incident incident = lookUpIncident(incidentNumber);
+        findMetrics.finish(start);
+        return incident;
+    }
+
+    // As findIncidentByNumber, without counting a lookup in the metrics
+    private Incident lookUpIncident(int incidentNumber) 
+    {
+        Incident incident = incidents.find(incidentNumber);
+        if (incident == null) 
+        {
+            incident = history.find(incidentNumber);
+            if (incident != null) 
             {
-                for (Resource resource : incident.getResources()) 
+                incident.setListener(historyPromoter);
+            }
+        }
+        return incident; // null if incident not found
+    }
+
+    // Copies handed out from the history, to be moved into the store if changed
+    private List<Incident> fromHistory(List<Incident> copies) 
+    {
+        for (Incident incident : copies) 
+        {
+            incident.setListener(historyPromoter);
+        }
+        return copies;
+    }
+
+    // Update the details of an existing incident
+    public boolean updateIncident(Incident updatedIncident) 
+    {
+        long start = updateMetrics.start();
+        boolean updated = false;
+        IncidentEventBuffer pending = pendingEvents.get();
+        pending.enter();
+        try 
+        {
+            // Replaces the stored incident with the same number
+            synchronized (incidents.lockFor(updatedIncident.getIncidentNumber())) 
+            {
+                if (incidents.contains(updatedIncident.getIncidentNumber())) 
                 {
-                    writer.println(resource.toCSVString());
+                    storeIncident(updatedIncident);
+                    updated = true;
                 }
             }
         } 
-        catch (FileNotFoundException e) 
+        finally 
         {
-            e.printStackTrace();
+            publishPending(pending, updatedIncident);
         }
+        updateMetrics.finish(start);
+        return updated;
     }
-    
-    // Load resources from a CSV file
-    public void loadResourcesFromCSV(String filename) 
+
+    // Apply several changes to a stored incident as one step; other threads see either
+    // none or all of them
+    public boolean updateIncident(int incidentNumber, Consumer<Incident> update) 
     {
-        try (BufferedReader reader = new BufferedReader(new FileReader(new File(filename)))) 
+        long start = updateMetrics.start();
+        Incident incident = lookUpIncident(incidentNumber);
+        if (incident != null) 
         {
-            String line;
-            boolean firstLine = true; // Skip the header line
-            while ((line = reader.readLine()) != null) 
+            IncidentEventBuffer pending = pendingEvents.get();
+            pending.enter();
+            try 
             {
-                if (firstLine) 
+                synchronized (incident) 
                 {
-                    firstLine = false;
-                    continue;
+                    update.accept(incident);
                 }
-                String[] data = line.split(",");
-                int resourceNumber = Integer.parseInt(data[0].trim());
-                String resourceCode = data[1].trim();
-                String resourceDescription = data[2].trim();
-                int numUnits = Integer.parseInt(data[3].trim());
+            } 
+            finally 
+            {
+                publishPending(pending, incident);
+            }
+        }
+        updateMetrics.finish(start);
+        return incident != null;
+    }
 
-                // Create a new Resource object with the gathered information
-                Resource resource = new Resource(resourceNumber, resourceCode, resourceDescription, numUnits);
-                // Add the resource to the unique resources list
-                addUniqueResource(resource);
+    // Display a list of all incidents with their details
+    public void displayIncidents() 
+    {
+        // Streamed through one buffer rather than a String per incident
+        IncidentWriter writer = new IncidentWriter(new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset())));
+        try 
+        {
+            writer.writeLine("=== List of Incidents ===");
+            for (Incident incident : incidents.asList()) 
+            {
+                writer.write(incident);
             }
+            writer.flush();
         } 
         catch (IOException e) 
         {
@@ -128,59 +1481,276 @@ public class IncidentManagementSystem
         }
     }
 
-    // Add a resource to the list of unique resources
-    private void addUniqueResource(Resource resource) 
+    // Up to pageSize incidents that pass a filter, in the order they were added, starting at
+    // a cursor: 0 for the first page, then each page's next cursor. A page costs its own
+    // incidents plus those the filter skips, however far into the store it starts.
+    public IncidentPage getIncidentPage(IncidentFilter filter, int cursor, int pageSize) 
+    {
+        List<Incident> snapshot = incidents.asList();
+        List<Incident> page = new ArrayList<>();
+        if (cursor == IncidentPage.END || pageSize <= 0) 
+        {
+            return new IncidentPage(page, IncidentPage.END);
+        }
+        int position = cursor;
+        while (position < snapshot.size() && page.size() < pageSize) 
+        {
+            Incident incident = snapshot.get(position++);
+            if (filter.test(incident)) 
+            {
+                page.add(incident);
+            }
+        }
+        return new IncidentPage(page, position < snapshot.size() ? position : IncidentPage.END);
+    }
+
+    // Cursor of a page, counting from 0, of the unfiltered listing, or END past the last
+    // page. Filtered pages are found by following next cursors instead.
+    public int getPageCursor(int pageIndex, int pageSize) 
+    {
+        long position = (long) pageIndex * pageSize;
+        return pageIndex >= 0 && position < incidents.size() ? (int) position : IncidentPage.END;
+    }
+
+    public int getIncidentCount() 
+    {
+        return incidents.size();
+    }
+
+    // Incidents kept in the history rather than the store
+    public int getHistoryCount() 
+    {
+        return history.size();
+    }
+
+    // Where the history's memory goes, one line per part
+    public String getHistoryMemoryReport() 
+    {
+        return history.memoryReport();
+    }
+
+    public Metrics getMetrics() 
+    {
+        return metrics;
+    }
+
+    // Write a snapshot of the operation metrics to a CSV file
+    public void exportMetrics(String filename) 
     {
-        if (!uniqueResources.contains(resource)) 
+        try 
+        {
+            metrics.writeSnapshot(filename);
+        } 
+        catch (IOException e) 
         {
-            uniqueResources.add(resource);
+            e.printStackTrace();
         }
     }
 
-    // Find an incident by its incident number
-    public Incident findIncidentByNumber(int incidentNumber) 
+    // Set how many units of a resource number exist; from then on assigning it to an
+    // ongoing incident reserves units from this stock until the incident is closed
+    public void setResourceStock(int resourceNumber, int units) 
+    {
+        allocations.setCapacity(resourceNumber, units);
+    }
+
+    // The free and committed units of a resource number, or null if it has no stock
+    public UnitStock getResourceStock(int resourceNumber) 
+    {
+        return allocations.stockFor(resourceNumber);
+    }
+
+    // Up to limit incidents whose reporter name or details match a query, best first. Words
+    // are ranked keywords, word* matches by prefix, and "quoted words" must appear together.
+    public List<Incident> searchIncidents(String query, int limit) 
     {
-        for (Incident incident : incidents) 
+        List<Incident> found = new ArrayList<>();
+        for (int number : searchIndex.search(query, limit)) 
         {
-            if (incident.getIncidentNumber() == incidentNumber) 
+            Incident incident = lookUpIncident(number);
+            if (incident != null) 
             {
-                return incident;
+                found.add(incident);
             }
         }
-        return null; // Incident not found
+        return found;
     }
 
-    // Update the details of an existing incident
-    public boolean updateIncident(Incident updatedIncident) 
+    // Every incident reported from a phone number, lowest incident number first
+    public List<Incident> findIncidentsByPhoneNumber(String phoneNumber) 
     {
-        int index = incidents.indexOf(updatedIncident);
-        if (index != -1) 
+        List<Incident> found = new ArrayList<>();
+        for (int number : callers.numbersFor(phoneNumber)) 
+        {
+            Incident incident = lookUpIncident(number);
+            // Very long numbers can share a key with another, so check the incident's own
+            if (incident != null && phoneNumber.equals(incident.getReporterPhoneNumber())) 
+            {
+                found.add(incident);
+            }
+        }
+        if (history.size() == 0) 
         {
-            incidents.set(index, updatedIncident);
-            return true; // Update successful
+            return found;
         }
-        return false; // Incident not found, update failed
+        found.addAll(fromHistory(history.findByPhoneNumber(phoneNumber)));
+        found.sort(Comparator.comparingInt(Incident::getIncidentNumber));
+        return found;
     }
 
-    // Display a list of all incidents with their details
-    public void displayIncidents() 
+    // Incidents that a new report may repeat: from the same caller, or within
+    // DUPLICATE_RADIUS_KM of the location, and within DUPLICATE_WINDOW_SECONDS of the
+    // report's date and time. Lowest incident number first.
+    public List<Incident> findPossibleDuplicates(String phoneNumber, String date, String time, GPSLocation location) 
+    {
+        long timestamp = Incident.toTimestamp(date, time);
+        List<Incident> found = new ArrayList<>();
+        if (timestamp == Incident.NO_TIMESTAMP) 
+        {
+            return found;
+        }
+        Predicate<Incident> recent = incident -> incident.getTimestamp() != Incident.NO_TIMESTAMP
+                && Math.abs(incident.getTimestamp() - timestamp) <= DUPLICATE_WINDOW_SECONDS;
+        for (Incident incident : findIncidentsByPhoneNumber(phoneNumber)) 
+        {
+            if (recent.test(incident)) 
+            {
+                found.add(incident);
+            }
+        }
+        if (location != null && location.hasCoordinates()) 
+        {
+            List<Incident> nearby;
+            synchronized (locations) 
+            {
+                nearby = locations.withinRadius(location.getLatitude(), location.getLongitude(), DUPLICATE_RADIUS_KM, recent);
+            }
+            for (Incident incident : nearby) 
+            {
+                if (!found.contains(incident)) 
+                {
+                    found.add(incident);
+                }
+            }
+        }
+        found.sort(Comparator.comparingInt(Incident::getIncidentNumber));
+        return found;
+    }
+
+    // The most urgent ongoing incident with no resources assigned, or null; it stays queued
+    public Incident peekNextIncident() 
+    {
+        return workQueue.peek();
+    }
+
+    // Up to count of the most urgent ongoing incidents with no resources assigned
+    public List<Incident> getQueuedIncidents(int count) 
+    {
+        return workQueue.peek(count);
+    }
+
+    public int getQueuedIncidentCount() 
+    {
+        return workQueue.size();
+    }
+
+    // Take the most urgent ongoing incident with no resources assigned for one dispatcher,
+    // or null if none is waiting. No other dispatcher is given it until the claim is
+    // released; assigning a resource or closing the incident settles it for good.
+    public Incident claimNextIncident() 
+    {
+        return workQueue.claimNext();
+    }
+
+    // Give up a claim, putting the incident back in the queue if it is still waiting. The
+    // claim is on the number, so it holds for an incident stored in place of the claimed
+    // one, and releasing it queues whichever incident is stored now.
+    public void releaseIncidentClaim(Incident incident) 
+    {
+        // Holding the number's lock keeps an incident replaced meanwhile out of the queue
+        synchronized (incidents.lockFor(incident.getIncidentNumber())) 
+        {
+            Incident stored = incidents.find(incident.getIncidentNumber());
+            if (stored != null) 
+            {
+                synchronized (stored) 
+                {
+                    workQueue.release(stored);
+                }
+            }
+        }
+    }
+
+    // Record where a resource is, e.g. a unit's home station or its latest reported position.
+    // Returns false if no resource has the number.
+    public boolean setResourceLocation(int resourceNumber, GPSLocation location) 
     {
-        System.out.println("=== List of Incidents ===");
-        for (Incident incident : incidents) 
+        Resource resource = resources.find(resourceNumber);
+        if (resource == null) 
         {
-            System.out.println(incident);
+            return false;
         }
+        dispatch.move(resource, location);
+        return true;
+    }
+
+    // The last location recorded for a resource number, or null
+    public GPSLocation getResourceLocation(int resourceNumber) 
+    {
+        Resource resource = resources.find(resourceNumber);
+        return resource == null ? null : dispatch.locationOf(resource);
+    }
+
+    // The count located resources with free units nearest to an incident, nearest first
+    public List<Resource> recommendResources(Incident incident, int count) 
+    {
+        return dispatch.recommend(incident, count);
     }
 
-    // Assign a resource to an existing incident
+    // Assign a resource to an existing incident, reserving its units if the incident is ongoing
     public boolean assignResourceToIncident(int incidentNumber, Resource resource) 
     {
-        Incident incident = findIncidentByNumber(incidentNumber);
-        if (incident != null) 
+        long start = assignMetrics.start();
+        boolean assigned = assignResource(incidentNumber, resource);
+        assignMetrics.finish(start);
+        return assigned;
+    }
+
+    private boolean assignResource(int incidentNumber, Resource resource) 
+    {
+        IncidentEventBuffer pending = pendingEvents.get();
+        pending.enter();
+        Incident incident = null;
+        try 
         {
-            incident.addResource(resource);
+            // Looked up and assigned to under the number's lock, so no store can replace the
+            // incident in between and leave the units reserved for one no longer stored
+            synchronized (incidents.lockFor(incidentNumber)) 
+            {
+                incident = lookUpIncident(incidentNumber);
+                if (incident == null) 
+                {
+                    return false; // Incident not found, resource assignment failed
+                }
+                // The incident holds the catalogue's shared instance of the resource
+                synchronized (incident) 
+                {
+                    Resource shared = resources.forAssignment(resource);
+                    if (incident.isOngoing() && !allocations.reserve(incident, shared)) 
+                    {
+                        return false; // Not enough units free
+                    }
+                    Resource assigned = resources.assign(shared, incident);
+                    incident.addResource(assigned);
+                    pending.add(IncidentEvent.Type.RESOURCE_ASSIGNED, incidentNumber, Incident.Field.RESOURCES,
+                            incident.getVersion(), assigned.getResourceNumber(), assigned.getNumUnits());
+                }
+            }
             return true; // Resource assigned successfully
+        } 
+        finally 
+        {
+            publishPending(pending, incident);
         }
-        return false; // Incident not found, resource assignment failed
     }
 }
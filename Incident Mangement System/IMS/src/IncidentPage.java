@@ -0,0 +1,34 @@
+import java.util.List;
+
+// One page of an incident listing, and the cursor at which the next page starts.
+// Cursors are positions in the store's insertion order, so they stay valid while
+// incidents are added or replaced.
+public class IncidentPage
+{
+    // Cursor of the page after the last
+    public static final int END = -1;
+
+    private final List<Incident> incidents;
+    private final int nextCursor;
+
+    public IncidentPage(List<Incident> incidents, int nextCursor)
+    {
+        this.incidents = incidents;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Incident> getIncidents()
+    {
+        return incidents;
+    }
+
+    public int getNextCursor()
+    {
+        return nextCursor;
+    }
+
+    public boolean hasNext()
+    {
+        return nextCursor != END;
+    }
+}
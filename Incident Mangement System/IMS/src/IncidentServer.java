@@ -0,0 +1,146 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serves the operator menu over TCP so many operators can share one IncidentManagementSystem.
+// Each connection is a UserInterface session on its own virtual thread; an idle session is
+// parked on its socket read and costs a few kilobytes rather than an OS thread.
+// Try it with: nc localhost 7070
+public class IncidentServer implements Closeable
+{
+    public static final int DEFAULT_PORT = 7070;
+    private static final int BACKLOG = 1024;
+
+    private final IncidentManagementSystem ims;
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger openSessions = new AtomicInteger();
+
+    // Listen on the loopback interface only; pass port 0 to pick a free port
+    public IncidentServer(IncidentManagementSystem ims, int port) throws IOException
+    {
+        this.ims = ims;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+    }
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getOpenSessions()
+    {
+        return openSessions.get();
+    }
+
+    // Accept connections until the server is closed
+    public void serve()
+    {
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                Socket socket = serverSocket.accept();
+                sessions.execute(() -> runSession(socket));
+            }
+            catch (SocketException e)
+            {
+                // The server socket was closed
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void runSession(Socket socket)
+    {
+        openSessions.incrementAndGet();
+        try (socket)
+        {
+            socket.setTcpNoDelay(true);
+            // Output is buffered and sent in one write when the session next waits for input
+            PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false,
+                    StandardCharsets.UTF_8);
+            new UserInterface(ims, new FlushingInputStream(socket.getInputStream(), out), out).runSession();
+            out.flush();
+        }
+        catch (IOException e)
+        {
+            // The operator disconnected
+        }
+        finally
+        {
+            openSessions.decrementAndGet();
+        }
+    }
+
+    // Flushes the session's output before any read that would block
+    private static class FlushingInputStream extends FilterInputStream
+    {
+        private final PrintStream out;
+
+        FlushingInputStream(InputStream in, PrintStream out)
+        {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            flushIfBlocking();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            flushIfBlocking();
+            return super.read(buffer, offset, length);
+        }
+
+        private void flushIfBlocking() throws IOException
+        {
+            if (in.available() == 0)
+            {
+                out.flush();
+            }
+        }
+    }
+
+    // Stop accepting connections and end the open sessions
+    @Override
+    public void close() throws IOException
+    {
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        // Recover incidents created since the last save; sessions share the one journal
+        ims.openJournal(UserInterface.INCIDENTS_JOURNAL_FILE, true);
+        Runtime.getRuntime().addShutdownHook(new Thread(ims::closeJournal));
+
+        IncidentServer server = new IncidentServer(ims, port);
+        System.out.println("Incident Management System listening on port " + server.getPort());
+        server.serve();
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Incidents kept in insertion order, indexed by incident number for O(1) lookups.
+// Safe for many threads: the number index is split into lock stripes, and incidents sit in
+// an append-only log of fixed-size chunks, so asList() hands out a snapshot that readers
+// can walk without ever blocking writers.
+public class IncidentStore
+{
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = Integer.numberOfLeadingZeros(STRIPES - 1);
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final IntIntHashMap[] positions = new IntIntHashMap[STRIPES];
+    private final Object appendLock = new Object();
+    private volatile AtomicReferenceArray<Incident>[] chunks;
+    // Number of incidents readers may see; written only after the incident is in place
+    private volatile int size;
+
+    public IncidentStore()
+    {
+        this(16);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public IncidentStore(int expectedSize)
+    {
+        for (int i = 0; i < STRIPES; i++)
+        {
+            positions[i] = new IntIntHashMap(expectedSize / STRIPES);
+        }
+        this.chunks = new AtomicReferenceArray[Math.max(1, (expectedSize >> CHUNK_SHIFT) + 1)];
+    }
+
+    // Lock guarding one incident number; holding it makes a sequence of store calls
+    // for that number atomic
+    public Object lockFor(int incidentNumber)
+    {
+        return positions[stripe(incidentNumber)];
+    }
+
+    // Check if an incident with the given number is stored
+    public boolean contains(int incidentNumber)
+    {
+        IntIntHashMap stripe = positions[stripe(incidentNumber)];
+        synchronized (stripe)
+        {
+            return stripe.containsKey(incidentNumber);
+        }
+    }
+
+    // Find an incident by its number, or null if it is not stored
+    public Incident find(int incidentNumber)
+    {
+        IntIntHashMap stripe = positions[stripe(incidentNumber)];
+        int position;
+        synchronized (stripe)
+        {
+            position = stripe.get(incidentNumber);
+        }
+        return position == IntIntHashMap.NO_VALUE ? null : slot(position);
+    }
+
+    // Add an incident, replacing any stored incident with the same number in place;
+    // returns the incident that was replaced, or null
+    public Incident put(Incident incident)
+    {
+        IntIntHashMap stripe = positions[stripe(incident.getIncidentNumber())];
+        synchronized (stripe)
+        {
+            int position = stripe.get(incident.getIncidentNumber());
+            if (position == IntIntHashMap.NO_VALUE)
+            {
+                stripe.put(incident.getIncidentNumber(), append(incident));
+                return null;
+            }
+            return chunk(position).getAndSet(position & (CHUNK_SIZE - 1), incident);
+        }
+    }
+
+    // Replace the stored incident that has the same number, keeping its position
+    public boolean replace(Incident incident)
+    {
+        IntIntHashMap stripe = positions[stripe(incident.getIncidentNumber())];
+        synchronized (stripe)
+        {
+            int position = stripe.get(incident.getIncidentNumber());
+            if (position == IntIntHashMap.NO_VALUE)
+            {
+                return false;
+            }
+            chunk(position).set(position & (CHUNK_SIZE - 1), incident);
+            return true;
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    // Read-only snapshot of the incidents stored so far, in insertion order. Incidents
+    // added later are not part of it; incidents replaced later show their replacement.
+    public List<Incident> asList()
+    {
+        int snapshotSize = size;
+        AtomicReferenceArray<Incident>[] snapshotChunks = chunks;
+        return new AbstractList<Incident>()
+        {
+            @Override
+            public Incident get(int index)
+            {
+                if (index < 0 || index >= snapshotSize)
+                {
+                    throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + snapshotSize);
+                }
+                return snapshotChunks[index >>> CHUNK_SHIFT].get(index & (CHUNK_SIZE - 1));
+            }
+
+            @Override
+            public int size()
+            {
+                return snapshotSize;
+            }
+        };
+    }
+
+    // Append to the log and publish the new size, returning the incident's position
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int append(Incident incident)
+    {
+        synchronized (appendLock)
+        {
+            int position = size;
+            int chunkIndex = position >>> CHUNK_SHIFT;
+            AtomicReferenceArray<Incident>[] current = chunks;
+            if (chunkIndex == current.length)
+            {
+                AtomicReferenceArray<Incident>[] grown = new AtomicReferenceArray[current.length * 2];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[chunkIndex] == null)
+            {
+                current[chunkIndex] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            }
+            current[chunkIndex].set(position & (CHUNK_SIZE - 1), incident);
+            chunks = current;
+            size = position + 1;
+            return position;
+        }
+    }
+
+    private Incident slot(int position)
+    {
+        return chunk(position).get(position & (CHUNK_SIZE - 1));
+    }
+
+    private AtomicReferenceArray<Incident> chunk(int position)
+    {
+        return chunks[position >>> CHUNK_SHIFT];
+    }
+
+    // The top bits of the hash, because each stripe's IntIntHashMap picks slots with the low
+    // bits; taking the low bits here left every number in a stripe sharing 1 home slot in 64
+    private static int stripe(int incidentNumber)
+    {
+        return (incidentNumber * 0x9E3779B9) >>> STRIPE_SHIFT;
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// One subscriber to an IncidentEventRing, reading on its own daemon thread. Events are
+// handed over in batches: the subscriber takes every event published so far, up to
+// maxBatch, and only then moves the position BLOCK publishers wait on, so publishers look
+// at it once a batch rather than once an event. A handler that throws has the exception
+// printed and is handed the next event.
+public class IncidentSubscription
+{
+    private final IncidentEventRing ring;
+    private final String name;
+    private final IncidentEventRing.Backpressure backpressure;
+    private final int maxBatch;
+    private final IncidentEventHandler handler;
+    // The next sequence to read; everything before it has been handled
+    private final AtomicLongArray next = new AtomicLongArray(2 * IncidentEventRing.PADDING);
+    // The subscriber's own copy of each event, so a slow handler never reads a slot
+    // a publisher is overwriting
+    private final IncidentEvent event = new IncidentEvent();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long missed;
+
+    IncidentSubscription(IncidentEventRing ring, String name, IncidentEventRing.Backpressure backpressure,
+            int maxBatch, IncidentEventHandler handler, long first)
+    {
+        this.ring = ring;
+        this.name = name;
+        this.backpressure = backpressure;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.handler = handler;
+        this.next.set(IncidentEventRing.PADDING, first);
+        this.thread = new Thread(this::run, "incident-events-" + name);
+        thread.setDaemon(true);
+    }
+
+    void start()
+    {
+        thread.start();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public IncidentEventRing.Backpressure getBackpressure()
+    {
+        return backpressure;
+    }
+
+    // The sequence of the next event to handle; every event before it is handled or skipped
+    public long getPosition()
+    {
+        return next.get(IncidentEventRing.PADDING);
+    }
+
+    // Events published but not yet handled
+    public long getLag()
+    {
+        return Math.max(0, ring.getPublished() - getPosition());
+    }
+
+    // Events a DROP subscriber skipped because publishers overwrote them first
+    public long getMissed()
+    {
+        return missed;
+    }
+
+    // Stop handing over events and wait for the handler to finish the one it has
+    public void close()
+    {
+        running = false;
+        ring.unsubscribe(this);
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() != thread)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run()
+    {
+        long sequence = getPosition();
+        int batched = 0;
+        int attempts = 0;
+        while (running)
+        {
+            long found = ring.read(sequence, event);
+            if (found == IncidentEventRing.NOT_PUBLISHED)
+            {
+                attempts = IncidentEventRing.idle(attempts);
+                continue;
+            }
+            if (found != sequence)
+            {
+                // Overwritten before it was read
+                missed += found - sequence;
+                sequence = found;
+                next.setRelease(IncidentEventRing.PADDING, sequence);
+                batched = 0;
+                continue;
+            }
+            attempts = 0;
+            batched++;
+            boolean endOfBatch = batched == maxBatch || !ring.isPublished(sequence + 1);
+            try
+            {
+                handler.onEvent(event, endOfBatch);
+            }
+            catch (RuntimeException e)
+            {
+                e.printStackTrace();
+            }
+            sequence++;
+            if (endOfBatch)
+            {
+                next.setRelease(IncidentEventRing.PADDING, sequence);
+                batched = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,576 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// A dashboard figure kept current over the stored incidents: a count or sum per group,
+// such as ongoing incidents per area or units committed per resource code. Registered with
+// IncidentManagementSystem, it is told about each incident as it is stored, and on each
+// change works out what the incident added just before and adds just after, and moves
+// only the groups whose amounts differ, so reading a group's total, the grand total or the
+// largest groups never visits the incidents. A change that leaves what the incident adds
+// as it was, such as a move within an area, does not take the view's lock; any other
+// only notes the amounts it moves, and the groups are brought up to date from the notes
+// when the view is read or enough have built up. Nothing is kept
+// per incident: what it added is worked out again from its fields, so a contributor must
+// read only the fields the view is made with, and those only as changed through Incident's
+// setters. Changes to other fields pass the view by.
+// Safe for many threads; every method that changes or reads the totals holds the view's
+// lock, taken after the incident's.
+public class IncidentView<K>
+{
+    // Hours and area squares, as the standard views group by
+    public static final long SECONDS_PER_HOUR = 3600;
+    public static final double DEFAULT_AREA_DEGREES = 0.1; // about 11 km north-south
+
+    // Amounts noted before the groups are brought up to date on a change
+    private static final int MAX_PENDING = 4096;
+
+    // Groups with larger totals first, then the group seen first
+    private static final Comparator<Group<?>> RANK = (a, b) -> a.rankedTotal != b.rankedTotal
+            ? Long.compare(b.rankedTotal, a.rankedTotal) : Long.compare(a.order, b.order);
+
+    private final String name;
+    private final Set<Incident.Field> reads;
+    private final Contributor<K> contributor;
+    // Every group seen, including ones whose total has gone back to zero, so an area or
+    // code that empties and fills again, as they keep doing, is not dropped and made anew
+    private final Map<K, Group<K>> groups = new HashMap<>();
+    private int nonEmptyGroups;
+    // Groups largest first, made the first time top() is asked for, as most views are read
+    // a group at a time. Groups changed since are reordered on the next top(), so an
+    // incident moving out of a group and back in again does not reorder it twice.
+    private TreeSet<Group<K>> ranked;
+    private final List<Group<K>> unranked = new ArrayList<>();
+    // Incidents added while the view is being filled from the stored ones, or null
+    private volatile Map<Incident, Boolean> filled;
+    private final Contributions<K> scratch = new Contributions<>();
+    // The changes each thread is making, shared by every view so a thread's lookups do not
+    // grow with the views made
+    private static final ThreadLocal<Changes> CHANGES = ThreadLocal.withInitial(Changes::new);
+    // Amounts moved since the groups were last brought up to date. Finding a group in a
+    // large view mostly misses the cache, so a change only notes its amounts.
+    private Object[] pendingKeys = new Object[64];
+    private long[] pendingAmounts = new long[64];
+    private int pendingSize;
+    private long total;
+    private long groupsSeen;
+
+    // Says what an incident adds to which groups; called with the incident's lock held, on
+    // many threads at once for different incidents
+    @FunctionalInterface
+    public interface Contributor<K>
+    {
+        void contribute(Incident incident, Contributions<K> contributions);
+    }
+
+    // Collects the amounts one incident adds to each group
+    public static final class Contributions<K>
+    {
+        private Object[] keys = new Object[4];
+        private long[] amounts = new long[4];
+        private int size;
+
+        private Contributions()
+        {
+        }
+
+        // Add an amount to a group; amounts for the same group are summed
+        public void add(K group, long amount)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (keys[i].equals(group))
+                {
+                    amounts[i] += amount;
+                    return;
+                }
+            }
+            if (size == keys.length)
+            {
+                keys = Arrays.copyOf(keys, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            keys[size] = group;
+            amounts[size++] = amount;
+        }
+
+        @SuppressWarnings("unchecked")
+        private K key(int i)
+        {
+            return (K) keys[i];
+        }
+
+        // Where a group is, or -1
+        private int indexOf(Object group)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (keys[i].equals(group))
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Whether both add the same amounts to the same groups, in the same order
+        private boolean sameAs(Contributions<?> other)
+        {
+            if (size != other.size)
+            {
+                return false;
+            }
+            for (int i = 0; i < size; i++)
+            {
+                if (amounts[i] != other.amounts[i] || !keys[i].equals(other.keys[i]))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void clear()
+        {
+            Arrays.fill(keys, 0, size, null);
+            size = 0;
+        }
+    }
+
+    // What one thread worked out incidents added before the changes it is making, one entry
+    // for each view and incident until the change is applied, and a place to work out what
+    // they add after
+    private static final class Changes
+    {
+        private IncidentView<?>[] views = new IncidentView<?>[4];
+        private Incident[] incidents = new Incident[4];
+        private Contributions<?>[] before = new Contributions<?>[4];
+        private int size;
+        private final Contributions<?> after = new Contributions<>();
+
+        @SuppressWarnings("unchecked")
+        <K> Contributions<K> push(IncidentView<K> view, Incident incident)
+        {
+            if (size == views.length)
+            {
+                views = Arrays.copyOf(views, size * 2);
+                incidents = Arrays.copyOf(incidents, size * 2);
+                before = Arrays.copyOf(before, size * 2);
+            }
+            if (before[size] == null)
+            {
+                before[size] = new Contributions<>();
+            }
+            views[size] = view;
+            incidents[size] = incident;
+            Contributions<K> was = (Contributions<K>) before[size++];
+            was.clear();
+            return was;
+        }
+
+        // Where the entry for a view and incident is, latest first, or -1
+        int indexOf(IncidentView<?> view, Incident incident)
+        {
+            for (int i = size - 1; i >= 0; i--)
+            {
+                if (views[i] == view && incidents[i] == incident)
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @SuppressWarnings("unchecked")
+        <K> Contributions<K> before(int i)
+        {
+            return (Contributions<K>) before[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        <K> Contributions<K> after()
+        {
+            after.clear();
+            return (Contributions<K>) after;
+        }
+
+        void remove(int i)
+        {
+            // Keep the entry's contributions for reuse at the top
+            Contributions<?> was = before[i];
+            size--;
+            System.arraycopy(views, i + 1, views, i, size - i);
+            System.arraycopy(incidents, i + 1, incidents, i, size - i);
+            System.arraycopy(before, i + 1, before, i, size - i);
+            views[size] = null;
+            incidents[size] = null;
+            before[size] = was;
+        }
+    }
+
+    private static class Group<K>
+    {
+        final K key;
+        final long order;
+        long total;
+        // The total the group is ordered by in ranked, and whether that is behind
+        long rankedTotal;
+        boolean moved;
+
+        Group(K key, long order)
+        {
+            this.key = key;
+            this.order = order;
+        }
+    }
+
+    public IncidentView(String name, Set<Incident.Field> reads, Contributor<K> contributor)
+    {
+        this.name = name;
+        this.reads = EnumSet.copyOf(reads);
+        this.contributor = contributor;
+    }
+
+    // A view whose contributor may read any field
+    public IncidentView(String name, Contributor<K> contributor)
+    {
+        this(name, EnumSet.allOf(Incident.Field.class), contributor);
+    }
+
+    // Ongoing incidents per area, grouped by a number for each square of a grid; see areaOf
+    public static IncidentView<Long> ongoingPerArea(double cellDegrees)
+    {
+        // Multiplying rather than dividing keeps 52.2 in the 52.2 square when cellDegrees is 0.1
+        double cellsPerDegree = 1 / cellDegrees;
+        long columns = columnsFor(cellDegrees);
+        return new IncidentView<>("Ongoing incidents per area",
+                EnumSet.of(Incident.Field.ONGOING, Incident.Field.GPS_LOCATION), (incident, contributions) -> {
+            GPSLocation location = incident.getGpsLocation();
+            if (incident.isOngoing() && location != null && location.hasCoordinates())
+            {
+                long row = (long) Math.floor(location.getLatitude() * cellsPerDegree);
+                long column = (long) Math.floor(location.getLongitude() * cellsPerDegree);
+                // Numbered row by row, so nearby squares have distinct hash codes; packing the
+                // row and column into halves of the long would give many squares the same one
+                contributions.add(row * columns + Math.floorMod(column, columns), 1);
+            }
+        });
+    }
+
+    // Incidents per hour, grouped by hours since the epoch, the timestamp divided by
+    // SECONDS_PER_HOUR. Consecutive numbers hash apart; the seconds hours start at do not.
+    public static IncidentView<Long> perHour()
+    {
+        return new IncidentView<>("Incidents per hour", EnumSet.of(Incident.Field.DATE_TIME), (incident, contributions) -> {
+            long timestamp = incident.getTimestamp();
+            if (timestamp != Incident.NO_TIMESTAMP)
+            {
+                contributions.add(Math.floorDiv(timestamp, SECONDS_PER_HOUR), 1);
+            }
+        });
+    }
+
+    // Units of each resource code assigned to ongoing incidents
+    public static IncidentView<String> committedUnitsPerCode()
+    {
+        return new IncidentView<>("Units committed per resource code",
+                EnumSet.of(Incident.Field.ONGOING, Incident.Field.RESOURCES), (incident, contributions) -> {
+            if (incident.isOngoing())
+            {
+                for (Resource resource : incident.getResources())
+                {
+                    contributions.add(resource.getResourceCode(), resource.getNumUnits());
+                }
+            }
+        });
+    }
+
+    // The south-west corner of an area group of ongoingPerArea, to a millionth of a degree
+    public static GPSLocation areaOf(long area, double cellDegrees)
+    {
+        long columns = columnsFor(cellDegrees);
+        long column = Math.floorMod(area, columns);
+        if (column >= columns / 2)
+        {
+            column -= columns;
+        }
+        return new GPSLocation(Math.round(Math.floorDiv(area, columns) * cellDegrees * 1e6) / 1e6,
+                Math.round(column * cellDegrees * 1e6) / 1e6);
+    }
+
+    // Squares across a row of the grid, from longitude -180 to 180, and some to spare
+    private static long columnsFor(double cellDegrees)
+    {
+        return 2 * ((long) Math.ceil(180 / cellDegrees) + 1);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    // Whether a change to the field can alter what an incident adds to this view
+    public boolean reads(Incident.Field field)
+    {
+        return reads.contains(field);
+    }
+
+    // Add what an incident adds; called when it is stored
+    public synchronized void add(Incident incident)
+    {
+        if (filled != null)
+        {
+            filled.put(incident, Boolean.TRUE);
+        }
+        apply(incident, 1);
+    }
+
+    // Take back what an incident adds; called when it is unstored, with its fields as they
+    // were when it was added
+    public synchronized void remove(Incident incident)
+    {
+        // An incident not yet reached by filling was never added
+        if (filled != null && !filled.containsKey(incident))
+        {
+            return;
+        }
+        apply(incident, -1);
+    }
+
+    // Work out what an incident adds just before a change to a field the view reads; called
+    // with the incident's lock held, and followed by changed once the change is made
+    public void changing(Incident incident)
+    {
+        contributor.contribute(incident, CHANGES.get().push(this, incident));
+    }
+
+    // Move an incident from what it added before a change to what it adds now, in the
+    // groups whose amounts differ; called just after the change with its lock still held
+    public void changed(Incident incident)
+    {
+        Changes changes = CHANGES.get();
+        int i = changes.indexOf(this, incident);
+        if (i < 0)
+        {
+            // Registered during the change, so nothing was worked out before it
+            add(incident);
+            return;
+        }
+        Contributions<K> was = changes.before(i);
+        Contributions<K> now = changes.after();
+        contributor.contribute(incident, now);
+        // A view being filled has to note the incident even if what it adds is the same
+        if (filled != null || !now.sameAs(was))
+        {
+            move(incident, was, now);
+        }
+        changes.remove(i);
+    }
+
+    private synchronized void move(Incident incident, Contributions<K> was, Contributions<K> now)
+    {
+        // An incident not yet reached by filling was never added, so only what it adds now counts
+        if (filled != null && filled.put(incident, Boolean.TRUE) == null)
+        {
+            was.clear();
+        }
+        for (int i = 0; i < was.size; i++)
+        {
+            int j = now.indexOf(was.keys[i]);
+            long amount = j < 0 ? 0 : now.amounts[j];
+            if (amount != was.amounts[i])
+            {
+                note(was.key(i), amount - was.amounts[i]);
+            }
+        }
+        for (int i = 0; i < now.size; i++)
+        {
+            if (was.indexOf(now.keys[i]) < 0)
+            {
+                note(now.key(i), now.amounts[i]);
+            }
+        }
+    }
+
+    // Called by IncidentManagementSystem around filling a view as it is registered
+    synchronized void startFilling()
+    {
+        filled = new IdentityHashMap<>();
+    }
+
+    // Add a stored incident unless it has been added since filling started
+    synchronized void fill(Incident incident)
+    {
+        if (!filled.containsKey(incident))
+        {
+            add(incident);
+        }
+    }
+
+    synchronized void finishFilling()
+    {
+        filled = null;
+    }
+
+    // The total of one group, zero if nothing is in it
+    public synchronized long get(K group)
+    {
+        settle();
+        Group<K> found = groups.get(group);
+        return found == null ? 0 : found.total;
+    }
+
+    // The total over every group
+    public synchronized long getTotal()
+    {
+        return total;
+    }
+
+    // Groups whose total is not zero
+    public synchronized int getGroupCount()
+    {
+        settle();
+        return nonEmptyGroups;
+    }
+
+    // Up to count groups with the largest totals, largest first
+    public synchronized List<Map.Entry<K, Long>> top(int count)
+    {
+        settle();
+        if (ranked == null)
+        {
+            ranked = new TreeSet<>(RANK);
+            for (Group<K> group : groups.values())
+            {
+                group.rankedTotal = group.total;
+                if (group.total != 0)
+                {
+                    ranked.add(group);
+                }
+            }
+        }
+        for (Group<K> group : unranked)
+        {
+            group.moved = false;
+            if (group.rankedTotal != 0)
+            {
+                ranked.remove(group);
+            }
+            group.rankedTotal = group.total;
+            if (group.total != 0)
+            {
+                ranked.add(group);
+            }
+        }
+        unranked.clear();
+        List<Map.Entry<K, Long>> top = new ArrayList<>(Math.min(count, ranked.size()));
+        for (Group<K> group : ranked)
+        {
+            if (top.size() == count)
+            {
+                break;
+            }
+            top.add(Map.entry(group.key, group.total));
+        }
+        return top;
+    }
+
+    // The total of every group whose total is not zero
+    public synchronized Map<K, Long> asMap()
+    {
+        settle();
+        Map<K, Long> totals = new HashMap<>(nonEmptyGroups * 2);
+        for (Group<K> group : groups.values())
+        {
+            if (group.total != 0)
+            {
+                totals.put(group.key, group.total);
+            }
+        }
+        return totals;
+    }
+
+    // The group for a key, made the first time it is seen
+    private Group<K> group(K key)
+    {
+        Group<K> group = groups.get(key);
+        if (group == null)
+        {
+            group = new Group<>(key, groupsSeen++);
+            groups.put(key, group);
+        }
+        return group;
+    }
+
+    // Add or take back, by sign, the amounts an incident adds to each group
+    private void apply(Incident incident, int sign)
+    {
+        scratch.clear();
+        contributor.contribute(incident, scratch);
+        for (int i = 0; i < scratch.size; i++)
+        {
+            note(scratch.key(i), sign * scratch.amounts[i]);
+        }
+    }
+
+    // Note an amount moved into or out of a group; the grand total is kept current
+    private void note(K key, long amount)
+    {
+        if (amount == 0)
+        {
+            return;
+        }
+        if (pendingSize == pendingKeys.length)
+        {
+            if (pendingSize >= MAX_PENDING)
+            {
+                settle();
+            }
+            else
+            {
+                pendingKeys = Arrays.copyOf(pendingKeys, pendingSize * 2);
+                pendingAmounts = Arrays.copyOf(pendingAmounts, pendingSize * 2);
+            }
+        }
+        pendingKeys[pendingSize] = key;
+        pendingAmounts[pendingSize++] = amount;
+        total += amount;
+    }
+
+    // Bring the groups up to date with the amounts noted
+    @SuppressWarnings("unchecked")
+    private void settle()
+    {
+        for (int i = 0; i < pendingSize; i++)
+        {
+            add(group((K) pendingKeys[i]), pendingAmounts[i]);
+            pendingKeys[i] = null;
+        }
+        pendingSize = 0;
+    }
+
+    private void add(Group<K> group, long amount)
+    {
+        if (group.total != 0)
+        {
+            nonEmptyGroups--;
+        }
+        group.total += amount;
+        if (group.total != 0)
+        {
+            nonEmptyGroups++;
+        }
+        if (ranked != null && !group.moved)
+        {
+            group.moved = true;
+            unranked.add(group);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+// Writes incidents as toString() shows them through one reused buffer, so listing many
+// incidents builds no String per incident or per resource. Give it a buffered Writer and
+// flush it once per page.
+public class IncidentWriter
+{
+    private final Writer out;
+    private final StringBuilder text = new StringBuilder(512);
+    private char[] chars = new char[512];
+
+    public IncidentWriter(Writer out)
+    {
+        this.out = out;
+    }
+
+    // Write an incident followed by a blank line, as println(incident) would
+    public void write(Incident incident) throws IOException
+    {
+        text.setLength(0);
+        incident.appendTo(text).append(System.lineSeparator());
+        writeText();
+    }
+
+    public void writeLine(String line) throws IOException
+    {
+        out.write(line);
+        out.write(System.lineSeparator());
+    }
+
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    private void writeText() throws IOException
+    {
+        int length = text.length();
+        if (length > chars.length)
+        {
+            chars = Arrays.copyOf(chars, Math.max(length, chars.length * 2));
+        }
+        text.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+    }
+}
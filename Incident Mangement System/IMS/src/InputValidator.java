@@ -0,0 +1,231 @@
+// Checks for the fields an operator types in or a CSV file supplies. Each check scans the
+// characters once and allocates nothing, so bulk imports can validate every record cheaply.
+// The rules are the ones the prompts have always used; each method notes its pattern.
+public final class InputValidator
+{
+    private InputValidator()
+    {
+    }
+
+    // [a-zA-Z]+
+    public static boolean isValidName(CharSequence name)
+    {
+        if (name == null || name.length() == 0)
+        {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++)
+        {
+            if (!isLetter(name.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // [a-zA-Z ]+
+    public static boolean isValidTextInput(CharSequence text)
+    {
+        if (text == null || text.length() == 0)
+        {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (!isLetter(c) && c != ' ')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // \d{11,}
+    public static boolean isValidPhoneNumber(CharSequence phoneNumber)
+    {
+        if (phoneNumber == null || phoneNumber.length() < 11)
+        {
+            return false;
+        }
+        for (int i = 0; i < phoneNumber.length(); i++)
+        {
+            if (!isDigit(phoneNumber.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // dd/mm/yyyy naming a real calendar day in the years 1000 to 9999
+    public static boolean isValidDate(CharSequence date)
+    {
+        if (date == null || date.length() != 10 || date.charAt(2) != '/' || date.charAt(5) != '/')
+        {
+            return false;
+        }
+        int day = digits(date, 0, 2);
+        int month = digits(date, 3, 5);
+        int year = digits(date, 6, 10);
+        if (day < 0 || month < 0 || year < 1000 || month < 1 || month > 12)
+        {
+            return false;
+        }
+        int maxDays = 31;
+        if (month == 2)
+        {
+            boolean leap = year % 400 == 0 || (year % 100 != 0 && year % 4 == 0);
+            maxDays = leap ? 29 : 28;
+        }
+        else if (month == 4 || month == 6 || month == 9 || month == 11)
+        {
+            maxDays = 30;
+        }
+        return day >= 1 && day <= maxDays;
+    }
+
+    // \d{2}:\d{2}
+    public static boolean isValidTime(CharSequence time)
+    {
+        return time != null && time.length() == 5 && time.charAt(2) == ':'
+                && digits(time, 0, 2) >= 0 && digits(time, 3, 5) >= 0;
+    }
+
+    // -?\d+(\.\d+)?,\s*-?\d+(\.\d+)?
+    public static boolean isValidGPSLocation(CharSequence gpsLocation)
+    {
+        if (gpsLocation == null)
+        {
+            return false;
+        }
+        int position = scanDecimal(gpsLocation, 0);
+        if (position < 0 || position == gpsLocation.length() || gpsLocation.charAt(position) != ',')
+        {
+            return false;
+        }
+        position++;
+        while (position < gpsLocation.length() && isWhitespace(gpsLocation.charAt(position)))
+        {
+            position++;
+        }
+        return scanDecimal(gpsLocation, position) == gpsLocation.length();
+    }
+
+    // [1-5], from Incident.HIGHEST_PRIORITY to Incident.LOWEST_PRIORITY
+    public static boolean isValidPriority(CharSequence priority)
+    {
+        return priority != null && priority.length() == 1 && isDigit(priority.charAt(0))
+                && Incident.isValidPriority(priority.charAt(0) - '0');
+    }
+
+    // Check the columns of an incidents CSV row that identify the incident and its report:
+    // a positive number, the reporter's name and phone number, and the date and time
+    public static boolean isValidIncidentRow(CsvRow row)
+    {
+        return incidentRowProblem(row, IncidentColumns.STANDARD) == null;
+    }
+
+    public static boolean isValidIncidentRow(CsvRow row, IncidentColumns columns)
+    {
+        return incidentRowProblem(row, columns) == null;
+    }
+
+    // What makes an incidents CSV row invalid, for reporting rejected rows, or null if it is valid
+    public static String incidentRowProblem(CsvRow row, IncidentColumns columns)
+    {
+        if (!columns.hasColumns(row))
+        {
+            return "missing columns";
+        }
+        try
+        {
+            if (row.getInt(columns.number) <= 0)
+            {
+                return "invalid incident number";
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            return "invalid incident number";
+        }
+        if (!isValidName(row.getChars(columns.reporterName)))
+        {
+            return "invalid reporter name";
+        }
+        if (!isValidPhoneNumber(row.getChars(columns.reporterPhoneNumber)))
+        {
+            return "invalid phone number";
+        }
+        if (!isValidDate(row.getChars(columns.date)))
+        {
+            return "invalid date";
+        }
+        return isValidTime(row.getChars(columns.time)) ? null : "invalid time";
+    }
+
+    // Match -?\d+(\.\d+)? from start, returning the position after it or -1
+    private static int scanDecimal(CharSequence text, int start)
+    {
+        int position = start;
+        if (position < text.length() && text.charAt(position) == '-')
+        {
+            position++;
+        }
+        int digitsStart = position;
+        while (position < text.length() && isDigit(text.charAt(position)))
+        {
+            position++;
+        }
+        if (position == digitsStart)
+        {
+            return -1;
+        }
+        if (position < text.length() && text.charAt(position) == '.')
+        {
+            int fractionStart = ++position;
+            while (position < text.length() && isDigit(text.charAt(position)))
+            {
+                position++;
+            }
+            if (position == fractionStart)
+            {
+                return -1;
+            }
+        }
+        return position;
+    }
+
+    // Parse a run of ASCII digits, or -1 if any character is not a digit
+    private static int digits(CharSequence text, int start, int end)
+    {
+        int value = 0;
+        for (int i = start; i < end; i++)
+        {
+            char c = text.charAt(i);
+            if (!isDigit(c))
+            {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isLetter(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    // The characters \s matches
+    private static boolean isWhitespace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
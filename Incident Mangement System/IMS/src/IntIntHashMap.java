@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+// Open-addressing hash map from int keys to int values, so lookups never box
+public class IntIntHashMap
+{
+    public static final int NO_VALUE = -1;
+
+    private static final int EMPTY = 0;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    // Key 0 marks an empty slot, so a real 0 key is kept on the side
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntIntHashMap()
+    {
+        this(16);
+    }
+
+    public IntIntHashMap(int expectedSize)
+    {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    // Get the value mapped to a key, or NO_VALUE if the key is absent
+    public int get(int key)
+    {
+        if (key == EMPTY)
+        {
+            return hasZeroKey ? zeroValue : NO_VALUE;
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY)
+        {
+            if (keys[slot] == key)
+            {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    public boolean containsKey(int key)
+    {
+        return get(key) != NO_VALUE;
+    }
+
+    // Map a key to a value, returning the previous value or NO_VALUE
+    public int put(int key, int value)
+    {
+        if (key == EMPTY)
+        {
+            int previous = hasZeroKey ? zeroValue : NO_VALUE;
+            if (!hasZeroKey)
+            {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY)
+        {
+            if (keys[slot] == key)
+            {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt)
+        {
+            rehash(keys.length << 1);
+        }
+        return NO_VALUE;
+    }
+
+    // Remove a key, returning the value it had or NO_VALUE if it was absent
+    public int remove(int key)
+    {
+        if (key == EMPTY)
+        {
+            if (!hasZeroKey)
+            {
+                return NO_VALUE;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY)
+        {
+            if (keys[slot] == key)
+            {
+                int previous = values[slot];
+                closeGap(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    // Slots in the table, each holding a key and a value, for estimating its memory
+    public int capacity()
+    {
+        return keys.length;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new int[capacity];
+        values = new int[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int newCapacity)
+    {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            int key = oldKeys[i];
+            if (key != EMPTY)
+            {
+                int slot = mix(key) & mask;
+                while (keys[slot] != EMPTY)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Empty a slot without a tombstone: later keys in its probe run whose home slot is
+    // not between the gap and where they sit are moved back into the gap
+    private void closeGap(int gap)
+    {
+        int mask = keys.length - 1;
+        int slot = gap;
+        while (true)
+        {
+            slot = (slot + 1) & mask;
+            int key = keys[slot];
+            if (key == EMPTY)
+            {
+                keys[gap] = EMPTY;
+                return;
+            }
+            int home = mix(key) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask))
+            {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+    }
+
+    // Spread sequential incident numbers across the table
+    private static int mix(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
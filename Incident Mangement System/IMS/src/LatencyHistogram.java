@@ -0,0 +1,101 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencies in nanoseconds counted in log-linear buckets, as HdrHistogram does: each power
+// of two is split into SUB_BUCKETS equal buckets, so a bucket is never wider than a
+// sixteenth of the values in it and percentiles come out within about 3%, from a few
+// kilobytes that never grow. Recording is one atomic add on the value's bucket, so many
+// threads can record at once; a percentile read while they do may miss the newest values.
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values of 2^(HIGHEST_EXPONENT + 1) ns, about 36 minutes, or more share the last bucket
+    private static final int HIGHEST_EXPONENT = 40;
+    private static final int BUCKETS = (HIGHEST_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public long getCount()
+    {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public double getMeanNanos()
+    {
+        long count = getCount();
+        return count == 0 ? 0 : totalNanos.sum() / (double) count;
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos.get();
+    }
+
+    // The latency that percent of the recorded values are at or below, taken as the middle
+    // of its bucket; 0 if nothing was recorded
+    public long getPercentileNanos(double percent)
+    {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= rank)
+            {
+                return Math.min((lowestOf(i) + lowestOf(i + 1) - 1) / 2, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    private static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), HIGHEST_EXPONENT);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) Math.min((value >>> shift) - SUB_BUCKETS, SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // The smallest value counted in a bucket
+    private static long lowestOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+}
@@ -1,7 +1,16 @@
+import java.io.IOException;
+import java.util.Arrays;
+
 public class Main 
 {
-    public static void main(String[] args) 
+    public static void main(String[] args) throws IOException 
     {
+        // "--server [port]" serves the menu to operators over TCP instead of this console
+        if (args.length > 0 && args[0].equals("--server")) 
+        {
+            IncidentServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         IncidentManagementSystem ims = new IncidentManagementSystem();
         UserInterface ui = new UserInterface(ims);
         ui.run();
@@ -0,0 +1,101 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// The operation metrics of one IncidentManagementSystem. A snapshot of them can be written
+// to a CSV file whenever it is wanted, one row per operation with its counts and latency
+// percentiles in microseconds. Turning the metrics off leaves each operation one volatile
+// read, which is how their cost on the hot paths is measured.
+public class Metrics
+{
+    private static final String SNAPSHOT_HEADER = CsvWriter.row("Taken At", "Operation", "Calls", "Failures", "Timed Calls",
+            "Mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "Max us", "Last Failure");
+
+    private final List<OperationMetrics> operations = new CopyOnWriteArrayList<>();
+    private volatile boolean enabled = true;
+
+    // Add an operation, counting every call and timing about one in sampleEvery
+    public OperationMetrics operation(String name, int sampleEvery)
+    {
+        return add(new OperationMetrics(name, this, sampleEvery, false));
+    }
+
+    // Add an operation fast enough that counting every call would add to its cost; about
+    // one call in sampleEvery is counted and timed, and the count is scaled up to match
+    public OperationMetrics sampledOperation(String name, int sampleEvery)
+    {
+        return add(new OperationMetrics(name, this, sampleEvery, true));
+    }
+
+    private OperationMetrics add(OperationMetrics operation)
+    {
+        operations.add(operation);
+        return operation;
+    }
+
+    public List<OperationMetrics> getOperations()
+    {
+        return operations;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    // Write every operation's figures as they are now, replacing the file
+    public void writeSnapshot(String filename) throws IOException
+    {
+        String takenAt = Instant.now().toString();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename)))
+        {
+            writer.write(SNAPSHOT_HEADER);
+            writer.newLine();
+            for (OperationMetrics operation : operations)
+            {
+                LatencyHistogram latencies = operation.getLatencies();
+                String lastFailure = operation.getLastFailure();
+                writer.write(CsvWriter.row(takenAt, operation.getName(), Long.toString(operation.getCalls()),
+                        Long.toString(operation.getFailures()), Long.toString(latencies.getCount()),
+                        micros(latencies.getMeanNanos()), micros(latencies.getPercentileNanos(50)),
+                        micros(latencies.getPercentileNanos(90)), micros(latencies.getPercentileNanos(99)),
+                        micros(latencies.getPercentileNanos(99.9)), micros(latencies.getMaxNanos()),
+                        lastFailure == null ? "" : lastFailure));
+                writer.newLine();
+            }
+        }
+    }
+
+    // One line per operation that has been called, for showing to an operator
+    public String report()
+    {
+        StringBuilder report = new StringBuilder();
+        for (OperationMetrics operation : operations)
+        {
+            if (operation.getCalls() == 0)
+            {
+                continue;
+            }
+            LatencyHistogram latencies = operation.getLatencies();
+            report.append(String.format(Locale.ROOT, "%-28s %10d calls %6d failed   p50 %s us  p99 %s us  max %s us%n",
+                    operation.getName(), operation.getCalls(), operation.getFailures(),
+                    micros(latencies.getPercentileNanos(50)), micros(latencies.getPercentileNanos(99)),
+                    micros(latencies.getMaxNanos())));
+        }
+        return report.toString();
+    }
+
+    private static String micros(double nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000);
+    }
+}
@@ -0,0 +1,111 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Append-only UTF-8 text kept in direct buffers outside the Java heap, so millions of
+// strings add nothing for the garbage collector to trace or copy. A record is one or more
+// strings written together, each as its byte length (-1 for null) and its bytes, and is
+// addressed by a long: the slab number in the high half and the offset in the low half.
+// Not thread-safe; callers lock around it.
+public class OffHeapStrings
+{
+    private static final int SLAB_SIZE = 16 << 20;
+    private static final int NULL_LENGTH = -1;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private ByteBuffer current;
+    private long usedBytes;
+
+    // Write the strings as one record and return its address
+    public long add(String... texts)
+    {
+        byte[][] encoded = new byte[texts.length][];
+        int size = 0;
+        for (int i = 0; i < texts.length; i++)
+        {
+            encoded[i] = texts[i] == null ? null : texts[i].getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + (encoded[i] == null ? 0 : encoded[i].length);
+        }
+        long address = reserve(size);
+        for (byte[] bytes : encoded)
+        {
+            if (bytes == null)
+            {
+                current.putInt(NULL_LENGTH);
+            }
+            else
+            {
+                current.putInt(bytes.length);
+                current.put(bytes);
+            }
+        }
+        usedBytes += size;
+        return address;
+    }
+
+    // Copy the record of count strings at an address in another store, returning its address here
+    public long copy(OffHeapStrings from, long fromAddress, int count)
+    {
+        ByteBuffer slab = from.slabs.get((int) (fromAddress >>> 32));
+        int start = (int) fromAddress;
+        int end = start;
+        for (int i = 0; i < count; i++)
+        {
+            end += Integer.BYTES + Math.max(0, slab.getInt(end));
+        }
+        int size = end - start;
+        long address = reserve(size);
+        current.put(current.position(), slab, start, size);
+        current.position(current.position() + size);
+        usedBytes += size;
+        return address;
+    }
+
+    // Make room for a record of size bytes and return the address it will have
+    private long reserve(int size)
+    {
+        if (current == null || current.remaining() < size)
+        {
+            current = ByteBuffer.allocateDirect(Math.max(SLAB_SIZE, size));
+            slabs.add(current);
+        }
+        return (long) (slabs.size() - 1) << 32 | current.position();
+    }
+
+    // The index-th string of the record at an address
+    public String get(long address, int index)
+    {
+        ByteBuffer slab = slabs.get((int) (address >>> 32));
+        int position = (int) address;
+        for (int i = 0; i < index; i++)
+        {
+            position += Integer.BYTES + Math.max(0, slab.getInt(position));
+        }
+        int length = slab.getInt(position);
+        if (length == NULL_LENGTH)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        slab.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Bytes written, not counting the unused end of the last slab
+    public long usedBytes()
+    {
+        return usedBytes;
+    }
+
+    // Bytes reserved outside the heap
+    public long reservedBytes()
+    {
+        long reserved = 0;
+        for (ByteBuffer slab : slabs)
+        {
+            reserved += slab.capacity();
+        }
+        return reserved;
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Calls, failures and latencies of one operation. Calls are counted on a LongAdder so
+// threads do not contend for one counter, but only about one call in sampleEvery is timed,
+// picked at random so their histogram is a fair sample: reading the clock twice costs tens
+// of nanoseconds. For operations that take nanoseconds even the count is too dear, so a
+// sampled operation counts only the calls it times and estimates the rest from them.
+public class OperationMetrics
+{
+    // What start returns for a call that is not timed
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final String name;
+    private final Metrics owner;
+    private final int sampleMask;
+    private final boolean countsSampled;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private volatile String lastFailure;
+
+    // sampleEvery is rounded up to a power of two; 1 times every call
+    OperationMetrics(String name, Metrics owner, int sampleEvery, boolean countsSampled)
+    {
+        this.name = name;
+        this.owner = owner;
+        this.sampleMask = Integer.highestOneBit(Math.max(1, sampleEvery * 2 - 1)) - 1;
+        this.countsSampled = countsSampled;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    // Count a call, returning the time it started if it is one to time and NOT_TIMED if not
+    public long start()
+    {
+        if (!countsSampled && owner.isEnabled())
+        {
+            calls.increment();
+        }
+        if ((ThreadLocalRandom.current().nextInt() & sampleMask) != 0)
+        {
+            return NOT_TIMED;
+        }
+        return startTimed();
+    }
+
+    // Kept out of start, so start stays small enough to be inlined into the lookups
+    private long startTimed()
+    {
+        if (!owner.isEnabled())
+        {
+            return NOT_TIMED;
+        }
+        if (countsSampled)
+        {
+            calls.add(sampleMask + 1);
+        }
+        return System.nanoTime();
+    }
+
+    // Record how long a call took, given what start returned for it
+    public void finish(long start)
+    {
+        if (start != NOT_TIMED)
+        {
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    // Count a call that failed, keeping what went wrong for the exported snapshot
+    public void failed(Exception e)
+    {
+        failures.increment();
+        lastFailure = e.toString();
+    }
+
+    // An estimate, to within a few percent once there are thousands, if calls are sampled
+    public long getCalls()
+    {
+        return calls.sum();
+    }
+
+    public long getFailures()
+    {
+        return failures.sum();
+    }
+
+    // Null if no call has failed
+    public String getLastFailure()
+    {
+        return lastFailure;
+    }
+
+    public LatencyHistogram getLatencies()
+    {
+        return latencies;
+    }
+}
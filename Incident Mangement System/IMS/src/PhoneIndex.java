@@ -0,0 +1,273 @@
+import java.util.Arrays;
+
+// Incident numbers by reporter phone number, so finding everything a caller has reported
+// is a hash lookup rather than a scan. Phone numbers are kept as primitive long keys and
+// each incident is one node in its caller's doubly linked list, held in parallel arrays,
+// so there is no String, boxed number or list object per incident. Safe for many
+// threads; every method holds the index's lock.
+public class PhoneIndex
+{
+    private static final long EMPTY = 0;
+    private static final int NONE = -1;
+    private static final float LOAD_FACTOR = 0.6f;
+    // 10^18 + an 18 digit number still fits in a long
+    private static final int MAX_EXACT_DIGITS = 18;
+
+    // Open-addressing table from phone key to the node at the head of its list
+    private long[] keys = new long[16];
+    private int[] heads = new int[16];
+    private int callers;
+
+    // Nodes: the incident, its phone key and its neighbours in the caller's list
+    private int[] numbers = new int[16];
+    private long[] nodeKeys = new long[16];
+    private int[] next = new int[16];
+    private int[] previous = new int[16];
+    private int nodeCount;
+    // Freed nodes, chained through next
+    private int freeNode = NONE;
+    // Incident number to node
+    private final IntIntHashMap nodes = new IntIntHashMap();
+
+    // Add an incident, or move it to the caller it now names
+    public synchronized void update(Incident incident)
+    {
+        int number = incident.getIncidentNumber();
+        long key = keyOf(incident.getReporterPhoneNumber());
+        int node = nodes.get(number);
+        if (node != IntIntHashMap.NO_VALUE)
+        {
+            if (nodeKeys[node] == key)
+            {
+                return;
+            }
+            unlink(node);
+        }
+        else
+        {
+            node = allocate();
+            nodes.put(number, node);
+        }
+        numbers[node] = number;
+        nodeKeys[node] = key;
+        link(node);
+    }
+
+    public synchronized void remove(Incident incident)
+    {
+        int node = nodes.remove(incident.getIncidentNumber());
+        if (node != IntIntHashMap.NO_VALUE)
+        {
+            unlink(node);
+            next[node] = freeNode;
+            freeNode = node;
+        }
+    }
+
+    // Numbers of the incidents reported from a phone number, lowest first. Numbers too long
+    // to keep exactly share keys with others, so callers check the incidents they get back.
+    public synchronized int[] numbersFor(CharSequence phoneNumber)
+    {
+        int slot = find(keyOf(phoneNumber));
+        if (slot < 0)
+        {
+            return new int[0];
+        }
+        int[] found = new int[8];
+        int count = 0;
+        for (int node = heads[slot]; node != NONE; node = next[node])
+        {
+            if (count == found.length)
+            {
+                found = Arrays.copyOf(found, count * 2);
+            }
+            found[count++] = numbers[node];
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    // Number of distinct phone numbers
+    public synchronized int callerCount()
+    {
+        return callers;
+    }
+
+    public synchronized int size()
+    {
+        return nodes.size();
+    }
+
+    // A phone number of up to 18 digits as 10^length + its value, so leading zeros count and
+    // no two such numbers share a key. Anything else is hashed to a negative key.
+    static long keyOf(CharSequence phoneNumber)
+    {
+        if (phoneNumber == null)
+        {
+            return -1;
+        }
+        long value = 1;
+        long hash = 0;
+        boolean exact = phoneNumber.length() <= MAX_EXACT_DIGITS;
+        for (int i = 0; i < phoneNumber.length(); i++)
+        {
+            char c = phoneNumber.charAt(i);
+            exact &= c >= '0' && c <= '9';
+            value = value * 10 + (c - '0');
+            hash = hash * 31 + c;
+        }
+        return exact ? value : -1 - (hash & Long.MAX_VALUE >>> 1);
+    }
+
+    private int allocate()
+    {
+        if (freeNode != NONE)
+        {
+            int node = freeNode;
+            freeNode = next[node];
+            return node;
+        }
+        if (nodeCount == numbers.length)
+        {
+            int capacity = nodeCount * 2;
+            numbers = Arrays.copyOf(numbers, capacity);
+            nodeKeys = Arrays.copyOf(nodeKeys, capacity);
+            next = Arrays.copyOf(next, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+        }
+        return nodeCount++;
+    }
+
+    // Put a node at the head of its caller's list
+    private void link(int node)
+    {
+        long key = nodeKeys[node];
+        int slot = find(key);
+        if (slot < 0)
+        {
+            slot = insert(key);
+            heads[slot] = NONE;
+        }
+        int head = heads[slot];
+        next[node] = head;
+        previous[node] = NONE;
+        if (head != NONE)
+        {
+            previous[head] = node;
+        }
+        heads[slot] = node;
+    }
+
+    // Take a node out of its caller's list, dropping the caller when it was the last
+    private void unlink(int node)
+    {
+        int before = previous[node];
+        int after = next[node];
+        if (after != NONE)
+        {
+            previous[after] = before;
+        }
+        if (before != NONE)
+        {
+            next[before] = after;
+            return;
+        }
+        int slot = find(nodeKeys[node]);
+        if (after != NONE)
+        {
+            heads[slot] = after;
+        }
+        else
+        {
+            closeGap(slot);
+            callers--;
+        }
+    }
+
+    // The slot holding a key, or -1
+    private int find(long key)
+    {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY)
+        {
+            if (keys[slot] == key)
+            {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insert(long key)
+    {
+        if (callers + 1 >= (int) (keys.length * LOAD_FACTOR))
+        {
+            rehash(keys.length << 1);
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY)
+        {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        callers++;
+        return slot;
+    }
+
+    private void rehash(int newCapacity)
+    {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        keys = new long[newCapacity];
+        heads = new int[newCapacity];
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY)
+            {
+                int slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+    }
+
+    // Empty a slot without a tombstone, as IntIntHashMap does
+    private void closeGap(int gap)
+    {
+        int mask = keys.length - 1;
+        int slot = gap;
+        while (true)
+        {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == EMPTY)
+            {
+                keys[gap] = EMPTY;
+                return;
+            }
+            int home = mix(key) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask))
+            {
+                keys[gap] = key;
+                heads[gap] = heads[slot];
+                gap = slot;
+            }
+        }
+    }
+
+    // Phone numbers share long runs of leading digits, so spread them across the table
+    static int mix(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
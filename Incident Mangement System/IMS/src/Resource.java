@@ -1,9 +1,15 @@
+import java.util.Objects;
+
+// Immutable. A resource is identified by its number and code, so it is equal to any
+// resource with the same two whatever their description or units, and a ResourceCatalogue
+// keeps one entry for them. On an incident, the units are those of that assignment.
 public class Resource 
 {
-    private int resourceNumber;
-    private String resourceCode;
-    private String resourceDescription;
-    private int numUnits;
+    private final int resourceNumber;
+    private final String resourceCode;
+    private final String resourceDescription;
+    private final int numUnits;
+    private final int hash;
 
     public Resource(int resourceNumber, String resourceCode, String resourceDescription, int numUnits) 
     {
@@ -11,6 +17,7 @@ public class Resource
         this.resourceCode = resourceCode;
         this.resourceDescription = resourceDescription;
         this.numUnits = numUnits;
+        this.hash = computeHash();
     }
 
     public Resource(String[] csvData) 
@@ -19,13 +26,24 @@ public class Resource
         this.resourceCode = csvData[1].trim();
         this.resourceDescription = csvData[2].trim();
         this.numUnits = Integer.parseInt(csvData[3].trim());
+        this.hash = computeHash();
+    }
+
+    public Resource(CsvRow row) 
+    {
+        this.resourceNumber = row.getInt(0);
+        this.resourceCode = row.getString(1);
+        this.resourceDescription = row.getString(2);
+        this.numUnits = row.getInt(3);
+        this.hash = computeHash();
     }
 
     //method to parse CSV data and create a Resource instance
     public static Resource fromCSVString(String csvString) 
     {
-        String[] csvData = csvString.split(",");
-        return new Resource(csvData);
+        Resource[] parsed = new Resource[1];
+        CsvReader.parse(csvString, false, row -> parsed[0] = new Resource(row));
+        return parsed[0];
     }
     
 
@@ -50,25 +68,64 @@ public class Resource
         return numUnits;
     }
 
+    // The same resource with another unit count, sharing this one's text
+    public Resource withUnits(int units) 
+    {
+        return units == numUnits ? this : new Resource(resourceNumber, resourceCode, resourceDescription, units);
+    }
+
 
     public String toCSVString() 
     {
         StringBuilder csvString = new StringBuilder();
-        csvString.append(resourceNumber).append(", ")
-                .append(resourceCode).append(", ")
-                .append(resourceDescription).append(", ")
+        csvString.append(resourceNumber).append(CsvWriter.SEPARATOR);
+        CsvWriter.appendField(csvString, resourceCode).append(CsvWriter.SEPARATOR);
+        CsvWriter.appendField(csvString, resourceDescription).append(CsvWriter.SEPARATOR)
                 .append(numUnits);
     
         return csvString.toString();
     }
 
 
+    @Override
+    public boolean equals(Object other) 
+    {
+        if (this == other) 
+        {
+            return true;
+        }
+        if (!(other instanceof Resource)) 
+        {
+            return false;
+        }
+        Resource resource = (Resource) other;
+        return resourceNumber == resource.resourceNumber && Objects.equals(resourceCode, resource.resourceCode);
+    }
+
+    @Override
+    public int hashCode() 
+    {
+        return hash;
+    }
+
+    // Fields never change, so the hash is worked out once
+    private int computeHash() 
+    {
+        return 31 * resourceNumber + Objects.hashCode(resourceCode);
+    }
+
     @Override
     public String toString() 
     {
-        return "Resource Number: " + resourceNumber +
-                ", Resource Code: " + resourceCode +
-                ", Description: " + resourceDescription +
-                ", Number of Units: " + numUnits;
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    // Append the text toString() returns without building a String of it
+    public StringBuilder appendTo(StringBuilder sb) 
+    {
+        return sb.append("Resource Number: ").append(resourceNumber)
+                .append(", Resource Code: ").append(resourceCode)
+                .append(", Description: ").append(resourceDescription)
+                .append(", Number of Units: ").append(numUnits);
     }
 }
@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The distinct resources known to the system, one per resource number and code, each
+// found by hash rather than by scanning and indexed to the incidents it is assigned to.
+// Unit counts belong to assignments, not to the entry: an assignment with other units
+// shares one copy per count kept with the entry. Safe for many threads; every method
+// holds the catalogue's lock.
+public class ResourceCatalogue
+{
+    // Each distinct resource's shared instance and the incidents it is assigned to, so
+    // interning and recording an assignment cost one hash lookup together
+    private final Map<Resource, Entry> entries = new HashMap<>();
+    private final List<Resource> resources = new ArrayList<>();
+    // Resource number to the position of the first resource registered with it
+    private final IntIntHashMap byNumber = new IntIntHashMap();
+    private final Map<String, List<Resource>> byCode = new HashMap<>();
+    // Resources registered before this position have been saved
+    private int savedCount;
+
+    private static class Entry
+    {
+        final Resource resource;
+        // Copies of the resource with the unit counts assignments gave it, other than its own
+        List<Resource> withOtherUnits;
+        Set<Incident> incidents;
+        // Assignments not yet in the set; appending is much cheaper than hashing into a
+        // large set, so bulk loads only pay for the set when it is first needed
+        List<Incident> added;
+
+        Entry(Resource resource)
+        {
+            this.resource = resource;
+        }
+
+        Set<Incident> incidents()
+        {
+            if (added != null)
+            {
+                if (incidents == null)
+                {
+                    incidents = Collections.newSetFromMap(new IdentityHashMap<>(added.size()));
+                }
+                incidents.addAll(added);
+                added = null;
+            }
+            return incidents;
+        }
+
+        Resource withUnits(int units)
+        {
+            if (units == resource.getNumUnits())
+            {
+                return resource;
+            }
+            if (withOtherUnits == null)
+            {
+                withOtherUnits = new ArrayList<>(1);
+            }
+            for (Resource copy : withOtherUnits)
+            {
+                if (copy.getNumUnits() == units)
+                {
+                    return copy;
+                }
+            }
+            Resource copy = resource.withUnits(units);
+            withOtherUnits.add(copy);
+            return copy;
+        }
+    }
+
+    // The registered resource with the given one's number and code, registering it if it is new
+    public synchronized Resource intern(Resource resource)
+    {
+        return entry(resource).resource;
+    }
+
+    // The shared instance to hold for an assignment of the given resource: the registered
+    // resource with the given one's units. Registers the resource if it is new.
+    public synchronized Resource forAssignment(Resource resource)
+    {
+        return entry(resource).withUnits(resource.getNumUnits());
+    }
+
+    private Entry entry(Resource resource)
+    {
+        Entry entry = entries.get(resource);
+        if (entry != null)
+        {
+            return entry;
+        }
+        entry = new Entry(resource);
+        entries.put(resource, entry);
+        if (!byNumber.containsKey(resource.getResourceNumber()))
+        {
+            byNumber.put(resource.getResourceNumber(), resources.size());
+        }
+        resources.add(resource);
+        byCode.computeIfAbsent(resource.getResourceCode(), code -> new ArrayList<>(1)).add(resource);
+        return entry;
+    }
+
+    // The resource registered with a number and code, or null
+    public synchronized Resource find(int resourceNumber, String resourceCode)
+    {
+        Entry entry = entries.get(new Resource(resourceNumber, resourceCode, null, 0));
+        return entry == null ? null : entry.resource;
+    }
+
+    // The first resource registered with a number, or null
+    public synchronized Resource find(int resourceNumber)
+    {
+        int position = byNumber.get(resourceNumber);
+        return position == IntIntHashMap.NO_VALUE ? null : resources.get(position);
+    }
+
+    // Every resource registered with a code, in the order they were registered
+    public synchronized List<Resource> findByCode(String resourceCode)
+    {
+        List<Resource> found = byCode.get(resourceCode);
+        return found == null ? Collections.emptyList() : new ArrayList<>(found);
+    }
+
+    // Record that a resource is assigned to an incident; returns the shared instance for
+    // the assignment, as forAssignment does
+    public synchronized Resource assign(Resource resource, Incident incident)
+    {
+        Entry entry = entry(resource);
+        if (entry.added == null)
+        {
+            entry.added = new ArrayList<>();
+        }
+        entry.added.add(incident);
+        return entry.withUnits(resource.getNumUnits());
+    }
+
+    // Record that several resources are assigned to an incident
+    public synchronized void assignAll(List<Resource> assigned, Incident incident)
+    {
+        for (Resource resource : assigned)
+        {
+            assign(resource, incident);
+        }
+    }
+
+    // Forget every assignment to an incident, e.g. when it is replaced
+    public synchronized void unassign(Incident incident)
+    {
+        for (Resource resource : incident.getResources())
+        {
+            Entry entry = entries.get(resource);
+            if (entry != null && entry.incidents() != null && entry.incidents.remove(incident)
+                    && entry.incidents.isEmpty())
+            {
+                entry.incidents = null;
+            }
+        }
+    }
+
+    // Incidents a resource is assigned to, in no particular order
+    public synchronized List<Incident> incidentsFor(Resource resource)
+    {
+        Entry entry = entries.get(resource);
+        return entry == null || entry.incidents() == null ? Collections.emptyList() : new ArrayList<>(entry.incidents);
+    }
+
+    public synchronized int size()
+    {
+        return resources.size();
+    }
+
+    // Resources registered since the catalogue was last saved
+    public synchronized List<Resource> getUnsaved()
+    {
+        return new ArrayList<>(resources.subList(savedCount, resources.size()));
+    }
+
+    // Mark the first count resources as saved
+    public synchronized void markSaved(int count)
+    {
+        savedCount = Math.max(savedCount, count);
+    }
+
+    // Copy of the resources in the order they were registered
+    public synchronized List<Resource> asList()
+    {
+        return new ArrayList<>(resources);
+    }
+}
@@ -0,0 +1,48 @@
+// Layout of the binary snapshot written by SnapshotWriter and read by SnapshotReader.
+//
+// File:   magic (int), version (int), block count (int), then the blocks in this order
+// Block:  type (int), payload length (int), payload, CRC32 of the payload (int)
+//
+// STRINGS      count, count + 1 byte offsets into the UTF-8 data that follows
+// RESOURCES    count, then fixed-width resource records (the unique resource catalogue)
+// INCIDENTS    count, then fixed-width incident records in insertion order
+// ASSIGNMENTS  count, then fixed-width resource records for every incident's resource list
+// INDEX        count, then (incident number, record position) pairs sorted by number
+//
+// All text fields are ids into the STRINGS block; -1 stands for null. An incident's date and
+// time are kept as its timestamp, and as two text ids in the same eight bytes only when they
+// cannot be read as one. Version 1 records always hold the text ids.
+public class SnapshotFormat
+{
+    public static final int MAGIC = 0x494D5353; // "IMSS"
+    public static final int VERSION = 2;
+    // Oldest version SnapshotReader still reads
+    public static final int OLDEST_VERSION = 1;
+
+    public static final int STRINGS = 1;
+    public static final int RESOURCES = 2;
+    public static final int INCIDENTS = 3;
+    public static final int ASSIGNMENTS = 4;
+    public static final int INDEX = 5;
+    public static final int BLOCK_COUNT = 5;
+
+    // number, code id, description id, units
+    public static final int RESOURCE_RECORD_SIZE = 16;
+
+    // number, name id, phone id, timestamp (long, epoch seconds reading the date and time as
+    // UTC) or date id and time id, gps id, details id, flags (bit 0 ongoing, bit 1 date and
+    // time as text, bits 8-15 priority, 0 in snapshots from before priorities), first
+    // assignment, assignment count
+    public static final int INCIDENT_RECORD_SIZE = 40;
+    public static final int FLAG_ONGOING = 1;
+    public static final int FLAG_TEXT_DATE_TIME = 2;
+
+    // incident number, record position
+    public static final int INDEX_RECORD_SIZE = 8;
+
+    public static final int NO_STRING = -1;
+
+    private SnapshotFormat()
+    {
+    }
+}
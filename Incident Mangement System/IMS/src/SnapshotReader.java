@@ -0,0 +1,254 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+// Reads a binary snapshot (see SnapshotFormat) by memory-mapping its blocks.
+// Records are decoded on demand, so single incidents can be served straight from
+// the mapped file without decoding the whole snapshot first.
+public class SnapshotReader implements Closeable
+{
+    private final FileChannel channel;
+    private ByteBuffer strings;
+    private ByteBuffer resources;
+    private ByteBuffer incidents;
+    private ByteBuffer assignments;
+    private ByteBuffer index;
+    private String[] decodedStrings;
+    private int stringDataStart;
+    private int version;
+    // Dates and times made from timestamps, by day and by minute of the day, shared as the
+    // strings are
+    private final Map<Long, String> dates = new HashMap<>();
+    private final String[] times = new String[24 * 60];
+
+    private SnapshotReader(FileChannel channel)
+    {
+        this.channel = channel;
+    }
+
+    // Open a snapshot, checking its header and the checksum of every block
+    public static SnapshotReader open(String filename) throws IOException
+    {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        SnapshotReader reader = new SnapshotReader(channel);
+        try
+        {
+            reader.mapBlocks();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+        return reader;
+    }
+
+    public int incidentCount()
+    {
+        return incidents.getInt(0);
+    }
+
+    public int resourceCount()
+    {
+        return resources.getInt(0);
+    }
+
+    // Decode the incident stored at a position, with its resources
+    public Incident incidentAt(int position)
+    {
+        return incidentAt(position, UnaryOperator.identity());
+    }
+
+    // As above, passing each resource through shared first, e.g. to intern it
+    public Incident incidentAt(int position, UnaryOperator<Resource> shared)
+    {
+        int record = 4 + position * SnapshotFormat.INCIDENT_RECORD_SIZE;
+        int flags = incidents.getInt(record + 28);
+        boolean text = version < 2 || (flags & SnapshotFormat.FLAG_TEXT_DATE_TIME) != 0;
+        long timestamp = text ? Incident.NO_TIMESTAMP : incidents.getLong(record + 12);
+        Incident incident = new Incident(incidents.getInt(record),
+                string(incidents.getInt(record + 4)),
+                string(incidents.getInt(record + 8)),
+                text ? string(incidents.getInt(record + 12)) : date(timestamp),
+                text ? string(incidents.getInt(record + 16)) : time(timestamp),
+                new GPSLocation(string(incidents.getInt(record + 20))),
+                string(incidents.getInt(record + 24)));
+        incident.setOngoing((flags & SnapshotFormat.FLAG_ONGOING) != 0);
+        int priority = (flags >>> 8) & 0xFF;
+        if (Incident.isValidPriority(priority))
+        {
+            incident.setPriority(priority);
+        }
+        int firstAssignment = incidents.getInt(record + 32);
+        int assignmentCount = incidents.getInt(record + 36);
+        for (int i = 0; i < assignmentCount; i++)
+        {
+            incident.addResource(shared.apply(resource(assignments, firstAssignment + i)));
+        }
+        return incident;
+    }
+
+    // Decode an entry of the unique resource catalogue
+    public Resource resourceAt(int position)
+    {
+        return resource(resources, position);
+    }
+
+    // Find an incident by number through the sorted index, or null if it is not in the snapshot
+    public Incident findIncident(int incidentNumber)
+    {
+        int low = 0;
+        int high = index.getInt(0) - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int entry = 4 + middle * SnapshotFormat.INDEX_RECORD_SIZE;
+            int number = index.getInt(entry);
+            if (number < incidentNumber)
+            {
+                low = middle + 1;
+            }
+            else if (number > incidentNumber)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return incidentAt(index.getInt(entry + 4));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    private Resource resource(ByteBuffer block, int position)
+    {
+        int record = 4 + position * SnapshotFormat.RESOURCE_RECORD_SIZE;
+        return new Resource(block.getInt(record),
+                string(block.getInt(record + 4)),
+                string(block.getInt(record + 8)),
+                block.getInt(record + 12));
+    }
+
+    private String date(long timestamp)
+    {
+        return dates.computeIfAbsent(Math.floorDiv(timestamp, 86_400), day -> Incident.toDate(timestamp));
+    }
+
+    private String time(long timestamp)
+    {
+        int minute = (int) (Math.floorMod(timestamp, 86_400) / 60);
+        if (times[minute] == null)
+        {
+            times[minute] = Incident.toTime(timestamp);
+        }
+        return times[minute];
+    }
+
+    // Strings are decoded the first time they are used and then shared
+    private String string(int id)
+    {
+        if (id == SnapshotFormat.NO_STRING)
+        {
+            return null;
+        }
+        String value = decodedStrings[id];
+        if (value == null)
+        {
+            int start = strings.getInt(4 + id * 4);
+            int end = strings.getInt(8 + id * 4);
+            byte[] bytes = new byte[end - start];
+            strings.get(stringDataStart + start, bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            decodedStrings[id] = value;
+        }
+        return value;
+    }
+
+    private void mapBlocks() throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(12);
+        readFully(header, 0);
+        if (header.getInt(0) != SnapshotFormat.MAGIC)
+        {
+            throw new IOException("Not an incident snapshot file");
+        }
+        version = header.getInt(4);
+        if (version < SnapshotFormat.OLDEST_VERSION || version > SnapshotFormat.VERSION)
+        {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int blockCount = header.getInt(8);
+        long position = 12;
+        ByteBuffer blockHeader = ByteBuffer.allocate(8);
+        ByteBuffer checksum = ByteBuffer.allocate(4);
+        for (int i = 0; i < blockCount; i++)
+        {
+            readFully(blockHeader.clear(), position);
+            int type = blockHeader.getInt(0);
+            int length = blockHeader.getInt(4);
+            MappedByteBuffer payload = channel.map(FileChannel.MapMode.READ_ONLY, position + 8, length);
+            readFully(checksum.clear(), position + 8 + length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum.getInt(0))
+            {
+                throw new IOException("Snapshot block " + type + " is corrupt (checksum mismatch)");
+            }
+            switch (type)
+            {
+                case SnapshotFormat.STRINGS:
+                    strings = payload;
+                    break;
+                case SnapshotFormat.RESOURCES:
+                    resources = payload;
+                    break;
+                case SnapshotFormat.INCIDENTS:
+                    incidents = payload;
+                    break;
+                case SnapshotFormat.ASSIGNMENTS:
+                    assignments = payload;
+                    break;
+                case SnapshotFormat.INDEX:
+                    index = payload;
+                    break;
+                default:
+                    // Unknown blocks are skipped
+                    break;
+            }
+            position += 8 + length + 4;
+        }
+        if (strings == null || resources == null || incidents == null || assignments == null || index == null)
+        {
+            throw new IOException("Snapshot file is missing blocks");
+        }
+        int stringCount = strings.getInt(0);
+        decodedStrings = new String[stringCount];
+        stringDataStart = 4 + 4 * (stringCount + 1);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("Snapshot file is truncated");
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Writes the full incident database to a binary snapshot file (see SnapshotFormat)
+public class SnapshotWriter
+{
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<byte[]> strings = new ArrayList<>();
+
+    // An incident's fields as read together under its lock, so every block written from
+    // them agrees even while the incident is being changed
+    private static final class Captured
+    {
+        final int number;
+        final String reporterName;
+        final String reporterPhoneNumber;
+        final long timestamp;
+        // Only when the timestamp cannot stand for them
+        final String date;
+        final String time;
+        final String gpsLocation;
+        final String details;
+        final int flags;
+        final List<Resource> resources;
+
+        Captured(Incident incident)
+        {
+            synchronized (incident)
+            {
+                number = incident.getIncidentNumber();
+                reporterName = incident.getReporterName();
+                reporterPhoneNumber = incident.getReporterPhoneNumber();
+                timestamp = incident.getTimestamp();
+                boolean text = timestamp == Incident.NO_TIMESTAMP;
+                date = text ? incident.getDate() : null;
+                time = text ? incident.getTime() : null;
+                gpsLocation = incident.getGpsLocation() == null ? null : incident.getGpsLocation().toString();
+                details = incident.getIncidentDetails();
+                flags = (incident.isOngoing() ? SnapshotFormat.FLAG_ONGOING : 0)
+                        | (text ? SnapshotFormat.FLAG_TEXT_DATE_TIME : 0) | incident.getPriority() << 8;
+                // Replaced whole on change, so the list read here stays as it was
+                resources = incident.getResources();
+            }
+        }
+    }
+
+    private SnapshotWriter()
+    {
+    }
+
+    // Write incidents, their resources and the unique resource catalogue, replacing the file
+    // atomically once it has been read back
+    public static void write(String filename, List<Incident> incidents, List<Resource> catalogue) throws IOException
+    {
+        List<Captured> captured = new ArrayList<>(incidents.size());
+        for (Incident incident : incidents)
+        {
+            captured.add(new Captured(incident));
+        }
+        new SnapshotWriter().writeFile(filename, captured, catalogue);
+    }
+
+    private void writeFile(String filename, List<Captured> incidents, List<Resource> catalogue) throws IOException
+    {
+        // Collect every string first so the dictionary can be written ahead of the records
+        int assignmentCount = 0;
+        for (Resource resource : catalogue)
+        {
+            idOf(resource.getResourceCode());
+            idOf(resource.getResourceDescription());
+        }
+        for (Captured incident : incidents)
+        {
+            idOf(incident.reporterName);
+            idOf(incident.reporterPhoneNumber);
+            idOf(incident.date);
+            idOf(incident.time);
+            idOf(incident.gpsLocation);
+            idOf(incident.details);
+            for (Resource resource : incident.resources)
+            {
+                idOf(resource.getResourceCode());
+                idOf(resource.getResourceDescription());
+                assignmentCount++;
+            }
+        }
+
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        CRC32 crc = new CRC32();
+        FileOutputStream file = new FileOutputStream(temp.toFile());
+        CheckedOutputStream checked = new CheckedOutputStream(file, crc);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16)))
+        {
+            out.writeInt(SnapshotFormat.MAGIC);
+            out.writeInt(SnapshotFormat.VERSION);
+            out.writeInt(SnapshotFormat.BLOCK_COUNT);
+
+            beginBlock(out, crc, SnapshotFormat.STRINGS, stringsLength());
+            out.writeInt(strings.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] string : strings)
+            {
+                offset += string.length;
+                out.writeInt(offset);
+            }
+            for (byte[] string : strings)
+            {
+                out.write(string);
+            }
+            endBlock(out, crc);
+
+            beginBlock(out, crc, SnapshotFormat.RESOURCES, 4 + (long) catalogue.size() * SnapshotFormat.RESOURCE_RECORD_SIZE);
+            out.writeInt(catalogue.size());
+            for (Resource resource : catalogue)
+            {
+                writeResource(out, resource);
+            }
+            endBlock(out, crc);
+
+            beginBlock(out, crc, SnapshotFormat.INCIDENTS, 4 + (long) incidents.size() * SnapshotFormat.INCIDENT_RECORD_SIZE);
+            out.writeInt(incidents.size());
+            int firstAssignment = 0;
+            for (Captured incident : incidents)
+            {
+                int resources = incident.resources.size();
+                out.writeInt(incident.number);
+                out.writeInt(idOf(incident.reporterName));
+                out.writeInt(idOf(incident.reporterPhoneNumber));
+                if (incident.timestamp == Incident.NO_TIMESTAMP)
+                {
+                    out.writeInt(idOf(incident.date));
+                    out.writeInt(idOf(incident.time));
+                }
+                else
+                {
+                    out.writeLong(incident.timestamp);
+                }
+                out.writeInt(idOf(incident.gpsLocation));
+                out.writeInt(idOf(incident.details));
+                out.writeInt(incident.flags);
+                out.writeInt(firstAssignment);
+                out.writeInt(resources);
+                firstAssignment += resources;
+            }
+            endBlock(out, crc);
+
+            beginBlock(out, crc, SnapshotFormat.ASSIGNMENTS, 4 + (long) assignmentCount * SnapshotFormat.RESOURCE_RECORD_SIZE);
+            out.writeInt(assignmentCount);
+            for (Captured incident : incidents)
+            {
+                for (Resource resource : incident.resources)
+                {
+                    writeResource(out, resource);
+                }
+            }
+            endBlock(out, crc);
+
+            // Sort (number, position) pairs packed into longs so lookups can binary search
+            long[] index = new long[incidents.size()];
+            for (int i = 0; i < index.length; i++)
+            {
+                index[i] = ((long) incidents.get(i).number << 32) | i;
+            }
+            Arrays.sort(index);
+            beginBlock(out, crc, SnapshotFormat.INDEX, 4 + (long) index.length * SnapshotFormat.INDEX_RECORD_SIZE);
+            out.writeInt(index.length);
+            for (long entry : index)
+            {
+                out.writeLong(entry);
+            }
+            endBlock(out, crc);
+            out.flush();
+            file.getChannel().force(true);
+        }
+        verify(temp, incidents.size(), catalogue.size());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Read the written file back, checking every block's CRC and the counts, before it
+    // replaces the last good snapshot; a save that returns is one the journal may be cut for
+    private static void verify(Path written, int incidentCount, int resourceCount) throws IOException
+    {
+        try (SnapshotReader reader = SnapshotReader.open(written.toString()))
+        {
+            if (reader.incidentCount() != incidentCount || reader.resourceCount() != resourceCount)
+            {
+                throw new IOException("Snapshot " + written + " read back " + reader.incidentCount() + " incidents and "
+                        + reader.resourceCount() + " resources, not " + incidentCount + " and " + resourceCount);
+            }
+        }
+    }
+
+    private void writeResource(DataOutputStream out, Resource resource) throws IOException
+    {
+        out.writeInt(resource.getResourceNumber());
+        out.writeInt(idOf(resource.getResourceCode()));
+        out.writeInt(idOf(resource.getResourceDescription()));
+        out.writeInt(resource.getNumUnits());
+    }
+
+    // Start a block; its CRC covers only the payload that follows the header
+    private static void beginBlock(DataOutputStream out, CRC32 crc, int type, long length) throws IOException
+    {
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IOException("Snapshot block " + type + " is too large: " + length + " bytes");
+        }
+        out.writeInt(type);
+        out.writeInt((int) length);
+        out.flush();
+        crc.reset();
+    }
+
+    private static void endBlock(DataOutputStream out, CRC32 crc) throws IOException
+    {
+        out.flush();
+        out.writeInt((int) crc.getValue());
+    }
+
+    private long stringsLength()
+    {
+        long length = 4 + 4L * (strings.size() + 1);
+        for (byte[] string : strings)
+        {
+            length += string.length;
+        }
+        return length;
+    }
+
+    private int idOf(String value)
+    {
+        if (value == null)
+        {
+            return SnapshotFormat.NO_STRING;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null)
+        {
+            id = strings.size();
+            stringIds.put(value, id);
+            strings.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+}
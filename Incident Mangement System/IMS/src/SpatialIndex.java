@@ -0,0 +1,343 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Uniform latitude/longitude grid over items with a position. Each item lives in the
+// cell that contains it, so radius, box and nearest-neighbour queries only visit the
+// cells around the query point instead of every item. Longitudes do not wrap at +/-180.
+public class SpatialIndex<T>
+{
+    public static final double DEFAULT_CELL_DEGREES = 0.02; // about 2 km north-south
+
+    private static final double KM_PER_DEGREE = 111.195;
+
+    private final double cellDegrees;
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private int minCellX = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+
+    private static class Entry<T>
+    {
+        final T item;
+        final double latitude;
+        final double longitude;
+        final long cell;
+
+        Entry(T item, double latitude, double longitude, long cell)
+        {
+            this.item = item;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.cell = cell;
+        }
+    }
+
+    private static class Candidate<T>
+    {
+        final T item;
+        final double distance;
+
+        Candidate(T item, double distance)
+        {
+            this.item = item;
+            this.distance = distance;
+        }
+    }
+
+    public SpatialIndex()
+    {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    public SpatialIndex(double cellDegrees)
+    {
+        this.cellDegrees = cellDegrees;
+    }
+
+    // Add an item or move it to a new position
+    public void put(T item, double latitude, double longitude)
+    {
+        Entry<T> existing = entries.get(item);
+        if (existing != null && existing.latitude == latitude && existing.longitude == longitude)
+        {
+            return;
+        }
+        remove(item);
+        int x = cellX(longitude);
+        int y = cellY(latitude);
+        Entry<T> entry = new Entry<>(item, latitude, longitude, key(x, y));
+        cells.computeIfAbsent(entry.cell, cell -> new ArrayList<>()).add(entry);
+        entries.put(item, entry);
+        minCellX = Math.min(minCellX, x);
+        maxCellX = Math.max(maxCellX, x);
+        minCellY = Math.min(minCellY, y);
+        maxCellY = Math.max(maxCellY, y);
+    }
+
+    public boolean remove(T item)
+    {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null)
+        {
+            return false;
+        }
+        List<Entry<T>> cell = cells.get(entry.cell);
+        int last = cell.size() - 1;
+        int position = cell.indexOf(entry);
+        cell.set(position, cell.get(last));
+        cell.remove(last);
+        if (cell.isEmpty())
+        {
+            cells.remove(entry.cell);
+        }
+        return true;
+    }
+
+    public boolean contains(T item)
+    {
+        return entries.containsKey(item);
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    // Items within a radius of a point that pass the filter (null accepts all)
+    public List<T> withinRadius(double latitude, double longitude, double radiusKm, Predicate<T> filter)
+    {
+        List<T> found = new ArrayList<>();
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        double lonSpan = lonSpan(latitude, radiusKm);
+        forEachCell(latitude - latSpan, longitude - lonSpan, latitude + latSpan, longitude + lonSpan, entry -> {
+            // The box test is cheap and rejects most of the corner cells before the haversine
+            if (Math.abs(entry.latitude - latitude) <= latSpan && Math.abs(entry.longitude - longitude) <= lonSpan
+                    && GPSLocation.distanceKm(latitude, longitude, entry.latitude, entry.longitude) <= radiusKm
+                    && (filter == null || filter.test(entry.item)))
+            {
+                found.add(entry.item);
+            }
+        });
+        return found;
+    }
+
+    // Items inside a latitude/longitude box that pass the filter (null accepts all)
+    public List<T> withinBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                             Predicate<T> filter)
+    {
+        List<T> found = new ArrayList<>();
+        forEachCell(minLatitude, minLongitude, maxLatitude, maxLongitude, entry -> {
+            if (entry.latitude >= minLatitude && entry.latitude <= maxLatitude
+                    && entry.longitude >= minLongitude && entry.longitude <= maxLongitude
+                    && (filter == null || filter.test(entry.item)))
+            {
+                found.add(entry.item);
+            }
+        });
+        return found;
+    }
+
+    // The count items closest to a point that pass the filter (null accepts all), nearest first
+    public List<T> nearest(double latitude, double longitude, int count, Predicate<T> filter)
+    {
+        List<T> found = new ArrayList<>();
+        if (count <= 0 || entries.isEmpty())
+        {
+            return found;
+        }
+        // Max-heap on distance holding the best candidates seen so far
+        PriorityQueue<Candidate<T>> best = new PriorityQueue<>(count + 1,
+                (a, b) -> Double.compare(b.distance, a.distance));
+        int centerX = cellX(longitude);
+        int centerY = cellY(latitude);
+        // Rings nearer than the occupied extent hold nothing, and rings past it neither
+        int firstRing = Math.max(0, Math.max(Math.max(minCellX - centerX, centerX - maxCellX),
+                Math.max(minCellY - centerY, centerY - maxCellY)));
+        int maxRing = Math.max(Math.max(centerX - minCellX, maxCellX - centerX),
+                Math.max(centerY - minCellY, maxCellY - centerY));
+        // Stepping over more rows and cells than are occupied costs more than reading every
+        // occupied cell, which happens when few items pass the filter or the point is far
+        // from them all; the search then reads the occupied cells instead
+        long steps = 0;
+        int occupiedVisited = 0;
+        boolean complete = true;
+        int ring = firstRing;
+        // The best candidates from the rings before the current one, which it may not finish
+        List<Candidate<T>> beforeRing = new ArrayList<>(count);
+
+        // Visit square rings of cells outward, clipped to the occupied extent, until no
+        // closer item can remain or every occupied cell has been seen
+        for (; ring <= maxRing && occupiedVisited < cells.size(); ring++)
+        {
+            if (best.size() == count && best.peek().distance <= ringDistanceKm(latitude, ring))
+            {
+                break;
+            }
+            beforeRing.clear();
+            beforeRing.addAll(best);
+            int fromY = Math.max(centerY - ring, minCellY);
+            int toY = Math.min(centerY + ring, maxCellY);
+            int fromX = Math.max(centerX - ring, minCellX);
+            int toX = Math.min(centerX + ring, maxCellX);
+            for (int y = fromY; y <= toY && complete; y++)
+            {
+                if (++steps > cells.size())
+                {
+                    complete = false;
+                    break;
+                }
+                // Edge rows cross the whole ring; the rows between hold only its two side columns
+                boolean edgeRow = y == centerY - ring || y == centerY + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int x = edgeRow ? fromX : centerX - ring; x <= toX; x += step)
+                {
+                    if (x < fromX)
+                    {
+                        continue;
+                    }
+                    if (++steps > cells.size())
+                    {
+                        complete = false;
+                        break;
+                    }
+                    List<Entry<T>> cell = cells.get(key(x, y));
+                    if (cell != null)
+                    {
+                        occupiedVisited++;
+                        offer(best, count, latitude, longitude, cell, filter);
+                    }
+                }
+            }
+            if (!complete)
+            {
+                break;
+            }
+        }
+        if (!complete)
+        {
+            // Keep what the finished rings found and read the cells from the current ring out
+            best.clear();
+            best.addAll(beforeRing);
+            for (List<Entry<T>> cell : cells.values())
+            {
+                Entry<T> first = cell.get(0);
+                int x = cellX(first.longitude);
+                int y = cellY(first.latitude);
+                if (Math.max(Math.abs(x - centerX), Math.abs(y - centerY)) >= ring)
+                {
+                    offer(best, count, latitude, longitude, cell, filter);
+                }
+            }
+        }
+
+        List<Candidate<T>> ordered = new ArrayList<>(best);
+        ordered.sort((a, b) -> Double.compare(a.distance, b.distance));
+        for (Candidate<T> candidate : ordered)
+        {
+            found.add(candidate.item);
+        }
+        return found;
+    }
+
+    // Keep the items of a cell that pass the filter and beat the worst of the best so far
+    private void offer(PriorityQueue<Candidate<T>> best, int count, double latitude, double longitude,
+                       List<Entry<T>> cell, Predicate<T> filter)
+    {
+        for (Entry<T> entry : cell)
+        {
+            if (filter != null && !filter.test(entry.item))
+            {
+                continue;
+            }
+            double distance = GPSLocation.distanceKm(latitude, longitude, entry.latitude, entry.longitude);
+            if (best.size() < count || distance < best.peek().distance)
+            {
+                best.add(new Candidate<>(entry.item, distance));
+                if (best.size() > count)
+                {
+                    best.poll();
+                }
+            }
+        }
+    }
+
+    // Lower bound on the distance from the query point to any cell in the given ring
+    private double ringDistanceKm(double latitude, int ring)
+    {
+        if (ring == 0)
+        {
+            return 0;
+        }
+        double reach = (ring - 1) * cellDegrees;
+        double farthestLatitude = Math.min(90, Math.abs(latitude) + reach + cellDegrees);
+        return reach * KM_PER_DEGREE * Math.cos(Math.toRadians(farthestLatitude));
+    }
+
+    private void forEachCell(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                             Consumer<Entry<T>> action)
+    {
+        int fromX = Math.max(cellX(minLongitude), minCellX);
+        int toX = Math.min(cellX(maxLongitude), maxCellX);
+        int fromY = Math.max(cellY(minLatitude), minCellY);
+        int toY = Math.min(cellY(maxLatitude), maxCellY);
+        if (fromX > toX || fromY > toY)
+        {
+            return;
+        }
+        if ((long) (toX - fromX + 1) * (toY - fromY + 1) > cells.size())
+        {
+            // Cheaper to walk the occupied cells than every cell in a huge box
+            for (List<Entry<T>> cell : cells.values())
+            {
+                Entry<T> first = cell.get(0);
+                int x = cellX(first.longitude);
+                int y = cellY(first.latitude);
+                if (x >= fromX && x <= toX && y >= fromY && y <= toY)
+                {
+                    cell.forEach(action);
+                }
+            }
+            return;
+        }
+        for (int y = fromY; y <= toY; y++)
+        {
+            for (int x = fromX; x <= toX; x++)
+            {
+                List<Entry<T>> cell = cells.get(key(x, y));
+                if (cell != null)
+                {
+                    cell.forEach(action);
+                }
+            }
+        }
+    }
+
+    private double lonSpan(double latitude, double radiusKm)
+    {
+        double cos = Math.cos(Math.toRadians(Math.min(89.9, Math.abs(latitude) + radiusKm / KM_PER_DEGREE)));
+        return Math.min(180, radiusKm / (KM_PER_DEGREE * cos));
+    }
+
+    private int cellX(double longitude)
+    {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    private int cellY(double latitude)
+    {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    private static long key(int x, int y)
+    {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,767 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Inverted index over each incident's reporter name and details. Text is split into runs
+// of letters and digits and case-folded; every term maps to the sorted numbers of the
+// incidents that contain it, and the sorted vocabulary answers prefix terms. The indexed
+// text is kept so a change only touches the terms that differ and phrases can be checked
+// word by word. Safe for many threads; every method holds the index's lock.
+//
+// Query syntax: plain words are ranked keywords, word* matches any term with the prefix,
+// and "quoted words" must appear together in that order. Results contain every phrase
+// and, if there are keywords, at least one of them; those matching more, and rarer,
+// keywords rank first, then newer incidents (higher numbers).
+public class TextIndex
+{
+    // Fewest incidents per chunk when a batch is tokenised in parallel. Each chunk holds a
+    // map over its whole vocabulary until they are joined, so chunks are otherwise sized
+    // to give each thread a couple rather than made small.
+    private static final int MIN_BUILD_CHUNK = 16_384;
+    // Most terms a word* prefix stands for; a prefix matching more, such as a single
+    // letter, stands for the ones in the most incidents
+    private static final int MAX_PREFIX_TERMS = 1_024;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final TreeSet<String> vocabulary = new TreeSet<>();
+    // Incident number to the slot holding the text it was indexed with
+    private final IntIntHashMap slots = new IntIntHashMap();
+    private String[] names = new String[16];
+    private String[] details = new String[16];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    // Incident numbers containing a term, ascending. A removed number keeps its place and
+    // is marked dead in a bitset, which readers skip, so removing it costs a binary search
+    // however many of its neighbours went before it. The dead are dropped in one pass once
+    // they are half the list, and a dead number added back is only unmarked.
+    private static class Postings
+    {
+        int[] numbers;
+        // Places used in numbers, dead ones included
+        int size;
+        // Live numbers, the count of incidents with the term
+        int count;
+        // One bit per place in numbers, set for a removed number; null while none is
+        long[] dead;
+
+        Postings(int capacity)
+        {
+            numbers = new int[capacity];
+        }
+
+        // numbers must be distinct
+        Postings(int[] numbers, int size)
+        {
+            this.numbers = numbers;
+            this.size = size;
+            this.count = size;
+        }
+
+        boolean isDead(int position)
+        {
+            return dead != null && (dead[position >>> 6] & (1L << position)) != 0;
+        }
+
+        void add(int number)
+        {
+            if (size == 0 || numbers[size - 1] < number)
+            {
+                // Incidents usually arrive in number order and go straight onto the end
+                ensureCapacity(size + 1);
+                numbers[size++] = number;
+                count++;
+                return;
+            }
+            int position = Arrays.binarySearch(numbers, 0, size, number);
+            if (position >= 0)
+            {
+                if (isDead(position))
+                {
+                    dead[position >>> 6] &= ~(1L << position);
+                    count++;
+                }
+                return;
+            }
+            if (count < size)
+            {
+                // The dead marks would have to move with the numbers, so drop them first
+                closeUp();
+                position = Arrays.binarySearch(numbers, 0, size, number);
+            }
+            position = -position - 1;
+            ensureCapacity(size + 1);
+            System.arraycopy(numbers, position, numbers, position + 1, size - position);
+            numbers[position] = number;
+            size++;
+            count++;
+        }
+
+        void remove(int number)
+        {
+            int position = Arrays.binarySearch(numbers, 0, size, number);
+            if (position < 0 || isDead(position))
+            {
+                return;
+            }
+            count--;
+            if (count == 0)
+            {
+                size = 0;
+                dead = null;
+                return;
+            }
+            if (dead == null)
+            {
+                dead = new long[(numbers.length + 63) >>> 6];
+            }
+            dead[position >>> 6] |= 1L << position;
+            if (size - count > size / 2)
+            {
+                closeUp();
+            }
+        }
+
+        // Drop the dead numbers
+        void closeUp()
+        {
+            int kept = 0;
+            for (int i = 0; i < size; i++)
+            {
+                if (!isDead(i))
+                {
+                    numbers[kept++] = numbers[i];
+                }
+            }
+            size = kept;
+            dead = null;
+        }
+
+        // Add a list whose numbers are all higher than this one's
+        void append(Postings added)
+        {
+            ensureCapacity(size + added.size);
+            System.arraycopy(added.numbers, 0, numbers, size, added.size);
+            size += added.size;
+            count += added.count;
+        }
+
+        boolean contains(int number)
+        {
+            int position = Arrays.binarySearch(numbers, 0, size, number);
+            return position >= 0 && !isDead(position);
+        }
+
+        void ensureCapacity(int capacity)
+        {
+            if (capacity > numbers.length)
+            {
+                numbers = Arrays.copyOf(numbers, Math.max(capacity, numbers.length * 2));
+                if (dead != null)
+                {
+                    dead = Arrays.copyOf(dead, (numbers.length + 63) >>> 6);
+                }
+            }
+        }
+    }
+
+    // Index an incident's text, or re-index it after a change
+    public synchronized void update(int number, String name, String detail)
+    {
+        int slot = slots.get(number);
+        if (slot == IntIntHashMap.NO_VALUE)
+        {
+            slot = newSlot();
+            slots.put(number, slot);
+        }
+        else if (names[slot] == name && details[slot] == detail)
+        {
+            // Nothing searchable changed, e.g. a resource was assigned
+            return;
+        }
+        Set<String> before = terms(names[slot], details[slot]);
+        Set<String> after = terms(name, detail);
+        for (String term : before)
+        {
+            if (!after.contains(term))
+            {
+                Postings list = postings.get(term);
+                list.remove(number);
+                if (list.count == 0)
+                {
+                    postings.remove(term);
+                    vocabulary.remove(term);
+                }
+            }
+        }
+        for (String term : after)
+        {
+            if (!before.contains(term))
+            {
+                postingsFor(term, 1).add(number);
+            }
+        }
+        names[slot] = name;
+        details[slot] = detail;
+    }
+
+    public synchronized void remove(int number)
+    {
+        int slot = slots.get(number);
+        if (slot == IntIntHashMap.NO_VALUE)
+        {
+            return;
+        }
+        update(number, null, null);
+        slots.remove(number);
+        if (freeCount == freeSlots.length)
+        {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    public synchronized int size()
+    {
+        return slots.size();
+    }
+
+    public synchronized int termCount()
+    {
+        return vocabulary.size();
+    }
+
+    // Index many incidents at once, e.g. after a load. Their text is tokenised in parallel
+    // outside the lock, then merged in; incidents already indexed are left as they are.
+    public void addAll(int[] numbers, String[] nameTexts, String[] detailTexts)
+    {
+        // Positions sorted by incident number, packed with the number so nothing is boxed;
+        // chunks of ascending numbers then build postings that merge by concatenation
+        long[] order = new long[numbers.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = ((long) numbers[i] << 32) | i;
+        }
+        Arrays.parallelSort(order);
+        // Where a number appears more than once the last one wins, as a later row would
+        int[] sorted = new int[order.length];
+        int count = 0;
+        for (int i = 0; i < order.length; i++)
+        {
+            if (i + 1 < order.length && (order[i + 1] >>> 32) == (order[i] >>> 32))
+            {
+                continue;
+            }
+            sorted[count++] = (int) order[i];
+        }
+        sorted = Arrays.copyOf(sorted, count);
+        int[] batch = sorted;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism() + 1;
+        int chunkSize = Math.max(MIN_BUILD_CHUNK, (batch.length + 2 * parallelism - 1) / (2 * parallelism));
+        int chunks = (batch.length + chunkSize - 1) / chunkSize;
+        List<Map<String, Postings>> parts = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> build(numbers, nameTexts, detailTexts, batch, chunk * chunkSize,
+                        Math.min(batch.length, (chunk + 1) * chunkSize)))
+                .collect(Collectors.toList());
+        // Each chunk holds a higher run of numbers than the one before, so a term's lists
+        // join end to end
+        Map<String, Postings> built = new HashMap<>();
+        for (Map<String, Postings> part : parts)
+        {
+            for (Map.Entry<String, Postings> entry : part.entrySet())
+            {
+                Postings added = entry.getValue();
+                Postings list = built.putIfAbsent(entry.getKey(), added);
+                if (list != null)
+                {
+                    list.append(added);
+                }
+            }
+        }
+
+        synchronized (this)
+        {
+            boolean fresh = true;
+            for (int i : sorted)
+            {
+                if (slots.containsKey(numbers[i]))
+                {
+                    fresh = false;
+                    break;
+                }
+            }
+            if (!fresh)
+            {
+                // Some are already indexed; fall back to one at a time for the batch
+                for (int i : sorted)
+                {
+                    if (!slots.containsKey(numbers[i]))
+                    {
+                        update(numbers[i], nameTexts[i], detailTexts[i]);
+                    }
+                }
+                return;
+            }
+            for (Map.Entry<String, Postings> entry : built.entrySet())
+            {
+                Postings added = entry.getValue();
+                Postings list = postings.get(entry.getKey());
+                if (list == null)
+                {
+                    postings.put(entry.getKey(), added);
+                    vocabulary.add(entry.getKey());
+                }
+                else if (list.numbers[list.size - 1] < added.numbers[0])
+                {
+                    list.append(added);
+                }
+                else
+                {
+                    list.closeUp();
+                    list.numbers = mergeSorted(list.numbers, list.size, added.numbers, added.size);
+                    list.size = list.numbers.length;
+                    list.count = list.size;
+                }
+            }
+            for (int i : sorted)
+            {
+                int slot = newSlot();
+                slots.put(numbers[i], slot);
+                names[slot] = nameTexts[i];
+                details[slot] = detailTexts[i];
+            }
+        }
+    }
+
+    // Postings for a run of incidents sorted by number
+    private static Map<String, Postings> build(int[] numbers, String[] names, String[] details, int[] sorted,
+                                               int from, int to)
+    {
+        Map<String, Postings> built = new HashMap<>();
+        for (int i = from; i < to; i++)
+        {
+            int index = sorted[i];
+            for (String term : terms(names[index], details[index]))
+            {
+                Postings list = built.get(term);
+                if (list == null)
+                {
+                    list = new Postings(4);
+                    built.put(term, list);
+                }
+                list.ensureCapacity(list.size + 1);
+                list.numbers[list.size++] = numbers[index];
+                list.count++;
+            }
+        }
+        return built;
+    }
+
+    // Numbers of up to limit incidents matching the query, best first
+    public synchronized int[] search(String query, int limit)
+    {
+        if (limit <= 0)
+        {
+            return new int[0];
+        }
+        List<Postings> required = new ArrayList<>();
+        List<Postings> optional = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        int quote = -1;
+        int start = 0;
+        for (int i = 0; i <= query.length(); i++)
+        {
+            boolean end = i == query.length();
+            char c = end ? ' ' : query.charAt(i);
+            if (c == '"' || end)
+            {
+                String text = query.substring(start, i);
+                if (quote < 0)
+                {
+                    addKeywords(text, optional, weights);
+                }
+                else
+                {
+                    Postings matches = phrase(tokens(text));
+                    if (matches != null)
+                    {
+                        required.add(matches);
+                    }
+                }
+                quote = quote < 0 && !end ? i : -1;
+                start = i + 1;
+            }
+        }
+        if (required.isEmpty() && optional.isEmpty())
+        {
+            return new int[0];
+        }
+        return rank(required, optional, weights, limit);
+    }
+
+    // Plain words, and word* prefixes, each a ranked clause weighted by how rare it is
+    private void addKeywords(String text, List<Postings> optional, List<Double> weights)
+    {
+        for (String word : text.trim().split("\\s+"))
+        {
+            boolean prefix = word.endsWith("*");
+            List<String> words = tokens(word);
+            for (int i = 0; i < words.size(); i++)
+            {
+                Postings matches;
+                if (prefix && i == words.size() - 1)
+                {
+                    matches = prefixMatches(words.get(i));
+                }
+                else
+                {
+                    matches = postings.get(words.get(i));
+                    if (matches == null)
+                    {
+                        continue;
+                    }
+                }
+                optional.add(matches);
+                weights.add(Math.log(1 + (double) slots.size() / Math.max(1, matches.count)));
+            }
+        }
+    }
+
+    // Union of the postings of the terms starting with the prefix, up to MAX_PREFIX_TERMS
+    // of them, gathered into one array and sorted once rather than merged pairwise
+    private Postings prefixMatches(String prefix)
+    {
+        List<Postings> lists = new ArrayList<>();
+        for (String term : vocabulary.subSet(prefix, prefix + Character.MAX_VALUE))
+        {
+            lists.add(postings.get(term));
+        }
+        if (lists.size() == 1)
+        {
+            return lists.get(0);
+        }
+        if (lists.size() > MAX_PREFIX_TERMS)
+        {
+            lists.sort((a, b) -> Integer.compare(b.count, a.count));
+            lists = lists.subList(0, MAX_PREFIX_TERMS);
+        }
+        int total = 0;
+        for (Postings list : lists)
+        {
+            total += list.count;
+        }
+        int[] union = new int[total];
+        int size = 0;
+        for (Postings list : lists)
+        {
+            if (list.dead == null)
+            {
+                System.arraycopy(list.numbers, 0, union, size, list.size);
+                size += list.size;
+                continue;
+            }
+            for (int i = 0; i < list.size; i++)
+            {
+                if (!list.isDead(i))
+                {
+                    union[size++] = list.numbers[i];
+                }
+            }
+        }
+        Arrays.sort(union);
+        int count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (count == 0 || union[count - 1] != union[i])
+            {
+                union[count++] = union[i];
+            }
+        }
+        return new Postings(union, count);
+    }
+
+    // Incidents whose name or details hold the words consecutively; null for no words
+    private Postings phrase(List<String> words)
+    {
+        if (words.isEmpty())
+        {
+            return null;
+        }
+        // Intersect from the rarest word, then check the order in the indexed text
+        Postings rarest = null;
+        for (String word : words)
+        {
+            Postings list = postings.get(word);
+            if (list == null)
+            {
+                return new Postings(0);
+            }
+            if (rarest == null || list.count < rarest.count)
+            {
+                rarest = list;
+            }
+        }
+        int[] found = new int[rarest.count];
+        int count = 0;
+        candidates:
+        for (int i = 0; i < rarest.size; i++)
+        {
+            if (rarest.isDead(i))
+            {
+                continue;
+            }
+            int number = rarest.numbers[i];
+            for (String word : words)
+            {
+                Postings list = postings.get(word);
+                if (list != rarest && !list.contains(number))
+                {
+                    continue candidates;
+                }
+            }
+            int slot = slots.get(number);
+            if (words.size() == 1 || containsPhrase(names[slot], words) || containsPhrase(details[slot], words))
+            {
+                found[count++] = number;
+            }
+        }
+        return new Postings(found, count);
+    }
+
+    // Incidents in every required list and, when there are keywords, in at least one of them.
+    // Lists are walked from the newest incident down, so once the best hits so far score at
+    // least what any remaining incident could, an older one can no longer displace them.
+    private int[] rank(List<Postings> required, List<Postings> optional, List<Double> weights, int limit)
+    {
+        // Min-heap of the best hits so far: lowest score, then oldest, on top
+        PriorityQueue<double[]> best = new PriorityQueue<>((a, b) -> a[0] != b[0]
+                ? Double.compare(a[0], b[0]) : Double.compare(a[1], b[1]));
+        if (!required.isEmpty())
+        {
+            Postings smallest = required.get(0);
+            for (Postings list : required)
+            {
+                if (list.count < smallest.count)
+                {
+                    smallest = list;
+                }
+            }
+            double reachable = 0;
+            for (double weight : weights)
+            {
+                reachable += weight;
+            }
+            candidates:
+            for (int j = smallest.size - 1; j >= 0; j--)
+            {
+                if (best.size() == limit && best.peek()[0] >= reachable)
+                {
+                    break;
+                }
+                if (smallest.isDead(j))
+                {
+                    continue;
+                }
+                int number = smallest.numbers[j];
+                for (Postings list : required)
+                {
+                    if (list != smallest && !list.contains(number))
+                    {
+                        continue candidates;
+                    }
+                }
+                double score = 0;
+                boolean matched = optional.isEmpty();
+                for (int i = 0; i < optional.size(); i++)
+                {
+                    if (optional.get(i).contains(number))
+                    {
+                        score += weights.get(i);
+                        matched = true;
+                    }
+                }
+                if (matched)
+                {
+                    offer(best, score, number, limit);
+                }
+            }
+        }
+        else
+        {
+            // Walk the keyword lists together, scoring each incident once
+            int[] cursors = new int[optional.size()];
+            for (int i = 0; i < cursors.length; i++)
+            {
+                cursors[i] = optional.get(i).size - 1;
+            }
+            while (true)
+            {
+                int number = Integer.MIN_VALUE;
+                double reachable = 0;
+                boolean any = false;
+                for (int i = 0; i < cursors.length; i++)
+                {
+                    while (cursors[i] >= 0 && optional.get(i).isDead(cursors[i]))
+                    {
+                        cursors[i]--;
+                    }
+                    if (cursors[i] >= 0)
+                    {
+                        any = true;
+                        number = Math.max(number, optional.get(i).numbers[cursors[i]]);
+                        reachable += weights.get(i);
+                    }
+                }
+                if (!any || (best.size() == limit && best.peek()[0] >= reachable))
+                {
+                    break;
+                }
+                double score = 0;
+                for (int i = 0; i < cursors.length; i++)
+                {
+                    if (cursors[i] >= 0 && optional.get(i).numbers[cursors[i]] == number)
+                    {
+                        score += weights.get(i);
+                        cursors[i]--;
+                    }
+                }
+                offer(best, score, number, limit);
+            }
+        }
+        int[] ranked = new int[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--)
+        {
+            ranked[i] = (int) best.poll()[1];
+        }
+        return ranked;
+    }
+
+    private static void offer(PriorityQueue<double[]> best, double score, int number, int limit)
+    {
+        if (best.size() < limit)
+        {
+            best.add(new double[] { score, number });
+        }
+        else if (limit > 0)
+        {
+            double[] worst = best.peek();
+            if (score > worst[0] || (score == worst[0] && number > worst[1]))
+            {
+                best.poll();
+                best.add(new double[] { score, number });
+            }
+        }
+    }
+
+    private static boolean containsPhrase(String text, List<String> words)
+    {
+        List<String> tokens = tokens(text);
+        for (int i = 0; i + words.size() <= tokens.size(); i++)
+        {
+            if (tokens.subList(i, i + words.size()).equals(words))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] mergeSorted(int[] a, int aSize, int[] b, int bSize)
+    {
+        int[] merged = new int[aSize + bSize];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < aSize || j < bSize)
+        {
+            int next;
+            if (j == bSize || (i < aSize && a[i] <= b[j]))
+            {
+                next = a[i++];
+            }
+            else
+            {
+                next = b[j++];
+            }
+            if (count == 0 || merged[count - 1] != next)
+            {
+                merged[count++] = next;
+            }
+        }
+        return count == merged.length ? merged : Arrays.copyOf(merged, count);
+    }
+
+    private Postings postingsFor(String term, int capacity)
+    {
+        Postings list = postings.get(term);
+        if (list == null)
+        {
+            list = new Postings(capacity);
+            postings.put(term, list);
+            vocabulary.add(term);
+        }
+        return list;
+    }
+
+    private int newSlot()
+    {
+        if (freeCount > 0)
+        {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == names.length)
+        {
+            names = Arrays.copyOf(names, slotCount * 2);
+            details = Arrays.copyOf(details, slotCount * 2);
+        }
+        return slotCount++;
+    }
+
+    // The distinct terms of an incident's name and details
+    private static Set<String> terms(String name, String detail)
+    {
+        List<String> tokens = tokens(name);
+        tokens.addAll(tokens(detail));
+        return new HashSet<>(tokens);
+    }
+
+    // Runs of letters and digits, lower-cased, in order
+    static List<String> tokens(String text)
+    {
+        List<String> tokens = new ArrayList<>();
+        if (text == null)
+        {
+            return tokens;
+        }
+        char[] buffer = null;
+        int length = 0;
+        for (int i = 0; i <= text.length(); i++)
+        {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c))
+            {
+                if (buffer == null)
+                {
+                    buffer = new char[text.length()];
+                }
+                buffer[length++] = Character.toLowerCase(c);
+            }
+            else if (length > 0)
+            {
+                tokens.add(new String(buffer, 0, length));
+                length = 0;
+            }
+        }
+        return tokens;
+    }
+}
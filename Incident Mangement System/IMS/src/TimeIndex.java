@@ -0,0 +1,287 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Items sorted by a timestamp in parallel arrays, so range, latest-N and bucket-count
+// queries cost a binary search plus the matches. Items added out of order wait in a
+// small unsorted tail that is sorted and merged in place before the next query; only the
+// sorted items newer than the oldest waiting one move, so a query after a late arrival
+// costs about the items since its timestamp, not the whole index. Removing an item leaves
+// a null in the sorted arrays, which queries skip; they are dropped in one pass once they
+// are half of the sorted arrays, so removals cost no more than a lookup.
+public class TimeIndex<T>
+{
+    private long[] keys = new long[16];
+    private Object[] items = new Object[16];
+    private int size;
+    // Removed items still taking a place in the sorted arrays
+    private int removed;
+
+    private long[] pendingKeys = new long[16];
+    private Object[] pendingItems = new Object[16];
+    private int pendingSize;
+
+    private final Map<T, Slot> slots = new IdentityHashMap<>();
+
+    // An item's timestamp, and where it waits in the unsorted tail or NOT_PENDING
+    private static class Slot
+    {
+        static final int NOT_PENDING = -1;
+
+        final long key;
+        int pendingPosition = NOT_PENDING;
+
+        Slot(long key)
+        {
+            this.key = key;
+        }
+    }
+
+    // Add an item or move it to a new timestamp
+    public void put(T item, long key)
+    {
+        Slot existing = slots.get(item);
+        if (existing != null)
+        {
+            if (existing.key == key)
+            {
+                return;
+            }
+            remove(item);
+        }
+        Slot slot = new Slot(key);
+        slots.put(item, slot);
+        if (pendingSize == 0 && (size == 0 || keys[size - 1] <= key))
+        {
+            // Items usually arrive in time order and go straight onto the end
+            if (size == keys.length)
+            {
+                keys = Arrays.copyOf(keys, size * 2);
+                items = Arrays.copyOf(items, size * 2);
+            }
+            keys[size] = key;
+            items[size] = item;
+            size++;
+            return;
+        }
+        if (pendingSize == pendingKeys.length)
+        {
+            pendingKeys = Arrays.copyOf(pendingKeys, pendingSize * 2);
+            pendingItems = Arrays.copyOf(pendingItems, pendingSize * 2);
+        }
+        pendingKeys[pendingSize] = key;
+        pendingItems[pendingSize] = item;
+        slot.pendingPosition = pendingSize;
+        pendingSize++;
+    }
+
+    public boolean remove(T item)
+    {
+        Slot slot = slots.remove(item);
+        if (slot == null)
+        {
+            return false;
+        }
+        int position = slot.pendingPosition;
+        if (position != Slot.NOT_PENDING)
+        {
+            // Move the last waiting item into the gap
+            pendingSize--;
+            if (position != pendingSize)
+            {
+                pendingKeys[position] = pendingKeys[pendingSize];
+                pendingItems[position] = pendingItems[pendingSize];
+                slots.get(pendingItems[position]).pendingPosition = position;
+            }
+            pendingItems[pendingSize] = null;
+            return true;
+        }
+        for (int i = lowerBound(slot.key); i < size && keys[i] == slot.key; i++)
+        {
+            if (items[i] == item)
+            {
+                items[i] = null;
+                removed++;
+                if (removed > size / 2)
+                {
+                    dropRemoved();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size()
+    {
+        return size - removed + pendingSize;
+    }
+
+    // Items with from <= timestamp < to, oldest first
+    public List<T> between(long from, long to)
+    {
+        mergePending();
+        List<T> found = new ArrayList<>();
+        for (int i = lowerBound(from); i < size && keys[i] < to; i++)
+        {
+            if (items[i] != null)
+            {
+                found.add(item(i));
+            }
+        }
+        return found;
+    }
+
+    // The count most recent items, newest first
+    public List<T> latest(int count)
+    {
+        mergePending();
+        List<T> found = new ArrayList<>(Math.min(count, size));
+        for (int i = size - 1; i >= 0 && found.size() < count; i--)
+        {
+            if (items[i] != null)
+            {
+                found.add(item(i));
+            }
+        }
+        return found;
+    }
+
+    // Count items per bucket of bucketSize between from (inclusive) and to (exclusive);
+    // bucket 0 starts at from
+    public int[] countByBucket(long from, long to, long bucketSize)
+    {
+        mergePending();
+        int[] counts = new int[(int) Math.max(0, (to - from + bucketSize - 1) / bucketSize)];
+        for (int i = lowerBound(from); i < size && keys[i] < to; i++)
+        {
+            if (items[i] != null)
+            {
+                counts[(int) ((keys[i] - from) / bucketSize)]++;
+            }
+        }
+        return counts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int position)
+    {
+        return (T) items[position];
+    }
+
+    // First position whose key is >= the given key
+    private int lowerBound(long key)
+    {
+        int low = 0;
+        int high = size;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Sort the out-of-order tail and merge it into the sorted arrays from the top down. The
+    // waiting items all sort after the sorted items older than the oldest of them, so only
+    // those newer ones move, each by the number of waiting items still to be placed.
+    private void mergePending()
+    {
+        if (pendingSize == 0)
+        {
+            return;
+        }
+        int positionBits = 32 - Integer.numberOfLeadingZeros(pendingSize);
+        long positionMask = (1L << positionBits) - 1;
+        long[] order = pendingOrder(positionBits);
+
+        int total = size + pendingSize;
+        if (total > keys.length)
+        {
+            int capacity = Math.max(total, keys.length * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            items = Arrays.copyOf(items, capacity);
+        }
+        // Removed items keep their place, so nothing below i is ever overwritten unread
+        int i = size - 1;
+        int k = total - 1;
+        for (int j = pendingSize - 1; j >= 0; j--)
+        {
+            int position = (int) (order[j] & positionMask);
+            long key = pendingKeys[position];
+            while (i >= 0 && keys[i] > key)
+            {
+                keys[k] = keys[i];
+                items[k--] = items[i--];
+            }
+            Object item = pendingItems[position];
+            slots.get(item).pendingPosition = Slot.NOT_PENDING;
+            keys[k] = key;
+            items[k--] = item;
+        }
+        size = total;
+        Arrays.fill(pendingItems, 0, pendingSize, null);
+        pendingSize = 0;
+    }
+
+    // The waiting positions in key order, each packed under its key into a long so they sort
+    // as primitives. The key goes in as its offset from the smallest waiting key, or, when the
+    // offsets need more bits than the position leaves, as its place among the sorted keys.
+    private long[] pendingOrder(int positionBits)
+    {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < pendingSize; i++)
+        {
+            min = Math.min(min, pendingKeys[i]);
+            max = Math.max(max, pendingKeys[i]);
+        }
+        // Negative when the range overflows a long
+        long range = max - min;
+        long[] order = new long[pendingSize];
+        if (range >= 0 && range >>> (63 - positionBits) == 0)
+        {
+            for (int i = 0; i < pendingSize; i++)
+            {
+                order[i] = (pendingKeys[i] - min) << positionBits | i;
+            }
+        }
+        else
+        {
+            long[] sorted = Arrays.copyOf(pendingKeys, pendingSize);
+            Arrays.sort(sorted);
+            for (int i = 0; i < pendingSize; i++)
+            {
+                order[i] = (long) Arrays.binarySearch(sorted, pendingKeys[i]) << positionBits | i;
+            }
+        }
+        Arrays.sort(order);
+        return order;
+    }
+
+    // Close up the places of removed items in the sorted arrays
+    private void dropRemoved()
+    {
+        int k = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (items[i] != null)
+            {
+                keys[k] = keys[i];
+                items[k++] = items[i];
+            }
+        }
+        Arrays.fill(items, k, size, null);
+        size = k;
+        removed = 0;
+    }
+}
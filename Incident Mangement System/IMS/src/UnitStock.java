@@ -0,0 +1,134 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Free units of one resource, split across padded stripes so dispatchers on different
+// threads reserve and release with a CAS on their own stripe instead of all contending
+// on one counter. A reservation larger than any one stripe gathers units from several
+// stripes under the stock's lock.
+public final class UnitStock
+{
+    private static final int STRIPES = stripes();
+    // Ints between used slots, so each stripe sits on its own 64-byte cache line
+    private static final int PADDING = 16;
+
+    private final AtomicIntegerArray free = new AtomicIntegerArray(STRIPES * PADDING);
+    private volatile int capacity;
+
+    public UnitStock(int capacity)
+    {
+        setCapacity(capacity);
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    // Change the total number of units; lowering it below the units in use leaves the
+    // stock short until enough are released
+    public synchronized void setCapacity(int newCapacity)
+    {
+        int change = newCapacity - capacity;
+        capacity = newCapacity;
+        // Spread the change over the stripes; only stripe 0 may go negative
+        int share = change / STRIPES;
+        for (int stripe = 1; stripe < STRIPES; stripe++)
+        {
+            free.addAndGet(stripe * PADDING, share);
+        }
+        free.addAndGet(0, change - share * (STRIPES - 1));
+    }
+
+    // Take units if that many are free, returning whether they were taken
+    public boolean reserve(int units)
+    {
+        if (units <= 0)
+        {
+            return true;
+        }
+        int home = homeStripe();
+        for (int i = 0; i < STRIPES; i++)
+        {
+            int slot = ((home + i) & (STRIPES - 1)) * PADDING;
+            int available = free.get(slot);
+            while (available >= units)
+            {
+                if (free.compareAndSet(slot, available, available - units))
+                {
+                    return true;
+                }
+                available = free.get(slot);
+            }
+        }
+        return gather(units);
+    }
+
+    // Take units whether or not they are free, e.g. for assignments read back from a file
+    public void commit(int units)
+    {
+        free.addAndGet(homeStripe() * PADDING, -units);
+    }
+
+    // Return units to the stock
+    public void release(int units)
+    {
+        free.addAndGet(homeStripe() * PADDING, units);
+    }
+
+    // Free units across all stripes; a moment's view while others reserve and release
+    public int available()
+    {
+        int total = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++)
+        {
+            total += free.get(stripe * PADDING);
+        }
+        return total;
+    }
+
+    public int committed()
+    {
+        return capacity - available();
+    }
+
+    // No single stripe had enough; drain stripes one at a time and hand the units back if
+    // they still fall short. Gatherers take turns so they cannot starve each other.
+    private synchronized boolean gather(int units)
+    {
+        int taken = 0;
+        for (int stripe = 0; stripe < STRIPES && taken < units; stripe++)
+        {
+            int slot = stripe * PADDING;
+            int available = free.get(slot);
+            while (available > 0)
+            {
+                int take = Math.min(available, units - taken);
+                if (free.compareAndSet(slot, available, available - take))
+                {
+                    taken += take;
+                    break;
+                }
+                available = free.get(slot);
+            }
+        }
+        if (taken < units)
+        {
+            release(taken);
+            return false;
+        }
+        return true;
+    }
+
+    private static int homeStripe()
+    {
+        long id = Thread.currentThread().threadId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    // A power of two at least the number of processors
+    private static int stripes()
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Math.min(64, Integer.highestOneBit(Math.max(1, processors) * 2 - 1));
+    }
+}
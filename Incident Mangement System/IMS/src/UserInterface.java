@@ -1,67 +1,143 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.InputMismatchException;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 
 public class UserInterface
 {
     private IncidentManagementSystem ims;
     private Scanner scanner;
+    private PrintStream out;
+    // Writes listed incidents to out through one reused buffer
+    private final IncidentWriter incidentWriter;
     private static final String INCIDENTS_CSV_FILE = "incidents.csv";
     private static final String RESOURCES_CSV_FILE = "resources.csv";
+    private static final String ASSIGNMENTS_CSV_FILE = "assignments.csv";
+    static final String INCIDENTS_JOURNAL_FILE = "incidents.journal";
+    private static final String SNAPSHOT_FILE = "incidents.snapshot";
+    private static final String METRICS_CSV_FILE = "metrics.csv";
+    private static final int RECOMMENDED_RESOURCES = 5;
+    private static final int WORK_QUEUE_DISPLAYED = 10;
+    private static final int SEARCH_RESULTS_DISPLAYED = 10;
+    private static final int INCIDENTS_PER_PAGE = 20;
+    private static final int DASHBOARD_ROWS = 5;
+    private static final int DASHBOARD_HOURS = 12;
+    private static final DateTimeFormatter DASHBOARD_HOUR_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
     private boolean isValidTextInput(String input) 
     {
         // Basic validation - check if the input contains only alphabetic characters and spaces
-        return input != null && input.matches("[a-zA-Z ]+");
+        return InputValidator.isValidTextInput(input);
     }
     
     private boolean incidentExistsInCSV(int incidentNumber) 
     {
-        List<Incident> incidents = ims.getIncidents();
-        for (Incident incident : incidents) 
-        {
-            if (incident.getIncidentNumber() == incidentNumber) 
-            {
-                return true;
-            }
-        }
-        return false;
+        return ims.incidentExists(incidentNumber);
     }
 
     private void saveToCSV() 
     {
-        ims.saveIncidentsToCSV(INCIDENTS_CSV_FILE);
-        ims.saveResourcesToCSV(RESOURCES_CSV_FILE);
-        System.out.println("Incidents and Resources saved to CSV files successfully!");
+        // Incidents journaled from here on may be missed by the save, so they stay journaled
+        long journaled = ims.journalMark();
+        // Only incidents and resources changed since the last save are written
+        boolean saved = ims.saveIncidentChangesToCSV(INCIDENTS_CSV_FILE);
+        saved &= ims.saveResourceChangesToCSV(RESOURCES_CSV_FILE);
+        saved &= ims.saveAssignmentChangesToCSV(ASSIGNMENTS_CSV_FILE);
+        if (!saved) 
+        {
+            out.println("Saving to CSV files failed; the journal is kept.");
+            return;
+        }
+        ims.checkpointJournal(journaled);
+        out.println("Incidents and Resources saved to CSV files successfully!");
     }
 
     private void loadFromCSV() {
-        ims.loadIncidentsFromCSV(INCIDENTS_CSV_FILE);
+        int rejected = ims.loadIncidentsFromCSV(INCIDENTS_CSV_FILE);
         ims.loadResourcesFromCSV(RESOURCES_CSV_FILE);
-        System.out.println("Incidents and Resources loaded from CSV files successfully!");
+        // Assignments link the incidents and resources loaded above
+        int unmatched = ims.loadAssignmentsFromCSV(ASSIGNMENTS_CSV_FILE);
+        if (rejected > 0) 
+        {
+            out.println(rejected + " invalid incident rows were skipped.");
+        }
+        if (unmatched > 0) 
+        {
+            out.println(unmatched + " resource assignments named an unknown incident or resource.");
+        }
+        out.println("Incidents and Resources loaded from CSV files successfully!");
+    }
+
+    private void saveSnapshot() 
+    {
+        long journaled = ims.journalMark();
+        if (!ims.saveSnapshot(SNAPSHOT_FILE)) 
+        {
+            out.println("Saving the snapshot file failed; the journal is kept.");
+            return;
+        }
+        // Everything journaled before the save began is now in the snapshot
+        ims.checkpointJournal(journaled);
+        out.println("Incidents and Resources saved to snapshot file successfully!");
+    }
+
+    private void loadSnapshot() 
+    {
+        ims.loadSnapshot(SNAPSHOT_FILE);
+        out.println("Incidents and Resources loaded from snapshot file successfully!");
     }
 
     public UserInterface(IncidentManagementSystem ims) 
+    {
+        this(ims, System.in, System.out);
+    }
+
+    // A session reading from and writing to the given streams, e.g. a network connection
+    public UserInterface(IncidentManagementSystem ims, InputStream in, PrintStream out) 
     {
         this.ims = ims;
-        this.scanner = new Scanner(System.in);
+        this.scanner = new Scanner(in);
+        this.out = out;
+        this.incidentWriter = new IncidentWriter(new BufferedWriter(new OutputStreamWriter(out, out.charset())));
     }
 
     public void displayMainMenu() 
     {
-        System.out.println("=== Incident Management System ===");
-        System.out.println("1. Create Incident");
-        System.out.println("2. Update Incident");
-        System.out.println("3. Assign Resource");
-        System.out.println("4. Display Incidents");
-        System.out.println("5. Save Incidents and Resources to CSV");
-        System.out.println("6. Load Incidents and Resources from CSV");
-        System.out.println("0. Exit");
+        out.println("=== Incident Management System ===");
+        out.println("1. Create Incident");
+        out.println("2. Update Incident");
+        out.println("3. Assign Resource");
+        out.println("4. Display Incidents");
+        out.println("5. Save Incidents and Resources to CSV");
+        out.println("6. Load Incidents and Resources from CSV");
+        out.println("7. Save Snapshot");
+        out.println("8. Load Snapshot");
+        out.println("9. Set Resource Stock");
+        out.println("10. Set Resource Location");
+        out.println("11. Take Next Urgent Incident");
+        out.println("12. Display Work Queue");
+        out.println("13. Search Incidents");
+        out.println("14. Import Incidents from CSV");
+        out.println("15. Load Incident History from CSV");
+        out.println("16. Display Dashboard");
+        out.println("17. Export Metrics");
+        out.println("0. Exit");
     }
 
     public void createIncident() 
     {
-        System.out.println("Enter incident number:");
+        out.println("Enter incident number:");
         int incidentNumber = 0;
     while (true) 
     {
@@ -73,7 +149,7 @@ public class UserInterface
         } 
         catch (InputMismatchException e) 
         {
-            System.out.println("Invalid input. Please enter a valid incident number:");
+            out.println("Invalid input. Please enter a valid incident number:");
             scanner.nextLine();
         }
     }
@@ -81,18 +157,18 @@ public class UserInterface
     // Check if the incident number already exists in the CSV file
     if (incidentExistsInCSV(incidentNumber)) 
     {
-        System.out.println("Incident with the entered ID already exists. Please enter a different ID.");
+        out.println("Incident with the entered ID already exists. Please enter a different ID.");
         return;
     }
     
         String reporterName;
         do 
         {
-            System.out.println("Enter reporter's name:");
+            out.println("Enter reporter's name:");
             reporterName = scanner.nextLine();
             if (!isValidName(reporterName)) 
             {
-                System.out.println("Invalid reporter name. Please enter a valid name.");
+                out.println("Invalid reporter name. Please enter a valid name.");
             }
         } 
         while (!isValidName(reporterName));
@@ -100,11 +176,11 @@ public class UserInterface
         String reporterPhoneNumber;
         do 
         {
-            System.out.println("Enter reporter's phone number:");
+            out.println("Enter reporter's phone number:");
             reporterPhoneNumber = scanner.nextLine();
             if (!isValidPhoneNumber(reporterPhoneNumber)) 
             {
-                System.out.println("Invalid phone number. Please enter a valid phone number.");
+                out.println("Invalid phone number. Please enter a valid phone number.");
             }
         } 
         while (!isValidPhoneNumber(reporterPhoneNumber));
@@ -112,11 +188,11 @@ public class UserInterface
         String date;
         do 
         {
-            System.out.println("Enter date of the incident (format: dd/mm/yyyy):");
+            out.println("Enter date of the incident (format: dd/mm/yyyy):");
             date = scanner.nextLine();
             if (!isValidDate(date)) 
             {
-                System.out.println("Invalid date. Please enter a valid date in the format dd/mm/yyyy.");
+                out.println("Invalid date. Please enter a valid date in the format dd/mm/yyyy.");
             }
         } 
         while (!isValidDate(date));
@@ -124,11 +200,11 @@ public class UserInterface
         String time;
         do 
         {
-            System.out.println("Enter time of the incident (format: hh:mm):");
+            out.println("Enter time of the incident (format: hh:mm):");
             time = scanner.nextLine();
             if (!isValidTime(time)) 
             {
-                System.out.println("Invalid time. Please enter a valid time in the format hh:mm.");
+                out.println("Invalid time. Please enter a valid time in the format hh:mm.");
             }
         } 
         while (!isValidTime(time));
@@ -136,25 +212,44 @@ public class UserInterface
         String gpsLocation;
         do 
         {
-            System.out.println("Enter GPS location (e.g., latitude, longitude):");
+            out.println("Enter GPS location (e.g., latitude, longitude):");
             gpsLocation = scanner.nextLine();
             if (!isValidGPSLocation(gpsLocation)) 
             {
-                System.out.println("Invalid GPS location. Please enter a valid location in the format latitude, longitude.");
+                out.println("Invalid GPS location. Please enter a valid location in the format latitude, longitude.");
             }
         } 
         while (!isValidGPSLocation(gpsLocation));
+
+        // Warn about repeat calls before the rest of the report is taken
+        if (!confirmNotDuplicate(reporterPhoneNumber, date, time, new GPSLocation(gpsLocation))) 
+        {
+            out.println("Incident not created.");
+            return;
+        }
     
-        System.out.println("Enter incident details:");
+        out.println("Enter incident details:");
         String incidentDetails;
 
         do {
             incidentDetails = scanner.nextLine();
             if (!isValidTextInput(incidentDetails)) {
-                System.out.println("Invalid input. Please enter only text.");
+                out.println("Invalid input. Please enter only text.");
             }
         } while (!isValidTextInput(incidentDetails));
 
+        String priority;
+        do 
+        {
+            out.println("Enter incident priority (1 = most urgent, 5 = least) (or press Enter for " + Incident.DEFAULT_PRIORITY + "):");
+            priority = scanner.nextLine().trim();
+            if (!priority.isEmpty() && !isValidPriority(priority)) 
+            {
+                out.println("Invalid priority. Please enter a number from 1 to 5.");
+            }
+        } 
+        while (!priority.isEmpty() && !isValidPriority(priority));
+
 
 
     
@@ -164,86 +259,88 @@ public class UserInterface
         // Create a new Incident object with the gathered information
         Incident incident = new Incident(incidentNumber, reporterName, reporterPhoneNumber,
                 date, time, location, incidentDetails);
+        if (!priority.isEmpty()) 
+        {
+            incident.setPriority(Integer.parseInt(priority));
+        }
     
-        // Add the new incident to the IncidentManagementSystem
-        ims.addIncident(incident);
+        // Add the new incident to the IncidentManagementSystem and its journal
+        ims.addIncident(incident, INCIDENTS_JOURNAL_FILE);
     
-        System.out.println("Incident created successfully!");
+        out.println("Incident created successfully!");
+    }
+
+    // Show the caller's earlier reports and any recent report nearby, and ask whether to go on
+    private boolean confirmNotDuplicate(String reporterPhoneNumber, String date, String time, GPSLocation location) 
+    {
+        int previousReports = ims.findIncidentsByPhoneNumber(reporterPhoneNumber).size();
+        if (previousReports > 0) 
+        {
+            out.println("This caller has reported " + previousReports + " incidents before.");
+        }
+        List<Incident> duplicates = ims.findPossibleDuplicates(reporterPhoneNumber, date, time, location);
+        if (duplicates.isEmpty()) 
+        {
+            return true;
+        }
+        out.println("Possible duplicates of this report:");
+        for (Incident duplicate : duplicates) 
+        {
+            out.println("Incident " + duplicate.getIncidentNumber() + ": " + duplicate.getDate() + " "
+                    + duplicate.getTime() + ", " + duplicate.getGpsLocation() + ", " + duplicate.getIncidentDetails());
+        }
+        String answer;
+        do 
+        {
+            out.println("Create a new incident anyway? (y/n):");
+            answer = scanner.nextLine().trim();
+        } 
+        while (!isValidAnswer(answer));
+        return answer.equalsIgnoreCase("y");
     }
 
     public boolean isValidName(String name) 
     {
         // Basic validation - assumes a name should contain only alphabetic characters
-        return name != null && name.matches("[a-zA-Z]+");
+        return InputValidator.isValidName(name);
     }
     
     public boolean isValidPhoneNumber(String phoneNumber) 
     {
         // Basic validation - assumes a phone number should contain at least 11 digits
-        return phoneNumber != null && phoneNumber.matches("\\d{11,}");
+        return InputValidator.isValidPhoneNumber(phoneNumber);
     }
     
     public boolean isValidDate(String date) 
     {
-        if (date == null || !date.matches("\\d{2}/\\d{2}/\\d{4}")) 
-        {
-            return false;
-        }
-        String[] parts = date.split("/");
-        int day = Integer.parseInt(parts[0]);
-        int month = Integer.parseInt(parts[1]);
-        int year = Integer.parseInt(parts[2]);
-        if (year < 1000 || year > 9999) 
-        {
-            return false;
-        }
-        if (month < 1 || month > 12) 
-        {
-            return false;
-        }
-        int maxDays = 31;
-        if (month == 2) 
-        {
-            if (year % 400 == 0 || (year % 100 != 0 && year % 4 == 0)) 
-            {
-                maxDays = 29;
-            } 
-            else 
-            {
-                maxDays = 28;
-            }
-        } 
-        else if (month == 4 || month == 6 || month == 9 || month == 11) 
-        {
-            maxDays = 30;
-        }
-    
-        if (day < 1 || day > maxDays) 
-        {
-            return false;
-        }
-    
-        return true;
+        // A real calendar day in the format dd/mm/yyyy
+        return InputValidator.isValidDate(date);
     }
     
     
     public boolean isValidTime(String time) 
     {
         // Basic validation - assumes a time should be in the format hh:mm
-        return time != null && time.matches("\\d{2}:\\d{2}");
+        return InputValidator.isValidTime(time);
     }
     
     public boolean isValidGPSLocation(String gpsLocation) 
     {
         // Basic validation - assumes a GPS location should be in the format latitude, longitude
-        return gpsLocation != null && gpsLocation.matches("-?\\d+(\\.\\d+)?,\\s*-?\\d+(\\.\\d+)?");
+        return InputValidator.isValidGPSLocation(gpsLocation);
+    }
+
+    public boolean isValidPriority(String priority) 
+    {
+        // A single digit from 1 (most urgent) to 5
+        return InputValidator.isValidPriority(priority);
     }
     
     
 
     public void assignResource() 
     {
-    System.out.println("Enter the incident number of the incident to assign a resource:");
+    out.println("Enter the incident number of the incident to assign a resource:");
     int incidentNumber = 0;
     while (true) 
     {
@@ -255,116 +352,204 @@ public class UserInterface
         } 
         catch (InputMismatchException e) 
         {
-            System.out.println("Invalid input. Please enter a valid incident number:");
+            out.println("Invalid input. Please enter a valid incident number:");
             scanner.nextLine();
         }
     }
 
-    // Find the incident by incident number
-    Incident incident = ims.findIncidentByNumber(incidentNumber);
+    assignResourceTo(incidentNumber);
+}
 
-    if (incident != null) 
+    private void assignResourceTo(int incidentNumber) 
     {
-        int resourceNumber = 0;
-        while (true) 
+        // Find the incident by incident number
+        Incident incident = ims.findIncidentByNumber(incidentNumber);
+
+        if (incident != null) 
         {
-            try 
+            // Offer the nearest units with free stock before asking for one by hand
+            Resource recommended = chooseRecommendedResource(incident);
+
+            int resourceNumber = 0;
+            String resourceCode;
+            String resourceDescription;
+            if (recommended != null) 
             {
-                System.out.println("Enter resource number:");
-                resourceNumber = scanner.nextInt();
-                scanner.nextLine();
-                break;
+                resourceNumber = recommended.getResourceNumber();
+                resourceCode = recommended.getResourceCode();
+                resourceDescription = recommended.getResourceDescription();
             } 
-            catch (InputMismatchException e)
+            else 
             {
-                System.out.println("Invalid input. Please enter a valid resource number:");
-                scanner.nextLine();
+                while (true) 
+                {
+                    try 
+                    {
+                        out.println("Enter resource number:");
+                        resourceNumber = scanner.nextInt();
+                        scanner.nextLine();
+                        break;
+                    } 
+                    catch (InputMismatchException e)
+                    {
+                        out.println("Invalid input. Please enter a valid resource number:");
+                        scanner.nextLine();
+                    }
+                }
+
+                out.println("Enter resource code:");
+                resourceCode = scanner.nextLine();
+
+                out.println("Enter resource description:");
+                resourceDescription = scanner.nextLine();
             }
-        }
 
-        System.out.println("Enter resource code:");
-        String resourceCode = scanner.nextLine();
+            int numUnits = 0;
+            while (true) 
+            {
+                try 
+                {
+                    out.println("Enter number of resource units:");
+                    numUnits = scanner.nextInt();
+                    scanner.nextLine();
+                    break;
+                } catch (InputMismatchException e) 
+                {
+                    out.println("Invalid input. Please enter a valid number of resource units:");
+                    scanner.nextLine();
+                }
+            }
 
-        System.out.println("Enter resource description:");
-        String resourceDescription = scanner.nextLine();
+            // Create a new Resource object with the gathered information
+            Resource resource = new Resource(resourceNumber, resourceCode, resourceDescription, numUnits);
 
-        int numUnits = 0;
+            // Assign the resource to the incident, sharing one instance per distinct resource
+            if (!ims.assignResourceToIncident(incidentNumber, resource)) 
+            {
+                // Only a limited resource can run short; without a stock the incident went away
+                UnitStock stock = ims.getResourceStock(resourceNumber);
+                if (stock == null) 
+                {
+                    out.println("Resource " + resourceNumber + " is unknown or incident " + incidentNumber + " no longer exists!");
+                }
+                else 
+                {
+                    out.println("Not enough units free! Only " + stock.available() + " units of resource " + resourceNumber + " are available.");
+                }
+                return;
+            }
+
+            out.println("Resource assigned to the incident successfully!");
+            UnitStock stock = ims.getResourceStock(resourceNumber);
+            if (stock != null) 
+            {
+                out.println(stock.available() + " of " + stock.getCapacity() + " units of resource " + resourceNumber + " remain free.");
+            }
+        } 
+        else 
+        {
+            out.println("Incident not found!");
+        }
+    }
+
+    
+    // List the resources nearest to an incident that have free units and let the operator
+    // pick one; null if there are none or the operator enters a resource by hand
+    private Resource chooseRecommendedResource(Incident incident) 
+    {
+        List<Resource> recommended = ims.recommendResources(incident, RECOMMENDED_RESOURCES);
+        if (recommended.isEmpty()) 
+        {
+            return null;
+        }
+        out.println("Nearest resources with free units:");
+        for (int i = 0; i < recommended.size(); i++) 
+        {
+            Resource resource = recommended.get(i);
+            StringBuilder line = new StringBuilder();
+            line.append(i + 1).append(". ").append(resource);
+            GPSLocation location = ims.getResourceLocation(resource.getResourceNumber());
+            if (location != null) 
+            {
+                line.append(String.format(", %.1f km away", location.distanceKm(incident.getGpsLocation())));
+            }
+            UnitStock stock = ims.getResourceStock(resource.getResourceNumber());
+            if (stock != null) 
+            {
+                line.append(", ").append(stock.available()).append(" units free");
+            }
+            out.println(line);
+        }
         while (true) 
         {
+            out.println("Enter a number from the list to assign that resource (or press Enter to enter a resource):");
+            String choice = scanner.nextLine().trim();
+            if (choice.isEmpty()) 
+            {
+                return null;
+            }
             try 
             {
-                System.out.println("Enter number of resource units:");
-                numUnits = scanner.nextInt();
-                scanner.nextLine();
-                break;
-            } catch (InputMismatchException e) 
+                int index = Integer.parseInt(choice);
+                if (index >= 1 && index <= recommended.size()) 
+                {
+                    return recommended.get(index - 1);
+                }
+            } 
+            catch (NumberFormatException e) 
             {
-                System.out.println("Invalid input. Please enter a valid number of resource units:");
-                scanner.nextLine();
+                // Fall through to ask again
             }
+            out.println("Invalid choice. Please enter a number from the list.");
         }
-
-        // Create a new Resource object with the gathered information
-        Resource resource = new Resource(resourceNumber, resourceCode, resourceDescription, numUnits);
-
-        // Assign the resource to the incident
-        incident.addResource(resource);
-
-        System.out.println("Resource assigned to the incident successfully!");
-    } 
-    else 
-    {
-        System.out.println("Incident not found!");
     }
-}
 
-    
     public void updateIncident() 
     {
-        System.out.println("Enter the incident number of the incident to update:");
-        int incidentNumber = scanner.nextInt();
-        scanner.nextLine();
-    
-        // Find the incident by incident number
-        Incident incident = ims.findIncidentByNumber(incidentNumber);
+        out.println("Enter the incident number of the incident to update:");
+        int incidentNumber = 0;
+        while (true) 
+        {
+            try 
+            {
+                incidentNumber = scanner.nextInt();
+                scanner.nextLine();
+                break;
+            } 
+            catch (InputMismatchException e) 
+            {
+                out.println("Invalid input. Please enter a valid incident number:");
+                scanner.nextLine();
+            }
+        }
     
-        if (incident != null) 
+        if (ims.incidentExists(incidentNumber)) 
         {
-            System.out.println("Enter updated reporter's name (or press Enter to skip):");
+            out.println("Enter updated reporter's name (or press Enter to skip):");
             String updatedReporterName;
             do 
             {
                 updatedReporterName = scanner.nextLine();
                 if (!updatedReporterName.isEmpty() && !isValidName(updatedReporterName)) 
                 {
-                    System.out.println("Invalid reporter name. Please enter a valid name.");
+                    out.println("Invalid reporter name. Please enter a valid name.");
                 }
             } 
             while (!updatedReporterName.isEmpty() && !isValidName(updatedReporterName));
     
-            if (!updatedReporterName.isEmpty()) 
-            {
-                incident.setReporterName(updatedReporterName);
-            }
-    
-            System.out.println("Enter updated reporter's phone number (or press Enter to skip):");
+            out.println("Enter updated reporter's phone number (or press Enter to skip):");
             String updatedReporterPhoneNumber;
             do 
             {
                 updatedReporterPhoneNumber = scanner.nextLine();
                 if (!updatedReporterPhoneNumber.isEmpty() && !isValidPhoneNumber(updatedReporterPhoneNumber)) 
                 {
-                    System.out.println("Invalid phone number. Please enter a valid phone number.");
+                    out.println("Invalid phone number. Please enter a valid phone number.");
                 }
             } 
             while (!updatedReporterPhoneNumber.isEmpty() && !isValidPhoneNumber(updatedReporterPhoneNumber));
     
-            if (!updatedReporterPhoneNumber.isEmpty()) 
-            {
-                incident.setReporterPhoneNumber(updatedReporterPhoneNumber);
-            }
-    
-            System.out.println("Enter updated date of the incident (format: dd/mm/yyyy) (or press Enter to skip):");
+            out.println("Enter updated date of the incident (format: dd/mm/yyyy) (or press Enter to skip):");
             String updatedDate;
             // Assuming isValidDate() is a helper function to validate date format
             do 
@@ -372,17 +557,12 @@ public class UserInterface
                 updatedDate = scanner.nextLine();
                 if (!updatedDate.isEmpty() && !isValidDate(updatedDate)) 
                 {
-                    System.out.println("Invalid date format. Please enter a date in dd/mm/yyyy format.");
+                    out.println("Invalid date format. Please enter a date in dd/mm/yyyy format.");
                 }
             } 
             while (!updatedDate.isEmpty() && !isValidDate(updatedDate));
     
-            if (!updatedDate.isEmpty()) 
-            {
-                incident.setDate(updatedDate);
-            }
-    
-            System.out.println("Enter updated time of the incident (format: hh:mm) (or press Enter to skip):");
+            out.println("Enter updated time of the incident (format: hh:mm) (or press Enter to skip):");
             String updatedTime;
             // Assuming isValidTime() is a helper function to validate time format
             do 
@@ -390,89 +570,615 @@ public class UserInterface
                 updatedTime = scanner.nextLine();
                 if (!updatedTime.isEmpty() && !isValidTime(updatedTime)) 
                 {
-                    System.out.println("Invalid time format. Please enter a time in hh:mm format.");
+                    out.println("Invalid time format. Please enter a time in hh:mm format.");
                 }
             } 
             while (!updatedTime.isEmpty() && !isValidTime(updatedTime));
     
-            if (!updatedTime.isEmpty()) 
-            {
-                incident.setTime(updatedTime);
-            }
-    
-            System.out.println("Enter updated GPS location (e.g., latitude, longitude) (or press Enter to skip):");
+            out.println("Enter updated GPS location (e.g., latitude, longitude) (or press Enter to skip):");
             String updatedGPSLocation = scanner.nextLine();
-            if (!updatedGPSLocation.isEmpty()) 
-            {
-                GPSLocation location = new GPSLocation(updatedGPSLocation);
-                incident.setGpsLocation(location);
-            }
     
-            System.out.println("Enter updated incident details (or press Enter to skip):");
+            out.println("Enter updated incident details (or press Enter to skip):");
             String updatedIncidentDetails = scanner.nextLine();
-            if (!updatedIncidentDetails.isEmpty()) 
+    
+            out.println("Enter updated priority (1 = most urgent, 5 = least) (or press Enter to skip):");
+            String updatedPriority;
+            do 
+            {
+                updatedPriority = scanner.nextLine().trim();
+                if (!updatedPriority.isEmpty() && !isValidPriority(updatedPriority)) 
+                {
+                    out.println("Invalid priority. Please enter a number from 1 to 5.");
+                }
+            } 
+            while (!updatedPriority.isEmpty() && !isValidPriority(updatedPriority));
+    
+            out.println("Is the incident still ongoing? (y/n) (or press Enter to skip):");
+            String updatedOngoing;
+            do 
             {
-                incident.setIncidentDetails(updatedIncidentDetails);
+                updatedOngoing = scanner.nextLine().trim();
+                if (!updatedOngoing.isEmpty() && !isValidAnswer(updatedOngoing)) 
+                {
+                    out.println("Invalid answer. Please enter y or n.");
+                }
+            } 
+            while (!updatedOngoing.isEmpty() && !isValidAnswer(updatedOngoing));
+
+            // Every answer is applied as one change, so other operators and subscribers
+            // never see an incident half updated. The incident is reopened or closed first,
+            // so a reopening refused for want of free units changes nothing.
+            String reporterName = updatedReporterName;
+            String reporterPhoneNumber = updatedReporterPhoneNumber;
+            String date = updatedDate;
+            String time = updatedTime;
+            String priority = updatedPriority;
+            String ongoing = updatedOngoing;
+            boolean updated;
+            try 
+            {
+                updated = ims.updateIncident(incidentNumber, stored -> {
+                    if (!ongoing.isEmpty()) 
+                    {
+                        // Closing the incident frees the resource units it holds
+                        stored.setOngoing(ongoing.equalsIgnoreCase("y"));
+                    }
+                    if (!reporterName.isEmpty()) 
+                    {
+                        stored.setReporterName(reporterName);
+                    }
+                    if (!reporterPhoneNumber.isEmpty()) 
+                    {
+                        stored.setReporterPhoneNumber(reporterPhoneNumber);
+                    }
+                    if (!date.isEmpty()) 
+                    {
+                        stored.setDate(date);
+                    }
+                    if (!time.isEmpty()) 
+                    {
+                        stored.setTime(time);
+                    }
+                    if (!updatedGPSLocation.isEmpty()) 
+                    {
+                        stored.setGpsLocation(new GPSLocation(updatedGPSLocation));
+                    }
+                    if (!updatedIncidentDetails.isEmpty()) 
+                    {
+                        stored.setIncidentDetails(updatedIncidentDetails);
+                    }
+                    if (!priority.isEmpty()) 
+                    {
+                        stored.setPriority(Integer.parseInt(priority));
+                    }
+                });
+            } 
+            catch (IllegalStateException e) 
+            {
+                out.println(e.getMessage() + ". The incident was not updated.");
+                return;
             }
     
-            System.out.println("Incident updated successfully!");
+            out.println(updated ? "Incident updated successfully!" : "Incident not found!");
         } 
         else 
         {
-            System.out.println("Incident not found!");
+            out.println("Incident not found!");
         }
     }
     
 
+    private boolean isValidAnswer(String answer) 
+    {
+        return answer.equalsIgnoreCase("y") || answer.equalsIgnoreCase("n");
+    }
+
+    public void setResourceStock() 
+    {
+        int resourceNumber = 0;
+        while (true) 
+        {
+            try 
+            {
+                out.println("Enter resource number:");
+                resourceNumber = scanner.nextInt();
+                scanner.nextLine();
+                break;
+            } 
+            catch (InputMismatchException e) 
+            {
+                out.println("Invalid input. Please enter a valid resource number:");
+                scanner.nextLine();
+            }
+        }
+
+        int numUnits = 0;
+        while (true) 
+        {
+            try 
+            {
+                out.println("Enter total number of units of the resource:");
+                numUnits = scanner.nextInt();
+                scanner.nextLine();
+                if (numUnits >= 0) 
+                {
+                    break;
+                }
+                out.println("Invalid input. Please enter a number of units of zero or more:");
+            } 
+            catch (InputMismatchException e) 
+            {
+                out.println("Invalid input. Please enter a valid number of units:");
+                scanner.nextLine();
+            }
+        }
+
+        ims.setResourceStock(resourceNumber, numUnits);
+        UnitStock stock = ims.getResourceStock(resourceNumber);
+        out.println("Resource stock set: " + stock.committed() + " units committed, " + stock.available() + " free.");
+    }
+
+    public void setResourceLocation() 
+    {
+        int resourceNumber = 0;
+        while (true) 
+        {
+            try 
+            {
+                out.println("Enter resource number:");
+                resourceNumber = scanner.nextInt();
+                scanner.nextLine();
+                break;
+            } 
+            catch (InputMismatchException e) 
+            {
+                out.println("Invalid input. Please enter a valid resource number:");
+                scanner.nextLine();
+            }
+        }
+
+        String gpsLocation;
+        do 
+        {
+            out.println("Enter the resource's GPS location (e.g., latitude, longitude):");
+            gpsLocation = scanner.nextLine();
+            if (!isValidGPSLocation(gpsLocation)) 
+            {
+                out.println("Invalid GPS location. Please enter a valid location in the format latitude, longitude.");
+            }
+        } 
+        while (!isValidGPSLocation(gpsLocation));
+
+        if (ims.setResourceLocation(resourceNumber, new GPSLocation(gpsLocation))) 
+        {
+            out.println("Resource location set successfully!");
+        } 
+        else 
+        {
+            out.println("Resource not found!");
+        }
+    }
+
+    public void takeNextIncident() 
+    {
+        // The claim keeps other dispatchers from being given the same incident meanwhile
+        Incident incident = ims.claimNextIncident();
+        if (incident == null) 
+        {
+            out.println("No incidents are waiting for resources.");
+            return;
+        }
+        try 
+        {
+            out.println(incident);
+            String answer;
+            do 
+            {
+                out.println("Assign a resource to this incident now? (y/n):");
+                answer = scanner.nextLine().trim();
+            } 
+            while (!isValidAnswer(answer));
+
+            if (answer.equalsIgnoreCase("y")) 
+            {
+                assignResourceTo(incident.getIncidentNumber());
+            }
+        } 
+        finally 
+        {
+            // Back in the queue unless a resource was assigned
+            ims.releaseIncidentClaim(incident);
+        }
+    }
+
+    public void displayWorkQueue() 
+    {
+        out.println("=== Incidents Waiting for Resources (" + ims.getQueuedIncidentCount() + ") ===");
+        for (Incident incident : ims.getQueuedIncidents(WORK_QUEUE_DISPLAYED)) 
+        {
+            out.println(incident);
+        }
+    }
+
+    public void searchIncidents() 
+    {
+        out.println("Enter words to search reporter names and incident details for");
+        out.println("(word* matches words starting with word, \"quoted words\" must appear together):");
+        String query = scanner.nextLine();
+
+        List<Incident> found = ims.searchIncidents(query, SEARCH_RESULTS_DISPLAYED);
+        if (found.isEmpty()) 
+        {
+            out.println("No incidents found!");
+            return;
+        }
+        out.println("=== Best Matching Incidents ===");
+        for (Incident incident : found) 
+        {
+            out.println(incident);
+        }
+    }
+
+    public void importIncidents() 
+    {
+        out.println("Enter the CSV file to import incidents from:");
+        String filename = scanner.nextLine().trim();
+        if (!new File(filename).isFile()) 
+        {
+            out.println("File not found!");
+            return;
+        }
+        // Rejected rows are kept next to the file so they can be fixed and imported again
+        String rejectsFilename = filename + ".rejects.csv";
+        ImportResult result = ims.importIncidentsFromCSV(filename, rejectsFilename);
+        out.println(result.getImported() + " incidents imported from " + result.getRows() + " rows.");
+        if (result.getRejected() > 0 || result.getDuplicates() > 0) 
+        {
+            out.println(result.getRejected() + " invalid rows and " + result.getDuplicates()
+                    + " rows repeating a later row's incident number were written to " + rejectsFilename + ".");
+        }
+    }
+
+    public void loadHistory() 
+    {
+        out.println("Enter the CSV file to load incident history from:");
+        String filename = scanner.nextLine().trim();
+        if (!new File(filename).isFile()) 
+        {
+            out.println("File not found!");
+            return;
+        }
+        int rejected = ims.loadHistoryFromCSV(filename);
+        if (rejected > 0) 
+        {
+            out.println(rejected + " invalid incident rows were skipped.");
+        }
+        out.println(ims.getHistoryCount() + " closed incidents are held in the history.");
+        out.println(ims.getHistoryMemoryReport());
+    }
+
+    // Figures the system keeps current as incidents change, so showing them is instant
+    public void displayDashboard() 
+    {
+        IncidentView<Long> areas = ims.getOngoingPerArea();
+        out.println("=== Dashboard ===");
+        out.println("Ongoing incidents with a location: " + areas.getTotal());
+        out.println("Busiest areas, by the south-west corner of each " + IncidentView.DEFAULT_AREA_DEGREES + " degree square:");
+        for (Map.Entry<Long, Long> area : areas.top(DASHBOARD_ROWS)) 
+        {
+            out.println("  " + IncidentView.areaOf(area.getKey(), IncidentView.DEFAULT_AREA_DEGREES) + ": " + area.getValue());
+        }
+
+        // Incident times read the wall clock as UTC
+        long hour = Math.floorDiv(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC), IncidentView.SECONDS_PER_HOUR);
+        out.println("Incidents per hour over the last " + DASHBOARD_HOURS + " hours:");
+        for (long i = hour - DASHBOARD_HOURS + 1; i <= hour; i++) 
+        {
+            LocalDateTime start = LocalDateTime.ofEpochSecond(i * IncidentView.SECONDS_PER_HOUR, 0, ZoneOffset.UTC);
+            out.println("  " + start.format(DASHBOARD_HOUR_FORMAT) + ": " + ims.getIncidentsPerHour().get(i));
+        }
+
+        out.println("Units committed per resource code:");
+        for (Map.Entry<String, Long> code : ims.getCommittedUnitsPerCode().top(DASHBOARD_ROWS)) 
+        {
+            out.println("  " + code.getKey() + ": " + code.getValue());
+        }
+    }
+
+    // Show the operation metrics and write a snapshot of them to a CSV file
+    public void exportMetrics() 
+    {
+        out.println("=== Metrics ===");
+        out.print(ims.getMetrics().report());
+        out.println("Enter the CSV file to write the metrics to (default " + METRICS_CSV_FILE + "):");
+        String filename = scanner.nextLine().trim();
+        if (filename.isEmpty()) 
+        {
+            filename = METRICS_CSV_FILE;
+        }
+        ims.exportMetrics(filename);
+        out.println("Metrics written to " + filename + ".");
+    }
+
     public void displayIncidents() 
     {
-        // Display a list of all incidents with their details
-        System.out.println("=== List of Incidents ===");
-        for (Incident incident : ims.getAllIncidents()) 
+        IncidentFilter filter = chooseIncidentFilter();
+        // Cursors of the filtered pages found so far; unfiltered pages are computed
+        List<Integer> cursors = new ArrayList<>();
+        cursors.add(0);
+        int pageIndex = 0;
+        while (true) 
         {
-            System.out.println(incident);
+            IncidentPage page = ims.getIncidentPage(filter, pageCursor(filter, cursors, pageIndex), INCIDENTS_PER_PAGE);
+            if (page.getIncidents().isEmpty()) 
+            {
+                if (pageIndex == 0) 
+                {
+                    out.println("No incidents found!");
+                    return;
+                }
+                // The filter matched nothing after the previous page
+                out.println("There are no more incidents.");
+                pageIndex--;
+                continue;
+            }
+            writePage(page, filter, pageIndex);
+            if (pageIndex == 0 && !page.hasNext()) 
+            {
+                return;
+            }
+
+            out.println("Enter n for the next page, p for the previous page, a page number, or press Enter to finish:");
+            String answer = scanner.nextLine().trim();
+            if (answer.isEmpty()) 
+            {
+                return;
+            }
+            if (answer.equalsIgnoreCase("n")) 
+            {
+                if (page.hasNext()) 
+                {
+                    pageIndex++;
+                } 
+                else 
+                {
+                    out.println("This is the last page.");
+                }
+            } 
+            else if (answer.equalsIgnoreCase("p")) 
+            {
+                if (pageIndex > 0) 
+                {
+                    pageIndex--;
+                } 
+                else 
+                {
+                    out.println("This is the first page.");
+                }
+            } 
+            else 
+            {
+                int target;
+                try 
+                {
+                    target = Integer.parseInt(answer) - 1;
+                } 
+                catch (NumberFormatException e) 
+                {
+                    target = -1;
+                }
+                if (target >= 0 && pageCursor(filter, cursors, target) != IncidentPage.END) 
+                {
+                    pageIndex = target;
+                } 
+                else 
+                {
+                    out.println("Invalid page. Please try again.");
+                }
+            }
         }
     }
 
-    public void run() 
+    // Where a page starts, or END if there is no such page. Unfiltered pages start at fixed
+    // positions; filtered pages are found by following cursors from the last page found.
+    private int pageCursor(IncidentFilter filter, List<Integer> cursors, int pageIndex) 
     {
-        int choice;
+        if (filter.isAll()) 
+        {
+            return ims.getPageCursor(pageIndex, INCIDENTS_PER_PAGE);
+        }
+        while (cursors.size() <= pageIndex && cursors.get(cursors.size() - 1) != IncidentPage.END) 
+        {
+            int last = cursors.get(cursors.size() - 1);
+            cursors.add(ims.getIncidentPage(filter, last, INCIDENTS_PER_PAGE).getNextCursor());
+        }
+        return pageIndex < cursors.size() ? cursors.get(pageIndex) : IncidentPage.END;
+    }
 
+    private void writePage(IncidentPage page, IncidentFilter filter, int pageIndex) 
+    {
+        String heading = "=== List of Incidents, Page " + (pageIndex + 1);
+        if (filter.isAll()) 
+        {
+            int pages = (ims.getIncidentCount() + INCIDENTS_PER_PAGE - 1) / INCIDENTS_PER_PAGE;
+            heading += " of " + pages;
+        }
+        try 
+        {
+            incidentWriter.writeLine(heading + " ===");
+            for (Incident incident : page.getIncidents()) 
+            {
+                incidentWriter.write(incident);
+            }
+            incidentWriter.flush();
+        } 
+        catch (IOException e) 
+        {
+            e.printStackTrace();
+        }
+    }
+
+    private IncidentFilter chooseIncidentFilter() 
+    {
+        String choice;
         do 
         {
-            displayMainMenu();
-            System.out.print("Enter your choice: ");
-            choice = scanner.nextInt();
-            scanner.nextLine(); // Consume the newline character
+            out.println("Show 1. all incidents, 2. ongoing incidents, 3. incidents between two dates, 4. incidents in an area (or press Enter for all):");
+            choice = scanner.nextLine().trim();
+        } 
+        while (!choice.isEmpty() && !(choice.length() == 1 && choice.charAt(0) >= '1' && choice.charAt(0) <= '4'));
 
-            switch (choice) 
+        switch (choice) 
+        {
+            case "2":
+                return IncidentFilter.all().onlyOngoing();
+            case "3":
+                String first = readDate("Enter the first date (format: dd/mm/yyyy):");
+                String last = readDate("Enter the last date (format: dd/mm/yyyy):");
+                return IncidentFilter.all().between(Incident.toTimestamp(first, "00:00"),
+                        Incident.toTimestamp(last, "00:00") + 86400);
+            case "4":
+                GPSLocation corner = readLocation("Enter one corner of the area (latitude, longitude):");
+                GPSLocation opposite = readLocation("Enter the opposite corner (latitude, longitude):");
+                return IncidentFilter.all().inArea(Math.min(corner.getLatitude(), opposite.getLatitude()),
+                        Math.min(corner.getLongitude(), opposite.getLongitude()),
+                        Math.max(corner.getLatitude(), opposite.getLatitude()),
+                        Math.max(corner.getLongitude(), opposite.getLongitude()));
+            default:
+                return IncidentFilter.all();
+        }
+    }
+
+    private String readDate(String prompt) 
+    {
+        String date;
+        do 
+        {
+            out.println(prompt);
+            date = scanner.nextLine();
+            if (!isValidDate(date)) 
             {
-                case 1:
-                    createIncident();
-                    break;
-                case 2:
-                    updateIncident();
-                    break;
-                case 3:
-                    assignResource();
-                    break;
-                case 4:
-                    displayIncidents();
-                    break;
-                case 5: 
-                    saveToCSV();
-                    break;
-                case 6: 
-                    loadFromCSV();
-                    break;
-                case 0:
-                    System.out.println("Exiting Incident Management System...");
-                    break;
-                default:
-                    System.out.println("Invalid choice. Please try again.");
-                    break;
+                out.println("Invalid date. Please enter a valid date in the format dd/mm/yyyy.");
+            }
+        } 
+        while (!isValidDate(date));
+        return date;
+    }
+
+    private GPSLocation readLocation(String prompt) 
+    {
+        String location;
+        do 
+        {
+            out.println(prompt);
+            location = scanner.nextLine();
+            if (!isValidGPSLocation(location)) 
+            {
+                out.println("Invalid GPS location. Please enter a valid location in the format latitude, longitude.");
             }
-        } while (choice != 0);
+        } 
+        while (!isValidGPSLocation(location));
+        return new GPSLocation(location);
+    }
+
+    public void run() 
+    {
+        // Recover incidents created since the last save
+        ims.openJournal(INCIDENTS_JOURNAL_FILE, true);
+
+        runSession();
+
+        ims.closeJournal();
+    }
+
+    // Serve the menu until the operator exits or the input ends; the journal is left to the caller
+    public void runSession() 
+    {
+        int choice;
+
+        try 
+        {
+            do 
+            {
+                displayMainMenu();
+                out.print("Enter your choice: ");
+                out.flush();
+                try 
+                {
+                    choice = scanner.nextInt();
+                } 
+                catch (InputMismatchException e) 
+                {
+                    choice = -1;
+                }
+                scanner.nextLine(); // Consume the newline character
+
+                switch (choice) 
+                {
+                    case 1:
+                        createIncident();
+                        break;
+                    case 2:
+                        updateIncident();
+                        break;
+                    case 3:
+                        assignResource();
+                        break;
+                    case 4:
+                        displayIncidents();
+                        break;
+                    case 5: 
+                        saveToCSV();
+                        break;
+                    case 6: 
+                        loadFromCSV();
+                        break;
+                    case 7: 
+                        saveSnapshot();
+                        break;
+                    case 8: 
+                        loadSnapshot();
+                        break;
+                    case 9: 
+                        setResourceStock();
+                        break;
+                    case 10: 
+                        setResourceLocation();
+                        break;
+                    case 11: 
+                        takeNextIncident();
+                        break;
+                    case 12: 
+                        displayWorkQueue();
+                        break;
+                    case 13: 
+                        searchIncidents();
+                        break;
+                    case 14: 
+                        importIncidents();
+                        break;
+                    case 15: 
+                        loadHistory();
+                        break;
+                    case 16: 
+                        displayDashboard();
+                        break;
+                    case 17: 
+                        exportMetrics();
+                        break;
+                    case 0:
+                        out.println("Exiting Incident Management System...");
+                        break;
+                    default:
+                        out.println("Invalid choice. Please try again.");
+                        break;
+                }
+            } while (choice != 0);
+        } 
+        catch (NoSuchElementException e) 
+        {
+            // The input was closed, e.g. the operator disconnected
+        }
 
         scanner.close();
     }
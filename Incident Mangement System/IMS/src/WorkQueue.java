@@ -0,0 +1,238 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Ongoing incidents that have no resources assigned yet, most urgent first: highest
+// priority, then the longest waiting, then the lowest incident number. An indexed binary
+// heap, so adding, re-prioritising and removing an incident are O(log n) and the most
+// urgent incident is always at the top. Claiming takes the top incident out until it is
+// released, so two dispatchers never get the same one. Safe for many threads; every
+// method holds the queue's lock.
+public class WorkQueue
+{
+    private Incident[] heap = new Incident[16];
+    // Each incident's ordering keys as they were when it was last updated
+    private int[] priorities = new int[16];
+    private long[] timestamps = new long[16];
+    private int size;
+    // Incident number to heap position
+    private final IntIntHashMap positions = new IntIntHashMap();
+    // Numbers of claimed incidents, kept out of the heap until released
+    private final IntIntHashMap claimed = new IntIntHashMap();
+
+    // Add, move or remove an incident after it changed, depending on whether it is still waiting
+    public synchronized void update(Incident incident)
+    {
+        int number = incident.getIncidentNumber();
+        if (!incident.isOngoing())
+        {
+            claimed.remove(number);
+        }
+        if (!waiting(incident))
+        {
+            removeAt(positions.get(number));
+            return;
+        }
+        int position = positions.get(number);
+        if (position == IntIntHashMap.NO_VALUE)
+        {
+            position = size++;
+            if (position == heap.length)
+            {
+                heap = Arrays.copyOf(heap, position * 2);
+                priorities = Arrays.copyOf(priorities, position * 2);
+                timestamps = Arrays.copyOf(timestamps, position * 2);
+            }
+        }
+        set(position, incident);
+        siftDown(siftUp(position));
+    }
+
+    // Take out an incident that is being replaced by another with its number. A claim on
+    // the number stays, so the replacement is not handed to a second dispatcher.
+    public synchronized void remove(Incident incident)
+    {
+        int position = positions.get(incident.getIncidentNumber());
+        if (position != IntIntHashMap.NO_VALUE && heap[position] == incident)
+        {
+            removeAt(position);
+        }
+    }
+
+    // The most urgent waiting incident, or null; it stays in the queue
+    public synchronized Incident peek()
+    {
+        return size == 0 ? null : heap[0];
+    }
+
+    // Take the most urgent waiting incident out of the queue for one dispatcher, or null
+    public synchronized Incident claimNext()
+    {
+        if (size == 0)
+        {
+            return null;
+        }
+        Incident next = heap[0];
+        removeAt(0);
+        claimed.put(next.getIncidentNumber(), 1);
+        return next;
+    }
+
+    // Give up a claim; the incident goes back in the queue if it is still waiting
+    public synchronized void release(Incident incident)
+    {
+        if (claimed.remove(incident.getIncidentNumber()) != IntIntHashMap.NO_VALUE)
+        {
+            update(incident);
+        }
+    }
+
+    public synchronized boolean isClaimed(int incidentNumber)
+    {
+        return claimed.containsKey(incidentNumber);
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    // Up to count waiting incidents, most urgent first
+    public synchronized List<Incident> peek(int count)
+    {
+        // Walk the heap best-first with a small heap of positions to visit next
+        List<Incident> found = new ArrayList<>(Math.min(count, size));
+        int[] frontier = new int[Math.min(count, size) + 1];
+        int frontierSize = 0;
+        if (size > 0 && count > 0)
+        {
+            frontier[frontierSize++] = 0;
+        }
+        while (frontierSize > 0 && found.size() < count)
+        {
+            int best = 0;
+            for (int i = 1; i < frontierSize; i++)
+            {
+                if (before(frontier[i], frontier[best]))
+                {
+                    best = i;
+                }
+            }
+            int position = frontier[best];
+            frontier[best] = frontier[--frontierSize];
+            found.add(heap[position]);
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < size; child++)
+            {
+                if (frontierSize == frontier.length)
+                {
+                    frontier = Arrays.copyOf(frontier, frontierSize * 2);
+                }
+                frontier[frontierSize++] = child;
+            }
+        }
+        return found;
+    }
+
+    private boolean waiting(Incident incident)
+    {
+        return incident.isOngoing() && incident.getResources().isEmpty()
+                && !claimed.containsKey(incident.getIncidentNumber());
+    }
+
+    private void removeAt(int position)
+    {
+        if (position == IntIntHashMap.NO_VALUE)
+        {
+            return;
+        }
+        positions.remove(heap[position].getIncidentNumber());
+        int last = --size;
+        if (position != last)
+        {
+            move(last, position);
+            siftDown(siftUp(position));
+        }
+        heap[last] = null;
+    }
+
+    private int siftUp(int position)
+    {
+        while (position > 0)
+        {
+            int parent = (position - 1) / 2;
+            if (!before(position, parent))
+            {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+        return position;
+    }
+
+    private void siftDown(int position)
+    {
+        while (true)
+        {
+            int child = 2 * position + 1;
+            if (child >= size)
+            {
+                return;
+            }
+            if (child + 1 < size && before(child + 1, child))
+            {
+                child++;
+            }
+            if (!before(child, position))
+            {
+                return;
+            }
+            swap(position, child);
+            position = child;
+        }
+    }
+
+    // Whether the incident at position a is more urgent than the one at b
+    private boolean before(int a, int b)
+    {
+        if (priorities[a] != priorities[b])
+        {
+            return priorities[a] < priorities[b];
+        }
+        if (timestamps[a] != timestamps[b])
+        {
+            return timestamps[a] < timestamps[b];
+        }
+        return heap[a].getIncidentNumber() < heap[b].getIncidentNumber();
+    }
+
+    private void set(int position, Incident incident)
+    {
+        heap[position] = incident;
+        priorities[position] = incident.getPriority();
+        // Incidents with an unreadable date and time wait behind those with one
+        long timestamp = incident.getTimestamp();
+        timestamps[position] = timestamp == Incident.NO_TIMESTAMP ? Long.MAX_VALUE : timestamp;
+        positions.put(incident.getIncidentNumber(), position);
+    }
+
+    private void move(int from, int to)
+    {
+        heap[to] = heap[from];
+        priorities[to] = priorities[from];
+        timestamps[to] = timestamps[from];
+        positions.put(heap[to].getIncidentNumber(), to);
+    }
+
+    private void swap(int a, int b)
+    {
+        Incident incident = heap[a];
+        int priority = priorities[a];
+        long timestamp = timestamps[a];
+        move(b, a);
+        heap[b] = incident;
+        priorities[b] = priority;
+        timestamps[b] = timestamp;
+        positions.put(incident.getIncidentNumber(), b);
+    }
+}
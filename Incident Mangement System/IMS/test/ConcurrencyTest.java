@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+// Writers create incidents, update them and assign resources while a reader keeps walking
+// getAllIncidents snapshots; every incident must end up stored once, fully updated, with all
+// of its resources and indexed
+class ConcurrencyTest
+{
+    private static final int WRITERS = 8;
+    private static final int OPERATIONS = 2_000;
+    private static final int RESOURCES_PER_INCIDENT = 2;
+
+    @Test
+    void operatorsSharingOneSystemLoseNothing() throws InterruptedException
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(WRITERS);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicBoolean brokenSnapshot = new AtomicBoolean();
+
+        for (int t = 0; t < WRITERS; t++)
+        {
+            int writer = t;
+            Thread thread = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++)
+                    {
+                        // Each writer owns a disjoint range of incident numbers
+                        int number = writer * OPERATIONS + i + 1;
+                        double offset = (number * 0x9E3779B9L & 0xFFFFFF) / (double) 0x1000000;
+                        Incident incident = TestIncidents.incidentAt(number, TestIncidents.DATE,
+                                String.format("%02d:%02d", i / 60 % 24, i % 60));
+                        incident.setReporterName("Reporter " + writer);
+                        incident.setGpsLocation(new GPSLocation(51 + offset * 4, -4 + offset * 6));
+                        ims.addIncident(incident);
+                        ims.updateIncident(number, stored -> {
+                            stored.setIncidentDetails("Updated by " + writer);
+                            stored.setGpsLocation(new GPSLocation(55 - offset * 4, 2 - offset * 6));
+                        });
+                        for (int r = 0; r < RESOURCES_PER_INCIDENT; r++)
+                        {
+                            ims.assignResourceToIncident(number, new Resource(r, "R" + r, "Resource " + r, 1));
+                        }
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.compareAndSet(null, e);
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }, "writer-" + t);
+            thread.start();
+        }
+
+        Thread reader = new Thread(() -> {
+            while (writing.get())
+            {
+                // A snapshot must stay the same size and hold no gaps while writers carry on
+                List<Incident> snapshot = ims.getAllIncidents();
+                int size = snapshot.size();
+                for (Incident incident : snapshot)
+                {
+                    if (incident == null)
+                    {
+                        brokenSnapshot.set(true);
+                    }
+                }
+                if (snapshot.size() != size)
+                {
+                    brokenSnapshot.set(true);
+                }
+            }
+        }, "reader");
+        reader.start();
+        start.countDown();
+        done.await();
+        writing.set(false);
+        reader.join();
+
+        if (failure.get() != null)
+        {
+            throw new AssertionError("a writer failed", failure.get());
+        }
+        assertFalse(brokenSnapshot.get(), "a snapshot changed size or held a gap");
+        int expected = WRITERS * OPERATIONS;
+        List<Incident> all = ims.getAllIncidents();
+        assertEquals(expected, all.size());
+        for (Incident incident : all)
+        {
+            assertEquals(RESOURCES_PER_INCIDENT, incident.getResources().size());
+            assertTrue(incident.getIncidentDetails().startsWith("Updated"));
+            assertSame(incident, ims.findIncidentByNumber(incident.getIncidentNumber()));
+        }
+        assertEquals(expected, ims.findIncidentsInArea(-90, -180, 90, 180, false).size());
+        assertEquals(expected, ims.findIncidentsBetween(Long.MIN_VALUE + 1, Long.MAX_VALUE).size());
+    }
+}
@@ -0,0 +1,135 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Incidents survive a trip through toCSVString and CsvReader with commas, quotes, line
+// breaks and edge whitespace in their fields, in coordinates and what3words locations, and
+// legacy files written before fields were quoted still load. Assignments come back to the
+// resource with their number and code.
+class CsvRoundTripTest
+{
+    private static final String[] DETAILS = { "Road traffic collision", "Collision, two cars",
+        "Driver says \"brakes failed\"", "Smoke seen\nfrom the roof", " Padded ", "", "\"", ",,," };
+    private static final String[] LOCATIONS = { "51.5072, -0.1276", "index.home.raft", "1.0E-4, -2.5", "" };
+    private static final String LEGACY_HEADER = "Incident No, Reporter No, Date, Time, GPS-What3Words, Incident Details, Ongoing, Priority";
+
+    @TempDir
+    Path directory;
+
+    // Every combination of details and location, alone and through a saved file
+    @Test
+    void everyFieldSurvivesARoundTrip()
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        int number = 0;
+        for (String details : DETAILS)
+        {
+            for (String location : LOCATIONS)
+            {
+                Incident incident = TestIncidents.incident(++number, location, details);
+                incident.setOngoing(number % 2 == 0);
+                incident.setPriority(Incident.HIGHEST_PRIORITY + number % Incident.LOWEST_PRIORITY);
+                assertSame(incident, Incident.fromCSVString(incident.toCSVString()));
+                ims.addIncident(incident);
+            }
+        }
+        String file = directory.resolve("roundtrip.csv").toString();
+        ims.saveIncidentsToCSV(file);
+        IncidentManagementSystem loaded = new IncidentManagementSystem();
+        assertEquals(0, loaded.loadIncidentsFromCSV(file), "rows rejected");
+        for (Incident incident : ims.getAllIncidents())
+        {
+            assertSame(incident, loaded.findIncidentByNumber(incident.getIncidentNumber()));
+        }
+    }
+
+    // Rows as the old writer left them, split wherever the location or details held a comma
+    @Test
+    void legacyRowsLoad() throws IOException
+    {
+        Path file = directory.resolve("legacy.csv");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file.toFile())))
+        {
+            writer.write(LEGACY_HEADER + "\n");
+            writer.write("1, Reporter, 07000000000, 01/01/2023, 12:00, 51.5072, -0.1276, Collision, two cars, true, 2\n");
+            writer.write("2, Reporter, 07000000000, 01/01/2023, 12:00, index.home.raft, Collision, two cars, false, 4\n");
+        }
+        IncidentManagementSystem loaded = new IncidentManagementSystem();
+        assertEquals(0, loaded.loadIncidentsFromCSV(file.toString()), "legacy rows rejected");
+        Incident first = TestIncidents.incident(1, LOCATIONS[0], DETAILS[1]);
+        first.setOngoing(true);
+        first.setPriority(2);
+        assertSame(first, loaded.findIncidentByNumber(1));
+        Incident second = TestIncidents.incident(2, LOCATIONS[1], DETAILS[1]);
+        second.setOngoing(false);
+        second.setPriority(4);
+        assertSame(second, loaded.findIncidentByNumber(2));
+    }
+
+    // The catalogue keys resources on number and code, so two may share a number
+    @Test
+    void assignmentsKeepTheirResourceCode()
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        ims.addIncident(TestIncidents.incident(1, LOCATIONS[0], DETAILS[0]));
+        ims.addIncident(TestIncidents.incident(2, LOCATIONS[0], DETAILS[0]));
+        ims.assignResourceToIncident(1, new Resource(5, "AMB", "Ambulance", 1));
+        ims.assignResourceToIncident(2, new Resource(5, "FIRE, RESCUE", "Fire engine", 2));
+        IncidentManagementSystem loaded = saveAndLoad(ims);
+
+        assertEquals(List.of(new Resource(5, "AMB", null, 1)), loaded.findIncidentByNumber(1).getResources());
+        assertEquals(List.of(new Resource(5, "FIRE, RESCUE", null, 2)), loaded.findIncidentByNumber(2).getResources());
+        assertEquals(2, loaded.findIncidentByNumber(2).getResources().get(0).getNumUnits());
+    }
+
+    // Assignments saved before the code was written take the first resource with the number
+    @Test
+    void assignmentsWithoutACodeLoad() throws IOException
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        ims.addIncident(TestIncidents.incident(1, LOCATIONS[0], DETAILS[0]));
+        ims.assignResourceToIncident(1, new Resource(5, "AMB", "Ambulance", 1));
+        ims.assignResourceToIncident(1, new Resource(5, "FIRE", "Fire engine", 1));
+        IncidentManagementSystem loaded = saveAndLoad(ims);
+        String assignments = directory.resolve("assignments.csv").toString();
+        Files.writeString(Path.of(assignments), "Incident No,Resource No,Number of Units\n1,5,3\n");
+
+        loaded.loadAssignmentsFromCSV(assignments);
+
+        // After the two saved with their codes
+        Resource added = loaded.findIncidentByNumber(1).getResources().get(2);
+        assertEquals(new Resource(5, "AMB", null, 3), added);
+        assertEquals(3, added.getNumUnits());
+    }
+
+    private IncidentManagementSystem saveAndLoad(IncidentManagementSystem ims)
+    {
+        String incidents = directory.resolve("incidents.csv").toString();
+        String resources = directory.resolve("resources.csv").toString();
+        String assignments = directory.resolve("assignments.csv").toString();
+        ims.saveIncidentsToCSV(incidents);
+        ims.saveResourcesToCSV(resources);
+        ims.saveAssignmentsToCSV(assignments);
+        IncidentManagementSystem loaded = new IncidentManagementSystem();
+        loaded.loadResourcesFromCSV(resources);
+        loaded.loadIncidentsFromCSV(incidents);
+        assertEquals(0, loaded.loadAssignmentsFromCSV(assignments), "assignments unmatched");
+        return loaded;
+    }
+
+    // Same fields, compared through the row each writes
+    private static void assertSame(Incident expected, Incident actual)
+    {
+        assertNotNull(actual, "incident " + expected.getIncidentNumber() + " read back");
+        assertEquals(expected.toCSVString(), actual.toCSVString());
+    }
+}
@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A delta save writes the incidents changed, and the assignments made, since the last save
+// took them, and a failed one leaves them for the next
+class DeltaSaveTest
+{
+    @TempDir
+    Path directory;
+
+    private IncidentManagementSystem ims;
+    private String incidentsFile;
+    private String assignmentsFile;
+    // A snapshot whose name is as long as a file name may be, so a segment beside it,
+    // named with a suffix, cannot be written
+    private String unwritable;
+
+    @BeforeEach
+    void threeSavedIncidents() throws IOException
+    {
+        ims = new IncidentManagementSystem();
+        for (int number = 1; number <= 3; number++)
+        {
+            ims.addIncident(TestIncidents.incident(number));
+        }
+        incidentsFile = directory.resolve("incidents.csv").toString();
+        assignmentsFile = directory.resolve("assignments.csv").toString();
+        assertTrue(ims.saveIncidentsToCSV(incidentsFile));
+        assertTrue(ims.saveAssignmentsToCSV(assignmentsFile));
+        unwritable = Files.writeString(directory.resolve("x".repeat(255)), "header\n").toString();
+    }
+
+    @Test
+    void onlyChangedIncidentsAreWritten() throws IOException
+    {
+        ims.updateIncident(2, stored -> stored.setIncidentDetails("Changed"));
+        ims.addIncident(TestIncidents.incident(4));
+
+        assertTrue(ims.saveIncidentChangesToCSV(incidentsFile));
+
+        assertEquals(List.of(2, 4), numbers(incidentsFile + ".1"));
+        assertTrue(ims.saveIncidentChangesToCSV(incidentsFile));
+        assertFalse(Files.exists(Path.of(incidentsFile + ".2")));
+    }
+
+    @Test
+    void failedSaveLeavesTheChangesForTheNext() throws IOException
+    {
+        ims.updateIncident(2, stored -> stored.setIncidentDetails("Changed"));
+
+        assertFalse(ims.saveIncidentChangesToCSV(unwritable));
+        assertTrue(ims.saveIncidentChangesToCSV(incidentsFile));
+
+        assertEquals(List.of(2), numbers(incidentsFile + ".1"));
+    }
+
+    @Test
+    void failedAssignmentSaveLeavesTheAssignmentsForTheNext() throws IOException
+    {
+        assertTrue(ims.assignResourceToIncident(3, new Resource(7, "AMB", "Ambulance", 1)));
+
+        assertFalse(ims.saveAssignmentChangesToCSV(unwritable));
+        assertTrue(ims.saveAssignmentChangesToCSV(assignmentsFile));
+
+        assertEquals(List.of(3), numbers(assignmentsFile + ".1"));
+        assertTrue(ims.saveAssignmentChangesToCSV(assignmentsFile));
+        assertFalse(Files.exists(Path.of(assignmentsFile + ".2")));
+    }
+
+    // The incident number leading each row after the header
+    private static List<Integer> numbers(String file) throws IOException
+    {
+        List<String> lines = Files.readAllLines(Path.of(file));
+        return lines.subList(1, lines.size()).stream()
+                .map(line -> Integer.parseInt(line.substring(0, line.indexOf(','))))
+                .toList();
+    }
+}
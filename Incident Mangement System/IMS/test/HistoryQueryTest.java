@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The time queries answer from the live incidents and the history together
+class HistoryQueryTest
+{
+    private static final long TEN_O_CLOCK = LocalDateTime.of(2023, 1, 1, 10, 0).toEpochSecond(ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    private IncidentManagementSystem ims;
+
+    // Closed incidents 1 to 3 at 10:00, 11:00 and 12:00 in the history, and ongoing
+    // incident 4 at 11:30 stored
+    @BeforeEach
+    void historyAndLiveIncidents()
+    {
+        IncidentManagementSystem archive = new IncidentManagementSystem();
+        archive.addIncident(closedAt(1, "10:00"));
+        archive.addIncident(closedAt(2, "11:00"));
+        archive.addIncident(closedAt(3, "12:00"));
+        String file = directory.resolve("history.csv").toString();
+        archive.saveIncidentsToCSV(file);
+
+        ims = new IncidentManagementSystem();
+        assertEquals(0, ims.loadHistoryFromCSV(file), "rows rejected");
+        assertEquals(3, ims.getHistoryCount());
+        ims.addIncident(TestIncidents.incidentAt(4, TestIncidents.DATE, "11:30"));
+    }
+
+    @Test
+    void latestIncidentsIncludeTheHistory()
+    {
+        assertEquals(List.of(3, 4), numbers(ims.findLatestIncidents(2)));
+        assertEquals(List.of(3, 4, 2, 1), numbers(ims.findLatestIncidents(10)));
+    }
+
+    @Test
+    void countsIncludeTheHistory()
+    {
+        assertArrayEquals(new int[] { 1, 2, 1 }, ims.countIncidentsPerHour(TEN_O_CLOCK, TEN_O_CLOCK + 3 * 3600));
+        assertArrayEquals(new int[] { 4 }, ims.countIncidentsPerDay(TEN_O_CLOCK, TEN_O_CLOCK + 86400));
+    }
+
+    private static Incident closedAt(int number, String time)
+    {
+        Incident incident = TestIncidents.incidentAt(number, TestIncidents.DATE, time);
+        incident.setOngoing(false);
+        return incident;
+    }
+
+    private static List<Integer> numbers(List<Incident> incidents)
+    {
+        return incidents.stream().map(Incident::getIncidentNumber).toList();
+    }
+}
@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+// The store and the number-keyed indexes file an incident under its number, so a stored
+// incident keeps the number it was stored with
+class IncidentNumberTest
+{
+    @Test
+    void storedIncidentCannotBeRenumbered()
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        Incident incident = TestIncidents.incident(5, "Smoke from a warehouse");
+        ims.addIncident(incident);
+
+        assertThrows(IllegalStateException.class, () -> incident.setIncidentNumber(9));
+
+        assertEquals(5, incident.getIncidentNumber());
+        assertSame(incident, ims.findIncidentByNumber(5));
+        assertNull(ims.findIncidentByNumber(9));
+        assertEquals(1, ims.searchIncidents("warehouse", 10).size());
+        assertEquals(5, ims.searchIncidents("warehouse", 10).get(0).getIncidentNumber());
+    }
+
+    @Test
+    void newIncidentUnderTheOtherNumberIsStoredBeside()
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        Incident incident = TestIncidents.incident(5, "Details");
+        ims.addIncident(incident);
+        assertThrows(IllegalStateException.class, () -> incident.setIncidentNumber(9));
+
+        Incident other = TestIncidents.incident(9, "Details");
+        ims.addIncident(other);
+
+        assertEquals(2, ims.getIncidentCount());
+        assertSame(incident, ims.findIncidentByNumber(5));
+        assertSame(other, ims.findIncidentByNumber(9));
+    }
+
+    @Test
+    void incidentNotInASystemCanBeRenumbered()
+    {
+        Incident incident = TestIncidents.incident(5, "Details");
+        incident.setIncidentNumber(9);
+        assertEquals(9, incident.getIncidentNumber());
+
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        ims.addIncident(incident);
+        assertSame(incident, ims.findIncidentByNumber(9));
+        assertNull(ims.findIncidentByNumber(5));
+    }
+}
@@ -0,0 +1,102 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A journal checkpoint after a save drops only the incidents journaled before the save
+// began, and a failed save says so, so its caller keeps the journal
+class JournalCheckpointTest
+{
+    // Incidents journaled before the first mark, and added while each save runs
+    private static final int SAVED = 2_000;
+    private static final int ADDED = 200;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void failedSaveReportsFailure()
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        ims.addIncident(TestIncidents.incident(1));
+        String missing = directory.resolve("missing").resolve("incidents.csv").toString();
+        assertFalse(ims.saveIncidentChangesToCSV(missing));
+    }
+
+    // Incidents added while a save runs are journaled after the mark taken before it, so the
+    // checkpoint keeps them whether or not the save wrote them; a second save and checkpoint,
+    // on the journal the first one truncated, drops them and keeps the ones added during it
+    @Test
+    void checkpointKeepsIncidentsJournaledAfterTheMark() throws Exception
+    {
+        String journalFile = directory.resolve("journal.csv").toString();
+        String incidentsFile = directory.resolve("incidents.csv").toString();
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        ims.openJournal(journalFile, false);
+        addIncidents(ims, journalFile, 1, SAVED);
+
+        saveAndCheckpointWhileAdding(ims, journalFile, incidentsFile, SAVED + 1, SAVED + ADDED);
+        assertJournaled(ims, journalFile, SAVED + 1, SAVED + ADDED);
+
+        saveAndCheckpointWhileAdding(ims, journalFile, incidentsFile, SAVED + ADDED + 1, SAVED + 2 * ADDED);
+        assertJournaled(ims, journalFile, SAVED + ADDED + 1, SAVED + 2 * ADDED);
+        ims.closeJournal();
+    }
+
+    private static void addIncidents(IncidentManagementSystem ims, String journalFile, int first, int last)
+    {
+        for (int number = first; number <= last; number++)
+        {
+            ims.addIncident(TestIncidents.incident(number), journalFile);
+        }
+    }
+
+    // Take a mark, save on another thread while this one adds incidents first to last, and
+    // checkpoint at the mark once the save has succeeded
+    private static void saveAndCheckpointWhileAdding(IncidentManagementSystem ims, String journalFile,
+                                                     String incidentsFile, int first, int last) throws Exception
+    {
+        long mark = ims.journalMark();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean saved = new AtomicBoolean();
+        Thread saver = new Thread(() -> {
+            try
+            {
+                start.await();
+                saved.set(ims.saveIncidentChangesToCSV(incidentsFile));
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }, "saver");
+        saver.start();
+        start.countDown();
+        addIncidents(ims, journalFile, first, last);
+        saver.join();
+        assertTrue(saved.get(), "save succeeded");
+        ims.checkpointJournal(mark);
+    }
+
+    // Exactly the incidents first to last replay from the journal; the journal is closed to
+    // commit it and then reopened
+    private static void assertJournaled(IncidentManagementSystem ims, String journalFile, int first, int last)
+    {
+        ims.closeJournal();
+        IncidentManagementSystem replayed = new IncidentManagementSystem();
+        replayed.openJournal(journalFile, true);
+        replayed.closeJournal();
+        for (int number = 1; number <= SAVED + 2 * ADDED; number++)
+        {
+            boolean expected = number >= first && number <= last;
+            assertEquals(expected, replayed.incidentExists(number), "incident " + number + " in the journal");
+        }
+        ims.openJournal(journalFile, false);
+    }
+}
@@ -0,0 +1,102 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A snapshot taken while incidents are being changed holds each one as it was between two
+// changes, never part of one change and part of the next. Dates and times come back as they
+// were, whether kept as a timestamp or, when they cannot be read as one, as text.
+class SnapshotTest
+{
+    private static final int INCIDENTS = 2_000;
+    private static final int SAVES = 20;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void datesAndTimesSurviveARoundTrip()
+    {
+        String[][] dateTimes = { { "01/01/2023", "00:00" }, { "29/02/2024", "23:59" }, { "31/12/1969", "12:30" },
+            { "15/06/0001", "08:05" }, { "31/02/2023", "12:00" }, { "1/1/2023", "9:00" }, { "", "" } };
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        for (int i = 0; i < dateTimes.length; i++)
+        {
+            ims.addIncident(TestIncidents.incidentAt(i + 1, dateTimes[i][0], dateTimes[i][1]));
+        }
+        String filename = directory.resolve("dates.bin").toString();
+        assertTrue(ims.saveSnapshot(filename));
+        IncidentManagementSystem loaded = new IncidentManagementSystem();
+        loaded.loadSnapshot(filename);
+
+        for (int i = 0; i < dateTimes.length; i++)
+        {
+            Incident incident = loaded.findIncidentByNumber(i + 1);
+            assertEquals(dateTimes[i][0], incident.getDate());
+            assertEquals(dateTimes[i][1], incident.getTime());
+            assertEquals(Incident.toTimestamp(dateTimes[i][0], dateTimes[i][1]), incident.getTimestamp());
+        }
+    }
+
+    @Test
+    void incidentsChangedDuringASaveAreWrittenWhole() throws InterruptedException
+    {
+        IncidentManagementSystem ims = new IncidentManagementSystem();
+        for (int number = 1; number <= INCIDENTS; number++)
+        {
+            Incident incident = TestIncidents.incident(number, "Edit 0");
+            incident.setReporterName("Reporter 0");
+            ims.addIncident(incident);
+        }
+        AtomicBoolean editing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Each edit gives the name and the details the same new mark, so a snapshot read
+        // across an edit would pair marks that differ
+        Thread editor = new Thread(() -> {
+            try
+            {
+                for (int edit = 1; editing.get(); edit++)
+                {
+                    String mark = Integer.toString(edit);
+                    ims.updateIncident(1 + edit % INCIDENTS, stored -> {
+                        stored.setReporterName("Reporter " + mark);
+                        stored.setIncidentDetails("Edit " + mark);
+                    });
+                }
+            }
+            catch (Throwable e)
+            {
+                failure.set(e);
+            }
+        });
+        editor.start();
+        String filename = directory.resolve("snapshot.bin").toString();
+        try
+        {
+            for (int save = 0; save < SAVES; save++)
+            {
+                assertTrue(ims.saveSnapshot(filename));
+                IncidentManagementSystem loaded = new IncidentManagementSystem();
+                loaded.loadSnapshot(filename);
+                assertEquals(INCIDENTS, loaded.getIncidentCount());
+                for (Incident incident : loaded.getAllIncidents())
+                {
+                    String mark = incident.getIncidentDetails().substring("Edit ".length());
+                    assertEquals("Reporter " + mark, incident.getReporterName(), "incident " + incident.getIncidentNumber());
+                }
+            }
+        }
+        finally
+        {
+            editing.set(false);
+            editor.join();
+        }
+        assertNull(failure.get());
+    }
+}
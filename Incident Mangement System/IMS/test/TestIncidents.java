@@ -0,0 +1,32 @@
+// Incidents for the tests: the same reporter, phone number, date, time and place unless a
+// test asks for its own
+final class TestIncidents
+{
+    static final String DATE = "01/01/2023";
+    static final String TIME = "12:00";
+    static final String LOCATION = "51.5072, -0.1276";
+
+    private TestIncidents()
+    {
+    }
+
+    static Incident incident(int number)
+    {
+        return incident(number, "Details");
+    }
+
+    static Incident incident(int number, String details)
+    {
+        return incident(number, LOCATION, details);
+    }
+
+    static Incident incident(int number, String location, String details)
+    {
+        return new Incident(number, "Reporter", "07000000000", DATE, TIME, new GPSLocation(location), details);
+    }
+
+    static Incident incidentAt(int number, String date, String time)
+    {
+        return new Incident(number, "Reporter", "07000000000", date, time, new GPSLocation(LOCATION), "Details");
+    }
+}
@@ -0,0 +1,89 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+// Removed postings stay in place marked dead until compacted, so every query path has to
+// skip them and a number added back has to come alive again
+class TextIndexTest
+{
+    private static final String[] WORDS = { "smoke", "smell", "fire", "flood", "crash", "road" };
+
+    @Test
+    void queriesSkipRemovedAndSeeRestoredIncidents()
+    {
+        TextIndex index = new TextIndex();
+        TreeMap<Integer, String> details = new TreeMap<>();
+        Random random = new Random(16);
+        for (int round = 0; round < 20_000; round++)
+        {
+            int number = random.nextInt(300);
+            if (random.nextInt(5) == 0)
+            {
+                index.remove(number);
+                details.remove(number);
+            }
+            else
+            {
+                String detail = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+                index.update(number, "Reporter", detail);
+                details.put(number, detail);
+            }
+            if (round % 500 == 0)
+            {
+                checkQueries(index, details);
+            }
+        }
+        checkQueries(index, details);
+    }
+
+    @Test
+    void numbersAddedBackBetweenDeadOnesKeepTheOrder()
+    {
+        TextIndex index = new TextIndex();
+        for (int number = 0; number < 10; number += 2)
+        {
+            index.update(number, "Reporter", "fire");
+        }
+        index.remove(4);
+        index.update(5, "Reporter", "fire");
+        index.update(4, "Reporter", "fire");
+        index.remove(0);
+
+        assertArrayEquals(new int[] { 8, 6, 5, 4, 2 }, index.search("fire", 10));
+        assertArrayEquals(new int[] { 8, 6, 5, 4, 2 }, index.search("fir*", 10));
+        assertArrayEquals(new int[] { 8, 6, 5, 4, 2 }, index.search("\"fire\"", 10));
+    }
+
+    private static void checkQueries(TextIndex index, TreeMap<Integer, String> details)
+    {
+        for (String word : WORDS)
+        {
+            int[] expected = matching(details, detail -> Arrays.asList(detail.split(" ")).contains(word));
+            assertArrayEquals(expected, sorted(index.search(word, 1000)), word);
+            assertArrayEquals(expected, sorted(index.search(word + " absent", 1000)), word + " absent");
+            assertArrayEquals(expected, sorted(index.search("\"" + word + "\"", 1000)), "\"" + word + "\"");
+        }
+        int[] prefixed = matching(details, detail -> detail.contains("sm"));
+        assertArrayEquals(prefixed, sorted(index.search("sm*", 1000)), "sm*");
+        int[] phrase = matching(details, detail -> detail.equals("road crash"));
+        assertArrayEquals(phrase, sorted(index.search("\"road crash\"", 1000)), "\"road crash\"");
+        int[] both = matching(details, detail -> detail.contains("fire") && detail.contains("road"));
+        assertArrayEquals(both, sorted(index.search("\"fire\" road", 1000)), "\"fire\" road");
+    }
+
+    private static int[] matching(TreeMap<Integer, String> details, Predicate<String> test)
+    {
+        return details.entrySet().stream().filter(e -> test.test(e.getValue())).mapToInt(e -> e.getKey()).toArray();
+    }
+
+    private static int[] sorted(int[] numbers)
+    {
+        return IntStream.of(numbers).sorted().toArray();
+    }
+}
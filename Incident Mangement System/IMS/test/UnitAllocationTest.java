@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Units of a limited resource are held only by ongoing incidents: closing an incident gives
+// them back and reopening it takes them again, or is refused if too few are free
+class UnitAllocationTest
+{
+    private static final int RESOURCE = 7;
+
+    private IncidentManagementSystem ims;
+    private Incident first;
+    private Incident second;
+
+    @BeforeEach
+    void twoIncidentsSharingTwoUnits()
+    {
+        ims = new IncidentManagementSystem();
+        ims.setResourceStock(RESOURCE, 2);
+        first = TestIncidents.incident(1);
+        second = TestIncidents.incident(2);
+        ims.addIncident(first);
+        ims.addIncident(second);
+    }
+
+    @Test
+    void closingReleasesTheUnits()
+    {
+        assertTrue(ims.assignResourceToIncident(1, twoUnits()));
+        assertEquals(0, ims.getResourceStock(RESOURCE).available());
+
+        first.setOngoing(false);
+
+        assertEquals(2, ims.getResourceStock(RESOURCE).available());
+        assertTrue(ims.assignResourceToIncident(2, twoUnits()));
+    }
+
+    @Test
+    void reopeningReservesTheUnitsAgain()
+    {
+        assertTrue(ims.assignResourceToIncident(1, twoUnits()));
+        first.setOngoing(false);
+
+        first.setOngoing(true);
+
+        assertEquals(0, ims.getResourceStock(RESOURCE).available());
+        assertFalse(ims.assignResourceToIncident(2, twoUnits()));
+        assertEquals(2, ims.getResourceStock(RESOURCE).committed());
+
+        first.setOngoing(false);
+        assertEquals(2, ims.getResourceStock(RESOURCE).available());
+    }
+
+    @Test
+    void reopeningIsRefusedWhenTooFewUnitsAreFree()
+    {
+        assertTrue(ims.assignResourceToIncident(1, twoUnits()));
+        first.setOngoing(false);
+        assertTrue(ims.assignResourceToIncident(2, twoUnits()));
+
+        assertThrows(IllegalStateException.class, () -> first.setOngoing(true));
+
+        assertFalse(first.isOngoing());
+        assertEquals(0, ims.getResourceStock(RESOURCE).available());
+        assertEquals(2, ims.getResourceStock(RESOURCE).committed());
+        // The units it tried for are not left held: closing the other frees them all
+        second.setOngoing(false);
+        assertEquals(2, ims.getResourceStock(RESOURCE).available());
+    }
+
+    @Test
+    void refusedReopeningLeavesTheRestOfAnUpdateUnapplied()
+    {
+        assertTrue(ims.assignResourceToIncident(1, twoUnits()));
+        first.setOngoing(false);
+        assertTrue(ims.assignResourceToIncident(2, twoUnits()));
+
+        assertThrows(IllegalStateException.class, () -> ims.updateIncident(1, stored -> {
+            stored.setOngoing(true);
+            stored.setIncidentDetails("Reopened");
+        }));
+
+        assertFalse(first.isOngoing());
+        assertEquals("Details", first.getIncidentDetails());
+    }
+
+    // An assignment racing a store that replaces the incident must not leave units reserved
+    // for the replaced one, which nothing would ever give back
+    @Test
+    void assignmentRacingAReplacementLeaksNoUnits() throws InterruptedException
+    {
+        int stock = 1_000_000;
+        ims.setResourceStock(RESOURCE, stock);
+        AtomicBoolean assigning = new AtomicBoolean(true);
+        Thread assigner = new Thread(() -> {
+            while (assigning.get())
+            {
+                ims.assignResourceToIncident(1, new Resource(RESOURCE, "AMB", "Ambulance", 1));
+            }
+        });
+        assigner.start();
+        for (int i = 0; i < 20_000; i++)
+        {
+            ims.updateIncident(TestIncidents.incident(1));
+        }
+        assigning.set(false);
+        assigner.join();
+
+        Incident stored = ims.findIncidentByNumber(1);
+        assertEquals(stored.getResources().size(), ims.getResourceStock(RESOURCE).committed());
+        stored.setOngoing(false);
+        assertEquals(stock, ims.getResourceStock(RESOURCE).available());
+    }
+
+    private static Resource twoUnits()
+    {
+        return new Resource(RESOURCE, "AMB", "Ambulance", 2);
+    }
+}